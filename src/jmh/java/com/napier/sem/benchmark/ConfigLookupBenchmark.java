@@ -0,0 +1,39 @@
+package com.napier.sem.benchmark;
+
+import com.napier.sem.config.AppConfig;
+import com.napier.sem.config.QueryLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the lookups done on every request: the SQL text of a named query and
+ * configuration values (which are checked against JVM system properties first).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigLookupBenchmark {
+    @Benchmark
+    public String queryLoaderGet() {
+        return QueryLoader.get("top_n_cities_by_continent");
+    }
+
+    @Benchmark
+    public String appConfigGet() {
+        return AppConfig.get("app.backend");
+    }
+
+    @Benchmark
+    public int appConfigGetInt() {
+        return AppConfig.getInt("db.pool.max");
+    }
+
+    @Benchmark
+    public boolean appConfigGetBoolean() {
+        return AppConfig.getBoolean("cache.response.enabled");
+    }
+}
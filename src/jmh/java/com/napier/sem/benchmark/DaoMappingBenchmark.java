@@ -0,0 +1,83 @@
+package com.napier.sem.benchmark;
+
+import com.napier.sem.config.DatabaseConnection;
+import com.napier.sem.config.StatementCache;
+import com.napier.sem.dao.CityDAO;
+import com.napier.sem.dao.CountryDAO;
+import com.napier.sem.model.City;
+import com.napier.sem.model.Country;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning result rows into model objects in the DAOs.
+ * <p>
+ * {@code allCities}/{@code allCountries} run the DAO methods (query plus mapping),
+ * while {@code scanCities}/{@code scanCountries} run the same named query and only
+ * step through the rows; the difference is the mapping done by the DAO.
+ * Uses the database selected by {@code db.mode} (embedded by default, see pom.xml).
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoMappingBenchmark {
+    private DataSource dataSource;
+    private CityDAO cityDAO;
+    private CountryDAO countryDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DatabaseConnection.connect();
+        dataSource = DatabaseConnection.get();
+        cityDAO = new CityDAO(dataSource);
+        countryDAO = new CountryDAO(dataSource);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DatabaseConnection.disconnect();
+    }
+
+    @Benchmark
+    public List<City> allCities() {
+        return cityDAO.getAllCities();
+    }
+
+    @Benchmark
+    public void scanCities(Blackhole bh) throws SQLException {
+        scan("all_cities", bh);
+    }
+
+    @Benchmark
+    public List<Country> allCountries() {
+        return countryDAO.getAllCountries();
+    }
+
+    @Benchmark
+    public void scanCountries(Blackhole bh) throws SQLException {
+        scan("all_countries", bh);
+    }
+
+    /** Runs a named query and steps through its rows without reading any column. */
+    private void scan(String queryName, Blackhole bh) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, queryName);
+             ResultSet rs = stmt.executeQuery()) {
+            int rows = 0;
+            while (rs.next()) ++rows;
+            bh.consume(rows);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.napier.sem.benchmark;
+
+import com.google.gson.Gson;
+import com.napier.sem.config.DatabaseConnection;
+import com.napier.sem.memory.InMemoryCityRepository;
+import com.napier.sem.memory.InMemoryCountryRepository;
+import com.napier.sem.memory.InMemoryPopulationReportRepository;
+import com.napier.sem.memory.WorldDataLoader;
+import com.napier.sem.memory.WorldDataset;
+import com.napier.sem.model.City;
+import com.napier.sem.model.Country;
+import com.napier.sem.model.PopulationReport;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@code gson.toJson} for the report lists the REST routes return.
+ * <p>
+ * {@code scale = 1} uses the real lists from {@code db/world.sql} (all 4079 cities,
+ * all 239 countries, the per-country population breakdown); {@code scale = 100}
+ * repeats each list 100 times to show how serialization grows with the response.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+    @Param({"1", "100"})
+    public int scale;
+
+    private final Gson gson = new Gson();
+    private List<City> cities;
+    private List<Country> countries;
+    private List<PopulationReport> populations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DatabaseConnection.connect();
+        WorldDataset dataset = new WorldDataset(new WorldDataLoader(DatabaseConnection.get()).load());
+        DatabaseConnection.disconnect();
+
+        cities = repeat(new InMemoryCityRepository(dataset).getAllCities());
+        countries = repeat(new InMemoryCountryRepository(dataset).getAllCountries());
+        populations = repeat(new InMemoryPopulationReportRepository(dataset).getCountryPopulationBreakdown());
+    }
+
+    private <T> List<T> repeat(List<T> list) {
+        List<T> out = new ArrayList<>(list.size() * scale);
+        for (int i = 0; i < scale; ++i) out.addAll(list);
+        return out;
+    }
+
+    @Benchmark
+    public String cities() {
+        return gson.toJson(cities);
+    }
+
+    @Benchmark
+    public String countries() {
+        return gson.toJson(countries);
+    }
+
+    @Benchmark
+    public String populationBreakdown() {
+        return gson.toJson(populations);
+    }
+}
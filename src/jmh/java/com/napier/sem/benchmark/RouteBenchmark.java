@@ -0,0 +1,67 @@
+package com.napier.sem.benchmark;
+
+import com.napier.sem.config.DatabaseConnection;
+import com.napier.sem.web.RestServer;
+import org.openjdk.jmh.annotations.*;
+import spark.Spark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of report requests: HTTP over loopback into {@link RestServer},
+ * through the route, service and DAO to the database selected by {@code db.mode}
+ * (embedded by default, see pom.xml), and the JSON response back.
+ * <p>
+ * {@code cache = false} runs every request through the whole stack;
+ * {@code cache = true} shows the response cache in front of it.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteBenchmark {
+    @Param({"/cities/top?n=10", "/cities/continent?name=Asia", "/countries/all",
+            "/cities/all", "/population/breakdown/continent", "/languages"})
+    public String path;
+
+    @Param({"false", "true"})
+    public String cache;
+
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("cache.response.enabled", cache);
+        DatabaseConnection.connect();
+        RestServer.start();
+        Spark.awaitInitialization();
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:8080" + path)).GET().build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Spark.stop();
+        Spark.awaitStop();
+        DatabaseConnection.disconnect();
+    }
+
+    @Benchmark
+    public int request() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(path + " returned " + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
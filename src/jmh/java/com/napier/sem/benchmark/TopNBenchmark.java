@@ -0,0 +1,99 @@
+package com.napier.sem.benchmark;
+
+import com.napier.sem.config.DatabaseConnection;
+import com.napier.sem.dao.CapitalCityDAO;
+import com.napier.sem.dao.CapitalCityRepository;
+import com.napier.sem.dao.CityDAO;
+import com.napier.sem.dao.CityRepository;
+import com.napier.sem.dao.CountryDAO;
+import com.napier.sem.dao.CountryRepository;
+import com.napier.sem.memory.InMemoryCapitalCityRepository;
+import com.napier.sem.memory.InMemoryCityRepository;
+import com.napier.sem.memory.InMemoryCountryRepository;
+import com.napier.sem.memory.WorldDataLoader;
+import com.napier.sem.memory.WorldDataset;
+import com.napier.sem.model.CapitalCity;
+import com.napier.sem.model.City;
+import com.napier.sem.model.Country;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares top-N reports answered by the database ({@code jdbc}) with the same reports
+ * answered from the pre-sorted per-scope indexes of the in-memory dataset ({@code memory}).
+ * <p>
+ * Both backends read the same data from the database selected by {@code db.mode}
+ * (embedded by default, see pom.xml).
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TopNBenchmark {
+    @Param({"jdbc", "memory"})
+    public String backend;
+
+    @Param({"10"})
+    public int n;
+
+    private CityRepository cities;
+    private CountryRepository countries;
+    private CapitalCityRepository capitals;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DatabaseConnection.connect();
+        DataSource dataSource = DatabaseConnection.get();
+        if ("memory".equals(backend)) {
+            WorldDataset dataset = new WorldDataset(new WorldDataLoader(dataSource).load());
+            cities = new InMemoryCityRepository(dataset);
+            countries = new InMemoryCountryRepository(dataset);
+            capitals = new InMemoryCapitalCityRepository(dataset);
+        } else {
+            cities = new CityDAO(dataSource);
+            countries = new CountryDAO(dataSource);
+            capitals = new CapitalCityDAO(dataSource);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DatabaseConnection.disconnect();
+    }
+
+    @Benchmark
+    public List<City> topNCitiesInWorld() {
+        return cities.getTopNCitiesInWorld(n);
+    }
+
+    @Benchmark
+    public List<City> topNCitiesInContinent() {
+        return cities.getTopNCitiesInContinent("Asia", n);
+    }
+
+    @Benchmark
+    public List<City> topNCitiesInCountry() {
+        return cities.getTopNCitiesInCountry("United States", n);
+    }
+
+    @Benchmark
+    public List<City> topNCitiesInDistrict() {
+        return cities.getTopNCitiesInDistrict("California", n);
+    }
+
+    @Benchmark
+    public List<Country> topNCountriesInRegion() {
+        return countries.getTopNCountriesInRegion("Caribbean", n);
+    }
+
+    @Benchmark
+    public List<CapitalCity> topNCapitalsInContinent() {
+        return capitals.getTopNCapitalCitiesInContinent("Europe", n);
+    }
+}
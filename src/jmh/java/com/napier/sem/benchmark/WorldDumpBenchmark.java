@@ -0,0 +1,58 @@
+package com.napier.sem.benchmark;
+
+import com.napier.sem.memory.WorldData;
+import com.napier.sem.memory.WorldDumpLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of building the in-memory dataset straight from {@code db/world.sql}
+ * ({@link WorldDumpLoader}), from the mapped dump to the finished {@link WorldData}.
+ * <p>
+ * Besides whole dumps per second, the {@code rows} and {@code megabytes} counters give
+ * table rows (city, country and countrylanguage) and megabytes of dump parsed per
+ * second. {@code chunks = 1} parses the dump in one pass on one thread; {@code 0}
+ * lets the loader cut it into chunks for all processors.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorldDumpBenchmark {
+    @Param({"1", "0"})
+    public int chunks;
+
+    private ByteBuffer dump;
+
+    /** Rows and megabytes parsed, reported per second next to the benchmark's own score. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Parsed {
+        public long rows;
+        public double megabytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of("db/world.sql"), StandardOpenOption.READ)) {
+            dump = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    @Benchmark
+    public WorldData parse(Parsed parsed) {
+        WorldData data = chunks == 0 ? WorldDumpLoader.parse(dump) : WorldDumpLoader.parse(dump, chunks);
+        parsed.rows += data.getCityCount() + data.getCountryCount() + data.getLanguageCount();
+        parsed.megabytes += dump.remaining() / 1e6;
+        return data;
+    }
+}
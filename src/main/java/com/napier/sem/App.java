@@ -1,12 +1,58 @@
 package com.napier.sem;
 
+import com.napier.sem.config.AppConfig;
+import com.napier.sem.config.Backend;
 import com.napier.sem.config.DatabaseConnection;
+import com.napier.sem.config.QueryLoader;
+import com.napier.sem.config.Startup;
 import com.napier.sem.web.RestServer;
 
+import java.util.concurrent.CompletableFuture;
+
 public class App {
     public static void main(String[] args) {
-        DatabaseConnection.connect();
-        RestServer.start();   // start HTTP API on port 8080
+        // Independent stages run at the same time; /health/ready reports their progress
+        Startup startup = new Startup();
+        // With a dataset snapshot, reports open (and stay open) without the database;
+        // with the dump as their source they do not use it at all
+        boolean snapshot = Backend.loadSnapshot();
+        CompletableFuture<Void> http = startup.stage("http", true, () -> RestServer.listen(startup));
+        CompletableFuture<Void> queries = startup.stage("queries", true, QueryLoader::names);
+        CompletableFuture<Void> reports;
+        if (Backend.isDumpSource()) {
+            CompletableFuture<Void> dataset = startup.stage("dataset", true, Backend::dataset);
+            reports = startup.stage("reports", true, RestServer::openReports, http, queries, dataset);
+        } else {
+            if (snapshot) {
+                // Readiness does not wait for the database, which may still be retrying
+                CompletableFuture<Void> database = startup.background("database", DatabaseConnection::open);
+                startup.background("migrations", DatabaseConnection::applyMigrations, database);
+                reports = startup.stage("reports", true, RestServer::openReports, http, queries);
+                startup.background("reconcile", () -> {
+                    Backend.reconcileDataset();
+                    RestServer.registerPoolMetrics();
+                }, database, reports);
+            } else {
+                CompletableFuture<Void> database = startup.stage("database", true, DatabaseConnection::open);
+                startup.stage("migrations", false, DatabaseConnection::applyMigrations, database);
+                reports = startup.stage("reports", true, RestServer::openReports, http, queries, database);
+            }
+        }
+        if (AppConfig.getBoolean("cache.warmup.enabled")) {
+            startup.stage("warmup", false, RestServer::warmUp, reports);
+        }
+
+        try {
+            if (!startup.await()) {
+                System.err.println("Startup failed.");
+                System.exit(1); // Exit with a non-zero code to indicate error
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        System.out.println("REST server started on port 8080 in " + startup.getUptimeMillis()
+                + " ms - city, capital, country, language & population endpoints ready");
         // Do NOT call DatabaseConnection.disconnect() here
     }
 }
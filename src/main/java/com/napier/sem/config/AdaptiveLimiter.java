@@ -0,0 +1,173 @@
+package com.napier.sem.config;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limit on concurrent database calls that adapts to the latency the database shows.
+ * <p>
+ * Every call reports its round-trip time (RTT). Two averages are kept: a short one of
+ * the last few calls and a long one that serves as the baseline of an unloaded
+ * database. After each call the limit moves by the gradient between the two (a
+ * gradient-style variant of TCP Vegas):
+ * </p>
+ * <pre>
+ *     gradient = clamp(tolerance * longRtt / shortRtt, 0.5, 1)
+ *     limit    = smooth(limit * gradient + sqrt(limit))
+ * </pre>
+ * <p>
+ * While latency stays within {@code tolerance} of the baseline the gradient is 1 and
+ * the limit grows by its square root; once queries queue up inside the database and
+ * the RTT inflates, the gradient falls below 1 and the limit shrinks, so the number of
+ * concurrent queries settles near the knee of the throughput curve whatever the
+ * hardware. The limit only grows while at least half of it is used, so a quiet period
+ * does not leave it at the maximum.
+ * </p>
+ */
+public class AdaptiveLimiter {
+    /** Weight of a new RTT in the short average (about the last 10 calls). */
+    private static final double SHORT_WEIGHT = 2.0 / (10 + 1);
+    /** Weight of a new RTT in the long average (about the last 600 calls). */
+    private static final double LONG_WEIGHT = 2.0 / (600 + 1);
+    /** Weight of a new limit estimate against the current limit. */
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    /** Ratio of short to long RTT tolerated before the limit is reduced. */
+    private final double tolerance;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    /** RTT averages in nanoseconds; 0 until the first call has finished. */
+    private double shortRtt;
+    private double longRtt;
+
+    /**
+     * @param initialLimit concurrent calls allowed before any RTT has been seen
+     * @param minLimit     the limit never goes below this
+     * @param maxLimit     the limit never goes above this (e.g. the connection pool size)
+     * @param tolerance    ratio of recent to baseline RTT accepted as "not inflated", e.g. 1.5
+     */
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid limits: initial=" + initialLimit
+                    + ", min=" + minLimit + ", max=" + maxLimit);
+        }
+        if (tolerance < 1) throw new IllegalArgumentException("Invalid tolerance: " + tolerance);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Waits until a call may start.
+     *
+     * @param timeoutMillis longest time to wait
+     * @return true if the call may start (call {@link #release(long)} when it ends), false on timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean acquire(long timeoutMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) return false;
+                remaining = available.awaitNanos(remaining);
+            }
+            ++inFlight;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends a call and adjusts the limit to its round-trip time.
+     *
+     * @param rttNanos time the call took, or a negative value to end it without a sample
+     *                 (e.g. when it failed before reaching the database)
+     */
+    public void release(long rttNanos) {
+        lock.lock();
+        try {
+            if (rttNanos >= 0) update(rttNanos);
+            --inFlight;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Adds an RTT sample to the averages and recomputes the limit. Called with the lock held. */
+    private void update(long rttNanos) {
+        if (shortRtt == 0) {
+            shortRtt = rttNanos;
+            longRtt = rttNanos;
+        } else {
+            shortRtt += (rttNanos - shortRtt) * SHORT_WEIGHT;
+            longRtt += (rttNanos - longRtt) * LONG_WEIGHT;
+        }
+        // After a slow period the baseline is too high; let it come down faster
+        if (longRtt > 2 * shortRtt) longRtt *= 0.95;
+
+        // Not enough load to tell whether more concurrency would help
+        if (inFlight < limit / 2) return;
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / Math.max(shortRtt, 1)));
+        double estimate = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + estimate * SMOOTHING));
+    }
+
+    /** @return number of calls currently allowed at the same time */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return number of calls currently running */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return average RTT (seconds) of the last few calls */
+    public double getShortRttSeconds() {
+        lock.lock();
+        try {
+            return shortRtt / 1e9;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return long-run average RTT (seconds), the baseline the recent RTT is compared with */
+    public double getLongRttSeconds() {
+        lock.lock();
+        try {
+            return longRtt / 1e9;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+}
@@ -34,11 +34,13 @@ public class AppConfig {
 
     /**
      * Retrieves a property value as a string.
+     * A JVM system property with the same key (e.g. {@code -Dapp.backend=memory})
+     * takes precedence over {@code application.properties}.
      * @param key the property key
      * @return the property value as a string
      */
     public static String get(String key) {
-        return props.getProperty(key);
+        return System.getProperty(key, props.getProperty(key));
     }
 
     /**
@@ -47,7 +49,7 @@ public class AppConfig {
      * @return the property value as an integer
      */
     public static int getInt(String key) {
-        return Integer.parseInt(props.getProperty(key));
+        return Integer.parseInt(get(key).trim());
     }
 
     /**
@@ -56,7 +58,7 @@ public class AppConfig {
      * @return the property value as a boolean
      */
     public static boolean getBoolean(String key) {
-        return Boolean.parseBoolean(props.getProperty(key));
+        return Boolean.parseBoolean(get(key).trim());
     }
 }
 
@@ -0,0 +1,249 @@
+package com.napier.sem.config;
+
+import com.napier.sem.dao.CapitalCityDAO;
+import com.napier.sem.dao.CapitalCityRepository;
+import com.napier.sem.dao.CityDAO;
+import com.napier.sem.dao.CityRepository;
+import com.napier.sem.dao.CountryDAO;
+import com.napier.sem.dao.CountryRepository;
+import com.napier.sem.dao.LanguageReportDAO;
+import com.napier.sem.dao.LanguageReportRepository;
+import com.napier.sem.dao.PopulationReportDAO;
+import com.napier.sem.dao.PopulationReportRepository;
+import com.napier.sem.dao.RollupLanguageReportRepository;
+import com.napier.sem.dao.RollupPopulationReportRepository;
+import com.napier.sem.memory.InMemoryCapitalCityRepository;
+import com.napier.sem.memory.InMemoryCityRepository;
+import com.napier.sem.memory.InMemoryCountryRepository;
+import com.napier.sem.memory.InMemoryLanguageReportRepository;
+import com.napier.sem.memory.InMemoryPopulationReportRepository;
+import com.napier.sem.memory.WorldData;
+import com.napier.sem.memory.WorldDataLoader;
+import com.napier.sem.memory.WorldDataset;
+import com.napier.sem.memory.WorldDumpLoader;
+import com.napier.sem.memory.WorldSnapshot;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Chooses where reports are answered from, based on the {@code app.backend} property.
+ * <p>
+ * With {@code jdbc} (the default) every report runs its query against the database.
+ * With {@code memory} the whole world dataset is read once through
+ * {@link DatabaseConnection} and reports are answered from the in-memory copy.
+ * </p>
+ * <p>
+ * With {@code dataset.snapshot.enabled} the in-memory dataset is also saved to a
+ * {@link WorldSnapshot} file whenever it is read from the database. At the next start
+ * the file is memory-mapped ({@link #loadSnapshot()}) and reports are answered before
+ * the database is connected; {@link #reconcileDataset()} then reloads the dataset if
+ * the tables have changed since the snapshot was saved.
+ * </p>
+ * <p>
+ * With {@code dataset.source = dump} the in-memory dataset is parsed straight from the
+ * MySQL dump ({@code db.embedded.script}, see {@link WorldDumpLoader}) and no database
+ * is used at all.
+ * </p>
+ */
+public class Backend {
+    /** The in-memory dataset, loaded the first time it is needed. */
+    private static WorldDataset dataset;
+
+    /** Population reports answered from a shared rollup, created the first time it is needed. */
+    private static RollupPopulationReportRepository populationRollup;
+
+    /** Language reports answered from a shared rollup, created the first time it is needed. */
+    private static RollupLanguageReportRepository languageRollup;
+
+    /** True while the dataset comes from the snapshot and has not been compared with the database. */
+    private static volatile boolean fromSnapshot;
+
+    /** Checksum of the tables the snapshot was saved from, compared with the database by {@link #reconcileDataset()}. */
+    private static volatile long snapshotChecksum;
+
+    /** @return true if reports are answered from the in-memory dataset */
+    public static boolean isMemory() {
+        return "memory".equalsIgnoreCase(AppConfig.get("app.backend"));
+    }
+
+    /** @return true if the in-memory dataset is parsed from the dump rather than read from the database */
+    public static boolean isDumpSource() {
+        return isMemory() && "dump".equalsIgnoreCase(AppConfig.get("dataset.source"));
+    }
+
+    /**
+     * Returns the in-memory dataset, loading it on first use.
+     * {@link DatabaseConnection#connect()} must have been called before, unless the
+     * dataset was loaded with {@link #loadSnapshot()} or comes from the dump.
+     *
+     * @return the shared in-memory dataset
+     */
+    public static synchronized WorldDataset dataset() {
+        if (dataset == null) {
+            dataset = new WorldDataset(load());
+        }
+        return dataset;
+    }
+
+    /**
+     * Signals that the world tables have changed. The in-memory dataset (if used) is
+     * reloaded from the database: data and indexes are rebuilt off to the side and
+     * swapped in together, so reports never see a mix of old and new data. The
+     * {@link DatasetVersion} is bumped so cached responses are dropped.
+     */
+    public static void reloadDataset() {
+        if (isMemory()) {
+            dataset().replace(load());
+        }
+        if (DatabaseConnection.isConnected()) DatasetVersion.refresh(DatabaseConnection.get());
+        DatasetVersion.bump();
+    }
+
+    /**
+     * Memory-maps the dataset snapshot ({@code dataset.snapshot.path}) if the in-memory
+     * backend and snapshots are enabled and the file exists. A file that cannot be read
+     * is ignored, and the dataset is loaded from the database as usual.
+     *
+     * @return true if the dataset was loaded from the snapshot
+     */
+    public static synchronized boolean loadSnapshot() {
+        if (dataset != null || !isMemory() || isDumpSource() || !AppConfig.getBoolean("dataset.snapshot.enabled")) {
+            return false;
+        }
+        Path file = snapshotPath();
+        if (!Files.exists(file)) return false;
+        long start = System.nanoTime();
+        try {
+            WorldSnapshot snapshot = WorldSnapshot.map(file);
+            dataset = new WorldDataset(snapshot.getData());
+            snapshotChecksum = snapshot.getChecksum();
+            DatasetVersion.assume(snapshotChecksum);
+            fromSnapshot = true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring dataset snapshot " + file + ": " + e.getMessage());
+            return false;
+        }
+        System.out.println("Loaded dataset snapshot " + file + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        return true;
+    }
+
+    /**
+     * @return true while the dataset comes from the snapshot and {@link #reconcileDataset()}
+     *         has not compared it with the database yet
+     */
+    public static boolean isFromSnapshot() {
+        return fromSnapshot;
+    }
+
+    /**
+     * Compares a dataset loaded with {@link #loadSnapshot()} with the database, which
+     * must be connected. If the tables have changed since the snapshot was saved, the
+     * dataset is reloaded (see {@link #reloadDataset()}) and the snapshot saved again.
+     * The database is compared with the checksum the snapshot was saved with, not with
+     * {@link DatasetVersion#checksum()}, which may already have been read from the database.
+     */
+    public static void reconcileDataset() {
+        if (!fromSnapshot) return;
+        long current = DatasetVersion.read(DatabaseConnection.get());
+        if (current != 0 && current != snapshotChecksum) {
+            System.out.println("Dataset snapshot is out of date; reloading from the database.");
+            reloadDataset();
+        }
+        fromSnapshot = false;
+    }
+
+    /**
+     * Parses the dataset from the dump, or reads it from the database and, if enabled,
+     * saves it as the snapshot. The checksum is read first, so if the tables change
+     * during loading the snapshot is seen as out of date at the next start.
+     */
+    private static WorldData load() {
+        if (isDumpSource()) {
+            // Without a database the dump's own checksum identifies the data in ETags
+            WorldDumpLoader loader = new WorldDumpLoader(AppConfig.get("db.embedded.script"));
+            WorldData data = loader.load();
+            DatasetVersion.assume(loader.getChecksum());
+            return data;
+        }
+        DataSource dataSource = DatabaseConnection.get();
+        if (!AppConfig.getBoolean("dataset.snapshot.enabled")) {
+            return new WorldDataLoader(dataSource).load();
+        }
+        long checksum = DatasetVersion.read(dataSource);
+        WorldData data = new WorldDataLoader(dataSource).load();
+        if (checksum != 0) {
+            try {
+                new WorldSnapshot(data, checksum).write(snapshotPath());
+            } catch (IOException e) {
+                System.err.println("Could not save the dataset snapshot: " + e.getMessage());
+            }
+        }
+        return data;
+    }
+
+    /** @return where the dataset snapshot is saved */
+    private static Path snapshotPath() {
+        return Path.of(AppConfig.get("dataset.snapshot.path"));
+    }
+
+    /** @return source of city reports for the configured backend */
+    public static CityRepository cities() {
+        return isMemory() ? new InMemoryCityRepository(dataset()) : new CityDAO(DatabaseConnection.get());
+    }
+
+    /** @return source of capital city reports for the configured backend */
+    public static CapitalCityRepository capitals() {
+        return isMemory() ? new InMemoryCapitalCityRepository(dataset()) : new CapitalCityDAO(DatabaseConnection.get());
+    }
+
+    /** @return source of country reports for the configured backend */
+    public static CountryRepository countries() {
+        return isMemory() ? new InMemoryCountryRepository(dataset()) : new CountryDAO(DatabaseConnection.get());
+    }
+
+    /**
+     * @return source of language reports for the configured backend; with
+     *         {@code language.rollup.enabled} all of them share one rollup of the data
+     */
+    public static LanguageReportRepository languages() {
+        if (AppConfig.getBoolean("language.rollup.enabled")) {
+            return languageRollup();
+        }
+        return isMemory() ? new InMemoryLanguageReportRepository(dataset()) : new LanguageReportDAO(DatabaseConnection.get());
+    }
+
+    /**
+     * @return source of population reports for the configured backend; with
+     *         {@code population.rollup.enabled} all of them share one rollup of the data
+     */
+    public static PopulationReportRepository population() {
+        if (AppConfig.getBoolean("population.rollup.enabled")) {
+            return populationRollup();
+        }
+        return isMemory() ? new InMemoryPopulationReportRepository(dataset()) : new PopulationReportDAO(DatabaseConnection.get());
+    }
+
+    /** Returns the shared rollup repository, computing the rollup from the configured backend. */
+    private static synchronized RollupPopulationReportRepository populationRollup() {
+        if (populationRollup == null) {
+            populationRollup = new RollupPopulationReportRepository(isMemory()
+                    ? () -> dataset().get().populationRollup()
+                    : () -> new PopulationReportDAO(DatabaseConnection.get()).getPopulationRollup());
+        }
+        return populationRollup;
+    }
+
+    /** Returns the shared language rollup repository, computing the rollup from the configured backend. */
+    private static synchronized RollupLanguageReportRepository languageRollup() {
+        if (languageRollup == null) {
+            languageRollup = new RollupLanguageReportRepository(isMemory()
+                    ? () -> dataset().get().languageRollup()
+                    : () -> new LanguageReportDAO(DatabaseConnection.get()).getLanguageRollup());
+        }
+        return languageRollup;
+    }
+}
@@ -0,0 +1,53 @@
+package com.napier.sem.config;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delays between retries of a failed operation: exponential backoff with full jitter.
+ * <p>
+ * The ceiling of the delay doubles with every attempt, from {@code baseMillis} up to
+ * {@code maxMillis}, and the actual delay is drawn uniformly between 0 and that ceiling.
+ * The first retries come quickly (a database that is only a moment late is picked up
+ * at once), later ones back off, and the randomness keeps several instances started
+ * together from retrying in lockstep.
+ * </p>
+ */
+public class Backoff {
+    private final long baseMillis;
+    private final long maxMillis;
+
+    /**
+     * @param baseMillis ceiling of the delay after the first failed attempt
+     * @param maxMillis  the ceiling never grows beyond this
+     */
+    public Backoff(long baseMillis, long maxMillis) {
+        if (baseMillis < 0 || maxMillis < baseMillis) {
+            throw new IllegalArgumentException("Invalid backoff: base=" + baseMillis + ", max=" + maxMillis);
+        }
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    /** @return backoff using {@code db.connect.delay} and {@code db.connect.delay.max} */
+    public static Backoff fromConfig() {
+        return new Backoff(AppConfig.getInt("db.connect.delay"), AppConfig.getInt("db.connect.delay.max"));
+    }
+
+    /**
+     * @param attempt number of the attempt that failed, starting at 1
+     * @return the largest delay (milliseconds) after that attempt
+     */
+    public long ceilingMillis(int attempt) {
+        // Stop doubling before the shift overflows; the ceiling is reached long before
+        int doublings = Math.min(Math.max(attempt - 1, 0), 30);
+        return Math.min(maxMillis, baseMillis << doublings);
+    }
+
+    /**
+     * @param attempt number of the attempt that failed, starting at 1
+     * @return time (milliseconds) to wait before the next attempt
+     */
+    public long delayMillis(int attempt) {
+        return ThreadLocalRandom.current().nextLong(ceilingMillis(attempt) + 1);
+    }
+}
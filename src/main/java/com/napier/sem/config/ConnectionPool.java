@@ -0,0 +1,452 @@
+package com.napier.sem.config;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Bounded pool of JDBC connections shared by all DAOs.
+ * <p>
+ * Callers borrow a connection with {@link #getConnection()} and give it back by
+ * calling {@link Connection#close()} (normally through try-with-resources).
+ * At most {@code maxSize} connections are open at the same time; when all of them
+ * are in use, callers wait up to the borrow timeout for one to be returned.
+ * </p>
+ * <p>
+ * Idle connections are validated before being handed out, and connections idle for
+ * longer than the idle timeout are closed in the background, down to {@code minSize}.
+ * </p>
+ */
+public class ConnectionPool implements DataSource {
+    /** Opens new physical connections to the database. */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    /** A physical connection together with its statement cache and the time it was last returned. */
+    private static final class PhysicalConnection {
+        final Connection raw;
+        final StatementCache statements;
+        long returnedAt;
+
+        PhysicalConnection(Connection raw, int statementCacheSize) {
+            this.raw = raw;
+            this.statements = new StatementCache(raw, statementCacheSize);
+            this.returnedAt = System.currentTimeMillis();
+        }
+
+        void close() {
+            statements.closeAll();
+            closeQuietly(raw);
+        }
+    }
+
+    /** Factory used to open new connections. */
+    private final ConnectionFactory factory;
+    /** Number of idle connections kept open regardless of the idle timeout. */
+    private final int minSize;
+    /** Maximum number of connections open at the same time. */
+    private final int maxSize;
+    /** Time (ms) an idle connection above the minimum is kept before being closed. */
+    private final long idleTimeoutMillis;
+    /** Maximum time (ms) a caller waits for a free connection. */
+    private final long borrowTimeoutMillis;
+    /** Time (s) allowed for {@link Connection#isValid(int)} when a connection is borrowed. */
+    private final int validationTimeoutSeconds;
+    /** Maximum number of prepared statements cached per connection. */
+    private final int statementCacheSize;
+
+    /** One permit per connection that may still be borrowed. */
+    private final Semaphore permits;
+    /** Idle connections, most recently returned first. */
+    private final Deque<PhysicalConnection> idle = new ArrayDeque<>();
+    /** Background task that closes connections idle for too long. */
+    private final ScheduledExecutorService evictor;
+    /** Set once the pool has been closed. */
+    private volatile boolean closed = false;
+    /** Adaptive limit on connections borrowed at the same time, or null to allow up to {@code maxSize}. */
+    private volatile AdaptiveLimiter limiter;
+
+    /**
+     * Creates a pool and opens {@code minSize} connections straight away, so that
+     * connection problems are reported at startup rather than on the first request.
+     *
+     * @param factory                  opens new physical connections
+     * @param minSize                  number of idle connections always kept open
+     * @param maxSize                  maximum number of open connections
+     * @param idleTimeoutMillis        time an idle connection above the minimum is kept
+     * @param borrowTimeoutMillis      maximum wait for a free connection
+     * @param validationTimeoutSeconds time allowed for validating a borrowed connection
+     * @param statementCacheSize       maximum number of prepared statements cached per connection
+     * @throws SQLException if the initial connections cannot be opened
+     */
+    public ConnectionPool(ConnectionFactory factory, int minSize, int maxSize, long idleTimeoutMillis,
+                          long borrowTimeoutMillis, int validationTimeoutSeconds,
+                          int statementCacheSize) throws SQLException {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.factory = factory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        try {
+            for (int i = 0; i < minSize; ++i) {
+                idle.push(new PhysicalConnection(factory.create(), statementCacheSize));
+            }
+        } catch (SQLException e) {
+            closeIdle();
+            throw e;
+        }
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(idleTimeoutMillis / 2, 1000);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a pool for the given JDBC URL, sized from the {@code db.pool.*} settings
+     * in {@code application.properties}, with an {@link AdaptiveLimiter} if
+     * {@code db.limit.adaptive} is set.
+     *
+     * @param url      JDBC URL of the database
+     * @param username database user
+     * @param password database password
+     * @return a started connection pool
+     * @throws SQLException if the initial connections cannot be opened
+     */
+    public static ConnectionPool fromConfig(String url, String username, String password) throws SQLException {
+        ConnectionPool pool = new ConnectionPool(
+                () -> DriverManager.getConnection(url, username, password),
+                AppConfig.getInt("db.pool.min"),
+                AppConfig.getInt("db.pool.max"),
+                AppConfig.getInt("db.pool.idle.timeout"),
+                AppConfig.getInt("db.pool.borrow.timeout"),
+                AppConfig.getInt("db.pool.validation.timeout"),
+                AppConfig.getInt("db.statement.cache.size"));
+        if (AppConfig.getBoolean("db.limit.adaptive")) {
+            // The pool size is the ceiling the limit moves under
+            int min = Math.min(AppConfig.getInt("db.limit.min"), pool.maxSize);
+            int initial = Math.max(min, Math.min(AppConfig.getInt("db.limit.initial"), pool.maxSize));
+            double tolerance = Double.parseDouble(AppConfig.get("db.limit.tolerance").trim());
+            pool.setLimiter(new AdaptiveLimiter(initial, min, pool.maxSize, tolerance));
+        }
+        return pool;
+    }
+
+    /**
+     * Puts an adaptive limit on the connections borrowed at the same time, below
+     * {@code maxSize}. Every borrow waits for the limiter and reports how long its
+     * statements took to execute; reading the rows is left out, since a bulk report
+     * streamed to a slow client holds the connection without loading the database.
+     *
+     * @param limiter the limiter, or null to remove it
+     */
+    public void setLimiter(AdaptiveLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    /** @return the adaptive limiter, or null if there is none */
+    public AdaptiveLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting up to the borrow timeout (or the time
+     * left before the request's {@link Deadline}, if shorter) if all connections are in
+     * use or the {@link AdaptiveLimiter} allows no more. Closing the returned connection
+     * gives it back to the pool.
+     *
+     * @return a validated connection
+     * @throws SQLException if the pool is closed, the wait times out or a new connection cannot be opened
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+
+        // A request with a deadline waits no longer than it has left
+        long waitMillis = Deadline.limit(borrowTimeoutMillis);
+        long waitEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        AdaptiveLimiter gate = limiter;
+        boolean acquired;
+        try {
+            if (gate != null && !gate.acquire(waitMillis)) {
+                throw new SQLTransientConnectionException("Timed out after " + waitMillis
+                        + " ms waiting for a database connection (adaptive limit " + gate.getLimit() + ")");
+            }
+            acquired = permits.tryAcquire(Math.max(0, waitEnd - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            if (gate != null) gate.release(-1);
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        if (!acquired) {
+            if (gate != null) gate.release(-1);
+            throw new SQLTransientConnectionException("Timed out after " + waitMillis
+                    + " ms waiting for a database connection (pool size " + maxSize + ")");
+        }
+
+        try {
+            return wrap(takeIdleOrCreate(), gate);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            if (gate != null) gate.release(-1);
+            throw e;
+        }
+    }
+
+    /**
+     * Takes the most recently used idle connection that is still valid,
+     * or opens a new one if none is available.
+     */
+    private PhysicalConnection takeIdleOrCreate() throws SQLException {
+        while (true) {
+            PhysicalConnection candidate;
+            synchronized (idle) {
+                candidate = idle.poll();
+            }
+            if (candidate == null) {
+                return new PhysicalConnection(factory.create(), statementCacheSize);
+            }
+            if (isValid(candidate.raw)) {
+                return candidate;
+            }
+            candidate.close();
+        }
+    }
+
+    /** Checks that a pooled connection still works before handing it out. */
+    private boolean isValid(Connection raw) {
+        try {
+            return !raw.isClosed() && raw.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /** Puts a connection back into the pool, or closes it if the pool has been shut down. */
+    private void release(PhysicalConnection conn) {
+        Connection raw = conn.raw;
+        try {
+            boolean reusable = !closed && !raw.isClosed();
+            if (reusable && !raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            if (reusable) {
+                conn.returnedAt = System.currentTimeMillis();
+                // Checked again under the lock: close() may have drained the deque since
+                synchronized (idle) {
+                    reusable = !closed;
+                    if (reusable) idle.push(conn);
+                }
+            }
+            if (!reusable) conn.close();
+        } catch (SQLException e) {
+            conn.close();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** Closes connections that have been idle for longer than the idle timeout, keeping at least {@code minSize}. */
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        List<PhysicalConnection> expired = new ArrayList<>();
+        synchronized (idle) {
+            // Oldest connections are at the tail of the deque
+            Iterator<PhysicalConnection> it = idle.descendingIterator();
+            while (it.hasNext() && idle.size() > minSize) {
+                PhysicalConnection c = it.next();
+                if (c.returnedAt < cutoff) {
+                    it.remove();
+                    expired.add(c);
+                }
+            }
+        }
+        // Closed outside the lock: closing a dead socket can block, and must not hold up borrows and returns
+        for (PhysicalConnection c : expired) {
+            c.close();
+        }
+    }
+
+    /**
+     * Wraps a physical connection so that {@link Connection#close()} returns it to the pool.
+     * The connection's {@link StatementCache} is reachable through {@link Connection#unwrap(Class)}.
+     * Any use of the wrapper after it has been closed fails with an {@link SQLException}.
+     * The time its statements took to execute is reported to the limiter, if any
+     * (see {@link StatementCache#takeExecutionNanos()}).
+     */
+    private Connection wrap(PhysicalConnection conn, AdaptiveLimiter gate) {
+        Connection raw = conn.raw;
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean returned = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!returned) {
+                            returned = true;
+                            // Taken before the connection can be borrowed again; -1 (no sample) if nothing ran
+                            long executed = conn.statements.takeExecutionNanos();
+                            release(conn);
+                            if (gate != null) gate.release(executed);
+                        }
+                        return null;
+                    case "isWrapperFor":
+                        if (args[0] == StatementCache.class) return true;
+                        break;
+                    case "unwrap":
+                        if (args[0] == StatementCache.class) return conn.statements;
+                        break;
+                    case "isClosed":
+                        return returned || raw.isClosed();
+                    case "toString":
+                        return "Pooled[" + raw + "]";
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        break;
+                }
+                if (returned) throw new SQLException("Connection has already been returned to the pool");
+                try {
+                    return method.invoke(raw, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    /** @return number of connections currently borrowed */
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /** @return number of open connections waiting in the pool */
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /** @return number of callers waiting for a connection to be returned */
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    /** @return maximum number of open connections */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Closes all idle connections and stops the eviction task.
+     * Connections still borrowed are closed when they are returned.
+     */
+    public void close() {
+        // Set under the deque's lock, so no connection is pushed back after closeIdle() drains it
+        synchronized (idle) {
+            closed = true;
+        }
+        evictor.shutdownNow();
+        closeIdle();
+    }
+
+    private void closeIdle() {
+        List<PhysicalConnection> closing;
+        synchronized (idle) {
+            closing = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (PhysicalConnection c : closing) {
+            c.close();
+        }
+    }
+
+    private static void closeQuietly(Connection raw) {
+        try {
+            raw.close();
+        } catch (SQLException ignored) {
+            // Connection is being discarded anyway
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Remaining DataSource methods (not used by the application)
+    // ------------------------------------------------------------------
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pool credentials are fixed at startup");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        // Not supported
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        // Not supported
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -1,30 +1,60 @@
 package com.napier.sem.config;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
+import javax.sql.DataSource;
 import java.sql.SQLException;
 
 /**
- * Class responsible for opening and closing database connection.
+ * Class responsible for opening and closing the database connection pool.
  */
 public class DatabaseConnection {
-    /** Database connection. */
-    private static Connection conn = null;
+    /** Pool of database connections shared by all DAOs; set on a startup thread, read by request threads. */
+    private static volatile ConnectionPool pool = null;
 
     /**
-     * Retrieves the active database connection.
-     * @return database connection
+     * Retrieves the active connection pool.
+     * DAOs borrow a connection from it for each query and close it when done.
+     * @return database connection pool
      */
-    public static Connection get() {
-        if (conn != null) return conn;
-        else throw new RuntimeException("Database connection is null.");
+    public static DataSource get() {
+        if (pool != null) return pool;
+        else throw new RuntimeException("Database connection pool is null.");
+    }
+
+    /** @return true once the connection pool is open */
+    public static boolean isConnected() {
+        return pool != null;
+    }
+
+    /** @return true if the database runs embedded in this process ({@code db.mode = embedded}) */
+    public static boolean isEmbedded() {
+        return "embedded".equalsIgnoreCase(AppConfig.get("db.mode"));
     }
 
     /**
-     * Connects to the database.
+     * Connects to the database by opening the connection pool, then applies pending
+     * schema migrations (see {@link #open()} and {@link #migrate()}).
      */
     public static void connect() {
-        if (conn != null) return; // Already connected
+        if (pool != null) return; // Already connected
+        open();
+        migrate();
+    }
+
+    /**
+     * Opens the connection pool.
+     * With {@code db.mode = embedded} the database is first created in this process
+     * (see {@link EmbeddedDatabase}); otherwise the MySQL server is used, retrying with
+     * exponential backoff and jitter (see {@link Backoff}) while it is not reachable yet.
+     *
+     * @throws RuntimeException if the database cannot be reached after {@code db.connect.retries} attempts
+     */
+    public static void open() {
+        if (pool != null) return; // Already connected
+
+        if (isEmbedded()) {
+            openEmbedded();
+            return;
+        }
 
         // Set properties
         String driver = AppConfig.get("db.driver");
@@ -33,7 +63,7 @@ public class DatabaseConnection {
         String username = AppConfig.get("db.username");
         String password = AppConfig.get("db.password");
         int maxRetries = AppConfig.getInt("db.connect.retries");
-        int retryDelay = AppConfig.getInt("db.connect.delay");
+        Backoff backoff = Backoff.fromConfig();
 
         // Load SQL driver
         try {
@@ -45,7 +75,7 @@ public class DatabaseConnection {
         // Try to connect on localhost
         System.out.println("Connecting to database on localhost...");
         try {
-            conn = DriverManager.getConnection(urlLocalhost, username, password);
+            pool = ConnectionPool.fromConfig(urlLocalhost, username, password);
             System.out.println("Successfully connected to the database.");
             return;
         } catch (SQLException e) {
@@ -56,36 +86,94 @@ public class DatabaseConnection {
         for (int attempt = 1; attempt <= maxRetries; ++attempt) {
             System.out.println("Connecting to database... Attempt " + attempt + "/" + maxRetries);
             try {
-                conn = DriverManager.getConnection(urlDB, username, password);
+                pool = ConnectionPool.fromConfig(urlDB, username, password);
                 System.out.println("Successfully connected to the database.");
                 return;
             } catch (SQLException e) {
                 System.out.println("Connection attempt " + attempt + " failed: " + e.getMessage());
+                if (attempt == maxRetries) break;
+                long delay = backoff.delayMillis(attempt);
+                System.out.println("Retrying in " + delay + " ms");
                 try {
-                    Thread.sleep(retryDelay);
-                } catch (InterruptedException ignored) {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
                     Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while connecting to the database", interrupted);
                 }
             }
         }
 
-        System.err.println("Could not connect to database after " + maxRetries + " attempts.");
-        System.exit(1); // Exit with a non-zero code to indicate error
+        throw new RuntimeException("Could not connect to database after " + maxRetries + " attempts.");
+    }
+
+    /**
+     * Loads the embedded database and opens the pool on it. No retries are needed:
+     * if the dump cannot be loaded, trying again will not help.
+     */
+    private static void openEmbedded() {
+        String url = AppConfig.get("db.embedded.url");
+        String username = AppConfig.get("db.embedded.username");
+        String password = AppConfig.get("db.embedded.password");
+        System.out.println("Loading embedded database from " + AppConfig.get("db.embedded.script") + "...");
+        try {
+            EmbeddedDatabase.load(url, username, password, AppConfig.get("db.embedded.script"));
+            pool = ConnectionPool.fromConfig(url, username, password);
+            System.out.println("Embedded database ready.");
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not start the embedded database", e);
+        }
+    }
+
+    /**
+     * Applies pending schema migrations (see {@link SchemaMigrator}) if {@code db.migrate}
+     * is enabled. A failure is reported but does not stop the application: the reports
+     * still work without the indexes the migrations add, only more slowly.
+     */
+    public static void migrate() {
+        try {
+            applyMigrations();
+        } catch (SQLException e) {
+            System.err.println("Schema migration failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies pending schema migrations if {@code db.migrate} is enabled.
+     * Does nothing before the pool is open.
+     *
+     * @return number of migrations applied
+     * @throws SQLException if a migration fails
+     */
+    public static int applyMigrations() throws SQLException {
+        if (pool == null || !AppConfig.getBoolean("db.migrate")) return 0;
+        int applied = SchemaMigrator.migrate(pool);
+        if (applied > 0) System.out.println("Applied " + applied + " schema migration(s).");
+        return applied;
     }
 
     /**
-     * Closes database connection.
+     * Opens the connection pool on a given JDBC URL instead of the configured ones,
+     * without retrying (e.g. an embedded database in benchmarks).
+     *
+     * @param url      JDBC URL of the database
+     * @param username database user
+     * @param password database password
+     * @throws SQLException if the initial connections cannot be opened
+     */
+    public static void connect(String url, String username, String password) throws SQLException {
+        if (pool != null) return; // Already connected
+        pool = ConnectionPool.fromConfig(url, username, password);
+        migrate();
+    }
+
+    /**
+     * Closes all pooled database connections.
      */
     public static void disconnect() {
-        if (conn != null) {
-            try {
-                conn.close();
-                System.out.println("Database connection closed.");
-            } catch (SQLException e) {
-                System.err.println("Error closing database connection: " + e.getMessage());
-            } finally {
-                conn = null;
-            }
+        if (pool != null) {
+            pool.close();
+            pool = null;
+            System.out.println("Database connection closed.");
         }
     }
 }
@@ -0,0 +1,116 @@
+package com.napier.sem.config;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version number of the report data currently being served.
+ * <p>
+ * Anything derived from the {@code world} tables (cached responses, HTTP validators)
+ * is tagged with the version it was built from and treated as stale once the version
+ * changes, e.g. after {@link Backend#reloadDataset()}.
+ * </p>
+ * <p>
+ * The version is made of a checksum of the tables, read with {@link #refresh(DataSource)},
+ * and a counter bumped on every change. The checksum keeps ETags valid across restarts
+ * as long as the data is the same.
+ * </p>
+ */
+public class DatasetVersion {
+    /** The current version; starts at 1 and only ever changes through this class. */
+    private static final AtomicLong version = new AtomicLong(1);
+
+    /** Combined checksum of the world tables, 0 until read. */
+    private static volatile long checksum;
+
+    /** When the data last changed (milliseconds, rounded down to whole seconds as in HTTP dates). */
+    private static volatile long lastModified = wholeSeconds(System.currentTimeMillis());
+
+    /** @return the version of the data currently being served */
+    public static long get() {
+        return version.get();
+    }
+
+    /**
+     * Marks the data as changed.
+     *
+     * @return the new version
+     */
+    public static long bump() {
+        lastModified = wholeSeconds(System.currentTimeMillis());
+        return version.incrementAndGet();
+    }
+
+    /** @return when the data last changed, in milliseconds since the epoch (whole seconds) */
+    public static long lastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return an opaque tag identifying the data currently being served; it changes
+     *         whenever the data does
+     */
+    public static String tag() {
+        return Long.toHexString(checksum) + "." + Long.toHexString(version.get());
+    }
+
+    /** @return checksum of the world tables the served data was read from, 0 if unknown */
+    public static long checksum() {
+        return checksum;
+    }
+
+    /**
+     * Starts from the checksum of data that was not read from the database, e.g. a
+     * dataset snapshot, until the database can be read. The next {@link #refresh(DataSource)}
+     * then bumps the version if the tables have changed since.
+     *
+     * @param saved checksum the data was saved with
+     */
+    public static synchronized void assume(long saved) {
+        if (checksum == 0) checksum = saved;
+    }
+
+    /**
+     * Reads the checksum of the world tables and bumps the version if it differs from
+     * the last one read. If the checksum cannot be read the previous one is kept.
+     *
+     * @param dataSource pool of database connections
+     */
+    public static synchronized void refresh(DataSource dataSource) {
+        long combined = read(dataSource);
+        if (combined != 0 && combined != checksum) {
+            boolean first = checksum == 0;
+            checksum = combined;
+            if (!first) bump();
+        }
+    }
+
+    /**
+     * Reads the checksum of the world tables without changing the version.
+     *
+     * @param dataSource pool of database connections
+     * @return the combined checksum, or 0 if it cannot be read
+     */
+    public static long read(DataSource dataSource) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "dataset_checksum");
+             ResultSet rs = stmt.executeQuery()) {
+            long combined = 17;
+            while (rs.next()) {
+                combined = 31 * combined + rs.getLong("Checksum");
+            }
+            return combined;
+        } catch (SQLException e) {
+            System.err.println("Could not read the dataset checksum: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private static long wholeSeconds(long millis) {
+        return millis - millis % 1000;
+    }
+}
@@ -0,0 +1,233 @@
+package com.napier.sem.config;
+
+import com.napier.sem.exception.DeadlineExceededException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time limit of the request being handled by the current thread.
+ * <p>
+ * The web layer starts a deadline for each request ({@link #start(long)}) and closes it
+ * when the request is done. Everything the request does on its thread sees it through
+ * {@link #current()}: the connection pool waits no longer than the time left, waits for
+ * an identical report end with a {@link DeadlineExceededException}, and every statement
+ * prepared through {@link StatementCache#prepare} gets the time left as its query
+ * timeout. When the deadline passes, statements still running are cancelled, which
+ * ends the query on the database server and frees its connection.
+ * </p>
+ * <p>
+ * Without a deadline (e.g. in the console menu) nothing is limited.
+ * </p>
+ */
+public final class Deadline implements AutoCloseable {
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+
+    /**
+     * Cancels the statements of expired deadlines. Only requests that prepare a statement
+     * schedule a task, and a closed deadline's task is removed at once rather than kept
+     * queued until its time would have come.
+     */
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "deadline-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /** Number of running statements cancelled by an expired deadline, since startup. */
+    private static final AtomicLong cancellations = new AtomicLong();
+
+    private final long timeoutMillis;
+    private final long startNanos;
+    private final long endNanos;
+    /** Statements of this request that are currently open. */
+    private final Set<Bound> open = ConcurrentHashMap.newKeySet();
+    /** Task cancelling the open statements when time runs out; scheduled by the first {@link #bind}. */
+    private ScheduledFuture<?> expiry;
+    /** Whether a statement was prepared, i.e. the request got a database connection. */
+    private volatile boolean queried;
+    private volatile boolean expired;
+
+    private Deadline(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.startNanos = System.nanoTime();
+        this.endNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * Starts a deadline for the current thread. Close it when the request is done.
+     *
+     * @param timeoutMillis time (in milliseconds) the request may take
+     * @return the deadline, now {@link #current()}
+     */
+    public static Deadline start(long timeoutMillis) {
+        if (timeoutMillis <= 0) throw new IllegalArgumentException("Invalid timeout: " + timeoutMillis);
+        Deadline deadline = new Deadline(timeoutMillis);
+        current.set(deadline);
+        return deadline;
+    }
+
+    /** @return the deadline of the current thread's request, or null if it has none */
+    public static Deadline current() {
+        return current.get();
+    }
+
+    /**
+     * Limits a wait of the current thread to the time its request has left.
+     *
+     * @param millis how long the caller would wait without a deadline
+     * @return {@code millis}, or the time left if that is shorter
+     */
+    public static long limit(long millis) {
+        Deadline deadline = current();
+        return deadline == null ? millis : Math.min(millis, deadline.getRemainingMillis());
+    }
+
+    /**
+     * Applies the current deadline to a statement: the time left becomes its query
+     * timeout, and the statement is cancelled if it is still open when time runs out.
+     *
+     * @param stmt      a freshly prepared statement
+     * @param queryName name of its query, for error messages
+     * @return the statement itself if there is no deadline, otherwise a wrapper to use instead
+     * @throws SQLException if the deadline has already passed or the timeout cannot be set
+     */
+    static PreparedStatement bind(PreparedStatement stmt, String queryName) throws SQLException {
+        Deadline deadline = current();
+        if (deadline == null) return stmt;
+        deadline.queried = true;
+        if (deadline.isExpired()) {
+            stmt.close();
+            throw new SQLTimeoutException("Request deadline of " + deadline.timeoutMillis
+                    + " ms passed before running " + queryName);
+        }
+        // Whole seconds, rounded up; the timer cancels at the exact deadline
+        stmt.setQueryTimeout((int) Math.max(1, (deadline.getRemainingMillis() + 999) / 1000));
+        // Requests that never reach the database (cache hits, 304s) need no timer task
+        if (deadline.expiry == null) {
+            deadline.expiry = timer.schedule(deadline::expire, deadline.getRemainingNanos(), TimeUnit.NANOSECONDS);
+        }
+        Bound bound = new Bound(stmt, deadline);
+        deadline.open.add(bound);
+        if (deadline.expired) bound.cancel(); // expired while being bound
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, bound);
+    }
+
+    /** Marks the deadline as expired and cancels the statements still open. */
+    private void expire() {
+        expired = true;
+        for (Bound bound : open) bound.cancel();
+    }
+
+    /** @return true once the time is up */
+    public boolean isExpired() {
+        return expired || System.nanoTime() - endNanos >= 0;
+    }
+
+    /** @return true if the request got as far as preparing a statement (it had a connection) */
+    public boolean hasQueried() {
+        return queried;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /** @return time (in milliseconds) since the deadline was started */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /** @return time (in milliseconds) left before the deadline, never negative */
+    public long getRemainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(endNanos - System.nanoTime()));
+    }
+
+    /** @return time (in nanoseconds) left before the deadline, never negative */
+    public long getRemainingNanos() {
+        return Math.max(0, endNanos - System.nanoTime());
+    }
+
+    /** Ends the deadline: it is no longer current and nothing is cancelled any more. */
+    @Override
+    public void close() {
+        if (expiry != null) expiry.cancel(false);
+        if (current.get() == this) current.remove();
+    }
+
+    /** @return number of expiry tasks waiting on the timer, across all deadlines */
+    static int getPendingExpiryCount() {
+        return timer.getQueue().size();
+    }
+
+    /** @return number of running statements cancelled because their request ran out of time */
+    public static long getCancelledCount() {
+        return cancellations.get();
+    }
+
+    /**
+     * A statement bound to a deadline. Closing it unregisters it, so a statement handed
+     * back to the {@link StatementCache} is never cancelled on behalf of an old request.
+     */
+    private static final class Bound implements InvocationHandler {
+        private final PreparedStatement stmt;
+        private final Deadline deadline;
+        private boolean closed;
+
+        Bound(PreparedStatement stmt, Deadline deadline) {
+            this.stmt = stmt;
+            this.deadline = deadline;
+        }
+
+        /** Cancels the statement unless it has been closed. Runs on the timer thread. */
+        synchronized void cancel() {
+            if (closed) return;
+            try {
+                stmt.cancel();
+                cancellations.incrementAndGet();
+            } catch (SQLException e) {
+                System.err.println("Could not cancel query after request deadline: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    synchronized (this) {
+                        if (closed) return null;
+                        closed = true;
+                    }
+                    deadline.open.remove(this);
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(stmt, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.napier.sem.config;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Creates the {@code world} database inside the application process (H2 in MySQL
+ * compatibility mode) from the MySQL dump {@code db/world.sql}, for
+ * {@code db.mode = embedded}.
+ * <p>
+ * The dump is adapted while it is read: version comments, session settings and
+ * secondary keys are skipped, foreign keys are dropped (the dump creates the tables
+ * in an order that would break them) and {@code \'} escapes become {@code ''}.
+ * {@code CHAR} and {@code ENUM} columns become {@code VARCHAR}, so that with
+ * {@code IGNORECASE=TRUE} in the URL they compare case-insensitively like MySQL's
+ * default collation, and comparing with a value outside an enum finds no rows
+ * instead of failing.
+ * Queries that H2 cannot run as written are overridden in {@code queries-h2.sql}
+ * (see {@link QueryLoader}).
+ * </p>
+ */
+public class EmbeddedDatabase {
+    /** URLs of the databases already loaded in this JVM. */
+    private static final Set<String> loaded = new HashSet<>();
+
+    /**
+     * Loads the dump into the in-memory database at {@code url}, once per JVM.
+     * The script is read from the file system if it exists there, otherwise from the
+     * classpath (the jar bundles {@code db/world.sql}).
+     *
+     * @param url      JDBC URL of the embedded database (must keep it open, e.g. {@code DB_CLOSE_DELAY=-1})
+     * @param username database user
+     * @param password database password
+     * @param script   path of the dump
+     * @throws SQLException if the dump cannot be read or run
+     */
+    public static synchronized void load(String url, String username, String password, String script)
+            throws SQLException {
+        if (loaded.contains(url)) return;
+        try (Connection conn = DriverManager.getConnection(url, username, password);
+             Statement stmt = conn.createStatement();
+             BufferedReader reader = open(script)) {
+            StringBuilder statement = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (statement.length() == 0 && (line.isBlank() || line.startsWith("--") || line.startsWith("/*!"))) {
+                    continue;
+                }
+                statement.append(line).append('\n');
+                if (line.endsWith(";")) {
+                    String sql = adapt(statement.toString().trim());
+                    if (sql != null) stmt.addBatch(sql);
+                    statement.setLength(0);
+                }
+            }
+            stmt.executeBatch();
+            loaded.add(url);
+        } catch (IOException e) {
+            throw new SQLException("Could not read " + script, e);
+        }
+    }
+
+    private static BufferedReader open(String script) throws IOException {
+        Path path = Path.of(script);
+        if (Files.exists(path)) {
+            return Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        }
+        InputStream input = EmbeddedDatabase.class.getClassLoader().getResourceAsStream(script);
+        if (input == null) throw new IOException(script + " not found on the file system or classpath");
+        return new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
+
+    /** @return the statement rewritten for H2, or null if it is skipped */
+    static String adapt(String sql) {
+        String lower = sql.toLowerCase();
+        if (lower.startsWith("insert into")) {
+            return sql.replace("\\'", "''");
+        }
+        if (lower.startsWith("drop table")) {
+            return sql.replace("`", "");
+        }
+        if (lower.startsWith("create table")) {
+            StringBuilder out = new StringBuilder();
+            String columns = sql.replace("`", "")
+                    .replaceAll("(?i)\\benum\\([^)]*\\)", "varchar(52)")
+                    .replaceAll("(?i)\\bchar\\(", "varchar(");
+            for (String line : columns.split("\n")) {
+                String trimmed = line.trim();
+                if (trimmed.startsWith("KEY ") || trimmed.startsWith("CONSTRAINT ")) continue;
+                if (trimmed.startsWith(")")) {
+                    // Remove the comma left after the last kept column or key, and the table options
+                    int end = out.length() - 1;
+                    while (end >= 0 && Character.isWhitespace(out.charAt(end))) --end;
+                    if (end >= 0 && out.charAt(end) == ',') out.setLength(end);
+                    out.append("\n)");
+                    break;
+                }
+                out.append(line).append('\n');
+            }
+            return out.toString();
+        }
+        // SET, USE, CREATE DATABASE, commit, ...
+        return null;
+    }
+}
@@ -4,11 +4,18 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 /**
  * Responsible for loading SQL queries from {@code queries.sql} file.
+ * <p>
+ * When the embedded database is used ({@code db.mode = embedded}), queries with the
+ * same name in {@code queries-h2.sql} replace the MySQL versions.
+ * </p>
  */
 public class QueryLoader {
     /** A map of SQL queries where key is the name, value is the query. */
@@ -16,29 +23,46 @@ public class QueryLoader {
 
     // Static initializer, loads the SQL queries at class load time
     static {
-        loadQueries();
+        loadQueries("queries.sql");
+        if (DatabaseConnection.isEmbedded()) {
+            loadQueries("queries-h2.sql");
+        }
     }
 
     /**
-     * Reads {@code queries.sql} file and creates a map of SQL queries.
+     * Reads a queries file and adds its SQL queries to the map, replacing any
+     * already loaded with the same name.
+     *
+     * @param resource name of the file on the classpath
      */
-    private static void loadQueries() {
-        try (InputStream input = QueryLoader.class.getClassLoader().getResourceAsStream("queries.sql");
+    private static void loadQueries(String resource) {
+        try (InputStream input = QueryLoader.class.getClassLoader().getResourceAsStream(resource);
              BufferedReader reader = new BufferedReader(new InputStreamReader(input))) {
 
             String line;
             String currentName = null;
             StringBuilder currentQuery = new StringBuilder();
+            boolean inBlockComment = false;
 
             // Read the file line by line
             while ((line = reader.readLine()) != null) {
                 line = line.trim();
 
+                // Skip section banners written as /* ... */ block comments
+                if (inBlockComment) {
+                    inBlockComment = !line.endsWith("*/");
+                    continue;
+                }
+                if (line.startsWith("/*")) {
+                    inBlockComment = !line.endsWith("*/") || line.length() < 4;
+                    continue;
+                }
+
                 // Detect a new query definition using the "-- name:" marker
                 if (line.startsWith("-- name:")) {
                     // If a previous query exists, save it before starting a new one
                     if (currentName != null && !currentQuery.isEmpty()) {
-                        queries.put(currentName, currentQuery.toString().trim());
+                        queries.put(currentName, clean(currentQuery));
                     }
 
                     // Extract the new query name (after "-- name:")
@@ -55,14 +79,26 @@ public class QueryLoader {
 
             // After the file ends, ensure the last query is saved (if one exists)
             if (currentName != null && !currentQuery.isEmpty()) {
-                queries.put(currentName, currentQuery.toString().trim());
+                queries.put(currentName, clean(currentQuery));
             }
 
         } catch (IOException e) {
-            throw new RuntimeException("Failed to load queries.sql", e);
+            throw new RuntimeException("Failed to load " + resource, e);
         }
     }
 
+    /**
+     * Trims a collected query and removes its terminating semicolon, which
+     * server-side prepared statements do not accept.
+     */
+    private static String clean(StringBuilder query) {
+        String sql = query.toString().trim();
+        while (sql.endsWith(";")) {
+            sql = sql.substring(0, sql.length() - 1).trim();
+        }
+        return sql;
+    }
+
     /**
      * Retrieve an SQL query by its name.
      * @param name the name of the query
@@ -75,4 +111,9 @@ public class QueryLoader {
         }
         return query;
     }
+
+    /** @return the names of all loaded queries, in alphabetical order */
+    public static SortedSet<String> names() {
+        return Collections.unmodifiableSortedSet(new TreeSet<>(queries.keySet()));
+    }
 }
@@ -0,0 +1,152 @@
+package com.napier.sem.config;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Brings the world database schema up to date by running the pending migrations
+ * in {@code migrations.sql}, in version order.
+ * <p>
+ * Applied versions are recorded in a {@code schema_version} table, so each migration
+ * runs once per database. The world dump does not change the schema after it is
+ * loaded, so the migrations currently only add the indexes the report queries need.
+ * Migrations are run by {@link DatabaseConnection} when it connects.
+ * </p>
+ */
+public class SchemaMigrator {
+    /** Table recording the applied migrations. */
+    static final String VERSION_TABLE = "schema_version";
+
+    /** One numbered change to the schema. */
+    static final class Migration {
+        final int version;
+        final String description;
+        final List<String> statements = new ArrayList<>();
+
+        Migration(int version, String description) {
+            this.version = version;
+            this.description = description;
+        }
+    }
+
+    /**
+     * Runs every migration in {@code migrations.sql} newer than the recorded version.
+     *
+     * @param dataSource database to migrate
+     * @return number of migrations applied
+     * @throws SQLException if a migration fails; the migrations before it stay applied
+     */
+    public static int migrate(DataSource dataSource) throws SQLException {
+        return migrate(dataSource, load("migrations.sql"));
+    }
+
+    /**
+     * Runs the migrations newer than the recorded version.
+     *
+     * @param dataSource database to migrate
+     * @param migrations migrations in version order
+     * @return number of migrations applied
+     * @throws SQLException if a migration fails; the migrations before it stay applied
+     */
+    static int migrate(DataSource dataSource, List<Migration> migrations) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS " + VERSION_TABLE + " ("
+                        + "version INT NOT NULL PRIMARY KEY, "
+                        + "description VARCHAR(200) NOT NULL, "
+                        + "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            }
+            int current = currentVersion(conn);
+            int applied = 0;
+            for (Migration migration : migrations) {
+                if (migration.version <= current) continue;
+                System.out.println("Applying schema migration " + migration.version + ": " + migration.description);
+                // MySQL commits DDL statements immediately, so a migration cannot be rolled back
+                try (Statement stmt = conn.createStatement()) {
+                    for (String sql : migration.statements) {
+                        stmt.execute(sql);
+                    }
+                }
+                try (PreparedStatement record = conn.prepareStatement(
+                        "INSERT INTO " + VERSION_TABLE + " (version, description) VALUES (?, ?)")) {
+                    record.setInt(1, migration.version);
+                    record.setString(2, migration.description);
+                    record.executeUpdate();
+                }
+                ++applied;
+            }
+            return applied;
+        }
+    }
+
+    /** @return the highest applied version, or 0 if none has been applied */
+    static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM " + VERSION_TABLE)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Reads a migrations file.
+     *
+     * @param resource name of the file on the classpath
+     * @return the migrations in version order
+     * @throws IllegalStateException if the versions are not 1, 2, 3, ... in order
+     */
+    static List<Migration> load(String resource) {
+        List<Migration> migrations = new ArrayList<>();
+        try (InputStream input = SchemaMigrator.class.getClassLoader().getResourceAsStream(resource);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            Migration current = null;
+            StringBuilder statement = new StringBuilder();
+            boolean inBlockComment = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+
+                // Skip the header written as a /* ... */ block comment
+                if (inBlockComment) {
+                    inBlockComment = !line.endsWith("*/");
+                    continue;
+                }
+                if (line.startsWith("/*")) {
+                    inBlockComment = !line.endsWith("*/") || line.length() < 4;
+                    continue;
+                }
+
+                if (line.startsWith("-- migration:")) {
+                    String[] marker = line.substring(13).trim().split("\\s+", 2);
+                    current = new Migration(Integer.parseInt(marker[0]), marker.length > 1 ? marker[1] : "");
+                    if (current.version != migrations.size() + 1) {
+                        throw new IllegalStateException("Migration " + current.version + " in " + resource
+                                + " is out of order, expected " + (migrations.size() + 1));
+                    }
+                    migrations.add(current);
+                } else if (!line.startsWith("--") && !line.isEmpty() && current != null) {
+                    statement.append(line).append(' ');
+                    if (line.endsWith(";")) {
+                        String sql = statement.toString().trim();
+                        current.statements.add(sql.substring(0, sql.length() - 1).trim());
+                        statement.setLength(0);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load " + resource, e);
+        }
+        return Collections.unmodifiableList(migrations);
+    }
+}
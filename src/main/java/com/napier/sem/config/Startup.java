@@ -0,0 +1,219 @@
+package com.napier.sem.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the stages of application startup concurrently and records their progress.
+ * <p>
+ * Each stage (e.g. starting the HTTP listener, connecting to the database) runs on its
+ * own thread as soon as the stages it depends on have finished, so independent work
+ * overlaps instead of adding up. A stage whose dependency failed is skipped. The state
+ * and timing of every stage can be read at any time, which the readiness endpoint uses
+ * to tell "still starting" from "failed".
+ * </p>
+ * <p>
+ * The application is ready once every stage has finished and no required stage has
+ * failed; optional stages (e.g. schema migrations) may fail without blocking it.
+ * Background stages (e.g. connecting to the database while reports are answered
+ * from a snapshot) are not waited for at all: they are reported, but readiness
+ * does not depend on them.
+ * </p>
+ */
+public class Startup {
+    /** Progress of a stage. */
+    public enum State { PENDING, RUNNING, DONE, FAILED, SKIPPED }
+
+    /** Work done by a stage. */
+    @FunctionalInterface
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    /** One stage of startup, with its state and timing. */
+    public final class Stage {
+        private final String name;
+        private final boolean required;
+        private final boolean background;
+        private State state = State.PENDING;
+        private long startedAt;
+        private long endedAt;
+        private String error;
+
+        private Stage(String name, boolean required, boolean background) {
+            this.name = name;
+            this.required = required;
+            this.background = background;
+        }
+
+        private synchronized void start() {
+            state = State.RUNNING;
+            startedAt = System.nanoTime();
+        }
+
+        private synchronized void end(State state, String error) {
+            if (this.state == State.PENDING) startedAt = System.nanoTime();
+            this.state = state;
+            this.error = error;
+            endedAt = System.nanoTime();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** @return true if the application cannot be ready without this stage */
+        public boolean isRequired() {
+            return required;
+        }
+
+        /** @return true if readiness does not wait for this stage */
+        public boolean isBackground() {
+            return background;
+        }
+
+        public synchronized State getState() {
+            return state;
+        }
+
+        /** @return true once the stage has ended, whatever the outcome */
+        public synchronized boolean isFinished() {
+            return state != State.PENDING && state != State.RUNNING;
+        }
+
+        /** @return time (milliseconds) from the start of startup to the start of this stage, or -1 if pending */
+        public synchronized long getStartMillis() {
+            return state == State.PENDING ? -1 : TimeUnit.NANOSECONDS.toMillis(startedAt - createdAt);
+        }
+
+        /** @return time (milliseconds) the stage took, so far if it is still running, or -1 if pending */
+        public synchronized long getDurationMillis() {
+            if (state == State.PENDING) return -1;
+            return TimeUnit.NANOSECONDS.toMillis((state == State.RUNNING ? System.nanoTime() : endedAt) - startedAt);
+        }
+
+        /** @return why the stage failed or was skipped, or null */
+        public synchronized String getError() {
+            return error;
+        }
+    }
+
+    private final long createdAt = System.nanoTime();
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<Void>> required = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "startup");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Adds a stage. It runs in the background once all of {@code after} have completed,
+     * and is skipped if one of them failed.
+     *
+     * @param name     name shown in the logs and the readiness report
+     * @param required whether the application can be ready without it
+     * @param task     work of the stage
+     * @param after    stages that must finish successfully first
+     * @return completes when the stage is done, exceptionally if it failed or was skipped
+     */
+    public CompletableFuture<Void> stage(String name, boolean required, Task task, CompletableFuture<?>... after) {
+        return add(new Stage(name, required, false), task, after);
+    }
+
+    /**
+     * Adds an optional stage that readiness does not wait for. It runs like any other
+     * stage once all of {@code after} have completed.
+     *
+     * @param name  name shown in the logs and the readiness report
+     * @param task  work of the stage
+     * @param after stages that must finish successfully first
+     * @return completes when the stage is done, exceptionally if it failed or was skipped
+     */
+    public CompletableFuture<Void> background(String name, Task task, CompletableFuture<?>... after) {
+        return add(new Stage(name, false, true), task, after);
+    }
+
+    private CompletableFuture<Void> add(Stage stage, Task task, CompletableFuture<?>... after) {
+        String name = stage.getName();
+        boolean required = stage.isRequired();
+        stages.add(stage);
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (required) this.required.add(result);
+
+        CompletableFuture.allOf(after).whenComplete((ignored, dependencyFailure) -> {
+            if (dependencyFailure != null) {
+                stage.end(State.SKIPPED, "A stage it depends on failed");
+                System.err.println("Startup: " + name + " skipped");
+                result.completeExceptionally(dependencyFailure);
+                return;
+            }
+            executor.execute(() -> {
+                stage.start();
+                try {
+                    task.run();
+                    stage.end(State.DONE, null);
+                    System.out.println("Startup: " + name + " done in " + stage.getDurationMillis() + " ms");
+                    result.complete(null);
+                } catch (Throwable e) {
+                    stage.end(State.FAILED, e.getMessage() == null ? e.toString() : e.getMessage());
+                    System.err.println("Startup: " + name + " failed after " + stage.getDurationMillis()
+                            + " ms: " + stage.getError());
+                    result.completeExceptionally(e);
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Waits for every required stage to finish.
+     *
+     * @return true if all of them succeeded
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean await() throws InterruptedException {
+        boolean succeeded = true;
+        for (CompletableFuture<Void> stage : required) {
+            try {
+                stage.get();
+            } catch (ExecutionException e) {
+                succeeded = false;
+            }
+        }
+        return succeeded;
+    }
+
+    /** @return true once every stage but the background ones has finished and no required stage failed */
+    public boolean isReady() {
+        for (Stage stage : stages) {
+            if (stage.isBackground()) continue;
+            if (!stage.isFinished() || (stage.isRequired() && stage.getState() != State.DONE)) return false;
+        }
+        return true;
+    }
+
+    /** @return true if a required stage failed or was skipped, so the application will never be ready */
+    public boolean hasFailed() {
+        for (Stage stage : stages) {
+            if (stage.isRequired() && stage.isFinished() && stage.getState() != State.DONE) return true;
+        }
+        return false;
+    }
+
+    /** @return the stages in the order they were added */
+    public List<Stage> getStages() {
+        return new ArrayList<>(stages);
+    }
+
+    /** @return time (milliseconds) since startup began */
+    public long getUptimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdAt);
+    }
+}
@@ -0,0 +1,264 @@
+package com.napier.sem.config;
+
+import com.napier.sem.metrics.TimedStatement;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of prepared statements for a single physical database connection,
+ * keyed by the query name from {@code queries.sql}.
+ * <p>
+ * Each pooled connection owns one cache, so a named query is parsed (and, with
+ * server-side prepares, sent to MySQL as COM_STMT_PREPARE) only once per connection.
+ * The cache holds at most {@code db.statement.cache.size} statements and evicts the
+ * least recently used one when full.
+ * </p>
+ * <p>
+ * Statements handed out by the cache can be closed as usual (e.g. with
+ * try-with-resources); closing only clears their parameters and results so that
+ * the next borrower of the connection can reuse them.
+ * </p>
+ */
+public class StatementCache {
+    /** Rows fetched per round trip when streaming from drivers other than MySQL. */
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    /** Number of lookups answered from a cache, across all connections. */
+    private static final AtomicLong hits = new AtomicLong();
+    /** Number of lookups that had to prepare a new statement, across all connections. */
+    private static final AtomicLong misses = new AtomicLong();
+    /** Number of statements closed to make room for others, across all connections. */
+    private static final AtomicLong evictions = new AtomicLong();
+
+    /** A prepared statement together with whether it is currently handed out. */
+    private static final class Entry {
+        final PreparedStatement stmt;
+        boolean inUse;
+        boolean evicted;
+
+        Entry(PreparedStatement stmt) {
+            this.stmt = stmt;
+        }
+    }
+
+    /** Connection the statements belong to. */
+    private final Connection conn;
+    /** Maximum number of statements kept open; 0 or less disables caching. */
+    private final int maxSize;
+    /** Cached statements in access order, least recently used first. */
+    private final LinkedHashMap<String, Entry> statements;
+    /** Time spent in execute calls since {@link #takeExecutionNanos()}, or -1 if none ran. */
+    private long executionNanos = -1;
+
+    /**
+     * Creates an empty cache for a physical connection.
+     *
+     * @param conn    the physical (unpooled) connection
+     * @param maxSize maximum number of statements kept open, or 0 to prepare every
+     *                statement anew (no caching)
+     */
+    public StatementCache(Connection conn, int maxSize) {
+        this.conn = conn;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= maxSize) return false;
+                evictions.incrementAndGet();
+                Entry e = eldest.getValue();
+                e.evicted = true;
+                // A statement still in use is closed when its borrower closes it
+                if (!e.inUse) closeQuietly(e.stmt);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a prepared statement for a named query from {@code queries.sql}.
+     * <p>
+     * When {@code conn} comes from the {@link ConnectionPool}, the statement is taken
+     * from that connection's cache. For any other connection (e.g. in tests) a new
+     * statement is prepared. In both cases the caller closes the statement when done,
+     * the execution is timed under the query name (see {@link TimedStatement}) and
+     * limited by the request's {@link Deadline}, if any.
+     * </p>
+     *
+     * @param conn      connection to run the query on
+     * @param queryName name of the query in {@code queries.sql}
+     * @return a prepared statement ready for its parameters to be bound
+     * @throws SQLException if the statement cannot be prepared, or the request's deadline has passed
+     */
+    public static PreparedStatement prepare(Connection conn, String queryName) throws SQLException {
+        String sql = QueryLoader.get(queryName);
+        PreparedStatement stmt = conn.isWrapperFor(StatementCache.class)
+                ? conn.unwrap(StatementCache.class).get(queryName, sql)
+                : conn.prepareStatement(sql);
+        return TimedStatement.wrap(Deadline.bind(stmt, queryName), queryName);
+    }
+
+    /**
+     * Asks the driver to hand rows over as they arrive instead of reading the whole
+     * result into memory first. MySQL Connector/J does this for a fetch size of
+     * {@link Integer#MIN_VALUE}; other drivers get a moderate fetch size.
+     * The setting is undone when a cached statement is closed.
+     *
+     * @param stmt statement about to be executed
+     * @throws SQLException if the fetch size cannot be set
+     */
+    public static void streamResults(PreparedStatement stmt) throws SQLException {
+        Connection conn = stmt.getConnection();
+        boolean mysql = conn != null && conn.getMetaData().getDriverName().startsWith("MySQL");
+        stmt.setFetchSize(mysql ? Integer.MIN_VALUE : STREAM_FETCH_SIZE);
+    }
+
+    /**
+     * Looks up a cached statement, preparing and caching it on a miss.
+     * If the cached statement is already handed out (the same query used twice at once
+     * on one connection), an uncached statement is returned instead.
+     */
+    PreparedStatement get(String queryName, String sql) throws SQLException {
+        if (maxSize < 1) {
+            // Caching disabled: an entry would be evicted (and closed) as soon as it was added
+            misses.incrementAndGet();
+            return wrap(conn.prepareStatement(sql), null);
+        }
+        Entry entry = statements.get(queryName);
+        if (entry == null) {
+            misses.incrementAndGet();
+            entry = new Entry(conn.prepareStatement(sql));
+            statements.put(queryName, entry);
+        } else if (entry.inUse) {
+            misses.incrementAndGet();
+            return wrap(conn.prepareStatement(sql), null);
+        } else {
+            hits.incrementAndGet();
+        }
+        entry.inUse = true;
+        return wrap(entry.stmt, entry);
+    }
+
+    /**
+     * Wraps a statement so that the time spent executing it is added up for
+     * {@link #takeExecutionNanos()}. Closing a cached statement hands it back to the
+     * cache instead of closing it; an uncached one ({@code entry} null) is closed.
+     */
+    private PreparedStatement wrap(PreparedStatement raw, Entry entry) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean returned = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!returned) {
+                            returned = true;
+                            if (entry == null) {
+                                raw.close();
+                            } else {
+                                entry.inUse = false;
+                                if (entry.evicted) raw.close();
+                                else reset(raw);
+                            }
+                        }
+                        return null;
+                    case "isClosed":
+                        return returned || raw.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        if (returned) throw new SQLException("Statement has already been returned to the cache");
+                        // Only the execution is timed, not reading the rows, which can wait on a slow client
+                        long started = method.getName().startsWith("execute") ? System.nanoTime() : -1;
+                        try {
+                            return method.invoke(raw, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        } finally {
+                            if (started != -1) {
+                                executionNanos = Math.max(executionNanos, 0) + System.nanoTime() - started;
+                            }
+                        }
+                }
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, handler);
+    }
+
+    /**
+     * Closes any open result, clears the bound parameters and removes the fetch size and
+     * query timeout of a statement going back to the cache.
+     */
+    private static void reset(PreparedStatement stmt) throws SQLException {
+        ResultSet rs = stmt.getResultSet();
+        if (rs != null) rs.close();
+        stmt.clearParameters();
+        if (stmt.getFetchSize() != 0) stmt.setFetchSize(0);
+        if (stmt.getQueryTimeout() != 0) stmt.setQueryTimeout(0);
+    }
+
+    /**
+     * Returns the time statements of this cache spent executing since the last call,
+     * and starts counting again. The connection's borrower calls it when giving the
+     * connection back, so it is the database time of one borrow.
+     *
+     * @return time in nanoseconds, or -1 if no statement was executed
+     */
+    long takeExecutionNanos() {
+        long nanos = executionNanos;
+        executionNanos = -1;
+        return nanos;
+    }
+
+    /** @return number of statements currently cached for this connection */
+    public int size() {
+        return statements.size();
+    }
+
+    /** Closes every cached statement. Called before the physical connection is closed. */
+    public void closeAll() {
+        List<Entry> entries = new ArrayList<>(statements.values());
+        statements.clear();
+        for (Entry e : entries) {
+            closeQuietly(e.stmt);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException ignored) {
+            // Statement is being discarded anyway
+        }
+    }
+
+    /** @return number of lookups answered from a cache since startup */
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    /** @return number of lookups that prepared a new statement since startup */
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    /** @return number of statements evicted from a full cache since startup */
+    public static long getEvictionCount() {
+        return evictions.get();
+    }
+}
@@ -1,15 +1,19 @@
 package com.napier.sem.dao;
 
-import com.napier.sem.config.QueryLoader;
+import com.napier.sem.config.StatementCache;
 import com.napier.sem.exception.DataAccessException;
+import com.napier.sem.metrics.TimedStatement;
 import com.napier.sem.model.CapitalCity;
+import com.napier.sem.model.Page;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Data Access Object responsible for retrieving data from database for capital city reports.
@@ -17,12 +21,12 @@ import java.util.List;
  * This class communicates directly with the database and transforms SQL query
  * results into Java objects (CapitalCity).
  */
-public class CapitalCityDAO {
-    /** Database connection. */
-    private final Connection conn;
+public class CapitalCityDAO implements CapitalCityRepository {
+    /** Pool from which a database connection is borrowed for each query. */
+    private final DataSource dataSource;
 
-    public CapitalCityDAO(Connection conn) {
-        this.conn = conn;
+    public CapitalCityDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     /**
@@ -30,21 +34,71 @@ public class CapitalCityDAO {
      * Uses a predefined SQL query from QueryLoader.
      */
     public List<CapitalCity> getAllCapitalCities() {
-        String sql = QueryLoader.get("all_capital_cities");  // Load SQL from queries.sql
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "all_capital_cities")) {
             return getList(stmt);  // Execute and map results
         } catch (SQLException e) {
             throw new DataAccessException("Failed to fetch all capital cities", e);
         }
     }
 
+    /**
+     * Streams all capital cities in the world, sorted by population (descending), row by row.
+     * The driver is asked not to buffer the result, so memory use does not grow with its size.
+     */
+    public void streamAllCapitalCities(Consumer<CapitalCity> sink) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "all_capital_cities")) {
+            StatementCache.streamResults(stmt);
+            forEachRow(stmt, sink);
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to stream all capital cities", e);
+        }
+    }
+
+    /**
+     * Retrieves one page of all capital cities in the world (keyset pagination).
+     * @param after cursor of the last capital of the previous page
+     * @param limit maximum number of capitals on the page
+     */
+    public Page<CapitalCity> getCapitalCitiesPage(PageCursor after, int limit) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "capital_cities_page")) {
+            stmt.setLong(1, after.getPopulation());
+            stmt.setLong(2, after.getPopulation());
+            stmt.setInt(3, after.getIntKey());
+            stmt.setInt(4, limit + 1); // one extra row tells whether there is a next page
+            List<CapitalCity> cities = new ArrayList<>();
+            String next = null;
+            int lastId = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (cities.size() == limit) {
+                        next = new PageCursor(cities.get(limit - 1).getPopulation(), String.valueOf(lastId)).encode();
+                        break;
+                    }
+                    lastId = rs.getInt("ID");
+                    cities.add(new CapitalCity(
+                            rs.getString("City"),
+                            rs.getString("Country"),
+                            rs.getInt("Population")
+                    ));
+                }
+            }
+            TimedStatement.rows(stmt, next == null ? cities.size() : cities.size() + 1);
+            return new Page<>(cities, next);
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to fetch page of capital cities", e);
+        }
+    }
+
     /**
      * 2. Retrieves all capital cities located in a specific continent.
      * @param continent the name of the continent
      */
     public List<CapitalCity> getCapitalCitiesByContinent(String continent) {
-        String sql = QueryLoader.get("all_capital_cities_by_continent");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "all_capital_cities_by_continent")) {
             stmt.setString(1, continent); // Replace first "?" in query with the continent name
             return getList(stmt);
         } catch (SQLException e) {
@@ -57,8 +111,8 @@ public class CapitalCityDAO {
      * @param region the name of the region
      */
     public List<CapitalCity> getCapitalCitiesByRegion(String region) {
-        String sql = QueryLoader.get("all_capital_cities_by_region");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "all_capital_cities_by_region")) {
             stmt.setString(1, region);
             return getList(stmt);
         } catch (SQLException e) {
@@ -71,8 +125,8 @@ public class CapitalCityDAO {
      * @param n number of results to return
      */
     public List<CapitalCity> getTopNCapitalCitiesInWorld(int n) {
-        String sql = QueryLoader.get("top_n_capital_cities");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "top_n_capital_cities")) {
             stmt.setInt(1, n); // Replace parameter with desired number of cities
             return getList(stmt);
         } catch (SQLException e) {
@@ -86,8 +140,8 @@ public class CapitalCityDAO {
      * @param n number of results to return
      */
     public List<CapitalCity> getTopNCapitalCitiesInContinent(String continent, int n) {
-        String sql = QueryLoader.get("top_n_capital_cities_by_continent");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "top_n_capital_cities_by_continent")) {
             stmt.setString(1, continent);
             stmt.setInt(2, n);
             return getList(stmt);
@@ -102,8 +156,8 @@ public class CapitalCityDAO {
      * @param n number of results to return
      */
     public List<CapitalCity> getTopNCapitalCitiesInRegion(String region, int n) {
-        String sql = QueryLoader.get("top_n_capital_cities_by_region");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "top_n_capital_cities_by_region")) {
             stmt.setString(1, region);
             stmt.setInt(2, n);
             return getList(stmt);
@@ -121,16 +175,27 @@ public class CapitalCityDAO {
      */
     private List<CapitalCity> getList(PreparedStatement stmt) throws SQLException {
         List<CapitalCity> cities = new ArrayList<>();
+        forEachRow(stmt, cities::add);
+        return cities;
+    }
 
+    /**
+     * Executes the given SQL statement and passes each row, converted
+     * into a CapitalCity object, to the sink as it is read.
+     */
+    private void forEachRow(PreparedStatement stmt, Consumer<CapitalCity> sink) throws SQLException {
+        long rows = 0;
         try (ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
-                cities.add(new CapitalCity(
+                ++rows;
+                sink.accept(new CapitalCity(
                         rs.getString("City"),      // ci.Name AS City
                         rs.getString("Country"),   // co.Name AS Country
                         rs.getInt("Population")    // ci.Population
                 ));
             }
+        } finally {
+            TimedStatement.rows(stmt, rows);
         }
-        return cities;
     }
 }
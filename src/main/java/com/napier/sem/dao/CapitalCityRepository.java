@@ -0,0 +1,46 @@
+package com.napier.sem.dao;
+
+import com.napier.sem.model.CapitalCity;
+import com.napier.sem.model.Page;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Source of capital city report data.
+ * <p>
+ * Implemented by {@link CapitalCityDAO}, which queries the database, and by
+ * {@link com.napier.sem.memory.InMemoryCapitalCityRepository}, which answers from the
+ * in-memory copy of the world dataset. Every list is ordered by population (descending).
+ * </p>
+ */
+public interface CapitalCityRepository {
+    List<CapitalCity> getAllCapitalCities();
+
+    /**
+     * Passes every capital city in the world to {@code sink}, most populated first,
+     * without collecting them into a list. Used to stream large reports straight to a response.
+     *
+     * @param sink receives each capital city in turn
+     */
+    void streamAllCapitalCities(Consumer<CapitalCity> sink);
+
+    /**
+     * Returns one page of all capital cities in the world, ordered by population
+     * (descending) and then by city ID.
+     *
+     * @param after cursor of the last row of the previous page ({@link PageCursor#FIRST} to start)
+     * @param limit maximum number of rows on the page
+     */
+    Page<CapitalCity> getCapitalCitiesPage(PageCursor after, int limit);
+
+    List<CapitalCity> getCapitalCitiesByContinent(String continent);
+
+    List<CapitalCity> getCapitalCitiesByRegion(String region);
+
+    List<CapitalCity> getTopNCapitalCitiesInWorld(int n);
+
+    List<CapitalCity> getTopNCapitalCitiesInContinent(String continent, int n);
+
+    List<CapitalCity> getTopNCapitalCitiesInRegion(String region, int n);
+}
@@ -1,15 +1,19 @@
 package com.napier.sem.dao;
 
-import com.napier.sem.config.QueryLoader;
+import com.napier.sem.config.StatementCache;
 import com.napier.sem.exception.DataAccessException;
+import com.napier.sem.metrics.TimedStatement;
 import com.napier.sem.model.City;
+import com.napier.sem.model.Page;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * DAO (Data Access Object) responsible for retrieving city-related data
@@ -18,34 +22,86 @@ import java.util.List;
  * Each method corresponds to a specific report query, which is defined
  * externally in queries.sql and loaded via QueryLoader.
  */
-public class CityDAO {
-    /** Database connection. */
-    private final Connection conn;
+public class CityDAO implements CityRepository {
+    /** Pool from which a database connection is borrowed for each query. */
+    private final DataSource dataSource;
 
-    /** Constructor initializes the DAO with an existing database connection. */
-    public CityDAO(Connection conn) {
-        this.conn = conn;
+    /** Constructor initializes the DAO with the connection pool it borrows connections from. */
+    public CityDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     /**
      * 1⃣ Retrieves all cities in the world, sorted by population (descending).
      */
     public List<City> getAllCities() {
-        String sql = QueryLoader.get("all_cities");  // Load the predefined SQL query
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "all_cities")) {
             return getList(stmt); // Execute query and map results
         } catch (SQLException e) {
             throw new DataAccessException("Failed to fetch all cities", e);
         }
     }
 
+    /**
+     * Streams all cities in the world, sorted by population (descending), row by row.
+     * The driver is asked not to buffer the result, so memory use does not grow with its size.
+     */
+    public void streamAllCities(Consumer<City> sink) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "all_cities")) {
+            StatementCache.streamResults(stmt);
+            forEachRow(stmt, sink);
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to stream all cities", e);
+        }
+    }
+
+    /**
+     * Retrieves one page of all cities in the world (keyset pagination).
+     * @param after cursor of the last city of the previous page
+     * @param limit maximum number of cities on the page
+     */
+    public Page<City> getCitiesPage(PageCursor after, int limit) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "cities_page")) {
+            stmt.setLong(1, after.getPopulation());
+            stmt.setLong(2, after.getPopulation());
+            stmt.setInt(3, after.getIntKey());
+            stmt.setInt(4, limit + 1); // one extra row tells whether there is a next page
+            return getPage(stmt, limit);
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to fetch page of cities", e);
+        }
+    }
+
+    /**
+     * Retrieves one page of the cities within a given continent (keyset pagination).
+     * @param continent name of the continent to filter by
+     * @param after cursor of the last city of the previous page
+     * @param limit maximum number of cities on the page
+     */
+    public Page<City> getCitiesByContinentPage(String continent, PageCursor after, int limit) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "cities_by_continent_page")) {
+            stmt.setString(1, continent);
+            stmt.setLong(2, after.getPopulation());
+            stmt.setLong(3, after.getPopulation());
+            stmt.setInt(4, after.getIntKey());
+            stmt.setInt(5, limit + 1);
+            return getPage(stmt, limit);
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to fetch page of cities for continent " + continent, e);
+        }
+    }
+
     /**
      * 2️. Retrieves all cities within a given continent.
      * @param continent name of the continent to filter by
      */
     public List<City> getCitiesByContinent(String continent) {
-        String sql = QueryLoader.get("all_cities_by_continent");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "all_cities_by_continent")) {
             stmt.setString(1, continent); // Set continent parameter (first ? in SQL)
             return getList(stmt);
         } catch (SQLException e) {
@@ -58,8 +114,8 @@ public class CityDAO {
      * @param region name of the region
      */
     public List<City> getCitiesByRegion(String region) {
-        String sql = QueryLoader.get("all_cities_by_region");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "all_cities_by_region")) {
             stmt.setString(1, region);
             return getList(stmt);
         } catch (SQLException e) {
@@ -72,8 +128,8 @@ public class CityDAO {
      * @param countryName name of the country
      */
     public List<City> getCitiesByCountry(String countryName) {
-        String sql = QueryLoader.get("all_cities_by_country");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "all_cities_by_country")) {
             stmt.setString(1, countryName);
             return getList(stmt);
         } catch (SQLException e) {
@@ -86,8 +142,8 @@ public class CityDAO {
      * @param district name of the district
      */
     public List<City> getCitiesByDistrict(String district) {
-        String sql = QueryLoader.get("all_cities_by_district");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "all_cities_by_district")) {
             stmt.setString(1, district);
             return getList(stmt);
         } catch (SQLException e) {
@@ -100,8 +156,8 @@ public class CityDAO {
      * @param n number of cities to return
      */
     public List<City> getTopNCitiesInWorld(int n) {
-        String sql = QueryLoader.get("top_n_cities");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "top_n_cities")) {
             stmt.setInt(1, n);
             return getList(stmt);
         } catch (SQLException e) {
@@ -115,8 +171,8 @@ public class CityDAO {
      * @param n number of results to return
      */
     public List<City> getTopNCitiesInContinent(String continent, int n) {
-        String sql = QueryLoader.get("top_n_cities_by_continent");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "top_n_cities_by_continent")) {
             stmt.setString(1, continent);
             stmt.setInt(2, n);
             return getList(stmt);
@@ -131,8 +187,8 @@ public class CityDAO {
      * @param n number of results to return
      */
     public List<City> getTopNCitiesInRegion(String region, int n) {
-        String sql = QueryLoader.get("top_n_cities_by_region");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "top_n_cities_by_region")) {
             stmt.setString(1, region);
             stmt.setInt(2, n);
             return getList(stmt);
@@ -147,8 +203,8 @@ public class CityDAO {
      * @param n number of results to return
      */
     public List<City> getTopNCitiesInCountry(String countryName, int n) {
-        String sql = QueryLoader.get("top_n_cities_by_country");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "top_n_cities_by_country")) {
             stmt.setString(1, countryName);
             stmt.setInt(2, n);
             return getList(stmt);
@@ -163,8 +219,8 @@ public class CityDAO {
      * @param n number of results to return
      */
     public List<City> getTopNCitiesInDistrict(String district, int n) {
-        String sql = QueryLoader.get("top_n_cities_by_district");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "top_n_cities_by_district")) {
             stmt.setString(1, district);
             stmt.setInt(2, n);
             return getList(stmt);
@@ -182,16 +238,56 @@ public class CityDAO {
      */
     private List<City> getList(PreparedStatement stmt) throws SQLException {
         List<City> cities = new ArrayList<>();
+        forEachRow(stmt, cities::add);
+        return cities;
+    }
+
+    /**
+     * Executes a page query that asks for {@code limit + 1} rows and builds the page,
+     * with a cursor pointing at its last city if the extra row shows there is more.
+     */
+    private Page<City> getPage(PreparedStatement stmt, int limit) throws SQLException {
+        List<City> cities = new ArrayList<>();
+        String next = null;
+        int lastId = 0;
         try (ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
+                if (cities.size() == limit) {
+                    next = new PageCursor(cities.get(limit - 1).getPopulation(), String.valueOf(lastId)).encode();
+                    break;
+                }
+                lastId = rs.getInt("ID");
                 cities.add(new City(
+                        rs.getString("City"),
+                        NameDictionary.COUNTRIES.canonical(rs.getString("Country")),
+                        NameDictionary.DISTRICTS.canonical(rs.getString("District")),
+                        rs.getInt("Population")
+                ));
+            }
+        }
+        TimedStatement.rows(stmt, next == null ? cities.size() : cities.size() + 1);
+        return new Page<>(cities, next);
+    }
+
+    /**
+     * Executes the given SQL statement and passes each row, converted
+     * into a City object, to the sink as it is read.
+     */
+    private void forEachRow(PreparedStatement stmt, Consumer<City> sink) throws SQLException {
+        long rows = 0;
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                ++rows;
+                // Country and district repeat across rows; share one copy of each name
+                sink.accept(new City(
                         rs.getString("City"),       // alias in SQL: ci.Name AS City
-                        rs.getString("Country"),    // alias in SQL: co.Name AS Country
-                        rs.getString("District"),
+                        NameDictionary.COUNTRIES.canonical(rs.getString("Country")),    // co.Name AS Country
+                        NameDictionary.DISTRICTS.canonical(rs.getString("District")),
                         rs.getInt("Population")
                 ));
             }
+        } finally {
+            TimedStatement.rows(stmt, rows);
         }
-        return cities;
     }
 }
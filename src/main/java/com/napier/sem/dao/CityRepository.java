@@ -0,0 +1,59 @@
+package com.napier.sem.dao;
+
+import com.napier.sem.model.City;
+import com.napier.sem.model.Page;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Source of city report data.
+ * <p>
+ * Implemented by {@link CityDAO}, which queries the database, and by
+ * {@link com.napier.sem.memory.InMemoryCityRepository}, which answers from the
+ * in-memory copy of the world dataset. Every list is ordered by population (descending).
+ * </p>
+ */
+public interface CityRepository {
+    List<City> getAllCities();
+
+    /**
+     * Passes every city in the world to {@code sink}, most populated first, without
+     * collecting them into a list. Used to stream large reports straight to a response.
+     *
+     * @param sink receives each city in turn
+     */
+    void streamAllCities(Consumer<City> sink);
+
+    List<City> getCitiesByContinent(String continent);
+
+    /**
+     * Returns one page of all cities in the world, ordered by population (descending)
+     * and then by city ID.
+     *
+     * @param after cursor of the last row of the previous page ({@link PageCursor#FIRST} to start)
+     * @param limit maximum number of rows on the page
+     */
+    Page<City> getCitiesPage(PageCursor after, int limit);
+
+    /**
+     * Returns one page of the cities in a continent, ordered like {@link #getCitiesPage}.
+     */
+    Page<City> getCitiesByContinentPage(String continent, PageCursor after, int limit);
+
+    List<City> getCitiesByRegion(String region);
+
+    List<City> getCitiesByCountry(String countryName);
+
+    List<City> getCitiesByDistrict(String district);
+
+    List<City> getTopNCitiesInWorld(int n);
+
+    List<City> getTopNCitiesInContinent(String continent, int n);
+
+    List<City> getTopNCitiesInRegion(String region, int n);
+
+    List<City> getTopNCitiesInCountry(String countryName, int n);
+
+    List<City> getTopNCitiesInDistrict(String district, int n);
+}
@@ -1,9 +1,13 @@
 package com.napier.sem.dao;
 
 import com.napier.sem.config.QueryLoader;
+import com.napier.sem.config.StatementCache;
 import com.napier.sem.exception.DataAccessException;
+import com.napier.sem.metrics.TimedStatement;
 import com.napier.sem.model.Country;
+import com.napier.sem.model.Page;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -23,12 +27,12 @@ import java.util.List;
  * The SQL queries are stored externally in {@code queries.sql} and loaded
  * dynamically through {@link QueryLoader}.
  */
-public class CountryDAO {
-    /** Database connection. */
-    private final Connection conn;
+public class CountryDAO implements CountryRepository {
+    /** Pool from which a database connection is borrowed for each query. */
+    private final DataSource dataSource;
 
-    public CountryDAO(Connection conn) {
-        this.conn = conn;
+    public CountryDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     /**
@@ -36,22 +40,48 @@ public class CountryDAO {
      * @return A list of {@link Country} objects.
      */
     public List<Country> getAllCountries() {
-        String sql = QueryLoader.get("all_countries"); // Load SQL text from queries.sql
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "all_countries")) {
             return getList(stmt);
         } catch (SQLException e) {
             throw new DataAccessException("Failed to fetch population report", e);
         }
     }
 
+    /**
+     * Gets one page of all countries (keyset pagination).
+     * @param after Cursor of the last country of the previous page.
+     * @param limit Maximum number of countries on the page.
+     * @return A {@link Page} of {@link Country} objects.
+     */
+    public Page<Country> getCountriesPage(PageCursor after, int limit) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "countries_page")) {
+            stmt.setLong(1, after.getPopulation());
+            stmt.setLong(2, after.getPopulation());
+            stmt.setString(3, after.getKey());
+            stmt.setInt(4, limit + 1); // one extra row tells whether there is a next page
+            List<Country> countries = getList(stmt);
+            String next = null;
+            if (countries.size() > limit) {
+                countries.remove(limit);
+                Country last = countries.get(limit - 1);
+                next = new PageCursor(last.getPopulation(), last.getCode()).encode();
+            }
+            return new Page<>(countries, next);
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to fetch page of countries", e);
+        }
+    }
+
     /**
      * Gets all countries on the chosen continent.
      * @param continent The name of a continent the user wants.
      * @return A list of {@link Country} objects.
      */
     public List<Country> getCountriesByContinent(String continent) {
-        String sql = QueryLoader.get("all_countries_by_continent");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "all_countries_by_continent")) {
             stmt.setString(1, continent);
             return getList(stmt);
         } catch (SQLException e) {
@@ -65,8 +95,8 @@ public class CountryDAO {
      * @return A list of {@link Country} objects.
      */
     public List<Country> getCountriesByRegion(String region) {
-        String sql = QueryLoader.get("all_countries_by_region");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "all_countries_by_region")) {
             stmt.setString(1, region);
             return getList(stmt);
         } catch (SQLException e) {
@@ -80,8 +110,8 @@ public class CountryDAO {
      * @return A list of {@link Country} objects.
      */
     public List<Country> getTopNCountriesInWorld(int n) {
-        String sql = QueryLoader.get("top_n_countries");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "top_n_countries")) {
             stmt.setInt(1, n);
             return getList(stmt);
         } catch (SQLException e) {
@@ -96,8 +126,8 @@ public class CountryDAO {
      * @return A list of {@link Country} objects.
      */
     public List<Country> getTopNCountriesInContinent(String continent, int n) {
-        String sql = QueryLoader.get("top_n_countries_by_continent");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "top_n_countries_by_continent")) {
             stmt.setString(1, continent);
             stmt.setInt(2, n);
             return getList(stmt);
@@ -113,8 +143,8 @@ public class CountryDAO {
      * @return A list of {@link Country} objects.
      */
     public List<Country> getTopNCountriesInRegion(String region, int n) {
-        String sql = QueryLoader.get("top_n_countries_by_region");
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "top_n_countries_by_region")) {
             stmt.setString(1, region);
             stmt.setInt(2, n);
             return getList(stmt);
@@ -136,13 +166,14 @@ public class CountryDAO {
                 countries.add(new Country(
                         rs.getString("Code"),
                         rs.getString("Name"),
-                        rs.getString("Continent"),
-                        rs.getString("Region"),
+                        NameDictionary.CONTINENTS.canonical(rs.getString("Continent")),
+                        NameDictionary.REGIONS.canonical(rs.getString("Region")),
                         rs.getInt("Population"),
                         rs.getString("Capital")
                 ));
             }
         }
+        TimedStatement.rows(stmt, countries.size());
         return countries;
     }
 }
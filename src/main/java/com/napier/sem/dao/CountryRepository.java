@@ -0,0 +1,37 @@
+package com.napier.sem.dao;
+
+import com.napier.sem.model.Country;
+import com.napier.sem.model.Page;
+
+import java.util.List;
+
+/**
+ * Source of country report data.
+ * <p>
+ * Implemented by {@link CountryDAO}, which queries the database, and by
+ * {@link com.napier.sem.memory.InMemoryCountryRepository}, which answers from the
+ * in-memory copy of the world dataset. Every list is ordered by population (descending).
+ * </p>
+ */
+public interface CountryRepository {
+    List<Country> getAllCountries();
+
+    /**
+     * Returns one page of all countries in the world, ordered by population (descending)
+     * and then by country code.
+     *
+     * @param after cursor of the last row of the previous page ({@link PageCursor#FIRST} to start)
+     * @param limit maximum number of rows on the page
+     */
+    Page<Country> getCountriesPage(PageCursor after, int limit);
+
+    List<Country> getCountriesByContinent(String continent);
+
+    List<Country> getCountriesByRegion(String region);
+
+    List<Country> getTopNCountriesInWorld(int n);
+
+    List<Country> getTopNCountriesInContinent(String continent, int n);
+
+    List<Country> getTopNCountriesInRegion(String region, int n);
+}
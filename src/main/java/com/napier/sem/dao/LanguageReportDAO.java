@@ -1,9 +1,11 @@
 package com.napier.sem.dao;
 
-import com.napier.sem.config.QueryLoader;
+import com.napier.sem.config.StatementCache;
 import com.napier.sem.exception.DataAccessException;
+import com.napier.sem.metrics.TimedStatement;
 import com.napier.sem.model.LanguageReport;
 
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -12,14 +14,19 @@ import java.util.List;
  * DAO (Data Access Object) responsible for retrieving language-related statistics
  * from the database, such as total speakers and percentage of the world population
  * for major languages (Chinese, English, Hindi, Spanish, Arabic).
+ * <p>
+ * Reports on other languages, top-N languages and official-only reports are answered
+ * from a {@link LanguageRollup} read with {@link #getLanguageRollup()}; shared between
+ * requests by {@link RollupLanguageReportRepository}.
+ * </p>
  */
-public class LanguageReportDAO {
-    /** Database connection. */
-    private final Connection conn;
+public class LanguageReportDAO implements LanguageReportRepository {
+    /** Pool from which a database connection is borrowed for each query. */
+    private final DataSource dataSource;
 
-    /** Constructor initializes DAO with the active database connection. */
-    public LanguageReportDAO(Connection conn) {
-        this.conn = conn;
+    /** Constructor initializes DAO with the connection pool it borrows connections from. */
+    public LanguageReportDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     /**
@@ -31,10 +38,10 @@ public class LanguageReportDAO {
     public List<LanguageReport> getLanguagePopulationReport() {
         List<LanguageReport> languages = new ArrayList<>();
 
-        // Load SQL query text from queries.sql using QueryLoader
-        String sql = QueryLoader.get("language_breakdown");
-        try(PreparedStatement stmt = conn.prepareStatement(sql)) {
-            ResultSet rs = stmt.executeQuery();
+        // Prepare the "language_breakdown" query from queries.sql (cached per connection)
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "language_breakdown");
+             ResultSet rs = stmt.executeQuery()) {
 
             // For each row returned, create a LanguageReport object and add it to the list
             while (rs.next()) {
@@ -44,9 +51,44 @@ public class LanguageReportDAO {
                         rs.getDouble("WorldPercentage")
                 ));
             }
+            TimedStatement.rows(stmt, languages.size());
         } catch (SQLException e) {
             throw new DataAccessException("Failed to fetch language report", e);
         }
         return languages;
     }
+
+    @Override
+    public List<LanguageReport> getLanguageReport(List<String> languages, boolean officialOnly) {
+        return getLanguageRollup().getLanguageReport(languages, officialOnly);
+    }
+
+    @Override
+    public List<LanguageReport> getTopNLanguages(int n, boolean officialOnly) {
+        return getLanguageRollup().getTopNLanguages(n, officialOnly);
+    }
+
+    /**
+     * Reads the speakers of every language, official and not, in one query.
+     *
+     * @return the rollup answering all language reports
+     */
+    public LanguageRollup getLanguageRollup() {
+        LanguageRollup.Builder rollup = new LanguageRollup.Builder();
+        int rows = 0;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "language_rollup");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                // The world population is repeated on every row
+                if (rows++ == 0) rollup.addPopulation(rs.getLong("WorldPopulation"));
+                rollup.addSpeakers(rs.getString("Language"), "T".equals(rs.getString("IsOfficial")),
+                        rs.getLong("Speakers"));
+            }
+            TimedStatement.rows(stmt, rows);
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to fetch language rollup", e);
+        }
+        return rollup.build();
+    }
 }
@@ -0,0 +1,31 @@
+package com.napier.sem.dao;
+
+import com.napier.sem.model.LanguageReport;
+
+import java.util.List;
+
+/**
+ * Source of language report data.
+ * <p>
+ * Implemented by {@link LanguageReportDAO}, which queries the database, and by
+ * {@link com.napier.sem.memory.InMemoryLanguageReportRepository}, which answers from the
+ * in-memory copy of the world dataset.
+ * </p>
+ */
+public interface LanguageReportRepository {
+    List<LanguageReport> getLanguagePopulationReport();
+
+    /**
+     * @param languages    names of the languages to report on
+     * @param officialOnly count only speakers in countries where the language is official
+     * @return speakers of each language found, most spoken first
+     */
+    List<LanguageReport> getLanguageReport(List<String> languages, boolean officialOnly);
+
+    /**
+     * @param n            number of languages
+     * @param officialOnly count only speakers in countries where the language is official
+     * @return the {@code n} most spoken languages, most spoken first
+     */
+    List<LanguageReport> getTopNLanguages(int n, boolean officialOnly);
+}
@@ -0,0 +1,196 @@
+package com.napier.sem.dao;
+
+import com.napier.sem.model.LanguageReport;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Number of speakers of every language, in all countries and in the countries where
+ * it is official, computed in one pass over {@code countrylanguage} joined with
+ * {@code country}.
+ * <p>
+ * Speakers are kept exactly, in thousandths of a person (population times percentage
+ * in tenths of a percent), and rounded the same way as the {@code language_breakdown}
+ * query when a report is made, so every backend returns identical numbers. A report
+ * for a list of languages is one hash lookup per language, and top-N reports read the
+ * head of an ordering kept ready-sorted. Instances are built with {@link Builder} and
+ * never change afterwards, so they can be shared freely between threads.
+ * </p>
+ * <p>
+ * Results follow the SQL semantics of the language queries: names match ignoring case
+ * and surrounding spaces, and a language missing from {@code countrylanguage} (or, for
+ * official-only reports, not official anywhere) is left out. Reports are ordered by speakers
+ * (descending), then by name.
+ * </p>
+ */
+public final class LanguageRollup {
+    /** The languages of the original language report. */
+    public static final List<String> MAJOR_LANGUAGES = List.of("Chinese", "English", "Hindi", "Spanish", "Arabic");
+
+    /** Speakers of one language, in thousandths of a person. */
+    private static final class Language {
+        private final String name;
+        private long speakers;
+        private long officialSpeakers;
+        private boolean official;
+
+        private Language(String name) {
+            this.name = name;
+        }
+
+        private long speakers(boolean officialOnly) {
+            return officialOnly ? officialSpeakers : speakers;
+        }
+    }
+
+    private final long world;
+    private final Map<String, Language> byName;
+    /** Every language, most spoken first. */
+    private final List<Language> bySpeakers;
+    /** Languages official in at least one country, most official speakers first. */
+    private final List<Language> byOfficialSpeakers;
+
+    private LanguageRollup(long world, Map<String, Language> byName) {
+        this.world = world;
+        this.byName = byName;
+        this.bySpeakers = sorted(byName.values(), false);
+        List<Language> official = new ArrayList<>();
+        for (Language language : byName.values()) {
+            if (language.official) official.add(language);
+        }
+        this.byOfficialSpeakers = sorted(official, true);
+    }
+
+    // -------------------------------------------------------
+    // Reports
+    // -------------------------------------------------------
+
+    /** @return speakers of Chinese, English, Hindi, Spanish and Arabic, most spoken first */
+    public List<LanguageReport> getLanguagePopulationReport() {
+        return getLanguageReport(MAJOR_LANGUAGES, false);
+    }
+
+    /**
+     * @param languages    names of the languages to report on (repeated names are reported once)
+     * @param officialOnly count only speakers in countries where the language is official
+     * @return speakers of each language found, most spoken first
+     */
+    public List<LanguageReport> getLanguageReport(List<String> languages, boolean officialOnly) {
+        Set<Language> found = new LinkedHashSet<>();
+        for (String name : languages) {
+            Language language = byName.get(key(name));
+            if (language != null && (!officialOnly || language.official)) found.add(language);
+        }
+        return reports(sorted(found, officialOnly), found.size(), officialOnly);
+    }
+
+    /**
+     * @param n            number of languages
+     * @param officialOnly count only speakers in countries where the language is official
+     * @return the {@code n} most spoken languages, most spoken first
+     */
+    public List<LanguageReport> getTopNLanguages(int n, boolean officialOnly) {
+        return reports(officialOnly ? byOfficialSpeakers : bySpeakers, n, officialOnly);
+    }
+
+    /** @return number of distinct languages */
+    public int getLanguageCount() {
+        return byName.size();
+    }
+
+    // -------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------
+
+    /** Lookup key of a name: trimmed and lower case, so lookups ignore case like the SQL queries. */
+    private static String key(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<Language> sorted(Collection<Language> languages, boolean officialOnly) {
+        List<Language> sorted = new ArrayList<>(languages);
+        sorted.sort(Comparator.comparingLong((Language l) -> -l.speakers(officialOnly))
+                .thenComparing(l -> l.name));
+        return Collections.unmodifiableList(sorted);
+    }
+
+    /** Creates the report objects for the first {@code limit} languages of an ordering. */
+    private List<LanguageReport> reports(List<Language> ordered, int limit, boolean officialOnly) {
+        int size = Math.max(0, Math.min(limit, ordered.size()));
+        List<LanguageReport> reports = new ArrayList<>(size);
+        for (int k = 0; k < size; ++k) {
+            Language language = ordered.get(k);
+            BigDecimal exact = BigDecimal.valueOf(language.speakers(officialOnly), 3);
+            BigDecimal percentage = world == 0 ? BigDecimal.ZERO
+                    : exact.divide(BigDecimal.valueOf(world), 9, RoundingMode.HALF_UP)
+                           .multiply(BigDecimal.valueOf(100))
+                           .setScale(2, RoundingMode.HALF_UP);
+            reports.add(new LanguageReport(language.name,
+                    exact.setScale(0, RoundingMode.HALF_UP).intValue(),
+                    percentage.doubleValue()));
+        }
+        return reports;
+    }
+
+    // -------------------------------------------------------
+    // Builder
+    // -------------------------------------------------------
+
+    /** Collects country populations and language speakers in any order and adds them up. */
+    public static final class Builder {
+        private long world;
+        private final Map<String, Language> byName = new HashMap<>();
+        private boolean built;
+
+        /** Adds to the world population the percentages refer to: one country's, or the whole world's at once. */
+        public Builder addPopulation(long population) {
+            world += population;
+            return this;
+        }
+
+        /**
+         * Adds speakers of a language.
+         *
+         * @param language    name of the language; the first spelling seen is the one reported
+         * @param official    whether the speakers live where the language is official
+         * @param thousandths speakers in thousandths of a person (population times percentage in tenths)
+         */
+        public Builder addSpeakers(String language, boolean official, long thousandths) {
+            if (built) throw new IllegalStateException("Rollup already built");
+            Language entry = byName.computeIfAbsent(key(language), k -> new Language(language.trim()));
+            entry.speakers += thousandths;
+            if (official) {
+                entry.officialSpeakers += thousandths;
+                entry.official = true;
+            }
+            return this;
+        }
+
+        /**
+         * Adds one row of {@code countrylanguage}.
+         *
+         * @param population    population of the row's country
+         * @param percentTenths percentage of the country speaking the language, in tenths of a percent
+         */
+        public Builder addLanguage(String language, boolean official, long population, int percentTenths) {
+            return addSpeakers(language, official, population * percentTenths);
+        }
+
+        /** @return the immutable rollup */
+        public LanguageRollup build() {
+            built = true;
+            return new LanguageRollup(world, new HashMap<>(byName));
+        }
+    }
+}
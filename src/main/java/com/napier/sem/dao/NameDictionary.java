@@ -0,0 +1,93 @@
+package com.napier.sem.dao;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary encoding of a column of names that repeat across many rows
+ * (continents, regions, countries, districts).
+ * <p>
+ * Each distinct name gets a small int ID, in the order the names are first seen, and
+ * one shared {@link String} instance. The JDBC driver hands out a new {@code String}
+ * for every row it reads, so without this the 4079 cities of {@code /cities/all}
+ * carry 4079 copies of country and district names that only take about 230 and 1400
+ * distinct values. Row mapping passes those strings through {@link #canonical(String)}
+ * so results share one copy of each name, and the in-memory dataset stores the IDs in
+ * int columns and resolves them only when it creates report objects.
+ * </p>
+ * <p>
+ * Names are only ever added, never removed, so an ID stays valid for the life of the
+ * application. Only names read from the database should be added; names given by
+ * users are looked up with {@link #find(String)}, which does not add them.
+ * Safe for use by several threads.
+ * </p>
+ */
+public final class NameDictionary {
+    /** Continent names ({@code country.Continent}). */
+    public static final NameDictionary CONTINENTS = new NameDictionary();
+    /** Region names ({@code country.Region}). */
+    public static final NameDictionary REGIONS = new NameDictionary();
+    /** Country names ({@code country.Name}), as repeated on every city and capital row. */
+    public static final NameDictionary COUNTRIES = new NameDictionary();
+    /** District names ({@code city.District}). */
+    public static final NameDictionary DISTRICTS = new NameDictionary();
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    /** Names by ID; replaced by a larger copy when full, so readers never see it change under them. */
+    private volatile String[] names = new String[64];
+    private int size;
+
+    /**
+     * @param name a name read from the database, or null
+     * @return the ID of the name, adding it if it is new; -1 for null
+     */
+    public int id(String name) {
+        if (name == null) return -1;
+        Integer id = ids.get(name);
+        return id != null ? id : add(name);
+    }
+
+    private synchronized int add(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        String[] current = names;
+        if (size == current.length) current = Arrays.copyOf(current, size * 2);
+        current[size] = name;
+        // Publish the name before its ID, so whoever finds the ID can resolve it
+        names = current;
+        ids.put(name, size);
+        return size++;
+    }
+
+    /**
+     * @param name a name, matched exactly
+     * @return its ID, or -1 if it is not in the dictionary
+     */
+    public int find(String name) {
+        if (name == null) return -1;
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id an ID returned by {@link #id(String)}, or -1
+     * @return the shared instance of the name, or null for -1
+     */
+    public String name(int id) {
+        return id < 0 ? null : names[id];
+    }
+
+    /**
+     * @param name a name read from the database, or null
+     * @return the shared instance of the name (added if it is new), or null
+     */
+    public String canonical(String name) {
+        return name(id(name));
+    }
+
+    /** @return number of distinct names */
+    public synchronized int size() {
+        return size;
+    }
+}
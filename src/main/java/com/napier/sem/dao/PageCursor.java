@@ -0,0 +1,68 @@
+package com.napier.sem.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a report ordered by population (descending) and then by key
+ * (city ID or country code, ascending), used for keyset pagination.
+ * <p>
+ * A page starts right after the row identified by the cursor, so the database can
+ * seek to it with an index instead of reading and skipping all earlier rows.
+ * Cursors are handed to clients as opaque URL-safe strings.
+ * </p>
+ */
+public final class PageCursor {
+    /** Cursor of the first page: before every row. */
+    public static final PageCursor FIRST = new PageCursor(Long.MAX_VALUE, "");
+
+    /** Population of the last row of the previous page. */
+    private final long population;
+    /** Key (city ID or country code) of the last row of the previous page. */
+    private final String key;
+
+    /**
+     * @param population population of the last row already returned
+     * @param key        city ID or country code of that row
+     */
+    public PageCursor(long population, String key) {
+        this.population = population;
+        this.key = key;
+    }
+
+    /**
+     * Decodes a cursor received from a client.
+     *
+     * @param cursor the opaque cursor string
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the string is not a valid cursor
+     */
+    public static PageCursor decode(String cursor) {
+        String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int colon = text.indexOf(':');
+        if (colon <= 0) throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+        return new PageCursor(Long.parseLong(text.substring(0, colon)), text.substring(colon + 1));
+    }
+
+    /** @return the opaque string form of this cursor */
+    public String encode() {
+        String text = population + ":" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long getPopulation() { return population; }
+    public String getKey() { return key; }
+
+    /**
+     * @return the key as a city ID (0 on the first page)
+     * @throws IllegalArgumentException if the key is not a number
+     */
+    public int getIntKey() {
+        return key.isEmpty() ? 0 : Integer.parseInt(key);
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
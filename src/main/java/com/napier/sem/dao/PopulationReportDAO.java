@@ -1,9 +1,11 @@
 package com.napier.sem.dao;
 
-import com.napier.sem.config.QueryLoader;
+import com.napier.sem.config.StatementCache;
 import com.napier.sem.exception.DataAccessException;
+import com.napier.sem.metrics.TimedStatement;
 import com.napier.sem.model.PopulationReport;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -19,17 +21,18 @@ import java.util.List;
  *
  * It maps SQL query results into {@link PopulationReport} model objects.
  */
-public class PopulationReportDAO {
-    /** Database connection. */
-    private final Connection conn;
+public class PopulationReportDAO implements PopulationReportRepository {
+    /** Pool from which a database connection is borrowed for each query. */
+    private final DataSource dataSource;
 
-    public PopulationReportDAO(Connection conn) {
-        this.conn = conn;
+    public PopulationReportDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
-    /** Generic helper to execute a population query and return a single value. */
-    private Long fetchPopulation(String sql, String param, String label) {
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+    /** Generic helper to execute a named population query and return a single value. */
+    private Long fetchPopulation(String queryName, String param, String label) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, queryName)) {
             // Bind parameter (e.g., continent, region, etc.) if provided
             if (param != null && !param.isEmpty()) {
                 stmt.setString(1, param.trim());
@@ -38,6 +41,7 @@ public class PopulationReportDAO {
             try (ResultSet rs = stmt.executeQuery()) {
                 // Read the single population result (if exists)
                 if (rs.next()) {
+                    TimedStatement.rows(stmt, 1);
                     long pop = rs.getLong("total_population");
                     // If NULL in DB → getLong() returns 0, so we check if actually null
                     if (rs.wasNull()) return null; // Handle SQL NULL properly
@@ -52,61 +56,97 @@ public class PopulationReportDAO {
 
     /** 1. Population of the world */
     public Long getWorldPopulation() {
-        return fetchPopulation(QueryLoader.get("world_population"), null, "world");
+        return fetchPopulation("world_population", null, "world");
     }
 
     /** 2. Population of a continent */
     public Long getContinentPopulation(String continent) {
-        return fetchPopulation(QueryLoader.get("population_by_continent"), continent, "continent " + continent);
+        return fetchPopulation("population_by_continent", continent, "continent " + continent);
     }
 
     /** 3. Population of a region */
     public Long getRegionPopulation(String region) {
-        return fetchPopulation(QueryLoader.get("population_by_region"), region, "region " + region);
+        return fetchPopulation("population_by_region", region, "region " + region);
     }
 
     /** 4. Population of a country */
     public Long getCountryPopulation(String country) {
-        return fetchPopulation(QueryLoader.get("population_by_country"), country, "country " + country);
+        return fetchPopulation("population_by_country", country, "country " + country);
     }
 
     /** 5. Population of a district */
     public Long getDistrictPopulation(String district) {
-        return fetchPopulation(QueryLoader.get("population_by_district"), district, "district " + district);
+        return fetchPopulation("population_by_district", district, "district " + district);
     }
 
     /** 6. Population of a city */
     public Long getCityPopulation(String city) {
-        return fetchPopulation(QueryLoader.get("population_by_city"), city, "city " + city);
+        return fetchPopulation("population_by_city", city, "city " + city);
     }
 
     /** 7. Continent population breakdown (total, city, non-city) */
     public List<PopulationReport> getContinentPopulationBreakdown() {
-        return getPopulationReportList(QueryLoader.get("continent_population_summary"), null);
+        return getPopulationReportList("continent_population_summary", null);
     }
 
     /** 8. Region population breakdown */
     public List<PopulationReport> getRegionPopulationBreakdown() {
-        return getPopulationReportList(QueryLoader.get("region_population_summary"), null);
+        return getPopulationReportList("region_population_summary", null);
     }
 
     /** 9. Country population breakdown */
     public List<PopulationReport> getCountryPopulationBreakdown() {
-        return getPopulationReportList(QueryLoader.get("country_population_summary"), null);
+        return getPopulationReportList("country_population_summary", null);
+    }
+
+    /**
+     * Reads every country with its cities in one query and adds up the population of
+     * each continent, region, country and district.
+     *
+     * @return the rollup answering all population reports
+     */
+    public PopulationRollup getPopulationRollup() {
+        PopulationRollup.Builder rollup = new PopulationRollup.Builder();
+        int rows = 0;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, "population_rollup");
+             ResultSet rs = stmt.executeQuery()) {
+            String country = null;
+            while (rs.next()) {
+                ++rows;
+                String code = rs.getString("Code");
+                // Rows are ordered by country, so each country starts a new run of rows
+                if (!code.equals(country)) {
+                    country = code;
+                    rollup.addCountry(code, rs.getString("Name"), rs.getString("Continent"),
+                            rs.getString("Region"), rs.getLong("country_population"));
+                }
+                int id = rs.getInt("ID");
+                if (!rs.wasNull()) {
+                    rollup.addCity(id, code, rs.getString("City"), rs.getString("District"),
+                            rs.getLong("city_population"));
+                }
+            }
+            TimedStatement.rows(stmt, rows);
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to fetch population rollup", e);
+        }
+        return rollup.build();
     }
 
     /**
      * Executes a breakdown query (continent, region, or country)
      * and maps results into a list of {@link PopulationReport} objects.
      *
-     * @param sql The SQL query to execute.
+     * @param queryName The name of the query in queries.sql.
      * @param param Optional parameter (unused here, but kept for flexibility).
      * @return List of PopulationReport objects.
      */
-    private List<PopulationReport> getPopulationReportList(String sql, String param) {
+    private List<PopulationReport> getPopulationReportList(String queryName, String param) {
         List<PopulationReport> reports = new ArrayList<>();
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = StatementCache.prepare(conn, queryName)) {
             // Bind optional parameter if needed
             if (param != null && !param.isEmpty()) {
                 stmt.setString(1, param.trim());
@@ -123,6 +163,7 @@ public class PopulationReportDAO {
                     ));
                 }
             }
+            TimedStatement.rows(stmt, reports.size());
         } catch (SQLException e) {
             throw new DataAccessException("Failed to fetch population reports", e);
         }
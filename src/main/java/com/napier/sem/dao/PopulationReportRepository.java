@@ -0,0 +1,34 @@
+package com.napier.sem.dao;
+
+import com.napier.sem.model.PopulationReport;
+
+import java.util.List;
+
+/**
+ * Source of population report data.
+ * <p>
+ * Implemented by {@link PopulationReportDAO}, which queries the database, and by
+ * {@link com.napier.sem.memory.InMemoryPopulationReportRepository}, which answers from the
+ * in-memory copy of the world dataset. Single-value lookups return {@code null}
+ * when nothing matches; breakdowns are ordered by total population (descending).
+ * </p>
+ */
+public interface PopulationReportRepository {
+    Long getWorldPopulation();
+
+    Long getContinentPopulation(String continent);
+
+    Long getRegionPopulation(String region);
+
+    Long getCountryPopulation(String country);
+
+    Long getDistrictPopulation(String district);
+
+    Long getCityPopulation(String city);
+
+    List<PopulationReport> getContinentPopulationBreakdown();
+
+    List<PopulationReport> getRegionPopulationBreakdown();
+
+    List<PopulationReport> getCountryPopulationBreakdown();
+}
@@ -0,0 +1,255 @@
+package com.napier.sem.dao;
+
+import com.napier.sem.model.PopulationReport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Total, city and non-city population of every continent, region, country and
+ * district, computed in one pass over the countries and their cities.
+ * <p>
+ * The areas form a tree (continent, region, country, district), each node holding
+ * the sums of everything below it. Point lookups are hash lookups by name and the
+ * breakdowns are kept ready-sorted, so every population report is answered without
+ * touching the rows again. Instances are built with {@link Builder} and never change
+ * afterwards, so they can be shared freely between threads.
+ * </p>
+ * <p>
+ * Results follow the SQL semantics of the population queries: names match ignoring
+ * case and surrounding spaces, a district or city name adds up every city with that
+ * name in any country, and an area with no cities reports zero city and non-city
+ * population. Breakdowns are ordered by total population (descending); areas with the
+ * same total are ordered as the MySQL server returns them, countries by code and
+ * continents and regions by name (descending).
+ * </p>
+ */
+public final class PopulationRollup {
+    /** One area of the tree with the population sums of everything below it. */
+    public static final class Area {
+        private final String name;
+        private final Map<String, Area> children = new LinkedHashMap<>();
+        /** Code of the first country in the area, used to order ties. */
+        private final String firstCode;
+        private long total;
+        private long inCities;
+        private boolean hasCities;
+
+        private Area(String name, String firstCode) {
+            this.name = name;
+            this.firstCode = firstCode;
+        }
+
+        public String getName() { return name; }
+        public long getTotalPopulation() { return total; }
+        public long getPopulationInCities() { return hasCities ? inCities : 0; }
+        public long getPopulationNotInCities() { return hasCities ? total - inCities : 0; }
+
+        /** @return the areas one level down (regions of a continent, ...), in the order first seen */
+        public List<Area> getChildren() {
+            return Collections.unmodifiableList(new ArrayList<>(children.values()));
+        }
+
+        private Area child(String childName, String code) {
+            return children.computeIfAbsent(childName, n -> new Area(n, code));
+        }
+
+        private PopulationReport toReport() {
+            return new PopulationReport(name, total, getPopulationInCities(), getPopulationNotInCities());
+        }
+    }
+
+    private final long world;
+    private final boolean hasCountries;
+    private final List<Area> continents;
+    private final Map<String, Area> continentsByName;
+    private final Map<String, Area> regionsByName;
+    private final Map<String, Area> countriesByName;
+    private final Map<String, Long> districtPopulation;
+    private final Map<String, Long> cityPopulation;
+    private final List<PopulationReport> continentBreakdown;
+    private final List<PopulationReport> regionBreakdown;
+    private final List<PopulationReport> countryBreakdown;
+
+    private PopulationRollup(Builder b) {
+        this.world = b.world;
+        this.hasCountries = !b.countriesByName.isEmpty();
+        this.continents = Collections.unmodifiableList(new ArrayList<>(b.continents.values()));
+        this.continentsByName = byName(b.continents.values());
+        this.regionsByName = byName(b.regions.values());
+        this.countriesByName = byName(b.countriesByName.values());
+        this.districtPopulation = b.districtPopulation;
+        this.cityPopulation = b.cityPopulation;
+
+        Comparator<Area> byTotal = Comparator.comparingLong(Area::getTotalPopulation).reversed();
+        Comparator<Area> byNameDescending = Comparator.comparing(Area::getName, Comparator.reverseOrder());
+        this.continentBreakdown = breakdown(b.continents.values(), byTotal.thenComparing(byNameDescending));
+        this.regionBreakdown = breakdown(b.regions.values(), byTotal.thenComparing(byNameDescending));
+        this.countryBreakdown = breakdown(b.countriesByName.values(),
+                byTotal.thenComparing(a -> a.firstCode, Comparator.nullsLast(Comparator.naturalOrder())));
+    }
+
+    // -------------------------------------------------------
+    // Lookups
+    // -------------------------------------------------------
+
+    /** @return population of the world, or null if there are no countries */
+    public Long getWorldPopulation() {
+        return hasCountries ? world : null;
+    }
+
+    /** @return population of the continent, or null if there is no such continent */
+    public Long getContinentPopulation(String continent) {
+        return total(continentsByName.get(key(continent)));
+    }
+
+    /** @return population of the region, or null if there is no such region */
+    public Long getRegionPopulation(String region) {
+        return total(regionsByName.get(key(region)));
+    }
+
+    /** @return population of the country, or null if there is no such country */
+    public Long getCountryPopulation(String country) {
+        return total(countriesByName.get(key(country)));
+    }
+
+    /** @return population living in the cities of the district, or null if no city is in it */
+    public Long getDistrictPopulation(String district) {
+        return districtPopulation.get(key(district));
+    }
+
+    /** @return population of the city (the first one by ID if several share the name), or null */
+    public Long getCityPopulation(String city) {
+        return cityPopulation.get(key(city));
+    }
+
+    /** @return total, city and non-city population of each continent, largest first */
+    public List<PopulationReport> getContinentPopulationBreakdown() {
+        return continentBreakdown;
+    }
+
+    /** @return total, city and non-city population of each region, largest first */
+    public List<PopulationReport> getRegionPopulationBreakdown() {
+        return regionBreakdown;
+    }
+
+    /** @return total, city and non-city population of each country, largest first */
+    public List<PopulationReport> getCountryPopulationBreakdown() {
+        return countryBreakdown;
+    }
+
+    /** @return the top of the tree: every continent, with its regions, countries and districts below it */
+    public List<Area> getContinents() {
+        return continents;
+    }
+
+    // -------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------
+
+    /** Lookup key of a name: trimmed and lower case, so lookups ignore case like the SQL queries. */
+    private static String key(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Long total(Area area) {
+        return area == null ? null : area.total;
+    }
+
+    /** Indexes areas by name; the first area wins if two names differ only by case. */
+    private static Map<String, Area> byName(Iterable<Area> areas) {
+        Map<String, Area> index = new HashMap<>();
+        for (Area area : areas) index.putIfAbsent(key(area.name), area);
+        return index;
+    }
+
+    private static List<PopulationReport> breakdown(Iterable<Area> areas, Comparator<Area> order) {
+        List<Area> sorted = new ArrayList<>();
+        areas.forEach(sorted::add);
+        sorted.sort(order);
+        List<PopulationReport> reports = new ArrayList<>(sorted.size());
+        for (Area area : sorted) reports.add(area.toReport());
+        return Collections.unmodifiableList(reports);
+    }
+
+    // -------------------------------------------------------
+    // Builder
+    // -------------------------------------------------------
+
+    /**
+     * Collects countries and cities, each country before its cities, and adds them up
+     * as they arrive.
+     */
+    public static final class Builder {
+        private long world;
+        private final Map<String, Area> continents = new LinkedHashMap<>();
+        private final Map<String, Area> regions = new LinkedHashMap<>();
+        private final Map<String, Area> countriesByName = new LinkedHashMap<>();
+        /** Areas each country adds up to (continent, region in it, whole region, country), by country code. */
+        private final Map<String, Area[]> paths = new HashMap<>();
+        private final Map<String, Long> districtPopulation = new HashMap<>();
+        private final Map<String, Long> cityPopulation = new HashMap<>();
+        /** ID of the city whose population {@link #cityPopulation} holds, per name. */
+        private final Map<String, Integer> cityIds = new HashMap<>();
+        private boolean built;
+
+        /** Adds a row of the {@code country} table. */
+        public Builder addCountry(String code, String name, String continent, String region, long population) {
+            check();
+            Area c = continents.computeIfAbsent(continent, n -> new Area(n, code));
+            Area r = c.child(region, code);
+            Area regionTotal = regions.computeIfAbsent(region, n -> new Area(n, code));
+            Area country = r.child(name, code);
+            countriesByName.putIfAbsent(name, country);
+            paths.put(code, new Area[]{c, r, regionTotal, country});
+
+            world += population;
+            for (Area area : paths.get(code)) area.total += population;
+            return this;
+        }
+
+        /**
+         * Adds a row of the {@code city} table. Cities are counted towards their district
+         * and name even if their country is unknown, like the district and city queries.
+         */
+        public Builder addCity(int id, String countryCode, String name, String district, long population) {
+            check();
+            districtPopulation.merge(key(district), population, Long::sum);
+            Integer firstId = cityIds.get(key(name));
+            if (firstId == null || id < firstId) {
+                cityIds.put(key(name), id);
+                cityPopulation.put(key(name), population);
+            }
+
+            Area[] path = paths.get(countryCode);
+            if (path == null) return this;
+            Area country = path[path.length - 1];
+            Area districtArea = country.child(district, countryCode);
+            districtArea.total += population;
+            districtArea.inCities += population;
+            districtArea.hasCities = true;
+            for (Area area : path) {
+                area.inCities += population;
+                area.hasCities = true;
+            }
+            return this;
+        }
+
+        /** @return the finished rollup; the builder cannot be used afterwards */
+        public PopulationRollup build() {
+            check();
+            built = true;
+            return new PopulationRollup(this);
+        }
+
+        private void check() {
+            if (built) throw new IllegalStateException("Rollup already built");
+        }
+    }
+}
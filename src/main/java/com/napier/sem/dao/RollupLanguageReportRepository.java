@@ -0,0 +1,86 @@
+package com.napier.sem.dao;
+
+import com.napier.sem.config.DatasetVersion;
+import com.napier.sem.model.LanguageReport;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Answers every language report from one {@link LanguageRollup}, built on first use
+ * and rebuilt when the {@link DatasetVersion} changes.
+ * <p>
+ * Instead of joining {@code countrylanguage} with {@code country} on every request,
+ * the speakers of each language are added up once (see
+ * {@link LanguageReportDAO#getLanguageRollup()}), after which a report is a few hash
+ * lookups or the head of a ready-sorted list. Reports running while the rollup is
+ * rebuilt keep using the previous one.
+ * </p>
+ */
+public class RollupLanguageReportRepository implements LanguageReportRepository {
+    /** A rollup with the dataset version it was built from. */
+    private static final class Snapshot {
+        final long version;
+        final LanguageRollup rollup;
+
+        Snapshot(long version, LanguageRollup rollup) {
+            this.version = version;
+            this.rollup = rollup;
+        }
+    }
+
+    /** Number of rollups built since startup (all instances). */
+    private static final AtomicLong builds = new AtomicLong();
+
+    /** Computes a fresh rollup of the current data. */
+    private final Supplier<LanguageRollup> source;
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param source computes a rollup of the current data, e.g.
+     *               {@code new LanguageReportDAO(dataSource)::getLanguageRollup}
+     */
+    public RollupLanguageReportRepository(Supplier<LanguageRollup> source) {
+        this.source = source;
+    }
+
+    /** @return the rollup of the current dataset version, building it if needed */
+    LanguageRollup rollup() {
+        Snapshot current = snapshot;
+        long version = DatasetVersion.get();
+        if (current != null && current.version == version) return current.rollup;
+
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || current.version != version) {
+                // Read the version before the data: a change during the build leaves an
+                // older version on the snapshot, so the next call builds again
+                current = new Snapshot(version, source.get());
+                snapshot = current;
+                builds.incrementAndGet();
+            }
+            return current.rollup;
+        }
+    }
+
+    /** @return number of rollups built since startup */
+    public static long getBuildCount() {
+        return builds.get();
+    }
+
+    @Override
+    public List<LanguageReport> getLanguagePopulationReport() {
+        return rollup().getLanguagePopulationReport();
+    }
+
+    @Override
+    public List<LanguageReport> getLanguageReport(List<String> languages, boolean officialOnly) {
+        return rollup().getLanguageReport(languages, officialOnly);
+    }
+
+    @Override
+    public List<LanguageReport> getTopNLanguages(int n, boolean officialOnly) {
+        return rollup().getTopNLanguages(n, officialOnly);
+    }
+}
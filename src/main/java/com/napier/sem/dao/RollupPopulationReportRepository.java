@@ -0,0 +1,115 @@
+package com.napier.sem.dao;
+
+import com.napier.sem.config.DatasetVersion;
+import com.napier.sem.model.PopulationReport;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Answers every population report from one {@link PopulationRollup}, built on first use
+ * and rebuilt when the {@link DatasetVersion} changes.
+ * <p>
+ * Instead of one aggregate query per report, the rollup is computed in a single pass
+ * (see {@link PopulationReportDAO#getPopulationRollup()}), after which lookups are
+ * hash lookups and breakdowns are returned ready-sorted. Reports running while the
+ * rollup is rebuilt keep using the previous one.
+ * </p>
+ */
+public class RollupPopulationReportRepository implements PopulationReportRepository {
+    /** A rollup with the dataset version it was built from. */
+    private static final class Snapshot {
+        final long version;
+        final PopulationRollup rollup;
+
+        Snapshot(long version, PopulationRollup rollup) {
+            this.version = version;
+            this.rollup = rollup;
+        }
+    }
+
+    /** Number of rollups built since startup (all instances). */
+    private static final AtomicLong builds = new AtomicLong();
+
+    /** Computes a fresh rollup of the current data. */
+    private final Supplier<PopulationRollup> source;
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param source computes a rollup of the current data, e.g.
+     *               {@code new PopulationReportDAO(dataSource)::getPopulationRollup}
+     */
+    public RollupPopulationReportRepository(Supplier<PopulationRollup> source) {
+        this.source = source;
+    }
+
+    /** @return the rollup of the current dataset version, building it if needed */
+    PopulationRollup rollup() {
+        Snapshot current = snapshot;
+        long version = DatasetVersion.get();
+        if (current != null && current.version == version) return current.rollup;
+
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || current.version != version) {
+                // Read the version before the data: a change during the build leaves an
+                // older version on the snapshot, so the next call builds again
+                current = new Snapshot(version, source.get());
+                snapshot = current;
+                builds.incrementAndGet();
+            }
+            return current.rollup;
+        }
+    }
+
+    /** @return number of rollups built since startup */
+    public static long getBuildCount() {
+        return builds.get();
+    }
+
+    @Override
+    public Long getWorldPopulation() {
+        return rollup().getWorldPopulation();
+    }
+
+    @Override
+    public Long getContinentPopulation(String continent) {
+        return rollup().getContinentPopulation(continent);
+    }
+
+    @Override
+    public Long getRegionPopulation(String region) {
+        return rollup().getRegionPopulation(region);
+    }
+
+    @Override
+    public Long getCountryPopulation(String country) {
+        return rollup().getCountryPopulation(country);
+    }
+
+    @Override
+    public Long getDistrictPopulation(String district) {
+        return rollup().getDistrictPopulation(district);
+    }
+
+    @Override
+    public Long getCityPopulation(String city) {
+        return rollup().getCityPopulation(city);
+    }
+
+    @Override
+    public List<PopulationReport> getContinentPopulationBreakdown() {
+        return rollup().getContinentPopulationBreakdown();
+    }
+
+    @Override
+    public List<PopulationReport> getRegionPopulationBreakdown() {
+        return rollup().getRegionPopulationBreakdown();
+    }
+
+    @Override
+    public List<PopulationReport> getCountryPopulationBreakdown() {
+        return rollup().getCountryPopulationBreakdown();
+    }
+}
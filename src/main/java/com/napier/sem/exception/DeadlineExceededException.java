@@ -0,0 +1,20 @@
+package com.napier.sem.exception;
+
+/**
+ * Thrown when a request runs out of time (see {@link com.napier.sem.config.Deadline})
+ * while waiting for something other than its own query, e.g. for an identical report
+ * another request is running.
+ *
+ * <p>Queries that run out of time are cancelled by the driver and surface as a
+ * {@link DataAccessException} like any other failed query.</p>
+ */
+public class DeadlineExceededException extends RuntimeException {
+    /**
+     * Creates a new DeadlineExceededException.
+     *
+     * @param message A human-readable description of what the request was waiting for.
+     */
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
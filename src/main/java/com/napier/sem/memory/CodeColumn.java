@@ -0,0 +1,71 @@
+package com.napier.sem.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Column of country codes packed off-heap, 3 ASCII bytes per row
+ * (codes shorter than 3 characters are padded with zero bytes).
+ */
+final class CodeColumn {
+    /** Bytes per code. */
+    static final int WIDTH = 3;
+
+    private final ByteBuffer buffer;
+    private final int size;
+
+    /** Reads a column from a buffer holding its codes from position to limit. */
+    CodeColumn(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+        this.size = this.buffer.capacity() / WIDTH;
+    }
+
+    /** @return a new off-heap column holding the codes */
+    static CodeColumn of(String[] codes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(codes.length * WIDTH);
+        for (int i = 0; i < codes.length; ++i) {
+            byte[] code = codes[i].getBytes(StandardCharsets.US_ASCII);
+            if (code.length > WIDTH) throw new IllegalArgumentException("Code longer than " + WIDTH + ": " + codes[i]);
+            buffer.put(i * WIDTH, code);
+        }
+        return new CodeColumn(buffer);
+    }
+
+    /** @return the code of a row, as a new string */
+    String get(int row) {
+        int start = row * WIDTH;
+        int length = 0;
+        while (length < WIDTH && buffer.get(start + length) != 0) ++length;
+        byte[] code = new byte[length];
+        buffer.get(start, code);
+        return new String(code, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Compares the code of a row with a code, like {@link String#compareTo(String)},
+     * without creating a string.
+     *
+     * @return negative, zero or positive as the row's code is less than, equal to or greater than {@code code}
+     */
+    int compareTo(int row, String code) {
+        int start = row * WIDTH;
+        for (int k = 0; k < WIDTH; ++k) {
+            int stored = buffer.get(start + k);
+            if (stored == 0) return k - code.length();
+            if (k == code.length()) return 1;
+            int diff = stored - code.charAt(k);
+            if (diff != 0) return diff;
+        }
+        return WIDTH - code.length();
+    }
+
+    /** @return number of rows */
+    int size() {
+        return size;
+    }
+
+    /** @return a read-only view of the stored bytes */
+    ByteBuffer bytes() {
+        return buffer.asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,69 @@
+package com.napier.sem.memory;
+
+import com.napier.sem.dao.CapitalCityRepository;
+import com.napier.sem.dao.PageCursor;
+import com.napier.sem.model.CapitalCity;
+import com.napier.sem.model.Page;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Answers capital city reports from the in-memory {@link WorldDataset}
+ * with the same filtering and ordering as the queries in {@code queries.sql}.
+ * Filtered reports read the pre-sorted {@link ScopeIndex} of the requested scope.
+ */
+public class InMemoryCapitalCityRepository implements CapitalCityRepository {
+    /** Dataset the reports are answered from. */
+    private final WorldDataset dataset;
+
+    public InMemoryCapitalCityRepository(WorldDataset dataset) {
+        this.dataset = dataset;
+    }
+
+    @Override
+    public List<CapitalCity> getAllCapitalCities() {
+        WorldData w = dataset.get();
+        return w.capitals(w.capitalsByPopulation, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void streamAllCapitalCities(Consumer<CapitalCity> sink) {
+        WorldData w = dataset.get();
+        for (int c : w.capitalsByPopulation) sink.accept(w.capital(c));
+    }
+
+    @Override
+    public Page<CapitalCity> getCapitalCitiesPage(PageCursor after, int limit) {
+        WorldData w = dataset.get();
+        return w.capitalPage(w.capitalsByPopulation, after, limit);
+    }
+
+    @Override
+    public List<CapitalCity> getCapitalCitiesByContinent(String continent) {
+        return getTopNCapitalCitiesInContinent(continent, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<CapitalCity> getCapitalCitiesByRegion(String region) {
+        return getTopNCapitalCitiesInRegion(region, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<CapitalCity> getTopNCapitalCitiesInWorld(int n) {
+        WorldData w = dataset.get();
+        return w.capitals(w.capitalsByPopulation, n);
+    }
+
+    @Override
+    public List<CapitalCity> getTopNCapitalCitiesInContinent(String continent, int n) {
+        WorldData w = dataset.get();
+        return w.capitals(w.capitalsByContinent.rows(continent), n);
+    }
+
+    @Override
+    public List<CapitalCity> getTopNCapitalCitiesInRegion(String region, int n) {
+        WorldData w = dataset.get();
+        return w.capitals(w.capitalsByRegion.rows(region), n);
+    }
+}
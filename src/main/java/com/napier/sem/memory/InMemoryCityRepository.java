@@ -0,0 +1,97 @@
+package com.napier.sem.memory;
+
+import com.napier.sem.dao.CityRepository;
+import com.napier.sem.dao.PageCursor;
+import com.napier.sem.model.City;
+import com.napier.sem.model.Page;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Answers city reports from the in-memory {@link WorldDataset}
+ * with the same filtering and ordering as the queries in {@code queries.sql}.
+ * Filtered reports read the pre-sorted {@link ScopeIndex} of the requested scope.
+ */
+public class InMemoryCityRepository implements CityRepository {
+    /** Dataset the reports are answered from. */
+    private final WorldDataset dataset;
+
+    public InMemoryCityRepository(WorldDataset dataset) {
+        this.dataset = dataset;
+    }
+
+    @Override
+    public List<City> getAllCities() {
+        WorldData w = dataset.get();
+        return w.cities(w.citiesByPopulation, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void streamAllCities(Consumer<City> sink) {
+        WorldData w = dataset.get();
+        for (int i : w.citiesByPopulation) sink.accept(w.city(i));
+    }
+
+    @Override
+    public Page<City> getCitiesPage(PageCursor after, int limit) {
+        WorldData w = dataset.get();
+        return w.cityPage(w.citiesByPopulation, after, limit);
+    }
+
+    @Override
+    public Page<City> getCitiesByContinentPage(String continent, PageCursor after, int limit) {
+        WorldData w = dataset.get();
+        return w.cityPage(w.citiesByContinent.rows(continent), after, limit);
+    }
+
+    @Override
+    public List<City> getCitiesByContinent(String continent) {
+        return getTopNCitiesInContinent(continent, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<City> getCitiesByRegion(String region) {
+        return getTopNCitiesInRegion(region, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<City> getCitiesByCountry(String countryName) {
+        return getTopNCitiesInCountry(countryName, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<City> getCitiesByDistrict(String district) {
+        return getTopNCitiesInDistrict(district, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<City> getTopNCitiesInWorld(int n) {
+        WorldData w = dataset.get();
+        return w.cities(w.citiesByPopulation, n);
+    }
+
+    @Override
+    public List<City> getTopNCitiesInContinent(String continent, int n) {
+        WorldData w = dataset.get();
+        return w.cities(w.citiesByContinent.rows(continent), n);
+    }
+
+    @Override
+    public List<City> getTopNCitiesInRegion(String region, int n) {
+        WorldData w = dataset.get();
+        return w.cities(w.citiesByRegion.rows(region), n);
+    }
+
+    @Override
+    public List<City> getTopNCitiesInCountry(String countryName, int n) {
+        WorldData w = dataset.get();
+        return w.cities(w.citiesByCountry.rows(countryName), n);
+    }
+
+    @Override
+    public List<City> getTopNCitiesInDistrict(String district, int n) {
+        WorldData w = dataset.get();
+        return w.cities(w.citiesByDistrict.rows(district), n);
+    }
+}
@@ -0,0 +1,62 @@
+package com.napier.sem.memory;
+
+import com.napier.sem.dao.CountryRepository;
+import com.napier.sem.dao.PageCursor;
+import com.napier.sem.model.Country;
+import com.napier.sem.model.Page;
+
+import java.util.List;
+
+/**
+ * Answers country reports from the in-memory {@link WorldDataset}
+ * with the same filtering and ordering as the queries in {@code queries.sql}.
+ * Filtered reports read the pre-sorted {@link ScopeIndex} of the requested scope.
+ */
+public class InMemoryCountryRepository implements CountryRepository {
+    /** Dataset the reports are answered from. */
+    private final WorldDataset dataset;
+
+    public InMemoryCountryRepository(WorldDataset dataset) {
+        this.dataset = dataset;
+    }
+
+    @Override
+    public List<Country> getAllCountries() {
+        WorldData w = dataset.get();
+        return w.countries(w.countriesByPopulation, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Page<Country> getCountriesPage(PageCursor after, int limit) {
+        WorldData w = dataset.get();
+        return w.countryPage(w.countriesByPopulation, after, limit);
+    }
+
+    @Override
+    public List<Country> getCountriesByContinent(String continent) {
+        return getTopNCountriesInContinent(continent, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Country> getCountriesByRegion(String region) {
+        return getTopNCountriesInRegion(region, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Country> getTopNCountriesInWorld(int n) {
+        WorldData w = dataset.get();
+        return w.countries(w.countriesByPopulation, n);
+    }
+
+    @Override
+    public List<Country> getTopNCountriesInContinent(String continent, int n) {
+        WorldData w = dataset.get();
+        return w.countries(w.countriesByContinent.rows(continent), n);
+    }
+
+    @Override
+    public List<Country> getTopNCountriesInRegion(String region, int n) {
+        WorldData w = dataset.get();
+        return w.countries(w.countriesByRegion.rows(region), n);
+    }
+}
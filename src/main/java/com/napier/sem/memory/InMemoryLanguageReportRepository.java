@@ -0,0 +1,38 @@
+package com.napier.sem.memory;
+
+import com.napier.sem.dao.LanguageReportRepository;
+import com.napier.sem.model.LanguageReport;
+
+import java.util.List;
+
+/**
+ * Answers the language reports from the in-memory {@link WorldDataset}.
+ * <p>
+ * Each report adds up the speakers of every language in one pass over the language
+ * rows ({@link WorldData#languageRollup()}), in exact arithmetic and rounded the same
+ * way as the {@code language_breakdown} query, so both backends return identical numbers.
+ * </p>
+ */
+public class InMemoryLanguageReportRepository implements LanguageReportRepository {
+    /** Dataset the reports are answered from. */
+    private final WorldDataset dataset;
+
+    public InMemoryLanguageReportRepository(WorldDataset dataset) {
+        this.dataset = dataset;
+    }
+
+    @Override
+    public List<LanguageReport> getLanguagePopulationReport() {
+        return dataset.get().languageRollup().getLanguagePopulationReport();
+    }
+
+    @Override
+    public List<LanguageReport> getLanguageReport(List<String> languages, boolean officialOnly) {
+        return dataset.get().languageRollup().getLanguageReport(languages, officialOnly);
+    }
+
+    @Override
+    public List<LanguageReport> getTopNLanguages(int n, boolean officialOnly) {
+        return dataset.get().languageRollup().getTopNLanguages(n, officialOnly);
+    }
+}
@@ -0,0 +1,164 @@
+package com.napier.sem.memory;
+
+import com.napier.sem.dao.PopulationReportRepository;
+import com.napier.sem.model.PopulationReport;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+import static com.napier.sem.memory.WorldData.matches;
+
+/**
+ * Answers population reports from the in-memory {@link WorldDataset}.
+ * <p>
+ * Results follow the SQL semantics of the population queries: sums over no rows are
+ * {@code null}, and a breakdown group whose countries have no cities reports zero
+ * city and non-city population.
+ * </p>
+ */
+public class InMemoryPopulationReportRepository implements PopulationReportRepository {
+    /** Order of continents and regions with equal totals, as the MySQL server returns them. */
+    private static final Comparator<PopulationReport> BY_NAME_DESCENDING =
+            Comparator.comparing(PopulationReport::getName, Comparator.reverseOrder());
+
+    /** Dataset the reports are answered from. */
+    private final WorldDataset dataset;
+
+    public InMemoryPopulationReportRepository(WorldDataset dataset) {
+        this.dataset = dataset;
+    }
+
+    @Override
+    public Long getWorldPopulation() {
+        WorldData w = dataset.get();
+        return sumCountries(w, c -> true);
+    }
+
+    @Override
+    public Long getContinentPopulation(String continent) {
+        WorldData w = dataset.get();
+        String name = trim(continent);
+        return sumCountries(w, c -> matches(w.continent(c), name));
+    }
+
+    @Override
+    public Long getRegionPopulation(String region) {
+        WorldData w = dataset.get();
+        String name = trim(region);
+        return sumCountries(w, c -> matches(w.region(c), name));
+    }
+
+    @Override
+    public Long getCountryPopulation(String country) {
+        WorldData w = dataset.get();
+        String name = trim(country);
+        for (int c = 0; c < w.countryName.size(); ++c) {
+            if (matches(w.countryName(c), name)) return (long) w.countryPopulation.get(c);
+        }
+        return null;
+    }
+
+    @Override
+    public Long getDistrictPopulation(String district) {
+        WorldData w = dataset.get();
+        String name = trim(district);
+        Long total = null;
+        for (int i = 0; i < w.cityDistrict.size(); ++i) {
+            if (matches(w.district(i), name)) total = (total == null ? 0 : total) + w.cityPopulation.get(i);
+        }
+        return total;
+    }
+
+    @Override
+    public Long getCityPopulation(String city) {
+        WorldData w = dataset.get();
+        String name = trim(city);
+        // Compares the stored bytes, so the scan creates no strings
+        for (int i = 0; i < w.cityName.size(); ++i) {
+            if (w.cityName.equalsIgnoreCase(i, name)) return (long) w.cityPopulation.get(i);
+        }
+        return null;
+    }
+
+    @Override
+    public List<PopulationReport> getContinentPopulationBreakdown() {
+        WorldData w = dataset.get();
+        return breakdown(w, w::continent, BY_NAME_DESCENDING);
+    }
+
+    @Override
+    public List<PopulationReport> getRegionPopulationBreakdown() {
+        WorldData w = dataset.get();
+        return breakdown(w, w::region, BY_NAME_DESCENDING);
+    }
+
+    @Override
+    public List<PopulationReport> getCountryPopulationBreakdown() {
+        WorldData w = dataset.get();
+        // Countries are kept in code order, so equal totals stay ordered by their first code
+        return breakdown(w, w::countryName, (a, b) -> 0);
+    }
+
+    // -------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------
+
+    /** Sums the population of the matching countries, or returns null if none match. */
+    private static Long sumCountries(WorldData w, IntPredicate filter) {
+        Long total = null;
+        for (int c = 0; c < w.countryPopulation.size(); ++c) {
+            if (filter.test(c)) total = (total == null ? 0 : total) + w.countryPopulation.get(c);
+        }
+        return total;
+    }
+
+    /**
+     * Groups countries by the given key and reports total, city and non-city population
+     * per group, ordered by total population (descending), then as {@code ties} orders them.
+     */
+    private static List<PopulationReport> breakdown(WorldData w, IntFunction<String> groupOf,
+                                                    Comparator<PopulationReport> ties) {
+        // Population living in cities per country (null when the country has no cities)
+        Long[] cityTotals = new Long[w.countryCode.size()];
+        for (int i = 0; i < w.cityCountry.size(); ++i) {
+            int c = w.cityCountry.get(i);
+            if (c >= 0) cityTotals[c] = (cityTotals[c] == null ? 0 : cityTotals[c]) + w.cityPopulation.get(i);
+        }
+
+        // LinkedHashMap keeps first-seen (country code) order
+        Map<String, long[]> groups = new LinkedHashMap<>();
+        Map<String, Boolean> hasCities = new LinkedHashMap<>();
+        for (int c = 0; c < w.countryCode.size(); ++c) {
+            String key = groupOf.apply(c);
+            long[] sums = groups.computeIfAbsent(key, k -> new long[2]);
+            sums[0] += w.countryPopulation.get(c);
+            if (cityTotals[c] != null) {
+                sums[1] += cityTotals[c];
+                hasCities.put(key, true);
+            }
+        }
+
+        List<PopulationReport> reports = new ArrayList<>();
+        for (Map.Entry<String, long[]> group : groups.entrySet()) {
+            long total = group.getValue()[0];
+            if (hasCities.containsKey(group.getKey())) {
+                long inCities = group.getValue()[1];
+                reports.add(new PopulationReport(group.getKey(), total, inCities, total - inCities));
+            } else {
+                // SUM over no cities is NULL in SQL, and so is the non-city difference
+                reports.add(new PopulationReport(group.getKey(), total, 0, 0));
+            }
+        }
+        reports.sort(Comparator.comparingLong(PopulationReport::getTotalPopulation).reversed().thenComparing(ties));
+        return reports;
+    }
+
+    private static String trim(String value) {
+        return value == null ? null : value.trim();
+    }
+}
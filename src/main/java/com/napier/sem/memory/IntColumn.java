@@ -0,0 +1,47 @@
+package com.napier.sem.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Column of ints stored off-heap, in a direct {@link ByteBuffer} (4 bytes per row,
+ * native byte order).
+ * <p>
+ * The garbage collector sees one small buffer object per column instead of a large
+ * array, whatever the number of rows, and the same class can read a column from any
+ * buffer, e.g. a memory-mapped file. Reads use absolute positions, so a column can be
+ * shared between threads.
+ * </p>
+ */
+final class IntColumn {
+    private final ByteBuffer buffer;
+    private final int size;
+
+    /** Reads a column from a buffer holding its values from position to limit. */
+    IntColumn(ByteBuffer buffer) {
+        this.buffer = buffer.slice().order(ByteOrder.nativeOrder());
+        this.size = this.buffer.capacity() / Integer.BYTES;
+    }
+
+    /** @return a new off-heap column holding the values */
+    static IntColumn of(int[] values) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(values.length * Integer.BYTES).order(ByteOrder.nativeOrder());
+        buffer.asIntBuffer().put(values);
+        return new IntColumn(buffer);
+    }
+
+    /** @return the value of a row */
+    int get(int row) {
+        return buffer.getInt(row * Integer.BYTES);
+    }
+
+    /** @return number of rows */
+    int size() {
+        return size;
+    }
+
+    /** @return a read-only view of the stored bytes */
+    ByteBuffer bytes() {
+        return buffer.asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,73 @@
+package com.napier.sem.memory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Rows grouped by a scope name (continent, region, country or district), with each
+ * group kept in population order (most populated first).
+ * <p>
+ * Built once from an ordering that is already sorted by population, so a top-N report
+ * for one scope is a copy of the first N entries of its group instead of a scan and
+ * sort of the whole table. Names are looked up ignoring case, like the database does.
+ * </p>
+ */
+final class ScopeIndex {
+    private static final int[] NONE = new int[0];
+
+    /** Lower-cased scope name to its rows, most populated first. */
+    private final Map<String, int[]> groups;
+
+    private ScopeIndex(Map<String, int[]> groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * Groups rows by scope name, keeping the order of {@code sortedRows} within each group.
+     *
+     * @param sortedRows rows already ordered by population (descending)
+     * @param scopeOf    scope name of a row; rows with a null name are left out
+     */
+    static ScopeIndex build(int[] sortedRows, IntFunction<String> scopeOf) {
+        Map<String, int[]> groups = new HashMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        for (int row : sortedRows) {
+            String key = key(scopeOf.apply(row));
+            if (key == null) continue;
+            int size = sizes.getOrDefault(key, 0);
+            int[] group = groups.get(key);
+            if (group == null) {
+                group = new int[4];
+            } else if (size == group.length) {
+                group = Arrays.copyOf(group, size * 2);
+            }
+            group[size] = row;
+            groups.put(key, group);
+            sizes.put(key, size + 1);
+        }
+        groups.replaceAll((key, group) -> Arrays.copyOf(group, sizes.get(key)));
+        return new ScopeIndex(groups);
+    }
+
+    /**
+     * @param name scope name as given by the user (any case)
+     * @return rows in that scope, most populated first; empty if the name is unknown.
+     *         The array is shared and must not be modified.
+     */
+    int[] rows(String name) {
+        String key = key(name);
+        return key == null ? NONE : groups.getOrDefault(key, NONE);
+    }
+
+    /** @return number of distinct scope names */
+    int size() {
+        return groups.size();
+    }
+
+    private static String key(String name) {
+        return name == null ? null : name.toLowerCase(Locale.ROOT);
+    }
+}
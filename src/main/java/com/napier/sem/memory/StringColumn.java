@@ -0,0 +1,116 @@
+package com.napier.sem.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Column of strings stored off-heap as UTF-8 bytes, one after another, with an
+ * {@link IntColumn} of offsets ({@code size + 1} entries; row {@code i} is the bytes
+ * from {@code offsets[i]} to {@code offsets[i + 1]}).
+ * <p>
+ * A {@link String} is only created for rows a report returns ({@link #get(int)});
+ * scans compare the stored bytes directly ({@link #equalsIgnoreCase(int, String)}).
+ * Null values are not supported.
+ * </p>
+ */
+final class StringColumn {
+    private final IntColumn offsets;
+    private final ByteBuffer bytes;
+
+    /** Reads a column from its offsets and the buffer holding its bytes from position to limit. */
+    StringColumn(IntColumn offsets, ByteBuffer bytes) {
+        this.offsets = offsets;
+        this.bytes = bytes.slice();
+    }
+
+    /** @return a new off-heap column holding the values */
+    static StringColumn of(String[] values) {
+        byte[][] encoded = new byte[values.length][];
+        int[] offsets = new int[values.length + 1];
+        for (int i = 0; i < values.length; ++i) {
+            if (values[i] == null) throw new IllegalArgumentException("Null value in row " + i);
+            encoded[i] = values[i].getBytes(StandardCharsets.UTF_8);
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+        }
+        ByteBuffer bytes = ByteBuffer.allocateDirect(offsets[values.length]);
+        for (byte[] value : encoded) bytes.put(value);
+        bytes.flip();
+        return new StringColumn(IntColumn.of(offsets), bytes);
+    }
+
+    /** @return the value of a row, as a new string */
+    String get(int row) {
+        int start = offsets.get(row);
+        byte[] value = new byte[offsets.get(row + 1) - start];
+        bytes.get(start, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /** @return number of rows */
+    int size() {
+        return offsets.size() - 1;
+    }
+
+    /**
+     * Compares a row with a string the way {@link String#equalsIgnoreCase(String)} does,
+     * decoding the stored bytes on the fly instead of creating a string.
+     *
+     * @param row  row to compare
+     * @param name string to compare it with, or null (never equal)
+     * @return true if they are equal ignoring case
+     */
+    boolean equalsIgnoreCase(int row, String name) {
+        if (name == null) return false;
+        int pos = offsets.get(row);
+        int end = offsets.get(row + 1);
+        int length = name.length();
+        // Each char takes 1 to 3 bytes in UTF-8 (a surrogate pair takes 4)
+        if (end - pos < length || end - pos > 3 * length) return false;
+
+        int k = 0;
+        while (pos < end) {
+            int b = bytes.get(pos) & 0xff;
+            int codePoint;
+            if (b < 0x80) {
+                codePoint = b;
+                pos += 1;
+            } else if (b < 0xe0) {
+                codePoint = ((b & 0x1f) << 6) | (bytes.get(pos + 1) & 0x3f);
+                pos += 2;
+            } else if (b < 0xf0) {
+                codePoint = ((b & 0x0f) << 12) | ((bytes.get(pos + 1) & 0x3f) << 6) | (bytes.get(pos + 2) & 0x3f);
+                pos += 3;
+            } else {
+                codePoint = ((b & 0x07) << 18) | ((bytes.get(pos + 1) & 0x3f) << 12)
+                        | ((bytes.get(pos + 2) & 0x3f) << 6) | (bytes.get(pos + 3) & 0x3f);
+                pos += 4;
+            }
+            if (Character.isBmpCodePoint(codePoint)) {
+                if (k >= length || !sameIgnoringCase((char) codePoint, name.charAt(k))) return false;
+                k += 1;
+            } else {
+                if (k + 1 >= length || name.codePointAt(k) != codePoint) return false;
+                k += 2;
+            }
+        }
+        return k == length;
+    }
+
+    /** Compares two chars like {@link String#equalsIgnoreCase(String)}. */
+    private static boolean sameIgnoringCase(char a, char b) {
+        if (a == b) return true;
+        char upperA = Character.toUpperCase(a);
+        char upperB = Character.toUpperCase(b);
+        return upperA == upperB || Character.toLowerCase(upperA) == Character.toLowerCase(upperB);
+    }
+
+    /** @return the offsets of the rows' bytes */
+    IntColumn offsets() {
+        return offsets;
+    }
+
+    /** @return a read-only view of the stored bytes */
+    ByteBuffer bytes() {
+        return bytes.asReadOnlyBuffer();
+    }
+}
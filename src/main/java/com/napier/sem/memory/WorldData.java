@@ -0,0 +1,477 @@
+package com.napier.sem.memory;
+
+import com.napier.sem.dao.LanguageRollup;
+import com.napier.sem.dao.NameDictionary;
+import com.napier.sem.dao.PageCursor;
+import com.napier.sem.dao.PopulationRollup;
+import com.napier.sem.model.CapitalCity;
+import com.napier.sem.model.City;
+import com.napier.sem.model.Country;
+import com.napier.sem.model.Page;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Immutable in-memory copy of the {@code world} database
+ * ({@code city}, {@code country} and {@code countrylanguage} tables).
+ * <p>
+ * Each table is stored column by column in parallel columns indexed by row number,
+ * and references between tables (a city's country, a country's capital) are stored
+ * as row numbers instead of codes and IDs. Names that repeat across rows (continent,
+ * region, country, district) are stored as {@link NameDictionary} IDs, so each distinct
+ * name is held once. Report objects such as {@link City} are only created for the rows
+ * a report actually returns.
+ * </p>
+ * <p>
+ * The city and country columns live off-heap ({@link IntColumn}, {@link StringColumn},
+ * {@link CodeColumn}): however many cities are loaded, the garbage collector only sees
+ * a few buffer objects, so its pauses do not grow with the data. Scans and aggregations
+ * read the columns directly without creating objects. The small language table and the
+ * derived orderings stay in plain arrays, which the collector does not need to trace.
+ * </p>
+ * <p>
+ * Cities, countries and capitals are also indexed by continent, region, country and
+ * district ({@link ScopeIndex}), so a report for one scope only touches the rows it
+ * returns. The indexes are built together with the data, so replacing the snapshot
+ * in {@link WorldDataset} swaps data and indexes in one step.
+ * </p>
+ * <p>
+ * Instances are built with {@link Builder} and never change afterwards, so they can
+ * be shared freely between threads.
+ * </p>
+ */
+public final class WorldData {
+    // --- city table (off-heap) ---
+    final IntColumn cityId;
+    final StringColumn cityName;
+    /** Row of the city's country, or -1 if its country code is unknown. */
+    final IntColumn cityCountry;
+    /** {@link NameDictionary#DISTRICTS} ID of the city's district. */
+    final IntColumn cityDistrict;
+    final IntColumn cityPopulation;
+
+    // --- country table (off-heap) ---
+    final CodeColumn countryCode;
+    /** {@link NameDictionary#COUNTRIES} ID of the country's name. */
+    final IntColumn countryName;
+    /** {@link NameDictionary#CONTINENTS} ID of the country's continent. */
+    final IntColumn countryContinent;
+    /** {@link NameDictionary#REGIONS} ID of the country's region. */
+    final IntColumn countryRegion;
+    final IntColumn countryPopulation;
+    /** Row of the country's capital city, or -1 if it has none. */
+    final IntColumn countryCapital;
+
+    // --- countrylanguage table ---
+    final int[] languageCountry;
+    final String[] languageName;
+    final boolean[] languageOfficial;
+    /** Percentage of the country speaking the language, in tenths of a percent (exact). */
+    final int[] languagePercentTenths;
+
+    // --- derived orderings (most populated first, then by city ID / country code) ---
+    /** Cities that belong to a known country. */
+    final int[] citiesByPopulation;
+    /** Countries that have a capital city. */
+    final int[] countriesByPopulation;
+    /** Countries that have a capital city, ordered by the capital's population. */
+    final int[] capitalsByPopulation;
+
+    // --- per-scope indexes over the orderings above ---
+    final ScopeIndex citiesByContinent;
+    final ScopeIndex citiesByRegion;
+    final ScopeIndex citiesByCountry;
+    final ScopeIndex citiesByDistrict;
+    final ScopeIndex countriesByContinent;
+    final ScopeIndex countriesByRegion;
+    final ScopeIndex capitalsByContinent;
+    final ScopeIndex capitalsByRegion;
+
+    /**
+     * Creates a dataset from its columns and computes the orderings and indexes.
+     * The columns must be consistent with each other (same number of rows per table,
+     * references within range); they are used as they are, not copied.
+     */
+    WorldData(IntColumn cityId, StringColumn cityName, IntColumn cityCountry, IntColumn cityDistrict,
+              IntColumn cityPopulation, CodeColumn countryCode, IntColumn countryName, IntColumn countryContinent,
+              IntColumn countryRegion, IntColumn countryPopulation, IntColumn countryCapital,
+              int[] languageCountry, String[] languageName, boolean[] languageOfficial, int[] languagePercentTenths) {
+        this.cityId = cityId;
+        this.cityName = cityName;
+        this.cityCountry = cityCountry;
+        this.cityDistrict = cityDistrict;
+        this.cityPopulation = cityPopulation;
+        this.countryCode = countryCode;
+        this.countryName = countryName;
+        this.countryContinent = countryContinent;
+        this.countryRegion = countryRegion;
+        this.countryPopulation = countryPopulation;
+        this.countryCapital = countryCapital;
+        this.languageCountry = languageCountry;
+        this.languageName = languageName;
+        this.languageOfficial = languageOfficial;
+        this.languagePercentTenths = languagePercentTenths;
+
+        int cities = cityId.size();
+        int countries = countryCode.size();
+        citiesByPopulation = sortByPopulation(rows(cities, i -> cityCountry.get(i) >= 0), cityPopulation);
+        int[] withCapital = rows(countries, c -> countryCapital.get(c) >= 0);
+        countriesByPopulation = sortByPopulation(withCapital, countryPopulation);
+        // Capitals with equal population are ordered by city ID, like the capital page query
+        capitalsByPopulation = Arrays.stream(withCapital).boxed()
+                .sorted(Comparator.<Integer>comparingInt(c -> -cityPopulation.get(countryCapital.get(c)))
+                        .thenComparingInt(countryCapital::get))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        citiesByContinent = ScopeIndex.build(citiesByPopulation, i -> continent(cityCountry.get(i)));
+        citiesByRegion = ScopeIndex.build(citiesByPopulation, i -> region(cityCountry.get(i)));
+        citiesByCountry = ScopeIndex.build(citiesByPopulation, i -> countryName(cityCountry.get(i)));
+        citiesByDistrict = ScopeIndex.build(citiesByPopulation, this::district);
+        countriesByContinent = ScopeIndex.build(countriesByPopulation, this::continent);
+        countriesByRegion = ScopeIndex.build(countriesByPopulation, this::region);
+        capitalsByContinent = ScopeIndex.build(capitalsByPopulation, this::continent);
+        capitalsByRegion = ScopeIndex.build(capitalsByPopulation, this::region);
+    }
+
+    /** @return number of rows in the city table */
+    public int getCityCount() {
+        return cityId.size();
+    }
+
+    /** @return number of rows in the country table */
+    public int getCountryCount() {
+        return countryCode.size();
+    }
+
+    /** @return number of rows in the countrylanguage table */
+    public int getLanguageCount() {
+        return languageName.length;
+    }
+
+    /** @return the population of every continent, region, country and district, added up in one pass */
+    public PopulationRollup populationRollup() {
+        PopulationRollup.Builder rollup = new PopulationRollup.Builder();
+        String[] codes = new String[countryCode.size()];
+        for (int c = 0; c < codes.length; ++c) {
+            codes[c] = countryCode.get(c);
+            rollup.addCountry(codes[c], countryName(c), continent(c), region(c), countryPopulation.get(c));
+        }
+        for (int i = 0; i < cityId.size(); ++i) {
+            int c = cityCountry.get(i);
+            rollup.addCity(cityId.get(i), c < 0 ? null : codes[c], cityName.get(i), district(i), cityPopulation.get(i));
+        }
+        return rollup.build();
+    }
+
+    /** @return the speakers of every language, official and not, added up in one pass */
+    public LanguageRollup languageRollup() {
+        LanguageRollup.Builder rollup = new LanguageRollup.Builder();
+        for (int c = 0; c < countryPopulation.size(); ++c) rollup.addPopulation(countryPopulation.get(c));
+        for (int l = 0; l < languageName.length; ++l) {
+            rollup.addLanguage(languageName[l], languageOfficial[l],
+                    countryPopulation.get(languageCountry[l]), languagePercentTenths[l]);
+        }
+        return rollup.build();
+    }
+
+    /** @return the district name of a city row */
+    String district(int i) {
+        return NameDictionary.DISTRICTS.name(cityDistrict.get(i));
+    }
+
+    /** @return the name of a country row */
+    String countryName(int c) {
+        return NameDictionary.COUNTRIES.name(countryName.get(c));
+    }
+
+    /** @return the continent name of a country row */
+    String continent(int c) {
+        return NameDictionary.CONTINENTS.name(countryContinent.get(c));
+    }
+
+    /** @return the region name of a country row */
+    String region(int c) {
+        return NameDictionary.REGIONS.name(countryRegion.get(c));
+    }
+
+    // -------------------------------------------------------
+    // Report object creation
+    // -------------------------------------------------------
+
+    /** Creates the {@link City} report object for a city row. */
+    City city(int i) {
+        return new City(cityName.get(i), countryName(cityCountry.get(i)), district(i), cityPopulation.get(i));
+    }
+
+    /** Creates the {@link Country} report object for a country row that has a capital. */
+    Country country(int c) {
+        return new Country(countryCode.get(c), countryName(c), continent(c), region(c),
+                countryPopulation.get(c), cityName.get(countryCapital.get(c)));
+    }
+
+    /** Creates the {@link CapitalCity} report object for the capital of a country row. */
+    CapitalCity capital(int c) {
+        int i = countryCapital.get(c);
+        return new CapitalCity(cityName.get(i), countryName(c), cityPopulation.get(i));
+    }
+
+    /** Creates report objects for the first {@code limit} city rows of an ordering. */
+    List<City> cities(int[] rows, int limit) {
+        int size = Math.max(0, Math.min(limit, rows.length));
+        List<City> out = new ArrayList<>(size);
+        for (int k = 0; k < size; ++k) out.add(city(rows[k]));
+        return out;
+    }
+
+    /** Creates report objects for the first {@code limit} country rows of an ordering. */
+    List<Country> countries(int[] rows, int limit) {
+        int size = Math.max(0, Math.min(limit, rows.length));
+        List<Country> out = new ArrayList<>(size);
+        for (int k = 0; k < size; ++k) out.add(country(rows[k]));
+        return out;
+    }
+
+    /** Creates capital report objects for the first {@code limit} country rows of an ordering. */
+    List<CapitalCity> capitals(int[] rows, int limit) {
+        int size = Math.max(0, Math.min(limit, rows.length));
+        List<CapitalCity> out = new ArrayList<>(size);
+        for (int k = 0; k < size; ++k) out.add(capital(rows[k]));
+        return out;
+    }
+
+    /** Builds one page of cities from an ordering of city rows, starting after the cursor. */
+    Page<City> cityPage(int[] rows, PageCursor after, int limit) {
+        long population = after.getPopulation();
+        int id = after.getIntKey();
+        int start = firstAfter(rows, i -> cityPopulation.get(i) > population
+                || (cityPopulation.get(i) == population && cityId.get(i) <= id));
+        int end = (int) Math.min((long) start + limit, rows.length);
+        List<City> items = cities(Arrays.copyOfRange(rows, start, end), limit);
+        String next = null;
+        if (end < rows.length && end > start) {
+            int last = rows[end - 1];
+            next = new PageCursor(cityPopulation.get(last), String.valueOf(cityId.get(last))).encode();
+        }
+        return new Page<>(items, next);
+    }
+
+    /** Builds one page of countries from an ordering of country rows, starting after the cursor. */
+    Page<Country> countryPage(int[] rows, PageCursor after, int limit) {
+        long population = after.getPopulation();
+        String code = after.getKey();
+        int start = firstAfter(rows, c -> countryPopulation.get(c) > population
+                || (countryPopulation.get(c) == population && countryCode.compareTo(c, code) <= 0));
+        int end = (int) Math.min((long) start + limit, rows.length);
+        List<Country> items = countries(Arrays.copyOfRange(rows, start, end), limit);
+        String next = null;
+        if (end < rows.length && end > start) {
+            int last = rows[end - 1];
+            next = new PageCursor(countryPopulation.get(last), countryCode.get(last)).encode();
+        }
+        return new Page<>(items, next);
+    }
+
+    /** Builds one page of capitals from an ordering of country rows, starting after the cursor. */
+    Page<CapitalCity> capitalPage(int[] rows, PageCursor after, int limit) {
+        long population = after.getPopulation();
+        int id = after.getIntKey();
+        int start = firstAfter(rows, c -> cityPopulation.get(countryCapital.get(c)) > population
+                || (cityPopulation.get(countryCapital.get(c)) == population && cityId.get(countryCapital.get(c)) <= id));
+        int end = (int) Math.min((long) start + limit, rows.length);
+        List<CapitalCity> items = capitals(Arrays.copyOfRange(rows, start, end), limit);
+        String next = null;
+        if (end < rows.length && end > start) {
+            int last = countryCapital.get(rows[end - 1]);
+            next = new PageCursor(cityPopulation.get(last), String.valueOf(cityId.get(last))).encode();
+        }
+        return new Page<>(items, next);
+    }
+
+    // -------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------
+
+    /**
+     * Binary search in an ordering for the first row that comes after a page cursor.
+     *
+     * @param rows        an ordering (most populated first, then by key)
+     * @param atOrBefore  whether a row is at or before the cursor; true for a prefix of {@code rows}
+     * @return index in {@code rows} where the next page starts
+     */
+    static int firstAfter(int[] rows, IntPredicate atOrBefore) {
+        int lo = 0;
+        int hi = rows.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (atOrBefore.test(rows[mid])) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Compares a stored value with a user-supplied name the way the database does
+     * (MySQL's default collation ignores case).
+     */
+    static boolean matches(String value, String name) {
+        return value != null && value.equalsIgnoreCase(name);
+    }
+
+    /** Returns the rows {@code 0..count-1} that satisfy the filter, in row order. */
+    static int[] rows(int count, IntPredicate filter) {
+        int[] out = new int[count];
+        int size = 0;
+        for (int i = 0; i < count; ++i) {
+            if (filter.test(i)) out[size++] = i;
+        }
+        return Arrays.copyOf(out, size);
+    }
+
+    /**
+     * Orders rows by population (descending). Rows with equal population keep their
+     * table order, so results are deterministic.
+     */
+    static int[] sortByPopulation(int[] rows, IntColumn population) {
+        // Pack (inverted population, row) into one long so a primitive sort does the work
+        long[] keys = new long[rows.length];
+        for (int k = 0; k < rows.length; ++k) {
+            keys[k] = ((long) (Integer.MAX_VALUE - population.get(rows[k])) << 32) | rows[k];
+        }
+        Arrays.sort(keys);
+        int[] out = new int[rows.length];
+        for (int k = 0; k < keys.length; ++k) {
+            out[k] = (int) keys[k];
+        }
+        return out;
+    }
+
+    // -------------------------------------------------------
+    // Builder
+    // -------------------------------------------------------
+
+    private record CityRow(int id, String name, String countryCode, String district, int population) { }
+
+    private record CountryRow(String code, String name, String continent, String region,
+                              int population, Integer capitalId) { }
+
+    private record LanguageRow(String countryCode, String language, boolean official, int percentTenths) { }
+
+    /**
+     * Collects table rows in any order and builds an immutable {@link WorldData}.
+     * Rows referring to unknown countries are kept but left out of reports,
+     * just like the inner joins in {@code queries.sql}.
+     */
+    public static final class Builder {
+        private final List<CityRow> cities = new ArrayList<>();
+        private final List<CountryRow> countries = new ArrayList<>();
+        private final List<LanguageRow> languages = new ArrayList<>();
+
+        /** Adds a row of the {@code city} table. */
+        public Builder addCity(int id, String name, String countryCode, String district, int population) {
+            cities.add(new CityRow(id, name, countryCode, district, population));
+            return this;
+        }
+
+        /** Adds a row of the {@code country} table; {@code capitalId} may be null. */
+        public Builder addCountry(String code, String name, String continent, String region,
+                                  int population, Integer capitalId) {
+            countries.add(new CountryRow(code, name, continent, region, population, capitalId));
+            return this;
+        }
+
+        /** Adds a row of the {@code countrylanguage} table. */
+        public Builder addLanguage(String countryCode, String language, boolean official, double percentage) {
+            languages.add(new LanguageRow(countryCode, language, official, (int) Math.round(percentage * 10)));
+            return this;
+        }
+
+        /** Adds the rows collected by another builder, e.g. one that read another part of a dump. */
+        Builder addAll(Builder other) {
+            cities.addAll(other.cities);
+            countries.addAll(other.countries);
+            languages.addAll(other.languages);
+            return this;
+        }
+
+        /**
+         * Builds the dataset. Rows are stored in primary key order (city ID, country code)
+         * whatever order they were added in, so rows with equal population are ordered
+         * the same way as in the database's keyset pagination queries.
+         *
+         * @return the immutable dataset
+         */
+        public WorldData build() {
+            cities.sort(Comparator.comparingInt(CityRow::id));
+            countries.sort(Comparator.comparing(CountryRow::code));
+            Map<String, Integer> countryRows = new HashMap<>();
+            for (int c = 0; c < countries.size(); ++c) {
+                countryRows.put(countries.get(c).code, c);
+            }
+            return fromRows(countryRows);
+        }
+
+        /** Turns the collected rows into columns, with references stored as row numbers. */
+        private WorldData fromRows(Map<String, Integer> countryRows) {
+            int[] ids = new int[cities.size()];
+            String[] names = new String[cities.size()];
+            int[] countryOf = new int[cities.size()];
+            int[] districts = new int[cities.size()];
+            int[] populations = new int[cities.size()];
+            Map<Integer, Integer> cityRows = new HashMap<>();
+            for (int i = 0; i < cities.size(); ++i) {
+                CityRow r = cities.get(i);
+                ids[i] = r.id;
+                names[i] = r.name;
+                countryOf[i] = countryRows.getOrDefault(r.countryCode, -1);
+                districts[i] = NameDictionary.DISTRICTS.id(r.district);
+                populations[i] = r.population;
+                cityRows.put(r.id, i);
+            }
+
+            String[] codes = new String[countries.size()];
+            int[] countryNames = new int[countries.size()];
+            int[] continents = new int[countries.size()];
+            int[] regions = new int[countries.size()];
+            int[] countryPopulations = new int[countries.size()];
+            int[] capitals = new int[countries.size()];
+            for (int c = 0; c < countries.size(); ++c) {
+                CountryRow r = countries.get(c);
+                codes[c] = r.code;
+                countryNames[c] = NameDictionary.COUNTRIES.id(r.name);
+                continents[c] = NameDictionary.CONTINENTS.id(r.continent);
+                regions[c] = NameDictionary.REGIONS.id(r.region);
+                countryPopulations[c] = r.population;
+                capitals[c] = r.capitalId == null ? -1 : cityRows.getOrDefault(r.capitalId, -1);
+            }
+
+            List<LanguageRow> known = new ArrayList<>();
+            for (LanguageRow r : languages) {
+                if (countryRows.containsKey(r.countryCode)) known.add(r);
+            }
+            int[] languageCountry = new int[known.size()];
+            String[] languageName = new String[known.size()];
+            boolean[] languageOfficial = new boolean[known.size()];
+            int[] languagePercentTenths = new int[known.size()];
+            for (int l = 0; l < known.size(); ++l) {
+                LanguageRow r = known.get(l);
+                languageCountry[l] = countryRows.get(r.countryCode);
+                languageName[l] = r.language;
+                languageOfficial[l] = r.official;
+                languagePercentTenths[l] = r.percentTenths;
+            }
+
+            return new WorldData(IntColumn.of(ids), StringColumn.of(names), IntColumn.of(countryOf),
+                    IntColumn.of(districts), IntColumn.of(populations), CodeColumn.of(codes),
+                    IntColumn.of(countryNames), IntColumn.of(continents), IntColumn.of(regions),
+                    IntColumn.of(countryPopulations), IntColumn.of(capitals),
+                    languageCountry, languageName, languageOfficial, languagePercentTenths);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.napier.sem.memory;
+
+import com.napier.sem.config.StatementCache;
+import com.napier.sem.exception.DataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads the {@code city}, {@code country} and {@code countrylanguage} tables
+ * from the database into a {@link WorldData} snapshot.
+ * <p>
+ * The tables are read with the {@code dataset_*} queries from {@code queries.sql}
+ * on a single connection, one full scan per table.
+ * </p>
+ */
+public class WorldDataLoader {
+    /** Pool from which the connection used for loading is borrowed. */
+    private final DataSource dataSource;
+
+    public WorldDataLoader(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Loads the whole world dataset.
+     *
+     * @return an immutable snapshot of the three tables
+     */
+    public WorldData load() {
+        WorldData.Builder builder = new WorldData.Builder();
+
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement stmt = StatementCache.prepare(conn, "dataset_countries");
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int capital = rs.getInt("Capital");
+                    builder.addCountry(
+                            rs.getString("Code"),
+                            rs.getString("Name"),
+                            rs.getString("Continent"),
+                            rs.getString("Region"),
+                            rs.getInt("Population"),
+                            rs.wasNull() ? null : capital);
+                }
+            }
+
+            try (PreparedStatement stmt = StatementCache.prepare(conn, "dataset_cities");
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    builder.addCity(
+                            rs.getInt("ID"),
+                            rs.getString("Name"),
+                            rs.getString("CountryCode"),
+                            rs.getString("District"),
+                            rs.getInt("Population"));
+                }
+            }
+
+            try (PreparedStatement stmt = StatementCache.prepare(conn, "dataset_languages");
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    builder.addLanguage(
+                            rs.getString("CountryCode"),
+                            rs.getString("Language"),
+                            "T".equals(rs.getString("IsOfficial")),
+                            rs.getDouble("Percentage"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to load world dataset into memory", e);
+        }
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,35 @@
+package com.napier.sem.memory;
+
+/**
+ * Holds the current {@link WorldData} snapshot used by the in-memory repositories.
+ * <p>
+ * Each report reads the snapshot once and works on it to the end, so a call to
+ * {@link #replace(WorldData)} never exposes a half-updated dataset: reports already
+ * running finish on the old snapshot, later ones see the new one.
+ * </p>
+ */
+public class WorldDataset {
+    /** The snapshot reports are answered from. */
+    private volatile WorldData current;
+
+    /**
+     * @param initial the first snapshot to serve
+     */
+    public WorldDataset(WorldData initial) {
+        this.current = initial;
+    }
+
+    /** @return the snapshot reports should be answered from */
+    public WorldData get() {
+        return current;
+    }
+
+    /**
+     * Swaps in a new snapshot, e.g. after the database has been reloaded.
+     *
+     * @param data the new snapshot
+     */
+    public void replace(WorldData data) {
+        this.current = data;
+    }
+}
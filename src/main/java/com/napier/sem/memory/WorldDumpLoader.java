@@ -0,0 +1,366 @@
+package com.napier.sem.memory;
+
+import com.napier.sem.exception.DataAccessException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads the {@code city}, {@code country} and {@code countrylanguage} tables straight
+ * from the MySQL dump {@code db/world.sql} into a {@link WorldData} snapshot, without
+ * a database.
+ * <p>
+ * The dump is memory-mapped (or read whole from the classpath when it is bundled in
+ * the jar) and cut at line ends into chunks that are parsed in parallel. Each line
+ * starting with {@code INSERT INTO} one of the three tables has its value tuples read
+ * byte by byte (numbers, {@code NULL}, quoted strings with mysqldump's backslash
+ * escapes); only the strings a row needs are decoded. All other lines are skipped.
+ * Each chunk fills its own {@link WorldData.Builder} and the builders are merged at
+ * the end; since {@link WorldData.Builder#build()} orders rows by key, the result is
+ * the same as loading the tables with {@link WorldDataLoader}.
+ * </p>
+ * <p>
+ * Values are taken by position, in the column order of the dump's {@code CREATE TABLE}
+ * statements; a tuple with another number of values is rejected.
+ * </p>
+ */
+public class WorldDumpLoader {
+    /** Chunks smaller than this are not worth a task of their own. */
+    private static final int MIN_CHUNK_BYTES = 64 * 1024;
+
+    private static final byte[] INSERT = "INSERT INTO `".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUES = " VALUES ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "NULL".getBytes(StandardCharsets.US_ASCII);
+
+    /** Path of the dump on the file system, or of a classpath resource. */
+    private final String script;
+    /** Checksum of the dump last loaded, 0 until {@link #load()} has run. */
+    private long checksum;
+
+    /**
+     * @param script path of the dump, on the file system if it exists there, otherwise
+     *               on the classpath (like {@code db.embedded.script})
+     */
+    public WorldDumpLoader(String script) {
+        this.script = script;
+    }
+
+    /**
+     * Loads the whole world dataset from the dump, and takes its checksum
+     * (see {@link #getChecksum()}).
+     *
+     * @return an immutable snapshot of the three tables
+     */
+    public WorldData load() {
+        try {
+            ByteBuffer dump = read(script);
+            checksum = checksum(dump);
+            return parse(dump);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new DataAccessException("Failed to load world dataset from " + script, e);
+        }
+    }
+
+    /**
+     * @return checksum of the dump bytes read by the last {@link #load()}, 0 before;
+     *         it identifies the data the way the table checksum does for the database
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Computes the CRC32C of a dump, which changes whenever any byte of it does.
+     *
+     * @param dump the dump, from position to limit (the position is not moved)
+     * @return the checksum, never 0 for a non-empty dump
+     */
+    public static long checksum(ByteBuffer dump) {
+        CRC32C crc = new CRC32C();
+        crc.update(dump.duplicate());
+        // 0 means "unknown" to DatasetVersion; keep the length in the upper half
+        return (long) dump.remaining() << 32 | crc.getValue();
+    }
+
+    /**
+     * Parses a dump held in a buffer, using all processors.
+     *
+     * @param dump the dump, from position to limit
+     * @return an immutable snapshot of the three tables
+     * @throws IllegalArgumentException if an INSERT statement cannot be parsed
+     */
+    public static WorldData parse(ByteBuffer dump) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return parse(dump, Math.max(1, Math.min(4 * processors, dump.remaining() / MIN_CHUNK_BYTES)));
+    }
+
+    /**
+     * Parses a dump held in a buffer, cut into a given number of chunks.
+     *
+     * @param dump   the dump, from position to limit
+     * @param chunks number of chunks parsed in parallel (at most; lines are never split)
+     * @return an immutable snapshot of the three tables
+     * @throws IllegalArgumentException if an INSERT statement cannot be parsed
+     */
+    public static WorldData parse(ByteBuffer dump, int chunks) {
+        ByteBuffer bytes = dump.slice();
+        int size = bytes.limit();
+        int[] bounds = new int[chunks + 1];
+        for (int k = 1; k < chunks; ++k) {
+            bounds[k] = Math.max(bounds[k - 1], lineStart(bytes, (int) ((long) size * k / chunks)));
+        }
+        bounds[chunks] = size;
+
+        List<WorldData.Builder> parts = IntStream.range(0, chunks).parallel()
+                .mapToObj(k -> new Parser(bytes, bounds[k], bounds[k + 1]).parse())
+                .collect(Collectors.toList());
+        WorldData.Builder builder = new WorldData.Builder();
+        for (WorldData.Builder part : parts) builder.addAll(part);
+        return builder.build();
+    }
+
+    /** @return the start of the first line at or after {@code position} */
+    private static int lineStart(ByteBuffer bytes, int position) {
+        if (position == 0) return 0;
+        int pos = position;
+        while (pos < bytes.limit() && bytes.get(pos - 1) != '\n') ++pos;
+        return pos;
+    }
+
+    private static ByteBuffer read(String script) throws IOException {
+        Path path = Path.of(script);
+        if (Files.exists(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        try (InputStream input = WorldDumpLoader.class.getClassLoader().getResourceAsStream(script)) {
+            if (input == null) throw new IOException(script + " not found on the file system or classpath");
+            return ByteBuffer.wrap(input.readAllBytes());
+        }
+    }
+
+    /** The tables read from the dump, with the number of columns of each. */
+    private enum Table {
+        CITY("city", 5), COUNTRY("country", 15), LANGUAGE("countrylanguage", 4);
+
+        final byte[] name;
+        final int columns;
+
+        Table(String name, int columns) {
+            this.name = name.getBytes(StandardCharsets.US_ASCII);
+            this.columns = columns;
+        }
+    }
+
+    /** Parses the lines of one chunk of the dump into a builder of its own. */
+    private static final class Parser {
+        private static final int MAX_COLUMNS = 15;
+
+        private final ByteBuffer bytes;
+        private final int end;
+        private final WorldData.Builder builder = new WorldData.Builder();
+        private int pos;
+
+        // Where each value of the current tuple is, and how to read it
+        private final int[] valueStart = new int[MAX_COLUMNS];
+        private final int[] valueEnd = new int[MAX_COLUMNS];
+        private final boolean[] quoted = new boolean[MAX_COLUMNS];
+        private final boolean[] escaped = new boolean[MAX_COLUMNS];
+
+        Parser(ByteBuffer bytes, int start, int end) {
+            this.bytes = bytes;
+            this.pos = start;
+            this.end = end;
+        }
+
+        WorldData.Builder parse() {
+            while (pos < end) {
+                if (startsWith(INSERT, pos)) {
+                    pos += INSERT.length;
+                    insert();
+                }
+                skipLine();
+            }
+            return builder;
+        }
+
+        private void skipLine() {
+            while (pos < end && bytes.get(pos) != '\n') ++pos;
+            ++pos;
+        }
+
+        /** Reads the rows of one INSERT statement, from the table name to the semicolon. */
+        private void insert() {
+            Table table = null;
+            for (Table candidate : Table.values()) {
+                int after = pos + candidate.name.length;
+                if (startsWith(candidate.name, pos) && after < bytes.limit() && bytes.get(after) == '`') {
+                    table = candidate;
+                }
+            }
+            if (table == null) return; // Some other table
+            pos += table.name.length + 1;
+            expect(VALUES);
+            while (true) {
+                expect('(');
+                int columns = tuple();
+                if (columns != table.columns) {
+                    throw error(table.columns + " values expected in " + new String(table.name, StandardCharsets.US_ASCII)
+                            + " row, found " + columns);
+                }
+                row(table);
+                byte next = next();
+                if (next == ';') return;
+                if (next != ',') throw error("',' or ';' expected");
+            }
+        }
+
+        /** Finds the values of a tuple up to and including its closing parenthesis. */
+        private int tuple() {
+            int k = 0;
+            while (true) {
+                if (k == MAX_COLUMNS) throw error("Too many values");
+                if (peek() == '\'') {
+                    ++pos;
+                    valueStart[k] = pos;
+                    quoted[k] = true;
+                    escaped[k] = false;
+                    byte b;
+                    while ((b = next()) != '\'') {
+                        if (b == '\\') {
+                            escaped[k] = true;
+                            next();
+                        }
+                    }
+                    valueEnd[k] = pos - 1;
+                } else {
+                    valueStart[k] = pos;
+                    quoted[k] = false;
+                    while (peek() != ',' && peek() != ')') ++pos;
+                    valueEnd[k] = pos;
+                }
+                ++k;
+                byte next = next();
+                if (next == ')') return k;
+                if (next != ',') throw error("',' or ')' expected");
+            }
+        }
+
+        private void row(Table table) {
+            switch (table) {
+                case CITY:
+                    builder.addCity(integer(0), string(1), string(2), string(3), integer(4));
+                    break;
+                case COUNTRY:
+                    builder.addCountry(string(0), string(1), string(2), string(3), integer(6),
+                            isNull(13) ? null : integer(13));
+                    break;
+                case LANGUAGE:
+                    builder.addLanguage(string(0), string(1), "T".equals(string(2)), decimal(3));
+                    break;
+            }
+        }
+
+        private boolean isNull(int k) {
+            return !quoted[k] && valueEnd[k] - valueStart[k] == 4 && startsWith(NULL, valueStart[k]);
+        }
+
+        /** @return the value as a string, null for {@code NULL} */
+        private String string(int k) {
+            if (isNull(k)) return null;
+            byte[] value = new byte[valueEnd[k] - valueStart[k]];
+            bytes.get(valueStart[k], value);
+            return new String(escaped[k] ? unescape(value) : value, StandardCharsets.UTF_8);
+        }
+
+        private int integer(int k) {
+            int p = valueStart[k];
+            boolean negative = p < valueEnd[k] && bytes.get(p) == '-';
+            if (negative) ++p;
+            if (p == valueEnd[k]) throw error("Number expected");
+            int value = 0;
+            for (; p < valueEnd[k]; ++p) {
+                int digit = bytes.get(p) - '0';
+                if (digit < 0 || digit > 9) throw error("Number expected");
+                value = 10 * value + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        private double decimal(int k) {
+            byte[] value = new byte[valueEnd[k] - valueStart[k]];
+            bytes.get(valueStart[k], value);
+            try {
+                return Double.parseDouble(new String(value, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw error("Number expected");
+            }
+        }
+
+        /** Replaces mysqldump's backslash escapes with the characters they stand for. */
+        private static byte[] unescape(byte[] value) {
+            byte[] out = new byte[value.length];
+            int size = 0;
+            for (int i = 0; i < value.length; ++i) {
+                byte b = value[i];
+                if (b == '\\' && i + 1 < value.length) {
+                    b = value[++i];
+                    switch (b) {
+                        case '0': b = 0; break;
+                        case 'n': b = '\n'; break;
+                        case 'r': b = '\r'; break;
+                        case 't': b = '\t'; break;
+                        case 'Z': b = 26; break;
+                        default: break; // \' \" \\ stand for the character itself
+                    }
+                }
+                out[size++] = b;
+            }
+            return Arrays.copyOf(out, size);
+        }
+
+        private boolean startsWith(byte[] prefix, int at) {
+            if (at + prefix.length > bytes.limit()) return false;
+            for (int i = 0; i < prefix.length; ++i) {
+                if (bytes.get(at + i) != prefix[i]) return false;
+            }
+            return true;
+        }
+
+        private void expect(byte[] expected) {
+            if (!startsWith(expected, pos)) throw error("'" + new String(expected, StandardCharsets.US_ASCII) + "' expected");
+            pos += expected.length;
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) throw error("'" + expected + "' expected");
+        }
+
+        private byte peek() {
+            if (pos >= bytes.limit()) throw error("Unexpected end of dump");
+            return bytes.get(pos);
+        }
+
+        private byte next() {
+            byte b = peek();
+            ++pos;
+            return b;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at byte " + pos);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.napier.sem.memory;
+
+import com.napier.sem.dao.NameDictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * A {@link WorldData} saved to a binary file, read back by memory-mapping the file.
+ * <p>
+ * The file holds the off-heap columns byte for byte, so reading it is a matter of
+ * mapping it ({@link FileChannel#map}) and pointing the columns at parts of it: no
+ * rows are parsed and no database is needed. Only the small language table is copied
+ * to the heap, and the orderings and indexes are recomputed as for any new dataset.
+ * </p>
+ * <p>
+ * Layout (numbers in the byte order of the machine that wrote the file):
+ * </p>
+ * <pre>
+ * header    "SEMWORLD", format version, byte order mark, dataset checksum,
+ *           CRC-32C of everything after the header, number of sections
+ * sections  each an int length and that many bytes, padded to 8 bytes:
+ *           continent, region, country and district names (offsets, bytes),
+ *           city, country and language columns in {@link WorldData} order
+ * </pre>
+ * <p>
+ * Columns refer to names by their {@link NameDictionary} IDs at the time the file was
+ * written. When the file is read the names are added to the dictionaries again; in a
+ * fresh process they get the same IDs and the columns are used as mapped, otherwise
+ * the ID columns are translated into new off-heap columns.
+ * </p>
+ */
+public final class WorldSnapshot {
+    /** "SEMWORLD" in ASCII. */
+    private static final long MAGIC = 0x53454D574F524C44L;
+    /** Changed whenever the layout changes; files of other versions are rejected. */
+    static final int FORMAT_VERSION = 1;
+    /** Reads back as this value only in the byte order it was written in. */
+    private static final int BYTE_ORDER_MARK = 0x01020304;
+    private static final int HEADER_BYTES = 32;
+    private static final int ALIGNMENT = 8;
+    private static final int SECTIONS = 25;
+
+    private final WorldData data;
+    private final long checksum;
+
+    /**
+     * @param data     the dataset
+     * @param checksum checksum of the database tables the dataset was read from
+     *                 (see {@link com.napier.sem.config.DatasetVersion#checksum()})
+     */
+    public WorldSnapshot(WorldData data, long checksum) {
+        this.data = data;
+        this.checksum = checksum;
+    }
+
+    /** @return the dataset */
+    public WorldData getData() {
+        return data;
+    }
+
+    /** @return checksum of the database tables the dataset was read from */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Writes the snapshot to a file. It is written next to the file first and then moved
+     * over it, so a reader (or a crash) never sees a half-written file, and instances that
+     * have the old file mapped keep reading it.
+     *
+     * @param file where to save the snapshot
+     * @throws IOException if it cannot be written
+     */
+    public void write(Path file) throws IOException {
+        List<ByteBuffer> sections = new ArrayList<>();
+        for (NameDictionary names : dictionaries()) {
+            String[] values = new String[names.size()];
+            for (int id = 0; id < values.length; ++id) values[id] = names.name(id);
+            addStrings(sections, StringColumn.of(values));
+        }
+        sections.add(data.cityId.bytes());
+        addStrings(sections, data.cityName);
+        sections.add(data.cityCountry.bytes());
+        sections.add(data.cityDistrict.bytes());
+        sections.add(data.cityPopulation.bytes());
+        sections.add(data.countryCode.bytes());
+        sections.add(data.countryName.bytes());
+        sections.add(data.countryContinent.bytes());
+        sections.add(data.countryRegion.bytes());
+        sections.add(data.countryPopulation.bytes());
+        sections.add(data.countryCapital.bytes());
+        sections.add(IntColumn.of(data.languageCountry).bytes());
+        addStrings(sections, StringColumn.of(data.languageName));
+        byte[] official = new byte[data.languageOfficial.length];
+        for (int l = 0; l < official.length; ++l) official[l] = (byte) (data.languageOfficial[l] ? 1 : 0);
+        sections.add(ByteBuffer.wrap(official));
+        sections.add(IntColumn.of(data.languagePercentTenths).bytes());
+
+        // Length prefix and padding around every section
+        List<ByteBuffer> body = new ArrayList<>();
+        CRC32C crc = new CRC32C();
+        for (ByteBuffer section : sections) {
+            int length = section.remaining();
+            ByteBuffer prefix = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder()).putInt(length).flip();
+            ByteBuffer padding = ByteBuffer.allocate(padding(Integer.BYTES + length));
+            for (ByteBuffer part : new ByteBuffer[]{prefix, section, padding}) {
+                crc.update(part.duplicate());
+                body.add(part);
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.nativeOrder())
+                .putLong(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putInt(BYTE_ORDER_MARK)
+                .putLong(checksum)
+                .putInt((int) crc.getValue())
+                .putInt(sections.size())
+                .flip();
+        body.add(0, header);
+
+        Path absolute = file.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer[] buffers = body.toArray(new ByteBuffer[0]);
+            long remaining = 0;
+            for (ByteBuffer buffer : buffers) remaining += buffer.remaining();
+            while (remaining > 0) remaining -= channel.write(buffers);
+            channel.force(false);
+        }
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Memory-maps a snapshot file and builds the dataset on it. The mapping stays valid
+     * after the file is replaced or deleted, for as long as the dataset is in use.
+     *
+     * @param file a file written by {@link #write(Path)}
+     * @return the snapshot
+     * @throws IOException if the file cannot be read, was written by another format
+     *                     version or byte order, or is damaged
+     */
+    public static WorldSnapshot map(Path file) throws IOException {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Snapshot larger than 2 GB: " + file);
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapped.order(ByteOrder.nativeOrder());
+
+        check(mapped.limit() >= HEADER_BYTES && mapped.getLong(0) == MAGIC, "Not a world snapshot: " + file);
+        check(mapped.getInt(8) == FORMAT_VERSION, "Unsupported snapshot format " + mapped.getInt(8) + ": " + file);
+        check(mapped.getInt(12) == BYTE_ORDER_MARK, "Snapshot written with another byte order: " + file);
+        long checksum = mapped.getLong(16);
+        CRC32C crc = new CRC32C();
+        crc.update(mapped.slice(HEADER_BYTES, mapped.limit() - HEADER_BYTES));
+        check((int) crc.getValue() == mapped.getInt(24), "Damaged snapshot (CRC mismatch): " + file);
+        check(mapped.getInt(28) == SECTIONS, "Unexpected number of snapshot sections: " + file);
+
+        Sections sections = new Sections(mapped);
+        int[][] translations = new int[4][];
+        NameDictionary[] dictionaries = dictionaries();
+        for (int d = 0; d < dictionaries.length; ++d) {
+            StringColumn names = sections.nextStrings();
+            translations[d] = new int[names.size()];
+            for (int id = 0; id < names.size(); ++id) translations[d][id] = dictionaries[d].id(names.get(id));
+        }
+
+        IntColumn cityId = sections.nextInts();
+        StringColumn cityName = sections.nextStrings();
+        IntColumn cityCountry = sections.nextInts();
+        IntColumn cityDistrict = translate(sections.nextInts(), translations[3]);
+        IntColumn cityPopulation = sections.nextInts();
+        CodeColumn countryCode = new CodeColumn(sections.next());
+        IntColumn countryName = translate(sections.nextInts(), translations[2]);
+        IntColumn countryContinent = translate(sections.nextInts(), translations[0]);
+        IntColumn countryRegion = translate(sections.nextInts(), translations[1]);
+        IntColumn countryPopulation = sections.nextInts();
+        IntColumn countryCapital = sections.nextInts();
+
+        IntColumn languageCountry = sections.nextInts();
+        StringColumn languageNames = sections.nextStrings();
+        ByteBuffer officialBytes = sections.next();
+        IntColumn languagePercent = sections.nextInts();
+
+        int cities = cityId.size();
+        int countries = countryCode.size();
+        int languages = languageCountry.size();
+        check(cityName.size() == cities && cityCountry.size() == cities && cityDistrict.size() == cities
+                && cityPopulation.size() == cities, "Inconsistent city columns: " + file);
+        check(countryName.size() == countries && countryContinent.size() == countries
+                && countryRegion.size() == countries && countryPopulation.size() == countries
+                && countryCapital.size() == countries, "Inconsistent country columns: " + file);
+        check(languageNames.size() == languages && officialBytes.remaining() == languages
+                && languagePercent.size() == languages, "Inconsistent language columns: " + file);
+
+        int[] languageCountries = new int[languages];
+        String[] languageName = new String[languages];
+        boolean[] languageOfficial = new boolean[languages];
+        int[] languagePercentTenths = new int[languages];
+        for (int l = 0; l < languages; ++l) {
+            languageCountries[l] = languageCountry.get(l);
+            languageName[l] = languageNames.get(l);
+            languageOfficial[l] = officialBytes.get(l) != 0;
+            languagePercentTenths[l] = languagePercent.get(l);
+        }
+
+        WorldData data = new WorldData(cityId, cityName, cityCountry, cityDistrict, cityPopulation,
+                countryCode, countryName, countryContinent, countryRegion, countryPopulation, countryCapital,
+                languageCountries, languageName, languageOfficial, languagePercentTenths);
+        return new WorldSnapshot(data, checksum);
+    }
+
+    /** The name dictionaries, in the order they are stored. */
+    private static NameDictionary[] dictionaries() {
+        return new NameDictionary[]{
+                NameDictionary.CONTINENTS, NameDictionary.REGIONS, NameDictionary.COUNTRIES, NameDictionary.DISTRICTS};
+    }
+
+    private static void addStrings(List<ByteBuffer> sections, StringColumn column) {
+        sections.add(column.offsets().bytes());
+        sections.add(column.bytes());
+    }
+
+    /**
+     * Maps the name IDs of a column from the file's IDs to the dictionary's; returns the
+     * column itself if they are the same.
+     */
+    private static IntColumn translate(IntColumn ids, int[] translation) throws IOException {
+        boolean same = true;
+        for (int id = 0; id < translation.length && same; ++id) same = translation[id] == id;
+        int[] values = same ? null : new int[ids.size()];
+        for (int row = 0; row < ids.size(); ++row) {
+            int id = ids.get(row);
+            check(id >= -1 && id < translation.length, "Name ID out of range in snapshot");
+            if (!same) values[row] = id < 0 ? id : translation[id];
+        }
+        return same ? ids : IntColumn.of(values);
+    }
+
+    private static int padding(int length) {
+        return (ALIGNMENT - length % ALIGNMENT) % ALIGNMENT;
+    }
+
+    private static void check(boolean condition, String message) throws IOException {
+        if (!condition) throw new IOException(message);
+    }
+
+    /** Reads the sections of a mapped file one after another. */
+    private static final class Sections {
+        private final ByteBuffer file;
+        private int position = HEADER_BYTES;
+
+        Sections(ByteBuffer file) {
+            this.file = file;
+        }
+
+        /** @return the bytes of the next section */
+        ByteBuffer next() throws IOException {
+            check(file.limit() - position >= Integer.BYTES, "Truncated snapshot");
+            int length = file.getInt(position);
+            int start = position + Integer.BYTES;
+            check(length >= 0 && length <= file.limit() - start, "Truncated snapshot");
+            position = start + length + padding(Integer.BYTES + length);
+            return file.slice(start, length);
+        }
+
+        IntColumn nextInts() throws IOException {
+            ByteBuffer bytes = next();
+            check(bytes.remaining() % Integer.BYTES == 0, "Misaligned int column in snapshot");
+            return new IntColumn(bytes);
+        }
+
+        StringColumn nextStrings() throws IOException {
+            IntColumn offsets = nextInts();
+            ByteBuffer bytes = next();
+            check(offsets.size() >= 1 && offsets.get(offsets.size() - 1) == bytes.remaining(),
+                    "Inconsistent string column in snapshot");
+            return new StringColumn(offsets, bytes);
+        }
+    }
+}
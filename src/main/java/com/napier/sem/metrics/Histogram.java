@@ -0,0 +1,121 @@
+package com.napier.sem.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram.
+ * <p>
+ * Every recorded duration is counted twice: in one of the fixed Prometheus buckets
+ * ({@link #BOUNDS_SECONDS}), which are exported as they are, and in a fine
+ * log-linear bucket (four per power of two, so at most 25% wide) used to estimate
+ * quantiles such as p99 on the server. Recording is a couple of atomic increments,
+ * so it can be done on every request and every query.
+ * </p>
+ */
+public final class Histogram {
+    /** Upper bounds (seconds) of the exported buckets; a final +Inf bucket is implied. */
+    static final double[] BOUNDS_SECONDS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS_SECONDS.length];
+    static {
+        for (int i = 0; i < BOUNDS_SECONDS.length; ++i) {
+            BOUNDS_NANOS[i] = Math.round(BOUNDS_SECONDS[i] * 1e9);
+        }
+    }
+
+    /** Durations below 2^MIN_EXPONENT ns (about 1 µs) share the first fine bucket. */
+    private static final int MIN_EXPONENT = 10;
+    /** Durations from 2^MAX_EXPONENT ns (about 18 minutes) share the last fine bucket. */
+    private static final int MAX_EXPONENT = 40;
+    private static final int SUB_BUCKETS = 4;
+    private static final int FINE_BUCKETS = (MAX_EXPONENT - MIN_EXPONENT) * SUB_BUCKETS + 2;
+
+    /** Counts per exported bucket (not cumulative), the last one being +Inf. */
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_NANOS.length + 1);
+    private final AtomicLongArray fine = new AtomicLongArray(FINE_BUCKETS);
+    private final LongAdder sumNanos = new LongAdder();
+
+    /** Records one duration. */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        int b = 0;
+        while (b < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[b]) ++b;
+        buckets.incrementAndGet(b);
+        fine.incrementAndGet(fineIndex(nanos));
+        sumNanos.add(nanos);
+    }
+
+    /** @return counts per exported bucket, cumulative as in the Prometheus format (last = +Inf = total) */
+    long[] cumulativeBuckets() {
+        long[] counts = new long[buckets.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            total += buckets.get(i);
+            counts[i] = total;
+        }
+        return counts;
+    }
+
+    /** @return total of all recorded durations in seconds */
+    public double sumSeconds() {
+        return sumNanos.sum() / 1e9;
+    }
+
+    /** @return number of recorded durations */
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < buckets.length(); ++i) total += buckets.get(i);
+        return total;
+    }
+
+    /**
+     * Estimates a quantile of the recorded durations, interpolating inside the fine bucket it falls in.
+     *
+     * @param q the quantile, between 0 and 1 (e.g. 0.99)
+     * @return the estimated duration in seconds, or 0 if nothing was recorded
+     */
+    public double quantileSeconds(double q) {
+        long[] counts = new long[FINE_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < FINE_BUCKETS; ++i) {
+            counts[i] = fine.get(i);
+            total += counts[i];
+        }
+        if (total == 0) return 0;
+        double rank = Math.max(1, Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < FINE_BUCKETS; ++i) {
+            if (counts[i] == 0) continue;
+            if (seen + counts[i] >= rank) {
+                double within = (rank - seen) / counts[i];
+                long lower = lowerBound(i);
+                return (lower + within * (upperBound(i) - lower)) / 1e9;
+            }
+            seen += counts[i];
+        }
+        return upperBound(FINE_BUCKETS - 1) / 1e9;
+    }
+
+    private static int fineIndex(long nanos) {
+        if (nanos < (1L << MIN_EXPONENT)) return 0;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent >= MAX_EXPONENT) return FINE_BUCKETS - 1;
+        int sub = (int) (nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return (exponent - MIN_EXPONENT) * SUB_BUCKETS + sub + 1;
+    }
+
+    private static long lowerBound(int index) {
+        if (index == 0) return 0;
+        if (index == FINE_BUCKETS - 1) return 1L << MAX_EXPONENT;
+        int exponent = (index - 1) / SUB_BUCKETS + MIN_EXPONENT;
+        int sub = (index - 1) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exponent - 2);
+    }
+
+    private static long upperBound(int index) {
+        if (index == FINE_BUCKETS - 1) return 1L << (MAX_EXPONENT + 1);
+        return lowerBound(index + 1);
+    }
+}
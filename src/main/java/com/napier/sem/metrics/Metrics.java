@@ -0,0 +1,205 @@
+package com.napier.sem.metrics;
+
+import com.napier.sem.config.AppConfig;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Registry of the application's metrics, exported in the Prometheus text format.
+ * <p>
+ * Report routes and named queries from {@code queries.sql} each get an
+ * {@link OperationMetrics} the first time they are used; other components register
+ * gauges and counters read at scrape time. Recording never takes a lock: looking up
+ * an existing entry is a concurrent map read, and the entries only use atomic counters.
+ * </p>
+ */
+public class Metrics {
+    /** Latency quantiles estimated for every route and query. */
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    /** Whether metrics are recorded at all ({@code metrics.enabled}). */
+    private static final boolean enabled = AppConfig.getBoolean("metrics.enabled");
+
+    private static final Map<String, OperationMetrics> routes = new ConcurrentHashMap<>();
+    private static final Map<String, OperationMetrics> queries = new ConcurrentHashMap<>();
+
+    /** A value read when metrics are scraped. */
+    private static final class Sampled {
+        final String help;
+        final String type;
+        final DoubleSupplier value;
+
+        Sampled(String help, String type, DoubleSupplier value) {
+            this.help = help;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    private static final Map<String, Sampled> sampled = new ConcurrentHashMap<>();
+
+    /** @return true if metrics are recorded */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** @return the metrics of a report route, keyed by its path */
+    public static OperationMetrics route(String path) {
+        return routes.computeIfAbsent(path, p -> new OperationMetrics());
+    }
+
+    /** @return the metrics of a named query from {@code queries.sql} */
+    public static OperationMetrics query(String queryName) {
+        OperationMetrics metrics = queries.get(queryName);
+        return metrics != null ? metrics : queries.computeIfAbsent(queryName, q -> new OperationMetrics());
+    }
+
+    /**
+     * Registers a gauge read at scrape time (replacing any earlier one with the same name).
+     *
+     * @param name  metric name
+     * @param help  description shown by Prometheus
+     * @param value supplies the current value
+     */
+    public static void gauge(String name, String help, DoubleSupplier value) {
+        sampled.put(name, new Sampled(help, "gauge", value));
+    }
+
+    /**
+     * Registers a counter (a value that only grows) read at scrape time.
+     *
+     * @param name  metric name, ending in {@code _total}
+     * @param help  description shown by Prometheus
+     * @param value supplies the current value
+     */
+    public static void counter(String name, String help, DoubleSupplier value) {
+        sampled.put(name, new Sampled(help, "counter", value));
+    }
+
+    /**
+     * Registers one labelled series of a gauge, e.g. one per route class.
+     *
+     * @param name       metric name
+     * @param label      label name
+     * @param labelValue label value of this series
+     * @param help       description shown by Prometheus (the same for every series)
+     * @param value      supplies the current value
+     */
+    public static void gauge(String name, String label, String labelValue, String help, DoubleSupplier value) {
+        gauge(series(name, label, labelValue), help, value);
+    }
+
+    /**
+     * Registers one labelled series of a counter, e.g. one per route class.
+     *
+     * @param name       metric name, ending in {@code _total}
+     * @param label      label name
+     * @param labelValue label value of this series
+     * @param help       description shown by Prometheus (the same for every series)
+     * @param value      supplies the current value
+     */
+    public static void counter(String name, String label, String labelValue, String help, DoubleSupplier value) {
+        counter(series(name, label, labelValue), help, value);
+    }
+
+    private static String series(String name, String label, String labelValue) {
+        return name + '{' + label + "=\"" + escape(labelValue) + "\"}";
+    }
+
+    // -------------------------------------------------------
+    // Prometheus text format
+    // -------------------------------------------------------
+
+    /** @return all metrics in the Prometheus text exposition format (version 0.0.4) */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        Map<String, OperationMetrics> r = new TreeMap<>(routes);
+        Map<String, OperationMetrics> q = new TreeMap<>(queries);
+
+        writeOperations(out, "sem_http_request", "route", r, "report request", "sem_http_response_bytes_total",
+                "Bytes of report responses sent.");
+        writeOperations(out, "sem_db_query", "query", q, "database query (execution and reading its rows)",
+                "sem_db_query_rows_total", "Rows read by database queries.");
+
+        // Series of a labelled metric sort next to each other; they share one header
+        String previous = null;
+        for (Map.Entry<String, Sampled> e : new TreeMap<>(sampled).entrySet()) {
+            Sampled s = e.getValue();
+            int labels = e.getKey().indexOf('{');
+            String name = labels < 0 ? e.getKey() : e.getKey().substring(0, labels);
+            if (!name.equals(previous)) header(out, name, s.help, s.type);
+            previous = name;
+            out.append(e.getKey()).append(' ').append(number(s.value.getAsDouble())).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void writeOperations(StringBuilder out, String prefix, String label,
+                                        Map<String, OperationMetrics> operations, String what,
+                                        String volumeName, String volumeHelp) {
+        String duration = prefix + "_duration_seconds";
+        header(out, duration, "Time taken by each " + what + ".", "histogram");
+        for (Map.Entry<String, OperationMetrics> e : operations.entrySet()) {
+            String name = escape(e.getKey());
+            Histogram h = e.getValue().getLatency();
+            long[] cumulative = h.cumulativeBuckets();
+            for (int i = 0; i < cumulative.length; ++i) {
+                String le = i < Histogram.BOUNDS_SECONDS.length ? number(Histogram.BOUNDS_SECONDS[i]) : "+Inf";
+                out.append(duration).append("_bucket{").append(label).append("=\"").append(name)
+                   .append("\",le=\"").append(le).append("\"} ").append(cumulative[i]).append('\n');
+            }
+            sample(out, duration + "_sum", label, name, number(h.sumSeconds()));
+            sample(out, duration + "_count", label, name, Long.toString(cumulative[cumulative.length - 1]));
+        }
+
+        String quantiles = prefix + "_duration_quantile_seconds";
+        header(out, quantiles, "Estimated quantiles of the time taken by each " + what + ".", "gauge");
+        for (Map.Entry<String, OperationMetrics> e : operations.entrySet()) {
+            String name = escape(e.getKey());
+            for (double quantile : QUANTILES) {
+                out.append(quantiles).append('{').append(label).append("=\"").append(name)
+                   .append("\",quantile=\"").append(number(quantile)).append("\"} ")
+                   .append(number(e.getValue().getLatency().quantileSeconds(quantile))).append('\n');
+            }
+        }
+
+        counters(out, volumeName, volumeHelp, "counter", label, operations, OperationMetrics::getVolume);
+        counters(out, prefix + "_errors_total", "Failed " + what + "s.", "counter", label, operations,
+                OperationMetrics::getErrorCount);
+        counters(out, prefix + "s_in_flight", "Number of each " + what + " currently running.", "gauge", label,
+                operations, OperationMetrics::getInFlight);
+    }
+
+    private static void counters(StringBuilder out, String name, String help, String type, String label,
+                                 Map<String, OperationMetrics> operations, ToLongFunction<OperationMetrics> value) {
+        header(out, name, help, type);
+        for (Map.Entry<String, OperationMetrics> e : operations.entrySet()) {
+            sample(out, name, label, escape(e.getKey()), Long.toString(value.applyAsLong(e.getValue())));
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, String number) {
+        out.append(name).append('{').append(label).append("=\"").append(value).append("\"} ")
+           .append(number).append('\n');
+    }
+
+    private static String number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return Double.isNaN(value) ? "NaN" : value > 0 ? "+Inf" : "-Inf";
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    /** Escapes a label value as required by the text format. */
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
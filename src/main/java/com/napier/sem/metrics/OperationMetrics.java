@@ -0,0 +1,58 @@
+package com.napier.sem.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measurements of one kind of operation (a report route or a named query): how long
+ * it takes, how many are running, how many failed and how much data they produced
+ * (bytes for routes, rows for queries). All fields are updated without locking.
+ */
+public final class OperationMetrics {
+    private final Histogram latency = new Histogram();
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder volume = new LongAdder();
+
+    /**
+     * Marks the start of an operation.
+     *
+     * @return the start time, to pass to {@link #stop(long, boolean)}
+     */
+    public long start() {
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * Marks the end of an operation started with {@link #start()}.
+     *
+     * @param startNanos the value returned by {@link #start()}
+     * @param failed     whether the operation failed
+     */
+    public void stop(long startNanos, boolean failed) {
+        latency.record(System.nanoTime() - startNanos);
+        inFlight.decrement();
+        if (failed) errors.increment();
+    }
+
+    /** Adds to the amount of data produced (bytes or rows). */
+    public void addVolume(long amount) {
+        volume.add(amount);
+    }
+
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public long getVolume() {
+        return volume.sum();
+    }
+}
@@ -0,0 +1,92 @@
+package com.napier.sem.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+
+/**
+ * Wraps a prepared statement so that running it is recorded in the {@link OperationMetrics}
+ * of its query name. The time measured runs from execution until the statement is
+ * closed, so it includes reading the rows; results that the driver streams are only
+ * finished when the caller has read them.
+ * <p>
+ * Only statement-level calls go through the wrapper; the result set is the driver's
+ * own, so reading rows costs nothing extra. DAOs report how many rows they read with
+ * {@link #rows(PreparedStatement, long)}.
+ * </p>
+ */
+public final class TimedStatement implements InvocationHandler {
+    private final PreparedStatement stmt;
+    private final OperationMetrics metrics;
+    /** Start of the current execution, or -1 when none is being timed. */
+    private long started = -1;
+    private boolean failed;
+
+    private TimedStatement(PreparedStatement stmt, OperationMetrics metrics) {
+        this.stmt = stmt;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Wraps a statement for timing, unless metrics are disabled.
+     *
+     * @param stmt      the statement
+     * @param queryName name of its query in {@code queries.sql}
+     * @return the wrapped statement, or {@code stmt} itself if metrics are disabled
+     */
+    public static PreparedStatement wrap(PreparedStatement stmt, String queryName) {
+        if (!Metrics.isEnabled()) return stmt;
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new TimedStatement(stmt, Metrics.query(queryName)));
+    }
+
+    /**
+     * Adds to the number of rows read through a statement obtained from {@link #wrap}.
+     * Does nothing for other statements.
+     */
+    public static void rows(PreparedStatement stmt, long rows) {
+        if (Proxy.isProxyClass(stmt.getClass())
+                && Proxy.getInvocationHandler(stmt) instanceof TimedStatement) {
+            ((TimedStatement) Proxy.getInvocationHandler(stmt)).metrics.addVolume(rows);
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "close":
+                finish();
+                break;
+            case "executeQuery":
+            case "execute":
+            case "executeUpdate":
+                finish();
+                started = metrics.start();
+                failed = false;
+                break;
+            default:
+                break;
+        }
+        try {
+            return method.invoke(stmt, args);
+        } catch (InvocationTargetException e) {
+            if (started != -1 && name.startsWith("execute")) failed = true;
+            throw e.getCause();
+        }
+    }
+
+    /** Records the execution being timed, if any. */
+    private void finish() {
+        if (started != -1) {
+            metrics.stop(started, failed);
+            started = -1;
+        }
+    }
+}
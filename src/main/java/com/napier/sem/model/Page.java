@@ -0,0 +1,34 @@
+package com.napier.sem.model;
+
+import java.util.List;
+
+/**
+ * One page of a paginated report.
+ * <p>
+ * Holds the rows of the page and the cursor to pass back to get the following page.
+ * On the last page {@code nextCursor} is {@code null} (and left out of the JSON).
+ * </p>
+ *
+ * @param <T> type of the report rows (e.g. {@link City})
+ */
+public class Page<T> {
+    /** The rows of this page, in report order. */
+    private final List<T> items;
+
+    /** Opaque cursor of the next page, or null if this is the last page. */
+    private final String nextCursor;
+
+    /**
+     * Constructs a new {@code Page}.
+     *
+     * @param items      The rows of this page.
+     * @param nextCursor The cursor of the next page, or null if there is none.
+     */
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+}
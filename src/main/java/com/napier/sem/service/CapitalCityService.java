@@ -1,10 +1,14 @@
 package com.napier.sem.service;
 
 import com.napier.sem.dao.CapitalCityDAO;
+import com.napier.sem.dao.CapitalCityRepository;
+import com.napier.sem.dao.PageCursor;
 import com.napier.sem.model.CapitalCity;
+import com.napier.sem.model.Page;
 
-import java.sql.Connection;
+import javax.sql.DataSource;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Service layer responsible for business logic related to capital city reports.
@@ -21,25 +25,29 @@ import java.util.List;
  */
 
 public class CapitalCityService {
-    /** DAO responsible for database access related to capital cities. */
-    private final CapitalCityDAO capitalCityDAO;
+    /** Source of capital city data (database DAO or in-memory dataset). */
+    private final CapitalCityRepository capitalCityDAO;
+
+    /** Shares one database call between identical requests running at the same time. */
+    private final SingleFlight inFlight = new SingleFlight();
 
     /**
      * Constructs a service instance for production use.
-     * Creates an internal {@link CapitalCityDAO} using a database connection.
+     * Creates an internal {@link CapitalCityDAO} using the database connection pool.
      *
-     * @param conn Active database connection.
+     * @param dataSource Pool of database connections.
      */
-    public CapitalCityService(Connection conn) {
-        this.capitalCityDAO = new CapitalCityDAO(conn);
+    public CapitalCityService(DataSource dataSource) {
+        this.capitalCityDAO = new CapitalCityDAO(dataSource);
     }
 
     /**
-     * Constructs a service instance for testing, using a mock or injected DAO.
+     * Constructs a service on top of any {@link CapitalCityRepository}, such as the in-memory
+     * dataset or a mock DAO in unit tests.
      *
-     * @param capitalCityDAO Predefined {@link CapitalCityDAO} (used for testing).
+     * @param capitalCityDAO Source of report data.
      */
-    public CapitalCityService(CapitalCityDAO capitalCityDAO) {
+    public CapitalCityService(CapitalCityRepository capitalCityDAO) {
         this.capitalCityDAO = capitalCityDAO;
     }
 
@@ -49,7 +57,29 @@ public class CapitalCityService {
      * @return A list of all {@link CapitalCity} objects worldwide.
      */
     public List<CapitalCity> getAllCapitalCities() {
-        return capitalCityDAO.getAllCapitalCities();
+        return inFlight.execute("getAllCapitalCities", capitalCityDAO::getAllCapitalCities);
+    }
+
+    /**
+     * Passes all capital cities in the world, ordered by population (descending), to a
+     * sink one at a time instead of returning them as a list.
+     *
+     * @param sink Receives each {@link CapitalCity} in turn.
+     */
+    public void streamAllCapitalCities(Consumer<CapitalCity> sink) {
+        capitalCityDAO.streamAllCapitalCities(sink);
+    }
+
+    /**
+     * Retrieves one page of all capital cities in the world, ordered by population (descending).
+     *
+     * @param after Cursor of the last capital of the previous page ({@link PageCursor#FIRST} to start).
+     * @param limit Maximum number of capital cities on the page.
+     * @return A {@link Page} of {@link CapitalCity} objects.
+     */
+    public Page<CapitalCity> getCapitalCitiesPage(PageCursor after, int limit) {
+        return inFlight.execute("getCapitalCitiesPage:" + after + ":" + limit,
+                () -> capitalCityDAO.getCapitalCitiesPage(after, limit));
     }
 
     /**
@@ -59,7 +89,8 @@ public class CapitalCityService {
      * @return A list of {@link CapitalCity} objects from that continent.
      */
     public List<CapitalCity> getCapitalCitiesByContinent(String continent) {
-        return capitalCityDAO.getCapitalCitiesByContinent(continent);
+        return inFlight.execute("getCapitalCitiesByContinent:" + continent,
+                () -> capitalCityDAO.getCapitalCitiesByContinent(continent));
     }
 
     /**
@@ -69,7 +100,8 @@ public class CapitalCityService {
      * @return A list of {@link CapitalCity} objects from that region.
      */
     public List<CapitalCity> getCapitalCitiesByRegion(String region) {
-        return capitalCityDAO.getCapitalCitiesByRegion(region);
+        return inFlight.execute("getCapitalCitiesByRegion:" + region,
+                () -> capitalCityDAO.getCapitalCitiesByRegion(region));
     }
 
     /**
@@ -79,7 +111,8 @@ public class CapitalCityService {
      * @return A list of the top N {@link CapitalCity} objects worldwide.
      */
     public List<CapitalCity> getTopNCapitalCitiesInWorld(int n) {
-        return capitalCityDAO.getTopNCapitalCitiesInWorld(n);
+        return inFlight.execute("getTopNCapitalCitiesInWorld:" + n,
+                () -> capitalCityDAO.getTopNCapitalCitiesInWorld(n));
     }
 
     /**
@@ -90,7 +123,8 @@ public class CapitalCityService {
      * @return A list of the top N {@link CapitalCity} objects in that continent.
      */
     public List<CapitalCity> getTopNCapitalCitiesInContinent(String continent, int n) {
-        return capitalCityDAO.getTopNCapitalCitiesInContinent(continent, n);
+        return inFlight.execute("getTopNCapitalCitiesInContinent:" + continent + ":" + n,
+                () -> capitalCityDAO.getTopNCapitalCitiesInContinent(continent, n));
     }
 
     /**
@@ -101,6 +135,7 @@ public class CapitalCityService {
      * @return A list of the top N {@link CapitalCity} objects in that region.
      */
     public List<CapitalCity> getTopNCapitalCitiesInRegion(String region, int n) {
-        return capitalCityDAO.getTopNCapitalCitiesInRegion(region, n);
+        return inFlight.execute("getTopNCapitalCitiesInRegion:" + region + ":" + n,
+                () -> capitalCityDAO.getTopNCapitalCitiesInRegion(region, n));
     }
 }
@@ -1,10 +1,14 @@
 package com.napier.sem.service;
 
 import com.napier.sem.dao.CityDAO;
+import com.napier.sem.dao.CityRepository;
+import com.napier.sem.dao.PageCursor;
 import com.napier.sem.model.City;
+import com.napier.sem.model.Page;
 
-import java.sql.Connection;
+import javax.sql.DataSource;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Service layer responsible for handling all operations related to city reports.
@@ -19,24 +23,28 @@ import java.util.List;
  * </p>
  */
 public class CityService {
-    /** DAO responsible for interacting with the database to retrieve city data. */
-    private final CityDAO cityDAO;
+    /** Source of city data (database DAO or in-memory dataset). */
+    private final CityRepository cityDAO;
+
+    /** Shares one database call between identical requests running at the same time. */
+    private final SingleFlight inFlight = new SingleFlight();
 
     /**
      * Constructs a service for production use, initializing a new {@link CityDAO}.
      *
-     * @param conn Active database connection.
+     * @param dataSource Pool of database connections.
      */
-    public CityService(Connection conn) {
-        this.cityDAO = new CityDAO(conn);
+    public CityService(DataSource dataSource) {
+        this.cityDAO = new CityDAO(dataSource);
     }
 
     /**
-     * Constructs a service for testing with a pre-initialized {@link CityDAO}.
+     * Constructs a service on top of any {@link CityRepository}, such as the in-memory
+     * dataset or a mock DAO in unit tests.
      *
-     * @param cityDAO Predefined or mock DAO instance (used for testing).
+     * @param cityDAO Source of report data.
      */
-    public CityService(CityDAO cityDAO) {
+    public CityService(CityRepository cityDAO) {
         this.cityDAO = cityDAO;
     }
     /**
@@ -45,7 +53,40 @@ public class CityService {
      * @return A list of all {@link City} objects.
      */
     public List<City> getAllCities() {
-        return cityDAO.getAllCities();
+        return inFlight.execute("getAllCities", cityDAO::getAllCities);
+    }
+    /**
+     * Passes all cities in the world, ordered by population (descending), to a sink
+     * one at a time instead of returning them as a list.
+     *
+     * @param sink Receives each {@link City} in turn.
+     */
+    public void streamAllCities(Consumer<City> sink) {
+        cityDAO.streamAllCities(sink);
+    }
+    /**
+     * Retrieves one page of all cities in the world, ordered by population (descending).
+     *
+     * @param after Cursor of the last city of the previous page ({@link PageCursor#FIRST} to start).
+     * @param limit Maximum number of cities on the page.
+     * @return A {@link Page} of {@link City} objects.
+     */
+    public Page<City> getCitiesPage(PageCursor after, int limit) {
+        return inFlight.execute("getCitiesPage:" + after + ":" + limit,
+                () -> cityDAO.getCitiesPage(after, limit));
+    }
+
+    /**
+     * Retrieves one page of the cities in a continent, ordered by population (descending).
+     *
+     * @param continent The name of the continent.
+     * @param after Cursor of the last city of the previous page ({@link PageCursor#FIRST} to start).
+     * @param limit Maximum number of cities on the page.
+     * @return A {@link Page} of {@link City} objects.
+     */
+    public Page<City> getCitiesByContinentPage(String continent, PageCursor after, int limit) {
+        return inFlight.execute("getCitiesByContinentPage:" + after + ":" + limit + ":" + continent,
+                () -> cityDAO.getCitiesByContinentPage(continent, after, limit));
     }
     /**
      * Retrieves all cities in a specific continent.
@@ -54,7 +95,8 @@ public class CityService {
      * @return A list of {@link City} objects in that continent.
      */
     public List<City> getCitiesByContinent(String continent) {
-        return cityDAO.getCitiesByContinent(continent);
+        return inFlight.execute("getCitiesByContinent:" + continent,
+                () -> cityDAO.getCitiesByContinent(continent));
     }
     /**
      * Retrieves all cities in a specific region.
@@ -63,7 +105,7 @@ public class CityService {
      * @return A list of {@link City} objects in that region.
      */
     public List<City> getCitiesByRegion(String region) {
-        return cityDAO.getCitiesByRegion(region);
+        return inFlight.execute("getCitiesByRegion:" + region, () -> cityDAO.getCitiesByRegion(region));
     }
     /**
      * Retrieves all cities in a specific country.
@@ -72,7 +114,8 @@ public class CityService {
      * @return A list of {@link City} objects in that country.
      */
     public List<City> getCitiesByCountry(String countryName) {
-        return cityDAO.getCitiesByCountry(countryName);
+        return inFlight.execute("getCitiesByCountry:" + countryName,
+                () -> cityDAO.getCitiesByCountry(countryName));
     }
     /**
      * Retrieves all cities in a specific district.
@@ -81,7 +124,8 @@ public class CityService {
      * @return A list of {@link City} objects in that district.
      */
     public List<City> getCitiesByDistrict(String district) {
-        return cityDAO.getCitiesByDistrict(district);
+        return inFlight.execute("getCitiesByDistrict:" + district,
+                () -> cityDAO.getCitiesByDistrict(district));
     }
     /**
      * Retrieves the top N most populated cities in the world.
@@ -90,7 +134,7 @@ public class CityService {
      * @return A list of the top N {@link City} objects worldwide.
      */
     public List<City> getTopNCitiesInWorld(int n) {
-        return cityDAO.getTopNCitiesInWorld(n);
+        return inFlight.execute("getTopNCitiesInWorld:" + n, () -> cityDAO.getTopNCitiesInWorld(n));
     }
     /**
      * Retrieves the top N most populated cities in a given continent.
@@ -100,7 +144,8 @@ public class CityService {
      * @return A list of the top N {@link City} objects in that continent.
      */
     public List<City> getTopNCitiesInContinent(String continent, int n) {
-        return cityDAO.getTopNCitiesInContinent(continent, n);
+        return inFlight.execute("getTopNCitiesInContinent:" + continent + ":" + n,
+                () -> cityDAO.getTopNCitiesInContinent(continent, n));
     }
     /**
      * Retrieves the top N most populated cities in a given region.
@@ -110,7 +155,8 @@ public class CityService {
      * @return A list of the top N {@link City} objects in that region.
      */
     public List<City> getTopNCitiesInRegion(String region, int n) {
-        return cityDAO.getTopNCitiesInRegion(region, n);
+        return inFlight.execute("getTopNCitiesInRegion:" + region + ":" + n,
+                () -> cityDAO.getTopNCitiesInRegion(region, n));
     }
     /**
      * Retrieves the top N most populated cities in a given country.
@@ -120,7 +166,8 @@ public class CityService {
      * @return A list of the top N {@link City} objects in that country.
      */
     public List<City> getTopNCitiesInCountry(String countryName, int n) {
-        return cityDAO.getTopNCitiesInCountry(countryName, n);
+        return inFlight.execute("getTopNCitiesInCountry:" + countryName + ":" + n,
+                () -> cityDAO.getTopNCitiesInCountry(countryName, n));
     }
     /**
      * Retrieves the top N most populated cities in a given district.
@@ -130,6 +177,7 @@ public class CityService {
      * @return A list of the top N {@link City} objects in that district.
      */
     public List<City> getTopNCitiesInDistrict(String district, int n) {
-        return cityDAO.getTopNCitiesInDistrict(district, n);
+        return inFlight.execute("getTopNCitiesInDistrict:" + district + ":" + n,
+                () -> cityDAO.getTopNCitiesInDistrict(district, n));
     }
 }
@@ -1,9 +1,12 @@
 package com.napier.sem.service;
 
 import com.napier.sem.dao.CountryDAO;
+import com.napier.sem.dao.CountryRepository;
+import com.napier.sem.dao.PageCursor;
 import com.napier.sem.model.Country;
+import com.napier.sem.model.Page;
 
-import java.sql.Connection;
+import javax.sql.DataSource;
 import java.util.List;
 
 /**
@@ -18,26 +21,29 @@ import java.util.List;
  * </p>
  */
 public class CountryService {
-    /** DAO responsible for database access related to countries. */
-    private final CountryDAO countryDAO;
+    /** Source of country data (database DAO or in-memory dataset). */
+    private final CountryRepository countryDAO;
+
+    /** Shares one database call between identical requests running at the same time. */
+    private final SingleFlight inFlight = new SingleFlight();
 
     /**
      * Constructs a service instance for production use.
-     * Creates an internal {@link CountryDAO} using a database connection.
+     * Creates an internal {@link CountryDAO} using the database connection pool.
      *
-     * @param conn Active database connection.
+     * @param dataSource Pool of database connections.
      */
-    public CountryService(Connection conn) {
-        this.countryDAO = new CountryDAO(conn);
+    public CountryService(DataSource dataSource) {
+        this.countryDAO = new CountryDAO(dataSource);
     }
 
     /**
-     * Constructs a service instance for testing.
-     * Allows injecting a mock or pre-configured DAO instance.
+     * Constructs a service on top of any {@link CountryRepository}, such as the in-memory
+     * dataset or a mock DAO in unit tests.
      *
-     * @param countryDAO A predefined {@link CountryDAO} instance (e.g., mock for unit testing).
+     * @param countryDAO Source of report data.
      */
-    public CountryService(CountryDAO countryDAO) {
+    public CountryService(CountryRepository countryDAO) {
         this.countryDAO = countryDAO;
     }
 
@@ -47,7 +53,19 @@ public class CountryService {
      * @return A list of all {@link Country} objects.
      */
     public List<Country> getAllCountries() {
-        return countryDAO.getAllCountries();
+        return inFlight.execute("getAllCountries", countryDAO::getAllCountries);
+    }
+
+    /**
+     * Retrieves one page of all countries in the world, ordered by population (descending).
+     *
+     * @param after Cursor of the last country of the previous page ({@link PageCursor#FIRST} to start).
+     * @param limit Maximum number of countries on the page.
+     * @return A {@link Page} of {@link Country} objects.
+     */
+    public Page<Country> getCountriesPage(PageCursor after, int limit) {
+        return inFlight.execute("getCountriesPage:" + after + ":" + limit,
+                () -> countryDAO.getCountriesPage(after, limit));
     }
 
     /**
@@ -57,7 +75,8 @@ public class CountryService {
      * @return A list of {@link Country} objects from that continent.
      */
     public List<Country> getCountriesByContinent(String continent) {
-        return countryDAO.getCountriesByContinent(continent);
+        return inFlight.execute("getCountriesByContinent:" + continent,
+                () -> countryDAO.getCountriesByContinent(continent));
     }
 
     /**
@@ -67,7 +86,8 @@ public class CountryService {
      * @return A list of {@link Country} objects from that region.
      */
     public List<Country> getCountriesByRegion(String region) {
-        return countryDAO.getCountriesByRegion(region);
+        return inFlight.execute("getCountriesByRegion:" + region,
+                () -> countryDAO.getCountriesByRegion(region));
     }
 
     /**
@@ -77,7 +97,7 @@ public class CountryService {
      * @return A list of the top N {@link Country} objects worldwide.
      */
     public List<Country> getTopNCountriesInWorld(int n) {
-        return countryDAO.getTopNCountriesInWorld(n);
+        return inFlight.execute("getTopNCountriesInWorld:" + n, () -> countryDAO.getTopNCountriesInWorld(n));
     }
 
     /**
@@ -88,7 +108,8 @@ public class CountryService {
      * @return A list of the top N {@link Country} objects in that continent.
      */
     public List<Country> getTopNCountriesInContinent(String continent, int n) {
-        return countryDAO.getTopNCountriesInContinent(continent, n);
+        return inFlight.execute("getTopNCountriesInContinent:" + continent + ":" + n,
+                () -> countryDAO.getTopNCountriesInContinent(continent, n));
     }
 
     /**
@@ -99,6 +120,7 @@ public class CountryService {
      * @return A list of the top N {@link Country} objects in that region.
      */
     public List<Country> getTopNCountriesInRegion(String region, int n) {
-        return countryDAO.getTopNCountriesInRegion(region, n);
+        return inFlight.execute("getTopNCountriesInRegion:" + region + ":" + n,
+                () -> countryDAO.getTopNCountriesInRegion(region, n));
     }
 }
@@ -1,9 +1,10 @@
 package com.napier.sem.service;
 
 import com.napier.sem.dao.LanguageReportDAO;
+import com.napier.sem.dao.LanguageReportRepository;
 import com.napier.sem.model.LanguageReport;
 
-import java.sql.Connection;
+import javax.sql.DataSource;
 import java.util.List;
 
 /**
@@ -14,32 +15,35 @@ import java.util.List;
  * </p>
  * <p>
  * It retrieves summarized data showing the number of people who speak major world languages
- * (Chinese, English, Hindi, Spanish, Arabic) along with each language’s percentage
- * of the total world population.
+ * (Chinese, English, Hindi, Spanish, Arabic), or any other list of languages, along with
+ * each language’s percentage of the total world population.
  * </p>
  */
 public class LanguageReportService {
-    /** DAO responsible for database access related to language reports. */
-    private final LanguageReportDAO languageReportDAO;
+    /** Source of language report data (database DAO or in-memory dataset). */
+    private final LanguageReportRepository languageReportDAO;
+
+    /** Shares one database call between identical requests running at the same time. */
+    private final SingleFlight inFlight = new SingleFlight();
 
     /**
      * Constructs a service instance for production use.
-     * Creates a {@link LanguageReportDAO} internally using a database connection.
+     * Creates a {@link LanguageReportDAO} internally using the database connection pool.
      *
-     * @param conn Active database connection.
+     * @param dataSource Pool of database connections.
      */
-    public LanguageReportService(Connection conn) {
-        this.languageReportDAO = new LanguageReportDAO(conn);
+    public LanguageReportService(DataSource dataSource) {
+        this.languageReportDAO = new LanguageReportDAO(dataSource);
     }
 
 
     /**
-     * Constructs a service instance for testing.
-     * Allows injecting a mock or preconfigured {@link LanguageReportDAO}.
+     * Constructs a service on top of any {@link LanguageReportRepository}, such as the in-memory
+     * dataset or a mock DAO in unit tests.
      *
-     * @param languageReportDAO A predefined DAO (used for testing).
+     * @param languageReportDAO Source of report data.
      */
-    public LanguageReportService(LanguageReportDAO languageReportDAO) {
+    public LanguageReportService(LanguageReportRepository languageReportDAO) {
         this.languageReportDAO = languageReportDAO;
     }
 
@@ -54,6 +58,32 @@ public class LanguageReportService {
      *         the language name, number of speakers, and world percentage.
      */
     public List<LanguageReport> getLanguagePopulationReport() {
-        return languageReportDAO.getLanguagePopulationReport();
+        return inFlight.execute("getLanguagePopulationReport", languageReportDAO::getLanguagePopulationReport);
+    }
+
+    /**
+     * Retrieves the number of speakers of any list of languages and their percentage
+     * of the global population, ordered from the most spoken to the least spoken.
+     * Languages that are not spoken anywhere are left out.
+     *
+     * @param languages    The names of the languages (e.g., "Portuguese", "Swahili").
+     * @param officialOnly Whether to count only speakers in countries where the language is official.
+     * @return A list of {@link LanguageReport} objects, one per language found.
+     */
+    public List<LanguageReport> getLanguageReport(List<String> languages, boolean officialOnly) {
+        return inFlight.execute("getLanguageReport:" + officialOnly + ":" + languages,
+                () -> languageReportDAO.getLanguageReport(languages, officialOnly));
+    }
+
+    /**
+     * Retrieves the N most spoken languages of the world.
+     *
+     * @param n            The number of languages to return.
+     * @param officialOnly Whether to count only speakers in countries where the language is official.
+     * @return A list of {@link LanguageReport} objects, most spoken first.
+     */
+    public List<LanguageReport> getTopNLanguages(int n, boolean officialOnly) {
+        return inFlight.execute("getTopNLanguages:" + officialOnly + ":" + n,
+                () -> languageReportDAO.getTopNLanguages(n, officialOnly));
     }
 }
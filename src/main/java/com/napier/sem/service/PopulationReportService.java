@@ -1,9 +1,10 @@
 package com.napier.sem.service;
 
 import com.napier.sem.dao.PopulationReportDAO;
+import com.napier.sem.dao.PopulationReportRepository;
 import com.napier.sem.model.PopulationReport;
 
-import java.sql.Connection;
+import javax.sql.DataSource;
 import java.util.List;
 
 /**
@@ -20,26 +21,29 @@ import java.util.List;
  * </p>
  */
 public class PopulationReportService {
-    /** DAO responsible for database access related to population reports. */
-    private final PopulationReportDAO populationReportDAO;
+    /** Source of population report data (database DAO or in-memory dataset). */
+    private final PopulationReportRepository populationReportDAO;
+
+    /** Shares one database call between identical requests running at the same time. */
+    private final SingleFlight inFlight = new SingleFlight();
 
     /**
      * Constructor used in production.
-     * Creates a new {@link PopulationReportDAO} instance with the provided database connection.
+     * Creates a new {@link PopulationReportDAO} instance with the provided connection pool.
      *
-     * @param conn Active database connection.
+     * @param dataSource Pool of database connections.
      */
-    public PopulationReportService(Connection conn) {
-        this.populationReportDAO = new PopulationReportDAO(conn);
+    public PopulationReportService(DataSource dataSource) {
+        this.populationReportDAO = new PopulationReportDAO(dataSource);
     }
 
     /**
-     * Constructor used in testing.
-     * Allows injecting a mock or preconfigured {@link PopulationReportDAO}.
+     * Constructs a service on top of any {@link PopulationReportRepository}, such as the in-memory
+     * dataset or a mock DAO in unit tests.
      *
-     * @param populationReportDAO A predefined DAO instance (used for testing).
+     * @param populationReportDAO Source of report data.
      */
-    public PopulationReportService(PopulationReportDAO populationReportDAO) {
+    public PopulationReportService(PopulationReportRepository populationReportDAO) {
         this.populationReportDAO = populationReportDAO;
     }
 
@@ -83,7 +87,7 @@ public class PopulationReportService {
      * @return The world's total population.
      */
     public Long getWorldPopulation() {
-        return populationReportDAO.getWorldPopulation();
+        return inFlight.execute("getWorldPopulation", populationReportDAO::getWorldPopulation);
     }
 
     /**
@@ -94,11 +98,12 @@ public class PopulationReportService {
      */
     public Long getContinentPopulation(String continent) {
         if (isInvalidInput("continent", continent)) return null;
-        continent = continent.trim();
+        String name = continent.trim();
 
-        Long population = populationReportDAO.getContinentPopulation(continent);
+        Long population = inFlight.execute("getContinentPopulation:" + name,
+                () -> populationReportDAO.getContinentPopulation(name));
         if (population == null) {
-            handleNoResults("continent", continent);
+            handleNoResults("continent", name);
             return null;
         }
         return population;
@@ -109,11 +114,12 @@ public class PopulationReportService {
      */
     public Long getRegionPopulation(String region) {
         if (isInvalidInput("region", region)) return null;
-        region = region.trim();
+        String name = region.trim();
 
-        Long population = populationReportDAO.getRegionPopulation(region);
+        Long population = inFlight.execute("getRegionPopulation:" + name,
+                () -> populationReportDAO.getRegionPopulation(name));
         if (population == null) {
-            handleNoResults("region", region);
+            handleNoResults("region", name);
             return null;
         }
         return population;
@@ -124,11 +130,12 @@ public class PopulationReportService {
      */
     public Long getCountryPopulation(String country) {
         if (isInvalidInput("country", country)) return null;
-        country = country.trim();
+        String name = country.trim();
 
-        Long population = populationReportDAO.getCountryPopulation(country);
+        Long population = inFlight.execute("getCountryPopulation:" + name,
+                () -> populationReportDAO.getCountryPopulation(name));
         if (population == null) {
-            handleNoResults("country", country);
+            handleNoResults("country", name);
             return null;
         }
         return population;
@@ -139,11 +146,12 @@ public class PopulationReportService {
      */
     public Long getDistrictPopulation(String district) {
         if (isInvalidInput("district", district)) return null;
-        district = district.trim();
+        String name = district.trim();
 
-        Long population = populationReportDAO.getDistrictPopulation(district);
+        Long population = inFlight.execute("getDistrictPopulation:" + name,
+                () -> populationReportDAO.getDistrictPopulation(name));
         if (population == null) {
-            handleNoResults("district", district);
+            handleNoResults("district", name);
             return null;
         }
         return population;
@@ -154,11 +162,12 @@ public class PopulationReportService {
      */
     public Long getCityPopulation(String city) {
         if (isInvalidInput("city", city)) return null;
-        city = city.trim();
+        String name = city.trim();
 
-        Long population = populationReportDAO.getCityPopulation(city);
+        Long population = inFlight.execute("getCityPopulation:" + name,
+                () -> populationReportDAO.getCityPopulation(name));
         if (population == null) {
-            handleNoResults("city", city);
+            handleNoResults("city", name);
             return null;
         }
         return population;
@@ -175,7 +184,7 @@ public class PopulationReportService {
      * @return A list of {@link PopulationReport} objects for each continent.
      */
     public List<PopulationReport> getContinentPopulationBreakdown() {
-        return populationReportDAO.getContinentPopulationBreakdown();
+        return inFlight.execute("getContinentPopulationBreakdown", populationReportDAO::getContinentPopulationBreakdown);
     }
 
     /**
@@ -185,7 +194,7 @@ public class PopulationReportService {
      * @return A list of {@link PopulationReport} objects for each region.
      */
     public List<PopulationReport> getRegionPopulationBreakdown() {
-        return populationReportDAO.getRegionPopulationBreakdown();
+        return inFlight.execute("getRegionPopulationBreakdown", populationReportDAO::getRegionPopulationBreakdown);
     }
 
     /**
@@ -195,6 +204,6 @@ public class PopulationReportService {
      * @return A list of {@link PopulationReport} objects for each country.
      */
     public List<PopulationReport> getCountryPopulationBreakdown() {
-        return populationReportDAO.getCountryPopulationBreakdown();
+        return inFlight.execute("getCountryPopulationBreakdown", populationReportDAO::getCountryPopulationBreakdown);
     }
 }
\ No newline at end of file
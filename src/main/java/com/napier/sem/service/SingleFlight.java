@@ -0,0 +1,112 @@
+package com.napier.sem.service;
+
+import com.napier.sem.config.Deadline;
+import com.napier.sem.exception.DataAccessException;
+import com.napier.sem.exception.DeadlineExceededException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical report calls that are running at the same time.
+ * <p>
+ * The first caller for a key runs the call; callers arriving with the same key while
+ * it is still running wait for it and receive the same result (or the same exception)
+ * instead of sending their own query to the database. Nothing is kept once the call
+ * finishes, so this is not a cache: a later caller always gets fresh data.
+ * </p>
+ * <p>
+ * Results are shared between the coalesced callers and must be treated as read-only.
+ * A waiting caller with a request {@link Deadline} stops waiting when its time is up,
+ * independently of the caller running the call. The reverse holds too: if the call
+ * fails because the deadline of the caller running it passed (e.g. its query was
+ * cancelled), that failure is not handed on; the waiting callers run the call again
+ * under their own deadlines, one of them running it and the others waiting for it.
+ * </p>
+ */
+public class SingleFlight {
+    /** Number of calls actually run, across all instances. */
+    private static final AtomicLong executions = new AtomicLong();
+    /** Number of callers that shared another caller's call, across all instances. */
+    private static final AtomicLong coalesced = new AtomicLong();
+
+    /** Result handed to waiting callers when the call failed on its runner's deadline. */
+    private static final Object RETRY = new Object();
+
+    /** Calls currently running, by key. */
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> running = new ConcurrentHashMap<>();
+
+    /**
+     * Runs {@code call}, or waits for the identical call already running under {@code key}.
+     *
+     * @param key  identifies the call, e.g. report name plus parameters
+     * @param call the report call
+     * @return the call's result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> call) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing;
+        while ((existing = running.putIfAbsent(key, mine)) != null) {
+            coalesced.incrementAndGet();
+            Object result = await(existing);
+            if (result != RETRY) return (T) result;
+            // The runner ran out of time, this caller has not: run the call, or join whoever does
+        }
+
+        executions.incrementAndGet();
+        try {
+            T result = call.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            // Failures after the runner's deadline are that deadline's doing, not the call's
+            Deadline deadline = Deadline.current();
+            if (deadline != null && deadline.isExpired()) mine.complete(RETRY);
+            else mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            running.remove(key, mine);
+        }
+    }
+
+    /**
+     * Waits for a running call, rethrowing its exception as-is.
+     * The wait ends early if the current request's deadline passes.
+     */
+    private static Object await(CompletableFuture<Object> call) {
+        Deadline deadline = Deadline.current();
+        try {
+            return deadline == null
+                    ? call.get()
+                    : call.get(deadline.getRemainingNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("Request deadline of " + deadline.getTimeoutMillis()
+                    + " ms passed while waiting for an identical report");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Interrupted while waiting for an identical report", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new CompletionException(cause);
+        }
+    }
+
+    /** @return number of report calls actually run since startup */
+    public static long getExecutionCount() {
+        return executions.get();
+    }
+
+    /** @return number of report calls answered by sharing a running call since startup */
+    public static long getCoalescedCount() {
+        return coalesced.get();
+    }
+}
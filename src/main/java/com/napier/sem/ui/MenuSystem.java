@@ -1,11 +1,10 @@
 package com.napier.sem.ui;
 
-import com.napier.sem.config.DatabaseConnection;
+import com.napier.sem.config.Backend;
 import com.napier.sem.helper.InputHelper;
 import com.napier.sem.helper.OutputHelper;
 import com.napier.sem.service.*;
 
-import java.sql.Connection;
 import java.util.Scanner;
 
 /**
@@ -23,25 +22,22 @@ import java.util.Scanner;
  */
 public class MenuSystem {
     // -------------------------------------------------------
-    // Database & Services
+    // Services (backed by the database or the in-memory dataset, see Backend)
     // -------------------------------------------------------
-    /** Shared database connection instance. */
-    private final Connection conn = DatabaseConnection.get();
-
     /** Service for country reports. */
-    private final CountryService countryService = new CountryService(conn);
+    private final CountryService countryService = new CountryService(Backend.countries());
 
     /** Service for city reports. */
-    private final CityService cityService = new CityService(conn);
+    private final CityService cityService = new CityService(Backend.cities());
 
     /** Service for capital city reports. */
-    private final CapitalCityService capitalCityService = new CapitalCityService(conn);
+    private final CapitalCityService capitalCityService = new CapitalCityService(Backend.capitals());
 
     /** Service for population reports. */
-    private final PopulationReportService populationReportService = new PopulationReportService(conn);
+    private final PopulationReportService populationReportService = new PopulationReportService(Backend.population());
 
     /** Service for language reports. */
-    private final LanguageReportService languageReportService = new LanguageReportService(conn);
+    private final LanguageReportService languageReportService = new LanguageReportService(Backend.languages());
 
     /** Scanner instance for reading user input. */
     private final Scanner sc = new Scanner(System.in);
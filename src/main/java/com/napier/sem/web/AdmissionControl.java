@@ -0,0 +1,211 @@
+package com.napier.sem.web;
+
+import com.napier.sem.config.AppConfig;
+import com.napier.sem.config.Deadline;
+import com.napier.sem.metrics.Metrics;
+import spark.Route;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how many report requests of each route class run at the same time, so a
+ * slow database sheds load instead of piling up requests.
+ * <p>
+ * Routes are grouped into classes by cost, e.g. {@code lookup} for single values such
+ * as {@code /population/city}, {@code bulk} for whole-table dumps such as
+ * {@code /cities/all} and {@code report} for everything else. Each class runs at most
+ * {@code admission.<class>.limit} requests at once. Further requests wait in a queue
+ * of at most {@code admission.<class>.queue} requests, for up to
+ * {@code admission.queue.timeout} milliseconds (or the time left before their
+ * {@link Deadline}). A request that finds the queue full, or waits too long, is
+ * answered straight away with {@code 503 Service Unavailable} and {@code Retry-After}.
+ * </p>
+ * <p>
+ * Only requests that reach the report are counted: conditional requests and cached
+ * responses are answered before admission, as they cost the database nothing.
+ * </p>
+ */
+public class AdmissionControl {
+    /** Class of routes not listed in any {@code admission.<class>.routes}. */
+    static final String DEFAULT_CLASS = "report";
+
+    /** Concurrency limit and wait queue of one route class. */
+    static final class RouteClass {
+        final String name;
+        final int limit;
+        final int queueSize;
+        private final Semaphore permits;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicLong rejected = new AtomicLong();
+
+        RouteClass(String name, int limit, int queueSize) {
+            if (limit < 1 || queueSize < 0) {
+                throw new IllegalArgumentException("Invalid admission limits for " + name
+                        + ": limit=" + limit + ", queue=" + queueSize);
+            }
+            this.name = name;
+            this.limit = limit;
+            this.queueSize = queueSize;
+            this.permits = new Semaphore(limit, true);
+        }
+
+        /**
+         * Admits a request, waiting in the queue if the class is at its limit.
+         *
+         * @return true if admitted (call {@link #release()} when done), false if rejected
+         */
+        boolean acquire(long queueTimeoutMillis) throws InterruptedException {
+            // The timed form respects the fair queue: a free permit is not taken ahead of waiting requests
+            if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) return true;
+            if (queued.incrementAndGet() > queueSize) {
+                queued.decrementAndGet();
+                rejected.incrementAndGet();
+                return false;
+            }
+            try {
+                if (permits.tryAcquire(Deadline.limit(queueTimeoutMillis), TimeUnit.MILLISECONDS)) return true;
+                rejected.incrementAndGet();
+                return false;
+            } finally {
+                queued.decrementAndGet();
+            }
+        }
+
+        void release() {
+            permits.release();
+        }
+
+        /** @return number of requests of this class running */
+        int getActive() {
+            return limit - permits.availablePermits();
+        }
+
+        /** @return number of requests of this class waiting to run */
+        int getQueued() {
+            return queued.get();
+        }
+
+        /** @return number of requests of this class rejected since startup */
+        long getRejected() {
+            return rejected.get();
+        }
+    }
+
+    /** Route classes by name, in the order their route lists are checked. */
+    private final Map<String, RouteClass> classes = new LinkedHashMap<>();
+    /** Route patterns of each class; a pattern ending in {@code *} matches by prefix. */
+    private final Map<String, List<String>> routes = new LinkedHashMap<>();
+    private final long queueTimeoutMillis;
+    private final int retryAfterSeconds;
+
+    /**
+     * @param queueTimeoutMillis longest time a request waits in a queue
+     * @param retryAfterSeconds  value of the {@code Retry-After} header of rejections
+     */
+    public AdmissionControl(long queueTimeoutMillis, int retryAfterSeconds) {
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Adds a route class.
+     *
+     * @param name      class name, used in metrics and error responses
+     * @param limit     requests of the class that may run at the same time
+     * @param queueSize requests of the class that may wait to run
+     * @param patterns  routes of the class; a pattern ending in {@code *} matches every path starting with the rest
+     * @return this object, for chaining
+     */
+    public AdmissionControl addClass(String name, int limit, int queueSize, List<String> patterns) {
+        classes.put(name, new RouteClass(name, limit, queueSize));
+        routes.put(name, new ArrayList<>(patterns));
+        return this;
+    }
+
+    /**
+     * @return admission control configured by the {@code admission.*} settings,
+     *         or null if {@code admission.enabled} is false
+     */
+    public static AdmissionControl fromConfig() {
+        if (!AppConfig.getBoolean("admission.enabled")) return null;
+        AdmissionControl admission = new AdmissionControl(AppConfig.getInt("admission.queue.timeout"),
+                AppConfig.getInt("admission.retry.after"));
+        for (String name : new String[]{"lookup", "bulk", DEFAULT_CLASS}) {
+            String list = AppConfig.get("admission." + name + ".routes");
+            List<String> patterns = new ArrayList<>();
+            if (list != null) {
+                for (String pattern : list.split(",")) {
+                    if (!pattern.isBlank()) patterns.add(pattern.trim());
+                }
+            }
+            admission.addClass(name, AppConfig.getInt("admission." + name + ".limit"),
+                    AppConfig.getInt("admission." + name + ".queue"), patterns);
+        }
+        return admission;
+    }
+
+    /** @return the class of a route: the first whose patterns match, otherwise {@value #DEFAULT_CLASS} */
+    RouteClass classOf(String path) {
+        for (Map.Entry<String, List<String>> e : routes.entrySet()) {
+            for (String pattern : e.getValue()) {
+                boolean prefix = pattern.endsWith("*");
+                if (prefix ? path.startsWith(pattern.substring(0, pattern.length() - 1)) : path.equals(pattern)) {
+                    return classes.get(e.getKey());
+                }
+            }
+        }
+        RouteClass fallback = classes.get(DEFAULT_CLASS);
+        if (fallback == null) throw new IllegalStateException("No admission class '" + DEFAULT_CLASS + "'");
+        return fallback;
+    }
+
+    /**
+     * Wraps a route so that its requests go through the admission control of its class.
+     *
+     * @param path  the route path, used to find its class
+     * @param route the route
+     * @return the route with admission control
+     */
+    public Route wrap(String path, Route route) {
+        RouteClass routeClass = classOf(path);
+        return (req, res) -> {
+            if (!routeClass.acquire(queueTimeoutMillis)) {
+                HttpServletResponse raw = res.raw();
+                res.status(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                res.type("application/json");
+                raw.setHeader("Retry-After", Integer.toString(retryAfterSeconds));
+                ConditionalRequests.noStore(raw);
+                return "{\"error\":\"Server busy\",\"class\":\"" + routeClass.name + "\"}";
+            }
+            try {
+                return route.handle(req, res);
+            } finally {
+                routeClass.release();
+            }
+        };
+    }
+
+    /** Exports the limit, running and queued requests and rejections of every class. */
+    public void registerMetrics() {
+        for (RouteClass c : classes.values()) {
+            Metrics.gauge("sem_admission_limit", "class", c.name,
+                    "Report requests of a route class allowed to run at the same time.", () -> c.limit);
+            Metrics.gauge("sem_admission_queue_size", "class", c.name,
+                    "Report requests of a route class allowed to wait.", () -> c.queueSize);
+            Metrics.gauge("sem_admission_active", "class", c.name,
+                    "Report requests of a route class running.", c::getActive);
+            Metrics.gauge("sem_admission_queued", "class", c.name,
+                    "Report requests of a route class waiting to run.", c::getQueued);
+            Metrics.counter("sem_admission_rejected_total", "class", c.name,
+                    "Report requests of a route class rejected with 503.", c::getRejected);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.napier.sem.web;
+
+import com.napier.sem.config.AppConfig;
+import com.napier.sem.model.City;
+import com.napier.sem.model.Country;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Requests every report the API can serve without user-chosen numbers, so that the
+ * response cache (and the database's own caches) are warm before the first user.
+ * <p>
+ * Report parameters come from a finite set known from the data: 7 continents,
+ * 25 regions, 239 countries and the districts of the cities. {@link #targets} lists
+ * the parameterless reports plus every continent and region variant, and optionally
+ * the country and district variants. The reports are fetched over HTTP from the
+ * running server by a few background threads, so they go through exactly the same
+ * routes and cache keys as real requests.
+ * </p>
+ * <p>
+ * Progress is logged every 10% and can be read at any time ({@link #getCompleted()},
+ * {@link #getFailed()}); the total duration is logged when done.
+ * </p>
+ */
+public class CacheWarmer {
+    /** Reports without parameters (top-N reports with their default N). */
+    private static final String[] PARAMETERLESS = {
+            "/cities/all", "/capitals/all", "/countries/all", "/languages", "/population/world",
+            "/population/breakdown/continent", "/population/breakdown/region", "/population/breakdown/country",
+            "/cities/top", "/capitals/top", "/countries/top"};
+    /** Reports with a continent or region name, by the last part of their path. */
+    private static final String[] SCOPED = {
+            "/cities/", "/capitals/", "/countries/", "/population/",
+            "/cities/top/", "/capitals/top/", "/countries/top/"};
+    /** Reports with a country or district name, by the last part of their path. */
+    private static final String[] CITY_SCOPED = {"/cities/", "/population/", "/cities/top/"};
+
+    private final String baseUrl;
+    private final List<String> paths;
+    private final int threads;
+
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile long startedAt;
+    private volatile long durationMillis = -1;
+
+    /**
+     * @param baseUrl address of the running server, e.g. {@code http://localhost:8080}
+     * @param paths   report paths with their query strings, see {@link #targets}
+     * @param threads number of reports requested at the same time
+     */
+    public CacheWarmer(String baseUrl, List<String> paths, int threads) {
+        this.baseUrl = baseUrl;
+        this.paths = Collections.unmodifiableList(new ArrayList<>(paths));
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Lists the reports to warm.
+     *
+     * @param countries every country (gives the continents, regions and country names)
+     * @param cities    every city (gives the district names), or null to leave out district reports
+     * @param byCountry whether to include the reports for each country
+     * @return report paths with their query strings
+     */
+    public static List<String> targets(Collection<Country> countries, Collection<City> cities, boolean byCountry) {
+        Set<String> continents = new TreeSet<>();
+        Set<String> regions = new TreeSet<>();
+        Set<String> names = new TreeSet<>();
+        for (Country c : countries) {
+            continents.add(c.getContinent());
+            regions.add(c.getRegion());
+            names.add(c.getName());
+        }
+
+        List<String> paths = new ArrayList<>(List.of(PARAMETERLESS));
+        add(paths, SCOPED, "continent", continents);
+        add(paths, SCOPED, "region", regions);
+        if (byCountry) add(paths, CITY_SCOPED, "country", names);
+        if (cities != null) {
+            Set<String> districts = new TreeSet<>();
+            for (City c : cities) {
+                if (c.getDistrict() != null && !c.getDistrict().isBlank()) districts.add(c.getDistrict());
+            }
+            add(paths, CITY_SCOPED, "district", districts);
+        }
+        return paths;
+    }
+
+    private static void add(List<String> paths, String[] prefixes, String scope, Set<String> names) {
+        for (String prefix : prefixes) {
+            for (String name : names) {
+                paths.add(prefix + scope + "?name=" + URLEncoder.encode(name, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /** @return a warmer for the server on port 8080 using the {@code cache.warmup.*} settings */
+    public static CacheWarmer fromConfig(List<String> paths) {
+        return new CacheWarmer("http://localhost:8080", paths, AppConfig.getInt("cache.warmup.threads"));
+    }
+
+    /** Starts requesting the reports in the background. */
+    public void start() {
+        startedAt = System.nanoTime();
+        System.out.println("Cache warm-up: requesting " + paths.size() + " reports with " + threads + " threads");
+        if (paths.isEmpty()) {
+            finish();
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "cache-warmer");
+            t.setDaemon(true);
+            return t;
+        });
+        for (String path : paths) {
+            pool.execute(() -> warm(path));
+        }
+        pool.shutdown();
+    }
+
+    /** Requests one report and reads its body, then records progress. */
+    private void warm(String path) {
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            conn.setRequestProperty("Accept-Encoding", "gzip");
+            int status = conn.getResponseCode();
+            try (InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+                if (in != null) in.transferTo(OutputStream.nullOutputStream());
+            }
+            // 4xx (e.g. a country without cities) is a valid answer; only server errors count as failures
+            if (status >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+                failed.incrementAndGet();
+                System.err.println("Cache warm-up: " + path + " answered " + status);
+            }
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            System.err.println("Cache warm-up: " + path + " failed: " + e.getMessage());
+        }
+
+        int count = completed.incrementAndGet();
+        int total = paths.size();
+        if (count * 10 / total != (count - 1) * 10 / total) {
+            System.out.println("Cache warm-up: " + count + "/" + total + " (" + count * 100 / total + "%)");
+        }
+        if (count == total) finish();
+    }
+
+    private void finish() {
+        durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        System.out.println("Cache warm-up finished: " + paths.size() + " reports in " + durationMillis
+                + " ms (" + failed.get() + " failed)");
+        done.countDown();
+    }
+
+    /**
+     * Waits for the warm-up to finish.
+     *
+     * @param timeoutMillis longest time to wait
+     * @return true if it finished in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean await(long timeoutMillis) throws InterruptedException {
+        return done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** @return true once every report has been requested */
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /** @return number of reports to request */
+    public int getTotal() {
+        return paths.size();
+    }
+
+    /** @return number of reports requested so far, successfully or not */
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    /** @return number of reports that could not be fetched or failed on the server */
+    public int getFailed() {
+        return failed.get();
+    }
+
+    /** @return time the warm-up took (milliseconds), or -1 while it is running */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+}
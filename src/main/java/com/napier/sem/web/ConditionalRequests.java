@@ -0,0 +1,158 @@
+package com.napier.sem.web;
+
+import com.napier.sem.config.AppConfig;
+import com.napier.sem.config.DatasetVersion;
+import spark.Request;
+import spark.Route;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * HTTP validators for report routes: {@code ETag}, {@code Last-Modified} and
+ * {@code Cache-Control} headers, and {@code 304 Not Modified} answers to conditional
+ * requests.
+ * <p>
+ * A report only depends on its URL and on the data being served, so the ETag is
+ * simply the {@link DatasetVersion} tag: browsers and proxies keep one copy per URL,
+ * and every copy becomes stale together when the data changes. The route still runs
+ * for a conditional request, so that invalid parameters get their error response
+ * rather than a 304, but a current copy is answered with an empty 304 once the route
+ * has succeeded. Code that writes the body itself ({@link ResponseCache},
+ * {@link JsonStream}) checks {@link #isNotModified} and sends nothing, so a cached
+ * report costs no serialization or bytes on the wire. Gzip-compressed bodies get a
+ * different ETag (suffix {@code -gzip}), as they are a different sequence of bytes.
+ * </p>
+ */
+public class ConditionalRequests {
+    /** Request attribute set when the client's copy is current and the body will not be sent. */
+    static final String NOT_MODIFIED_ATTRIBUTE = ConditionalRequests.class.getName() + ".notModified";
+    /** Suffix marking the ETag of a gzip-compressed body. */
+    private static final String GZIP_SUFFIX = "-gzip";
+
+    /** Value of the {@code Cache-Control} header sent with report responses. */
+    private final String cacheControl;
+
+    /**
+     * @param maxAgeSeconds how long (seconds) clients may reuse a response before
+     *                      revalidating it; 0 makes them revalidate every time
+     */
+    public ConditionalRequests(int maxAgeSeconds) {
+        this.cacheControl = "public, max-age=" + maxAgeSeconds + ", must-revalidate";
+    }
+
+    /**
+     * Creates the validators using the {@code http.cache.*} settings in {@code application.properties}.
+     */
+    public static ConditionalRequests fromConfig() {
+        return new ConditionalRequests(AppConfig.getInt("http.cache.max.age"));
+    }
+
+    /**
+     * Wraps a report route so that its responses carry validators and conditional
+     * requests whose copy is still current get an empty 304 response, provided the
+     * route succeeds. Error responses are sent as usual.
+     *
+     * @param route the report route
+     * @return the route with conditional request handling
+     */
+    public Route wrap(Route route) {
+        return (req, res) -> {
+            HttpServletResponse raw = res.raw();
+            String etag = '"' + DatasetVersion.tag() + '"';
+            long lastModified = DatasetVersion.lastModified();
+            boolean current = notModified(req, etag, lastModified);
+            if (current) req.attribute(NOT_MODIFIED_ATTRIBUTE, Boolean.TRUE);
+
+            // Set before the route runs, as streamed routes commit the headers themselves
+            setValidators(raw, etag, lastModified);
+            Object body = route.handle(req, res);
+            int status = raw.getStatus();
+            if (current && status >= 200 && status < 300 && !raw.isCommitted()) {
+                raw.resetBuffer();
+                raw.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                // Committing the response tells Spark the (empty) body has already been sent
+                raw.flushBuffer();
+                return "";
+            }
+            if (status != HttpServletResponse.SC_OK && !raw.isCommitted()) {
+                noStore(raw);
+            }
+            return body;
+        };
+    }
+
+    /**
+     * @return true if the request is answered with 304 when its route succeeds, so
+     *         code that writes the body itself should write nothing
+     */
+    static boolean isNotModified(Request req) {
+        return Boolean.TRUE.equals(req.attribute(NOT_MODIFIED_ATTRIBUTE));
+    }
+
+    /**
+     * Marks the ETag of a response as that of its gzip-compressed form. Called by
+     * code that sets {@code Content-Encoding: gzip} on a report response.
+     */
+    static void markGzip(HttpServletResponse raw) {
+        String etag = raw.getHeader("ETag");
+        if (etag != null && etag.endsWith("\"") && !etag.endsWith(GZIP_SUFFIX + '"')) {
+            raw.setHeader("ETag", etag.substring(0, etag.length() - 1) + GZIP_SUFFIX + '"');
+        }
+    }
+
+    /** Removes the validators from a response that must not be reused (e.g. an error). */
+    static void noStore(HttpServletResponse raw) {
+        raw.setHeader("ETag", null);
+        raw.setHeader("Last-Modified", null);
+        raw.setHeader("Cache-Control", "no-store");
+    }
+
+    private void setValidators(HttpServletResponse raw, String etag, long lastModified) {
+        raw.setHeader("ETag", etag);
+        raw.setDateHeader("Last-Modified", lastModified);
+        raw.setHeader("Cache-Control", cacheControl);
+    }
+
+    /**
+     * Decides whether the client's copy is still current. {@code If-None-Match} takes
+     * precedence; {@code If-Modified-Since} is only used when it is absent.
+     */
+    static boolean notModified(Request req, String etag, long lastModified) {
+        String ifNoneMatch = req.headers("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matches(ifNoneMatch, etag);
+        }
+        HttpServletRequest raw = req.raw();
+        try {
+            long since = raw.getDateHeader("If-Modified-Since");
+            return since != -1 && lastModified <= since;
+        } catch (IllegalArgumentException e) {
+            // Unparseable date: ignore the header
+            return false;
+        }
+    }
+
+    /**
+     * Compares an {@code If-None-Match} header with the current ETag. As required for
+     * this header, weak tags ({@code W/"..."}) also match, and the gzip and identity
+     * forms of the body count as the same version.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        String current = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) return true;
+            if (candidate.startsWith("W/")) candidate = candidate.substring(2);
+            if (opaque(candidate).equals(current)) return true;
+        }
+        return false;
+    }
+
+    /** @return the tag without quotes and without the gzip suffix */
+    private static String opaque(String etag) {
+        String tag = etag.length() >= 2 && etag.startsWith("\"") && etag.endsWith("\"")
+                ? etag.substring(1, etag.length() - 1) : etag;
+        return tag.endsWith(GZIP_SUFFIX) ? tag.substring(0, tag.length() - GZIP_SUFFIX.length()) : tag;
+    }
+}
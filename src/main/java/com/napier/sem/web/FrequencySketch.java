@@ -0,0 +1,67 @@
+package com.napier.sem.web;
+
+/**
+ * Approximate count of how often each key has been requested recently (a count-min sketch).
+ * <p>
+ * Used by {@link ResponseCache} to decide whether a new response is worth keeping
+ * in place of an older one. Counts are estimates that may be too high, never too low,
+ * and are halved periodically so that keys which were popular a while ago fade out.
+ * </p>
+ * <p>
+ * Not thread-safe; callers synchronize.
+ * </p>
+ */
+final class FrequencySketch {
+    /** Number of hash functions (rows of counters). */
+    private static final int DEPTH = 4;
+    /** Seeds spreading the key hash over the rows. */
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final int[][] counters;
+    private final int mask;
+    /** Number of increments after which all counters are halved. */
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     */
+    FrequencySketch(int width) {
+        int size = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        counters = new int[DEPTH][size];
+        mask = size - 1;
+        sampleSize = size * 10;
+    }
+
+    /** Records one request for the key. */
+    void increment(String key) {
+        int hash = key.hashCode();
+        for (int d = 0; d < DEPTH; ++d) {
+            counters[d][index(hash, d)]++;
+        }
+        if (++additions >= sampleSize) halve();
+    }
+
+    /** @return estimated number of recent requests for the key */
+    int frequency(String key) {
+        int hash = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int d = 0; d < DEPTH; ++d) {
+            min = Math.min(min, counters[d][index(hash, d)]);
+        }
+        return min;
+    }
+
+    private int index(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** Ages all counts so recent requests weigh more than old ones. */
+    private void halve() {
+        for (int[] row : counters) {
+            for (int i = 0; i < row.length; ++i) row[i] >>>= 1;
+        }
+        additions /= 2;
+    }
+}
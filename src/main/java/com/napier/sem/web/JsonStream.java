@@ -0,0 +1,67 @@
+package com.napier.sem.web;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Writes a JSON array to the HTTP response one element at a time.
+ * <p>
+ * Elements are serialized with a Gson {@link JsonWriter} bound directly to the servlet
+ * output stream as the report produces them, so neither a list of results nor the
+ * whole JSON text is ever held in memory. No Content-Length is set, so Jetty sends
+ * larger responses with chunked transfer encoding.
+ * </p>
+ */
+public final class JsonStream {
+    private JsonStream() { }
+
+    /**
+     * Streams the elements produced by {@code source} as a JSON array.
+     * <p>
+     * If the report fails before anything has been sent, the partial output is
+     * discarded and the exception is rethrown so the usual error response is sent.
+     * </p>
+     *
+     * @param gson        serializer for the elements
+     * @param req         Spark request being answered
+     * @param res         Spark response to write to
+     * @param elementType type of the elements
+     * @param source      report that passes each element to the given sink
+     * @return an empty body for Spark (everything has already been written)
+     * @throws IOException if writing to the client fails
+     */
+    public static <T> String array(Gson gson, Request req, Response res, Type elementType,
+                                   Consumer<Consumer<T>> source) throws IOException {
+        HttpServletResponse raw = res.raw();
+        raw.setContentType("application/json");
+        raw.setCharacterEncoding("UTF-8");
+
+        // The client's copy is current: still build the report for the cache, send nothing
+        OutputStream out = ConditionalRequests.isNotModified(req)
+                ? OutputStream.nullOutputStream() : raw.getOutputStream();
+        ResponseCache.Capture capture = req.attribute(ResponseCache.CAPTURE_ATTRIBUTE);
+        if (capture != null) out = capture.tee(out); // keep a copy for the response cache
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try {
+            writer.beginArray();
+            // JsonIOException (unchecked) if the client goes away mid-stream
+            source.accept(element -> gson.toJson(element, elementType, writer));
+            writer.endArray();
+            writer.flush();
+        } catch (RuntimeException e) {
+            if (!raw.isCommitted()) raw.resetBuffer();
+            throw e;
+        }
+        return "";
+    }
+}
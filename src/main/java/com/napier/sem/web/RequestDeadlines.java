@@ -0,0 +1,133 @@
+package com.napier.sem.web;
+
+import com.napier.sem.config.AppConfig;
+import com.napier.sem.config.Deadline;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gives every report request a {@link Deadline} and answers requests that run out of
+ * time with an error instead of letting them hold a thread and a connection.
+ * <p>
+ * The time limit is {@code request.timeout}, or {@code request.timeout.route.<path>}
+ * for a route that has its own (the path with {@code /} replaced by {@code .}, e.g.
+ * {@code request.timeout.route.cities.all}). A client may ask for a different limit
+ * with the {@value #HEADER} header (milliseconds), up to {@code request.timeout.max}.
+ * </p>
+ * <p>
+ * When the deadline passes, the request's running query is cancelled and the route
+ * fails. The client then gets {@code 504 Gateway Timeout} if the query had started,
+ * or {@code 503 Service Unavailable} with {@code Retry-After} if the request was
+ * still waiting for a database connection (the server is overloaded). Both carry
+ * the limit and the time taken in the body and in a {@code Server-Timing} header.
+ * </p>
+ */
+public class RequestDeadlines {
+    /** Request header with the time limit (milliseconds) the client asks for. */
+    static final String HEADER = "X-Request-Timeout";
+
+    /** Number of requests answered with 504, since startup. */
+    private static final AtomicLong timeouts = new AtomicLong();
+    /** Number of requests answered with 503, since startup. */
+    private static final AtomicLong rejections = new AtomicLong();
+
+    private final long defaultMillis;
+    private final long maxMillis;
+
+    /**
+     * @param defaultMillis time limit of routes without their own (0 = no limit)
+     * @param maxMillis     largest time limit a client may ask for
+     */
+    public RequestDeadlines(long defaultMillis, long maxMillis) {
+        this.defaultMillis = defaultMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    /** @return deadlines configured by the {@code request.timeout.*} settings */
+    public static RequestDeadlines fromConfig() {
+        return new RequestDeadlines(AppConfig.getInt("request.timeout"), AppConfig.getInt("request.timeout.max"));
+    }
+
+    /**
+     * Wraps a route so that every request to it runs under a deadline.
+     *
+     * @param path  the route path, used to look up its own time limit
+     * @param route the route
+     * @return the route with deadlines, or {@code route} itself if it has no time limit
+     *         and clients may not ask for one
+     */
+    public Route wrap(String path, Route route) {
+        String own = AppConfig.get("request.timeout.route" + path.replace('/', '.'));
+        long routeMillis = own == null ? defaultMillis : Long.parseLong(own.trim());
+        if (routeMillis <= 0 && maxMillis <= 0) return route;
+
+        return (req, res) -> {
+            long timeout = timeoutFor(req.headers(HEADER), routeMillis);
+            if (timeout <= 0) return route.handle(req, res);
+            try (Deadline deadline = Deadline.start(timeout)) {
+                try {
+                    return route.handle(req, res);
+                } catch (Exception e) {
+                    // Failures after the deadline are the deadline's doing (e.g. a cancelled query)
+                    if (!deadline.isExpired() || res.raw().isCommitted()) throw e;
+                    return expired(deadline, req, res);
+                }
+            }
+        };
+    }
+
+    /**
+     * @param header      value of the {@value #HEADER} header, or null
+     * @param routeMillis time limit of the route
+     * @return the limit the client asked for (at most {@code maxMillis}), or the route's
+     *         limit if the header is missing or invalid
+     */
+    long timeoutFor(String header, long routeMillis) {
+        if (header == null || maxMillis <= 0) return routeMillis;
+        try {
+            long asked = Long.parseLong(header.trim());
+            return asked > 0 ? Math.min(asked, maxMillis) : routeMillis;
+        } catch (NumberFormatException e) {
+            return routeMillis;
+        }
+    }
+
+    /** Answers a request that ran out of time. */
+    private static String expired(Deadline deadline, Request req, Response res) {
+        HttpServletResponse raw = res.raw();
+        raw.resetBuffer();
+        long elapsed = deadline.getElapsedMillis();
+        String error;
+        if (deadline.hasQueried()) {
+            timeouts.incrementAndGet();
+            res.status(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+            error = "Request timed out";
+        } else {
+            rejections.incrementAndGet();
+            res.status(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            raw.setHeader("Retry-After", "1");
+            error = "Timed out waiting to start the report";
+        }
+        System.err.println(req.pathInfo() + ": " + error + " after " + elapsed + " ms (limit "
+                + deadline.getTimeoutMillis() + " ms)");
+        res.type("application/json");
+        raw.setHeader("Server-Timing", "total;dur=" + elapsed);
+        ConditionalRequests.noStore(raw);
+        return "{\"error\":\"" + error + "\",\"timeoutMs\":" + deadline.getTimeoutMillis()
+                + ",\"elapsedMs\":" + elapsed + "}";
+    }
+
+    /** @return number of requests answered with 504 after running out of time */
+    public static long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    /** @return number of requests answered with 503 after running out of time before their query started */
+    public static long getRejectionCount() {
+        return rejections.get();
+    }
+}
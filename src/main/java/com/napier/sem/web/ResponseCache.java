@@ -0,0 +1,472 @@
+package com.napier.sem.web;
+
+import com.napier.sem.config.AppConfig;
+import com.napier.sem.config.DatasetVersion;
+import com.napier.sem.dao.PageCursor;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of finished report responses (the serialized JSON bytes, and optionally a
+ * gzip-compressed copy), keyed by the request path and the parameters reports read.
+ * <p>
+ * Report routes only depend on their path and parameters, so a cached response can
+ * be sent again without running the query or serializing anything. The cache is
+ * bounded by the total size of the stored bytes. When it is full, the least recently
+ * used response is only replaced if the new one has been requested more often lately
+ * (tracked by a {@link FrequencySketch}), so a burst of one-off requests cannot push
+ * out the popular reports. Entries expire after a time-to-live and are all dropped
+ * when the {@link DatasetVersion} changes.
+ * </p>
+ */
+public class ResponseCache {
+    /** Request attribute under which a streamed route finds the {@link Capture} to copy its output to. */
+    static final String CAPTURE_ATTRIBUTE = ResponseCache.class.getName() + ".capture";
+
+    /** A stored response. */
+    private static final class Entry {
+        final byte[] body;
+        /** Gzip-compressed body, or null if not worth compressing. */
+        final byte[] gzipped;
+        final String contentType;
+        final long expiresAt;
+
+        Entry(byte[] body, byte[] gzipped, String contentType, long expiresAt) {
+            this.body = body;
+            this.gzipped = gzipped;
+            this.contentType = contentType;
+            this.expiresAt = expiresAt;
+        }
+
+        long size() {
+            return body.length + (gzipped == null ? 0 : gzipped.length);
+        }
+    }
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final long ttlMillis;
+    private final boolean gzip;
+    private final int gzipMinBytes;
+
+    /** Stored responses in access order, least recently used first. Guarded by {@code this}. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    /** Recent request counts per key, including keys not currently stored. Guarded by {@code this}. */
+    private final FrequencySketch sketch = new FrequencySketch(1024);
+    /** Dataset version the stored responses were built from. Guarded by {@code this}. */
+    private long version = DatasetVersion.get();
+    /** Total size of the stored bytes. Guarded by {@code this}. */
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxBytes      maximum total size of stored responses (bytes)
+     * @param maxEntryBytes responses larger than this are never stored (bytes)
+     * @param ttlMillis     how long a response is kept (milliseconds)
+     * @param gzip          whether to also store a gzip-compressed copy
+     * @param gzipMinBytes  smallest body worth compressing (bytes)
+     */
+    public ResponseCache(long maxBytes, long maxEntryBytes, long ttlMillis, boolean gzip, int gzipMinBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.ttlMillis = ttlMillis;
+        this.gzip = gzip;
+        this.gzipMinBytes = gzipMinBytes;
+    }
+
+    /**
+     * Creates a cache using the {@code cache.response.*} settings in {@code application.properties}.
+     */
+    public static ResponseCache fromConfig() {
+        return new ResponseCache(
+                Long.parseLong(AppConfig.get("cache.response.max.bytes")),
+                Long.parseLong(AppConfig.get("cache.response.max.entry.bytes")),
+                Long.parseLong(AppConfig.get("cache.response.ttl")),
+                AppConfig.getBoolean("cache.response.gzip"),
+                AppConfig.getInt("cache.response.gzip.min.bytes"));
+    }
+
+    // -------------------------------------------------------
+    // Route wrapper
+    // -------------------------------------------------------
+
+    /**
+     * Wraps a report route so that successful responses are served from the cache.
+     * <p>
+     * On a miss the route runs as usual. A string body with status 200 is stored;
+     * a body the route streamed itself (see {@link JsonStream}) is copied while it is
+     * written and stored if it fits in one entry. Error responses are never stored,
+     * nor are responses built while the {@link DatasetVersion} changed, since they may
+     * hold rows from before the change.
+     * </p>
+     *
+     * @param route the report route
+     * @return the caching route
+     */
+    public Route wrap(Route route) {
+        return wrap(route, true);
+    }
+
+    /**
+     * Same as {@link #wrap(Route)}, for a route that may care about the spelling of
+     * its {@code name} parameter.
+     *
+     * @param route    the report route
+     * @param foldName whether names differing only in case share one response; false
+     *                 for a route that echoes the name back
+     * @return the caching route
+     */
+    public Route wrap(Route route, boolean foldName) {
+        return (req, res) -> {
+            String key = key(req, foldName);
+            if (key == null) {
+                return route.handle(req, res);
+            }
+            Entry entry = get(key);
+            if (entry != null) {
+                return send(entry, req, res);
+            }
+
+            long version = DatasetVersion.get();
+            Capture capture = new Capture(maxEntryBytes);
+            req.attribute(CAPTURE_ATTRIBUTE, capture);
+            Object body = route.handle(req, res);
+            if (res.raw().getStatus() != HttpServletResponse.SC_OK) {
+                return body;
+            }
+            if (res.raw().isCommitted() || capture.size() > 0) {
+                // Streamed by the route: already sent, store the copy if it is complete
+                if (!capture.overflowed()) put(key, capture.toByteArray(), res.raw().getContentType(), version);
+                return body;
+            }
+            if (body instanceof String) {
+                entry = put(key, ((String) body).getBytes(StandardCharsets.UTF_8), res.raw().getContentType(), version);
+                if (entry != null) return send(entry, req, res);
+            }
+            return body;
+        };
+    }
+
+    /**
+     * Builds the cache key of a request from the parameters report routes read, in a
+     * fixed order and in the form the routes see them: {@code name} case-folded like
+     * the report lookups match it, {@code n} and {@code limit} as parsed numbers,
+     * {@code official} as a boolean and {@code cursor} re-encoded. Any other parameter
+     * cannot change the response and is left out, so it cannot create new entries.
+     * Values are URL-encoded so that different parameters can never produce the same key.
+     *
+     * @param foldName whether to case-fold the {@code name} parameter
+     * @return the key, or null if the request should not be cached (cursor not valid)
+     */
+    static String key(Request req, boolean foldName) {
+        StringBuilder key = new StringBuilder(req.pathInfo());
+        String name = req.queryParams("name");
+        if (name != null) append(key, "name", foldName ? name.toLowerCase(Locale.ROOT) : name);
+        String names = req.queryParams("names");
+        if (names != null) append(key, "names", names);
+        if (Boolean.parseBoolean(req.queryParams("official"))) append(key, "official", "true");
+        appendNumber(key, "n", req.queryParams("n"));
+        appendNumber(key, "limit", req.queryParams("limit"));
+        String cursor = req.queryParams("cursor");
+        if (cursor != null) {
+            if (cursor.isBlank()) {
+                append(key, "cursor", "");
+            } else {
+                try {
+                    append(key, "cursor", PageCursor.decode(cursor).encode());
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    /** Same as {@link #key(Request, boolean)} with {@code name} case-folded. */
+    static String key(Request req) {
+        return key(req, true);
+    }
+
+    /** Appends a count parameter: the number if it is a positive integer, otherwise empty (route default). */
+    private static void appendNumber(StringBuilder key, String param, String value) {
+        if (value == null) return;
+        try {
+            int n = Integer.parseInt(value);
+            append(key, param, n > 0 ? Integer.toString(n) : "");
+        } catch (NumberFormatException e) {
+            append(key, param, "");
+        }
+    }
+
+    private static void append(StringBuilder key, String param, String value) {
+        key.append(key.indexOf("?") < 0 ? '?' : '&').append(param).append('=')
+           .append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+    }
+
+    /** Writes a stored response, compressed if the client accepts gzip. */
+    private Object send(Entry entry, Request req, Response res) throws IOException {
+        HttpServletResponse raw = res.raw();
+        if (ConditionalRequests.isNotModified(req)) {
+            // The client's copy is current: it gets a 304 instead of the body
+            raw.setStatus(HttpServletResponse.SC_OK);
+            return "";
+        }
+        byte[] out = entry.body;
+        if (gzip) raw.setHeader("Vary", "Accept-Encoding");
+        if (entry.gzipped != null && acceptsGzip(req)) {
+            raw.setHeader("Content-Encoding", "gzip");
+            ConditionalRequests.markGzip(raw);
+            out = entry.gzipped;
+        }
+        raw.setStatus(HttpServletResponse.SC_OK);
+        if (entry.contentType != null) raw.setContentType(entry.contentType);
+        raw.setContentLength(out.length);
+        raw.getOutputStream().write(out);
+        // Committing the response tells Spark the body has already been sent
+        raw.flushBuffer();
+        return "";
+    }
+
+    private static boolean acceptsGzip(Request req) {
+        String accept = req.headers("Accept-Encoding");
+        return accept != null && accept.contains("gzip");
+    }
+
+    // -------------------------------------------------------
+    // Storage
+    // -------------------------------------------------------
+
+    /**
+     * Looks up a stored response, counting the request towards the key's frequency.
+     *
+     * @return the stored response, or null if there is none, it has expired, or the
+     *         dataset has changed since it was stored
+     */
+    synchronized Entry get(String key) {
+        checkVersion();
+        sketch.increment(key);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+            remove(key);
+            entry = null;
+        }
+        (entry == null ? misses : hits).incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Stores a response built from the current dataset version.
+     *
+     * @return the stored entry, or null if it was too large or not admitted
+     */
+    Entry put(String key, byte[] body, String contentType) throws IOException {
+        return put(key, body, contentType, DatasetVersion.get());
+    }
+
+    /**
+     * Stores a response, evicting least recently used responses that have been
+     * requested less often than this one to make room. The body is compressed before
+     * the cache is locked, so hits are not held up by a large response.
+     *
+     * @param version dataset version read before the response was built
+     * @return the stored entry, or null if it was too large, not admitted, or the
+     *         dataset has changed since {@code version}
+     */
+    Entry put(String key, byte[] body, String contentType, long version) throws IOException {
+        byte[] gzipped = gzip && body.length >= gzipMinBytes ? compress(body) : null;
+        Entry entry = new Entry(body, gzipped, contentType, System.currentTimeMillis() + ttlMillis);
+        if (entry.size() > maxEntryBytes) {
+            rejections.incrementAndGet();
+            return null;
+        }
+        synchronized (this) {
+            checkVersion();
+            if (version != this.version) return null; // Built from the data before a reload
+
+            remove(key);
+            // Find all the victims needed to make room before evicting any, so that one
+            // more popular response among them leaves the cache as it was
+            int frequency = sketch.frequency(key);
+            long now = System.currentTimeMillis();
+            List<String> victims = new ArrayList<>();
+            long freed = 0;
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (bytes - freed + entry.size() > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Entry> victim = eldest.next();
+                boolean expired = victim.getValue().expiresAt <= now;
+                if (!expired && sketch.frequency(victim.getKey()) > frequency) {
+                    // The stored response is more popular than the new one: keep it
+                    rejections.incrementAndGet();
+                    return null;
+                }
+                victims.add(victim.getKey());
+                freed += victim.getValue().size();
+            }
+            for (String victim : victims) {
+                remove(victim);
+                evictions.incrementAndGet();
+            }
+            entries.put(key, entry);
+            bytes += entry.size();
+            return entry;
+        }
+    }
+
+    /** Drops every stored response. */
+    public synchronized void invalidate() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /** Drops everything if the dataset has changed since the responses were stored. */
+    private void checkVersion() {
+        long current = DatasetVersion.get();
+        if (current != version) {
+            invalidate();
+            version = current;
+        }
+    }
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) bytes -= old.size();
+    }
+
+    private static byte[] compress(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    // -------------------------------------------------------
+    // Statistics
+    // -------------------------------------------------------
+
+    /** @return number of requests answered from the cache */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** @return number of requests that had to run the report */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** @return fraction of requests answered from the cache (0 if there were none) */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /** @return number of responses removed to make room for others */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /** @return number of responses not stored because they were too large or not popular enough */
+    public long getRejectionCount() {
+        return rejections.get();
+    }
+
+    /** @return total size of the stored responses in bytes */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /** @return configured maximum total size in bytes */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** @return number of stored responses */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // -------------------------------------------------------
+    // Capture of streamed responses
+    // -------------------------------------------------------
+
+    /**
+     * Copy of a streamed response body, kept only up to a size limit so that streaming
+     * a report too large for the cache does not hold it in memory.
+     */
+    static final class Capture {
+        private final long limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private boolean overflowed;
+
+        Capture(long limit) {
+            this.limit = limit;
+        }
+
+        /** @return a stream that writes to {@code out} and keeps a copy of what was written */
+        OutputStream tee(OutputStream out) {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    record(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    record(b, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    out.flush();
+                }
+            };
+        }
+
+        private void record(byte[] b, int off, int len) {
+            if (overflowed) return;
+            if (copy.size() + len > limit) {
+                overflowed = true;
+                copy = null;
+                return;
+            }
+            copy.write(b, off, len);
+        }
+
+        int size() {
+            return overflowed ? Integer.MAX_VALUE : copy.size();
+        }
+
+        boolean overflowed() {
+            return overflowed;
+        }
+
+        byte[] toByteArray() {
+            return copy.toByteArray();
+        }
+    }
+}
@@ -1,7 +1,20 @@
 package com.napier.sem.web;
 
 import com.google.gson.Gson;
+import com.napier.sem.config.AdaptiveLimiter;
+import com.napier.sem.config.AppConfig;
+import com.napier.sem.config.Backend;
+import com.napier.sem.config.ConnectionPool;
 import com.napier.sem.config.DatabaseConnection;
+import com.napier.sem.config.DatasetVersion;
+import com.napier.sem.config.Deadline;
+import com.napier.sem.config.Startup;
+import com.napier.sem.config.StatementCache;
+import com.napier.sem.dao.LanguageRollup;
+import com.napier.sem.dao.PageCursor;
+import com.napier.sem.dao.RollupLanguageReportRepository;
+import com.napier.sem.dao.RollupPopulationReportRepository;
+import com.napier.sem.metrics.Metrics;
 import com.napier.sem.model.City;
 import com.napier.sem.model.CapitalCity;
 import com.napier.sem.model.Country;
@@ -11,11 +24,18 @@ import com.napier.sem.service.CapitalCityService;
 import com.napier.sem.service.CountryService;
 import com.napier.sem.service.LanguageReportService;
 import com.napier.sem.service.PopulationReportService;
+import com.napier.sem.service.SingleFlight;
+import spark.Request;
+import spark.Route;
 
-import java.sql.Connection;
+import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import static spark.Spark.*;
 
@@ -23,46 +43,228 @@ public class RestServer {
 
     private static final Gson gson = new Gson();
 
+    /** Page size used when {@code cursor} is given without {@code limit}. */
+    private static final int DEFAULT_PAGE_LIMIT = 100;
+    /** Largest page a client may ask for. */
+    private static final int MAX_PAGE_LIMIT = 1000;
+    private static final String INVALID_CURSOR = "{\"error\":\"Invalid parameter 'cursor'\"}";
+
+    /** Cache of finished report responses, or null if disabled in application.properties. */
+    private static ResponseCache responseCache;
+
+    /** ETag / Last-Modified / Cache-Control handling of the report routes. */
+    private static ConditionalRequests conditionalRequests;
+
+    /** Time limits of the report routes. */
+    private static RequestDeadlines requestDeadlines;
+
+    /** Concurrency limits of the report routes, or null if disabled in application.properties. */
+    private static AdmissionControl admissionControl;
+
+    /** Warm-up of the caches at startup, or null if disabled in application.properties. */
+    private static volatile CacheWarmer cacheWarmer;
+
+    /** Progress of application startup reported by /health/ready, or null if started in one go. */
+    private static Startup startup;
+
+    /**
+     * Set once the report services exist (see {@link #openReports()}); until then report
+     * requests are answered with 503. The services are written before this flag and read
+     * after it, so request threads always see them complete.
+     */
+    private static volatile boolean reportsOpen;
+
+    // Services (answered from the database or the in-memory dataset, see app.backend)
+    private static CityService cityService;
+    private static CapitalCityService capitalCityService;
+    private static CountryService countryService;
+    private static LanguageReportService languageService;
+    private static PopulationReportService populationService;
+
+    /** Endpoints that answer while startup is still in progress. */
+    private static final Set<String> ALWAYS_OPEN = Set.of("/ping", "/health/live", "/health/ready", "/metrics");
+    /** Reports that echo the requested name back, so its spelling is part of the cached response. */
+    private static final Set<String> ECHOES_NAME = Set.of("/population/continent", "/population/region",
+            "/population/country", "/population/district", "/population/city");
+
+    /**
+     * Starts the HTTP API on an open database connection and returns once it serves
+     * reports (and, if enabled, the cache warm-up has finished or timed out).
+     */
     public static void start() {
+        DataSource dataSource = DatabaseConnection.get();
+        if (dataSource == null) {
+            throw new RuntimeException(
+                    "Database connection pool is null. Call DatabaseConnection.connect() before RestServer.start().");
+        }
+
+        listen(null);
+        openReports();
+
+        // Request every enumerable report once so the first users find the caches warm
+        if (AppConfig.getBoolean("cache.warmup.enabled")) {
+            try {
+                warmUp();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                System.err.println("Cache warm-up skipped: " + e.getMessage());
+            }
+        }
+
+        System.out.println(
+                "REST server started on port 8080 - city, capital, country, language & population endpoints ready");
+    }
+
+    /**
+     * Starts the HTTP listener with every route, without needing the database. The
+     * health endpoints answer at once; report requests get 503 until {@link #openReports()}
+     * has run, so the listener can come up while the database is still connecting.
+     *
+     * @param progress startup progress reported by {@code /health/ready}, or null
+     */
+    public static void listen(Startup progress) {
+        startup = progress;
+
+        // Requests run on Jetty's thread pool or on virtual threads (see http.threads)
+        configureRequestThreads();
+
         // App runs on 8080
         port(8080);
 
-        Connection conn = DatabaseConnection.get();
-        if (conn == null) {
-            throw new RuntimeException(
-                    "Database connection is null. Call DatabaseConnection.connect() before RestServer.start().");
-        }
+        // Report responses are cached (see ResponseCache) unless disabled
+        responseCache = AppConfig.getBoolean("cache.response.enabled") ? ResponseCache.fromConfig() : null;
+
+        // Report responses carry validators so clients can revalidate instead of downloading again
+        conditionalRequests = ConditionalRequests.fromConfig();
+
+        // Report requests that run out of time are cancelled and answered with 503/504
+        requestDeadlines = RequestDeadlines.fromConfig();
 
-        // Services
-        CityService cityService = new CityService(conn);
-        CapitalCityService capitalCityService = new CapitalCityService(conn);
-        CountryService countryService = new CountryService(conn);
-        LanguageReportService languageService = new LanguageReportService(conn);
-        PopulationReportService populationService = new PopulationReportService(conn);
+        // Reports beyond the concurrency limit of their route class wait briefly, then get 503
+        admissionControl = AdmissionControl.fromConfig();
+
+        // Until the services exist only the health and monitoring endpoints answer
+        before((req, res) -> {
+            if (!reportsOpen && !ALWAYS_OPEN.contains(req.pathInfo())) {
+                res.type("application/json");
+                res.header("Retry-After", "1");
+                ConditionalRequests.noStore(res.raw());
+                halt(503, "{\"error\":\"Starting up\"}");
+            }
+        });
 
         // Health check
         get("/ping", (req, res) -> "OK");
 
+        // Liveness: the process is up and serving HTTP, whatever state startup is in
+        get("/health/live", (req, res) -> {
+            res.type("application/json");
+            ConditionalRequests.noStore(res.raw());
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("status", "UP");
+            if (startup != null) map.put("uptimeMs", startup.getUptimeMillis());
+            return gson.toJson(map);
+        });
+
+        // Readiness: 200 once reports can be served, 503 with the state of each startup stage until then
+        get("/health/ready", (req, res) -> {
+            res.type("application/json");
+            ConditionalRequests.noStore(res.raw());
+            boolean ready = reportsOpen && (startup == null || startup.isReady());
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("status", ready ? "READY" : startup != null && startup.hasFailed() ? "FAILED" : "STARTING");
+            if (startup != null) {
+                map.put("uptimeMs", startup.getUptimeMillis());
+                List<Map<String, Object>> stages = new ArrayList<>();
+                for (Startup.Stage stage : startup.getStages()) {
+                    Map<String, Object> s = new LinkedHashMap<>();
+                    s.put("name", stage.getName());
+                    s.put("state", stage.getState().name());
+                    s.put("required", stage.isRequired());
+                    if (stage.isBackground()) s.put("background", true);
+                    s.put("startMs", stage.getStartMillis());
+                    s.put("durationMs", stage.getDurationMillis());
+                    if (stage.getError() != null) s.put("error", stage.getError());
+                    stages.add(s);
+                }
+                map.put("stages", stages);
+            }
+            if (!ready) res.status(503);
+            return gson.toJson(map);
+        });
+
+        // Response cache statistics, for tuning the cache.response.* settings
+        get("/cache/stats", (req, res) -> {
+            res.type("application/json");
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("enabled", responseCache != null);
+            if (responseCache != null) {
+                map.put("hits", responseCache.getHitCount());
+                map.put("misses", responseCache.getMissCount());
+                map.put("hitRatio", responseCache.getHitRatio());
+                map.put("evictions", responseCache.getEvictionCount());
+                map.put("rejections", responseCache.getRejectionCount());
+                map.put("entries", responseCache.size());
+                map.put("bytes", responseCache.getBytes());
+                map.put("maxBytes", responseCache.getMaxBytes());
+            }
+            CacheWarmer warmer = cacheWarmer;
+            if (warmer != null) {
+                Map<String, Object> warmup = new LinkedHashMap<>();
+                warmup.put("done", warmer.isDone());
+                warmup.put("total", warmer.getTotal());
+                warmup.put("completed", warmer.getCompleted());
+                warmup.put("failed", warmer.getFailed());
+                warmup.put("durationMs", warmer.getDurationMillis());
+                map.put("warmup", warmup);
+            }
+            return gson.toJson(map);
+        });
+
+        // Prometheus metrics: per-route and per-query latency, volume, errors and concurrency
+        get("/metrics", (req, res) -> {
+            res.type("text/plain; version=0.0.4; charset=utf-8");
+            return Metrics.scrape();
+        });
+
         // ------------------------------------------------------------------
         // CITY REPORT
         // ------------------------------------------------------------------
-        get("/cities/all", (req, res) -> {
+        // Largest reports: streamed row by row instead of building the whole list first,
+        // or returned one page at a time when limit/cursor is given
+        report("/cities/all", (req, res) -> {
+            if (!isPaged(req)) {
+                return JsonStream.<City>array(gson, req, res, City.class, cityService::streamAllCities);
+            }
             res.type("application/json");
-            List<City> cities = cityService.getAllCities();
-            return gson.toJson(cities);
+            PageCursor after = parseCursor(req.queryParams("cursor"), true);
+            if (after == null) {
+                res.status(400);
+                return INVALID_CURSOR;
+            }
+            return gson.toJson(cityService.getCitiesPage(after, parseLimit(req.queryParams("limit"))));
         });
 
-        get("/cities/continent", (req, res) -> {
+        report("/cities/continent", (req, res) -> {
             res.type("application/json");
             String name = req.queryParams("name");
             if (name == null || name.isBlank()) {
                 res.status(400);
                 return "{\"error\":\"Missing parameter 'name' (continent)\"}";
             }
+            if (isPaged(req)) {
+                PageCursor after = parseCursor(req.queryParams("cursor"), true);
+                if (after == null) {
+                    res.status(400);
+                    return INVALID_CURSOR;
+                }
+                return gson.toJson(cityService.getCitiesByContinentPage(name, after, parseLimit(req.queryParams("limit"))));
+            }
             return gson.toJson(cityService.getCitiesByContinent(name));
         });
 
-        get("/cities/region", (req, res) -> {
+        report("/cities/region", (req, res) -> {
             res.type("application/json");
             String name = req.queryParams("name");
             if (name == null || name.isBlank()) {
@@ -72,7 +274,7 @@ public class RestServer {
             return gson.toJson(cityService.getCitiesByRegion(name));
         });
 
-        get("/cities/country", (req, res) -> {
+        report("/cities/country", (req, res) -> {
             res.type("application/json");
             String name = req.queryParams("name");
             if (name == null || name.isBlank()) {
@@ -82,7 +284,7 @@ public class RestServer {
             return gson.toJson(cityService.getCitiesByCountry(name));
         });
 
-        get("/cities/district", (req, res) -> {
+        report("/cities/district", (req, res) -> {
             res.type("application/json");
             String name = req.queryParams("name");
             if (name == null || name.isBlank()) {
@@ -92,13 +294,13 @@ public class RestServer {
             return gson.toJson(cityService.getCitiesByDistrict(name));
         });
 
-        get("/cities/top", (req, res) -> {
+        report("/cities/top", (req, res) -> {
             res.type("application/json");
             int n = parseN(req.queryParams("n"), 10);
             return gson.toJson(cityService.getTopNCitiesInWorld(n));
         });
 
-        get("/cities/top/continent", (req, res) -> {
+        report("/cities/top/continent", (req, res) -> {
             res.type("application/json");
             String name = req.queryParams("name");
             int n = parseN(req.queryParams("n"), 10);
@@ -111,7 +313,7 @@ public class RestServer {
             return gson.toJson(cityService.getTopNCitiesInContinent(name, n));
         });
 
-        get("/cities/top/region", (req, res) -> {
+        report("/cities/top/region", (req, res) -> {
             res.type("application/json");
             String name = req.queryParams("name");
             int n = parseN(req.queryParams("n"), 10);
@@ -124,7 +326,7 @@ public class RestServer {
             return gson.toJson(cityService.getTopNCitiesInRegion(name, n));
         });
 
-        get("/cities/top/country", (req, res) -> {
+        report("/cities/top/country", (req, res) -> {
             res.type("application/json");
             String name = req.queryParams("name");
             int n = parseN(req.queryParams("n"), 10);
@@ -137,7 +339,7 @@ public class RestServer {
             return gson.toJson(cityService.getTopNCitiesInCountry(name, n));
         });
 
-        get("/cities/top/district", (req, res) -> {
+        report("/cities/top/district", (req, res) -> {
             res.type("application/json");
             String name = req.queryParams("name");
             int n = parseN(req.queryParams("n"), 10);
@@ -153,13 +355,21 @@ public class RestServer {
         // ------------------------------------------------------------------
         // CAPITAL CITY REPORT
         // ------------------------------------------------------------------
-        get("/capitals/all", (req, res) -> {
+        report("/capitals/all", (req, res) -> {
+            if (!isPaged(req)) {
+                return JsonStream.<CapitalCity>array(gson, req, res, CapitalCity.class,
+                        capitalCityService::streamAllCapitalCities);
+            }
             res.type("application/json");
-            List<CapitalCity> capitals = capitalCityService.getAllCapitalCities();
-            return gson.toJson(capitals);
+            PageCursor after = parseCursor(req.queryParams("cursor"), true);
+            if (after == null) {
+                res.status(400);
+                return INVALID_CURSOR;
+            }
+            return gson.toJson(capitalCityService.getCapitalCitiesPage(after, parseLimit(req.queryParams("limit"))));
         });
 
-        get("/capitals/continent", (req, res) -> {
+        report("/capitals/continent", (req, res) -> {
             res.type("application/json");
             String continent = req.queryParams("name");
             if (continent == null || continent.isBlank()) {
@@ -169,7 +379,7 @@ public class RestServer {
             return gson.toJson(capitalCityService.getCapitalCitiesByContinent(continent));
         });
 
-        get("/capitals/region", (req, res) -> {
+        report("/capitals/region", (req, res) -> {
             res.type("application/json");
             String region = req.queryParams("name");
             if (region == null || region.isBlank()) {
@@ -179,13 +389,13 @@ public class RestServer {
             return gson.toJson(capitalCityService.getCapitalCitiesByRegion(region));
         });
 
-        get("/capitals/top", (req, res) -> {
+        report("/capitals/top", (req, res) -> {
             res.type("application/json");
             int n = parseN(req.queryParams("n"), 10);
             return gson.toJson(capitalCityService.getTopNCapitalCitiesInWorld(n));
         });
 
-        get("/capitals/top/continent", (req, res) -> {
+        report("/capitals/top/continent", (req, res) -> {
             res.type("application/json");
             String continent = req.queryParams("name");
             int n = parseN(req.queryParams("n"), 10);
@@ -196,7 +406,7 @@ public class RestServer {
             return gson.toJson(capitalCityService.getTopNCapitalCitiesInContinent(continent, n));
         });
 
-        get("/capitals/top/region", (req, res) -> {
+        report("/capitals/top/region", (req, res) -> {
             res.type("application/json");
             String region = req.queryParams("name");
             int n = parseN(req.queryParams("n"), 10);
@@ -210,13 +420,21 @@ public class RestServer {
         // ------------------------------------------------------------------
         // COUNTRY REPORT
         // ------------------------------------------------------------------
-        get("/countries/all", (req, res) -> {
-            res.type("application/json");
+        report("/countries/all", (req, res) -> {
+            res.type("application/json");
+            if (isPaged(req)) {
+                PageCursor after = parseCursor(req.queryParams("cursor"), false);
+                if (after == null) {
+                    res.status(400);
+                    return INVALID_CURSOR;
+                }
+                return gson.toJson(countryService.getCountriesPage(after, parseLimit(req.queryParams("limit"))));
+            }
             List<Country> countries = countryService.getAllCountries();
             return gson.toJson(countries);
         });
 
-        get("/countries/continent", (req, res) -> {
+        report("/countries/continent", (req, res) -> {
             res.type("application/json");
             String continent = req.queryParams("name");
             if (continent == null || continent.isBlank()) {
@@ -226,7 +444,7 @@ public class RestServer {
             return gson.toJson(countryService.getCountriesByContinent(continent));
         });
 
-        get("/countries/region", (req, res) -> {
+        report("/countries/region", (req, res) -> {
             res.type("application/json");
             String region = req.queryParams("name");
             if (region == null || region.isBlank()) {
@@ -236,13 +454,13 @@ public class RestServer {
             return gson.toJson(countryService.getCountriesByRegion(region));
         });
 
-        get("/countries/top", (req, res) -> {
+        report("/countries/top", (req, res) -> {
             res.type("application/json");
             int n = parseN(req.queryParams("n"), 10);
             return gson.toJson(countryService.getTopNCountriesInWorld(n));
         });
 
-        get("/countries/top/continent", (req, res) -> {
+        report("/countries/top/continent", (req, res) -> {
             res.type("application/json");
             String continent = req.queryParams("name");
             int n = parseN(req.queryParams("n"), 10);
@@ -253,7 +471,7 @@ public class RestServer {
             return gson.toJson(countryService.getTopNCountriesInContinent(continent, n));
         });
 
-        get("/countries/top/region", (req, res) -> {
+        report("/countries/top/region", (req, res) -> {
             res.type("application/json");
             String region = req.queryParams("name");
             int n = parseN(req.queryParams("n"), 10);
@@ -267,16 +485,38 @@ public class RestServer {
         // ------------------------------------------------------------------
         // LANGUAGE REPORT ENDPOINT
         // ------------------------------------------------------------------
-        get("/languages", (req, res) -> {
+        report("/languages", (req, res) -> {
             res.type("application/json");
-            return gson.toJson(languageService.getLanguagePopulationReport());
+            String names = req.queryParams("names");
+            boolean officialOnly = Boolean.parseBoolean(req.queryParams("official"));
+            if (names == null && !officialOnly) {
+                return gson.toJson(languageService.getLanguagePopulationReport());
+            }
+            List<String> languages = names == null ? LanguageRollup.MAJOR_LANGUAGES : parseNames(names);
+            if (languages.isEmpty()) {
+                res.status(400);
+                return "{\"error\":\"Parameter 'names' must list at least one language\"}";
+            }
+            int max = AppConfig.getInt("language.names.max");
+            if (languages.size() > max) {
+                res.status(400);
+                return "{\"error\":\"Parameter 'names' may list at most " + max + " languages\"}";
+            }
+            return gson.toJson(languageService.getLanguageReport(languages, officialOnly));
+        });
+
+        report("/languages/top", (req, res) -> {
+            res.type("application/json");
+            int n = parseN(req.queryParams("n"), 10);
+            boolean officialOnly = Boolean.parseBoolean(req.queryParams("official"));
+            return gson.toJson(languageService.getTopNLanguages(n, officialOnly));
         });
 
         // ------------------------------------------------------------------
         // POPULATION REPORT
         // ------------------------------------------------------------------
 
-        get("/population/world", (req, res) -> {
+        report("/population/world", (req, res) -> {
             res.type("application/json");
             Long pop = populationService.getWorldPopulation();
 
@@ -287,7 +527,7 @@ public class RestServer {
             return gson.toJson(map);
         });
 
-        get("/population/continent", (req, res) -> {
+        report("/population/continent", (req, res) -> {
             res.type("application/json");
             String name = req.queryParams("name");
             if (name == null || name.isBlank()) {
@@ -305,7 +545,7 @@ public class RestServer {
             return gson.toJson(map);
         });
 
-        get("/population/region", (req, res) -> {
+        report("/population/region", (req, res) -> {
             res.type("application/json");
             String name = req.queryParams("name");
             if (name == null || name.isBlank()) {
@@ -323,7 +563,7 @@ public class RestServer {
             return gson.toJson(map);
         });
 
-        get("/population/country", (req, res) -> {
+        report("/population/country", (req, res) -> {
             res.type("application/json");
             String name = req.queryParams("name");
             if (name == null || name.isBlank()) {
@@ -341,7 +581,7 @@ public class RestServer {
             return gson.toJson(map);
         });
 
-        get("/population/district", (req, res) -> {
+        report("/population/district", (req, res) -> {
             res.type("application/json");
             String name = req.queryParams("name");
             if (name == null || name.isBlank()) {
@@ -359,7 +599,7 @@ public class RestServer {
             return gson.toJson(map);
         });
 
-        get("/population/city", (req, res) -> {
+        report("/population/city", (req, res) -> {
             res.type("application/json");
             String name = req.queryParams("name");
             if (name == null || name.isBlank()) {
@@ -377,19 +617,19 @@ public class RestServer {
             return gson.toJson(map);
         });
 
-        get("/population/breakdown/continent", (req, res) -> {
+        report("/population/breakdown/continent", (req, res) -> {
             res.type("application/json");
             List<PopulationReport> list = populationService.getContinentPopulationBreakdown();
             return gson.toJson(list);
         });
 
-        get("/population/breakdown/region", (req, res) -> {
+        report("/population/breakdown/region", (req, res) -> {
             res.type("application/json");
             List<PopulationReport> list = populationService.getRegionPopulationBreakdown();
             return gson.toJson(list);
         });
 
-        get("/population/breakdown/country", (req, res) -> {
+        report("/population/breakdown/country", (req, res) -> {
             res.type("application/json");
             List<PopulationReport> list = populationService.getCountryPopulationBreakdown();
             return gson.toJson(list);
@@ -402,11 +642,188 @@ public class RestServer {
             e.printStackTrace();
             res.type("application/json");
             res.status(500);
+            ConditionalRequests.noStore(res.raw());
             res.body("{\"error\":\"Internal server error\"}");
         });
 
-        System.out.println(
-                "REST server started on port 8080 - city, capital, country, language & population endpoints ready");
+        awaitInitialization();
+    }
+
+    /**
+     * Creates the report services on the open database connection and lets report
+     * requests through. With {@code app.backend = memory} this loads the dataset,
+     * unless it was loaded from the snapshot, in which case the database need not be
+     * connected yet (see {@link #registerPoolMetrics()}).
+     */
+    public static void openReports() {
+        cityService = new CityService(Backend.cities());
+        capitalCityService = new CapitalCityService(Backend.capitals());
+        countryService = new CountryService(Backend.countries());
+        languageService = new LanguageReportService(Backend.languages());
+        populationService = new PopulationReportService(Backend.population());
+        // A snapshot keeps its own checksum until it has been reconciled with the database
+        if (DatabaseConnection.isConnected() && !Backend.isFromSnapshot()) {
+            DatasetVersion.refresh(DatabaseConnection.get());
+        }
+        registerMetrics();
+        reportsOpen = true;
+    }
+
+    /**
+     * Registers the gauges and counters of the caches and pool with {@link Metrics}.
+     */
+    private static void registerMetrics() {
+        Metrics.counter("sem_statement_cache_hits_total", "Prepared statements reused from a connection's cache.",
+                StatementCache::getHitCount);
+        Metrics.counter("sem_statement_cache_misses_total", "Prepared statements that had to be prepared.",
+                StatementCache::getMissCount);
+        Metrics.counter("sem_population_rollup_builds_total", "Population rollups computed from the dataset.",
+                RollupPopulationReportRepository::getBuildCount);
+        Metrics.counter("sem_language_rollup_builds_total", "Language rollups computed from the dataset.",
+                RollupLanguageReportRepository::getBuildCount);
+        Metrics.counter("sem_singleflight_executions_total", "Report calls that ran against the data source.",
+                SingleFlight::getExecutionCount);
+        Metrics.counter("sem_singleflight_coalesced_total", "Report calls that shared a running identical call.",
+                SingleFlight::getCoalescedCount);
+        Metrics.counter("sem_request_timeouts_total", "Report requests answered 504 after their deadline passed.",
+                RequestDeadlines::getTimeoutCount);
+        Metrics.counter("sem_request_deadline_rejections_total",
+                "Report requests answered 503: deadline passed before their query started.",
+                RequestDeadlines::getRejectionCount);
+        Metrics.counter("sem_query_cancellations_total", "Running queries cancelled because their request's deadline passed.",
+                Deadline::getCancelledCount);
+        if (admissionControl != null) admissionControl.registerMetrics();
+        registerPoolMetrics();
+        if (responseCache != null) {
+            Metrics.counter("sem_response_cache_hits_total", "Report requests answered from the response cache.",
+                    responseCache::getHitCount);
+            Metrics.counter("sem_response_cache_misses_total", "Report requests that had to run the report.",
+                    responseCache::getMissCount);
+            Metrics.counter("sem_response_cache_evictions_total", "Cached responses evicted to make room.",
+                    responseCache::getEvictionCount);
+            Metrics.gauge("sem_response_cache_bytes", "Total size of the cached responses.",
+                    responseCache::getBytes);
+        }
+    }
+
+    /**
+     * Registers the gauges of the database connection pool with {@link Metrics}, if it is
+     * open. Called again once the database connects when reports opened without it.
+     */
+    public static void registerPoolMetrics() {
+        if (!DatabaseConnection.isConnected() || !(DatabaseConnection.get() instanceof ConnectionPool)) return;
+        ConnectionPool pool = (ConnectionPool) DatabaseConnection.get();
+        Metrics.gauge("sem_db_pool_active", "Database connections currently borrowed.", pool::getActiveCount);
+        Metrics.gauge("sem_db_pool_idle", "Open database connections waiting in the pool.", pool::getIdleCount);
+        Metrics.gauge("sem_db_pool_waiting", "Requests waiting for a free database connection.",
+                pool::getWaitingCount);
+        Metrics.gauge("sem_db_pool_max", "Maximum number of open database connections.", pool::getMaxSize);
+        AdaptiveLimiter limiter = pool.getLimiter();
+        if (limiter != null) {
+            Metrics.gauge("sem_db_limit", "Database calls currently allowed at the same time (adaptive).",
+                    limiter::getLimit);
+            Metrics.gauge("sem_db_limit_in_flight", "Database calls running under the adaptive limit.",
+                    limiter::getInFlight);
+            Metrics.gauge("sem_db_rtt_short_seconds", "Average time of the last few database calls.",
+                    limiter::getShortRttSeconds);
+            Metrics.gauge("sem_db_rtt_long_seconds", "Long-run average time of database calls (the baseline).",
+                    limiter::getLongRttSeconds);
+        }
+    }
+
+    /**
+     * Warms the caches by requesting every report whose parameters can be enumerated
+     * from the data (see {@link CacheWarmer}), waiting up to {@code cache.warmup.timeout}
+     * for it to finish; after that it carries on in the background.
+     * {@link #openReports()} must have been called before.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void warmUp() throws InterruptedException {
+        awaitInitialization();
+        List<String> paths = CacheWarmer.targets(countryService.getAllCountries(),
+                AppConfig.getBoolean("cache.warmup.districts") ? cityService.getAllCities() : null,
+                AppConfig.getBoolean("cache.warmup.countries"));
+        cacheWarmer = CacheWarmer.fromConfig(paths);
+        cacheWarmer.start();
+        if (!cacheWarmer.await(AppConfig.getInt("cache.warmup.timeout"))) {
+            System.out.println("Cache warm-up still running after " + AppConfig.getInt("cache.warmup.timeout")
+                    + " ms; continuing in the background");
+        }
+    }
+
+    /**
+     * Chooses the threads that run the routes. With {@code http.threads = virtual} every
+     * request gets its own virtual thread, so requests blocked on the database no longer
+     * hold one of Jetty's threads; how many of them reach the database at once stays
+     * bounded by the connection pool, whose fair semaphore queues the rest. Falls back to
+     * Jetty's thread pool on JVMs without virtual threads.
+     */
+    private static void configureRequestThreads() {
+        String mode = AppConfig.get("http.threads");
+        if (!"virtual".equalsIgnoreCase(mode == null ? "" : mode.trim())) return;
+
+        // Each borrowed connection may pin a carrier thread while the driver waits for the server
+        int connections = AppConfig.getInt("db.pool.max");
+        ExecutorService executor = VirtualThreads.newExecutor("request-", connections);
+        if (executor == null) {
+            System.err.println("Virtual threads need Java 21 or later; using Jetty's thread pool instead.");
+            return;
+        }
+        VirtualThreadPool.install(executor);
+        System.out.println("Running requests on virtual threads.");
+    }
+
+    /**
+     * Registers a GET report route. Every request is measured (see {@link TimedRoute})
+     * and served through the response cache when it is enabled; conditional requests
+     * get a 304 once the route has checked their parameters (see {@link ConditionalRequests}). Only requests that have to run the report get
+     * a deadline (see {@link RequestDeadlines}), which also limits their wait in
+     * admission control (see {@link AdmissionControl}).
+     */
+    private static void report(String path, Route route) {
+        Route admitted = admissionControl == null ? route : admissionControl.wrap(path, route);
+        Route limited = requestDeadlines.wrap(path, admitted);
+        Route cached = responseCache == null ? limited : responseCache.wrap(limited, !ECHOES_NAME.contains(path));
+        get(path, TimedRoute.wrap(path, conditionalRequests.wrap(cached)));
+    }
+
+    /** @return true if the client asked for one page of a list report (limit or cursor given) */
+    private static boolean isPaged(Request req) {
+        return req.queryParams("limit") != null || req.queryParams("cursor") != null;
+    }
+
+    /**
+     * Decodes the cursor of a paged report. A missing cursor means the first page.
+     *
+     * @param numericKey whether the cursor must carry a numeric ID (cities) rather than a country code
+     * @return the cursor, or null if it is not valid
+     */
+    private static PageCursor parseCursor(String cursorParam, boolean numericKey) {
+        if (cursorParam == null || cursorParam.isBlank()) {
+            return PageCursor.FIRST;
+        }
+        try {
+            PageCursor cursor = PageCursor.decode(cursorParam);
+            if (numericKey) cursor.getIntKey();
+            return cursor;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Parses the page size, falling back to the default and capping it at the maximum. */
+    private static int parseLimit(String limitParam) {
+        return Math.min(parseN(limitParam, DEFAULT_PAGE_LIMIT), MAX_PAGE_LIMIT);
+    }
+
+    /** Splits a comma-separated list of names, dropping blanks and surrounding spaces. */
+    private static List<String> parseNames(String namesParam) {
+        List<String> names = new ArrayList<>();
+        for (String name : namesParam.split(",")) {
+            if (!name.isBlank()) names.add(name.trim());
+        }
+        return names;
     }
 
     private static int parseN(String nParam, int defaultN) {
@@ -0,0 +1,71 @@
+package com.napier.sem.web;
+
+import com.napier.sem.metrics.Metrics;
+import com.napier.sem.metrics.OperationMetrics;
+import spark.Route;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Records the latency, response size, failures and concurrency of a report route
+ * in its {@link OperationMetrics} (see {@link Metrics#route(String)}).
+ */
+final class TimedRoute {
+    private TimedRoute() {
+    }
+
+    /**
+     * Wraps a route so that every request to it is measured, unless metrics are disabled.
+     *
+     * @param path  the route path, used as the {@code route} label
+     * @param route the route
+     * @return the measuring route, or {@code route} itself if metrics are disabled
+     */
+    static Route wrap(String path, Route route) {
+        if (!Metrics.isEnabled()) return route;
+        OperationMetrics metrics = Metrics.route(path);
+        return (req, res) -> {
+            long start = metrics.start();
+            boolean failed = true;
+            try {
+                Object body = route.handle(req, res);
+                failed = res.raw().getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+                metrics.addVolume(bytes(body, res.raw()));
+                return body;
+            } finally {
+                metrics.stop(start, failed);
+            }
+        };
+    }
+
+    /**
+     * @return size of the response body: the UTF-8 length of a string body that Spark is
+     *         about to send, or what has already been written for a response the route
+     *         sent itself
+     */
+    static long bytes(Object body, HttpServletResponse raw) {
+        if (raw.isCommitted() && raw instanceof org.eclipse.jetty.server.Response) {
+            return ((org.eclipse.jetty.server.Response) raw).getHttpOutput().getWritten();
+        }
+        return body instanceof String ? utf8Length((String) body) : 0;
+    }
+
+    /** @return number of bytes the string takes in UTF-8, without encoding it */
+    static long utf8Length(String s) {
+        long length = 0;
+        for (int i = 0, n = s.length(); i < n; ++i) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                ++i;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,93 @@
+package com.napier.sem.web;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jetty thread pool that runs every task on a new thread from an executor, normally
+ * one virtual thread per task (see {@link VirtualThreads}).
+ * <p>
+ * Jetty's own pool has a fixed number of threads, and a request blocked on the
+ * database holds one of them until the query returns; once slow reports hold them
+ * all, even {@code /ping} and cached responses wait. Here a blocked request costs a
+ * virtual thread, which is cheap enough to have one per open connection. The
+ * database is still protected: at most {@code db.pool.max} requests hold a connection
+ * and the rest wait in the connection pool's queue.
+ * </p>
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+    /** Time (in milliseconds) running tasks get to finish when the server stops. */
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    private final ExecutorService executor;
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * @param executor starts a new thread for every task; shut down when the pool stops
+     */
+    public VirtualThreadPool(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Makes Spark's embedded Jetty run on a pool over the executor.
+     * Must be called before the first route is defined (which starts the server).
+     *
+     * @param executor starts a new thread for every task
+     */
+    public static void install(ExecutorService executor) {
+        EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY,
+                new EmbeddedJettyFactory().withThreadPool(new VirtualThreadPool(executor)));
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(() -> {
+            running.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        executor.shutdown();
+        if (!executor.awaitTermination(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            // Wait until the pool is stopped and every task has finished
+        }
+    }
+
+    /** @return number of tasks currently running */
+    @Override
+    public int getThreads() {
+        return running.get();
+    }
+
+    /** @return always 0: threads are started per task, never kept idle */
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    /** @return always false: a new thread can always be started */
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
@@ -0,0 +1,64 @@
+package com.napier.sem.web;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads (Java 21+) from code compiled for Java 17.
+ * <p>
+ * The JDK methods are looked up by reflection, so the same jar runs on Java 17 with
+ * platform threads and on Java 21 or later with virtual threads.
+ * </p>
+ */
+final class VirtualThreads {
+    /** Scheduler setting for the number of carrier threads running virtual threads. */
+    static final String PARALLELISM_PROPERTY = "jdk.virtualThreadScheduler.parallelism";
+
+    private VirtualThreads() {
+    }
+
+    /** @return true if this JVM supports virtual threads */
+    static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for every task.
+     * <p>
+     * A virtual thread blocked inside a {@code synchronized} block (as the MySQL driver
+     * is while it waits for the server) keeps its carrier thread busy. So that such
+     * calls cannot take every carrier, the scheduler is given {@code extraCarriers} more
+     * carriers than processors, unless {@value #PARALLELISM_PROPERTY} is already set.
+     * This only has an effect before the first virtual thread of the JVM is started.
+     * </p>
+     *
+     * @param namePrefix    prefix of the thread names, followed by a counter
+     * @param extraCarriers carriers to add for calls that may block a carrier (e.g. the database pool size)
+     * @return the executor, or null if this JVM has no virtual threads
+     */
+    static ExecutorService newExecutor(String namePrefix, int extraCarriers) {
+        if (!isSupported()) return null;
+        if (System.getProperty(PARALLELISM_PROPERTY) == null) {
+            int carriers = Runtime.getRuntime().availableProcessors() + Math.max(0, extraCarriers);
+            System.setProperty(PARALLELISM_PROPERTY, Integer.toString(carriers));
+        }
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) ofVirtual.getMethod("factory").invoke(builder);
+            Method perTask = Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) perTask.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create a virtual thread executor", e);
+        }
+    }
+}
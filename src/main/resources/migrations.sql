@@ -0,0 +1,46 @@
+/*
+===============================================================================
+DESCRIPTION:
+    Versioned changes to the world database schema, applied in order at startup
+    by SchemaMigrator (see db.migrate in application.properties).
+
+INSTRUCTIONS:
+-------------------------------------------------------------------------------
+1. Never edit a migration that has been released; add a new one instead.
+2. Each migration starts with a marker giving its version (one higher than the
+   previous one) and a short description:
+
+        -- migration: 2 Short description of the change
+        <SQL statement>;
+        <SQL statement>;
+
+3. Statements must run on MySQL and on H2 in MySQL mode (db.mode = embedded).
+   Index names must be unique in the whole schema, not only in their table.
+4. Applied versions are recorded in the schema_version table.
+===============================================================================
+ */
+
+-- migration: 1 Secondary indexes for the report queries
+-- The dump only indexes the primary keys and city/countrylanguage(CountryCode), so every
+-- scoped report scanned the whole table and sorted it. Each scope index ends with
+-- Population so the rows of one scope are read already in report order.
+
+-- Countries in a continent / region, and cities or capitals joined to them
+CREATE INDEX idx_country_continent_population ON country (Continent, Population);
+CREATE INDEX idx_country_region_population ON country (Region, Population);
+-- Cities in a country, population of a country
+CREATE INDEX idx_country_name ON country (Name);
+-- Top-N countries in the world and keyset pages of countries
+CREATE INDEX idx_country_population ON country (Population, Code);
+-- Capital cities joined from city to country
+CREATE INDEX idx_country_capital ON country (Capital);
+
+-- Cities in a district, population of a district
+CREATE INDEX idx_city_district_population ON city (District, Population);
+-- Population of a city
+CREATE INDEX idx_city_name ON city (Name);
+-- Top-N cities in the world and keyset pages of cities and capitals
+CREATE INDEX idx_city_population ON city (Population, ID);
+
+-- Speakers of a language
+CREATE INDEX idx_countrylanguage_language ON countrylanguage (Language, Percentage);
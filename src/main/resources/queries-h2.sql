@@ -0,0 +1,53 @@
+/*
+===============================================================================
+DESCRIPTION:
+    H2 versions of the queries in queries.sql that the embedded database
+    (db.mode = embedded) cannot run as written. Same format and names as
+    queries.sql; only the queries listed here are replaced.
+===============================================================================
+ */
+
+-- Checksums of the tables every report reads (H2 has no CHECKSUM TABLE).
+-- name: dataset_checksum
+SELECT 'city' AS "Table", SUM(ORA_HASH(CONCAT_WS('|', ID, Name, CountryCode, District, Population))) AS Checksum
+FROM city
+UNION ALL
+SELECT 'country', SUM(ORA_HASH(CONCAT_WS('|', Code, Name, Continent, Region, Population, Capital)))
+FROM country
+UNION ALL
+SELECT 'countrylanguage', SUM(ORA_HASH(CONCAT_WS('|', CountryCode, Language, IsOfficial, Percentage)))
+FROM countrylanguage;
+
+-- Regions with their total, city and non-city population, largest first.
+-- The only ties (regions without people) are ordered as the MySQL server returns them.
+-- name: region_population_summary
+SELECT
+    co.Region,
+    SUM(co.Population) AS total_population,
+    SUM(ci.city_population) AS city_population,
+    (SUM(co.Population) - SUM(ci.city_population)) AS non_city_population
+FROM country AS co
+         LEFT JOIN (
+    SELECT CountryCode, SUM(Population) AS city_population
+    FROM city
+    GROUP BY CountryCode
+) AS ci ON co.Code = ci.CountryCode
+GROUP BY co.Region
+ORDER BY total_population DESC, co.Region DESC;
+
+-- Countries with their total, city and non-city population, largest first.
+-- Ties are ordered by country code, as the MySQL server returns them.
+-- name: country_population_summary
+SELECT
+    co.Name AS Country,
+    SUM(co.Population) AS total_population,
+    SUM(ci.city_population) AS city_population,
+    (SUM(co.Population) - SUM(ci.city_population)) AS non_city_population
+FROM country AS co
+         LEFT JOIN (
+    SELECT CountryCode, SUM(Population) AS city_population
+    FROM city
+    GROUP BY CountryCode
+) AS ci ON co.Code = ci.CountryCode
+GROUP BY co.Name
+ORDER BY total_population DESC, MIN(co.Code);
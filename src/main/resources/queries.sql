@@ -188,6 +188,15 @@ WHERE l.Language IN ('Chinese','English','Hindi','Spanish','Arabic')
 GROUP BY l.Language
 ORDER BY Speakers DESC;
 
+-- Speakers of every language where it is official and where it is not (in thousandths of a person, exact),
+-- with the world population, read in one pass to build the language rollup that answers all language reports
+-- name: language_rollup
+SELECT l.Language, l.IsOfficial, SUM(c.Population * l.Percentage * 10) AS Speakers,
+       (SELECT SUM(Population) FROM country) AS WorldPopulation
+FROM countrylanguage l
+JOIN country c ON l.CountryCode = c.Code
+GROUP BY l.Language, l.IsOfficial;
+
 /*
 ===============================================================================
  POPULATION REPORTS
@@ -253,6 +262,15 @@ FROM country AS co
 GROUP BY co.Name
 ORDER BY total_population DESC;
 
+-- Every country with each of its cities (a country without cities appears once, with NULL city columns),
+-- read in one pass to build the population rollup that answers all population reports
+-- name: population_rollup
+SELECT co.Code, co.Name, co.Continent, co.Region, co.Population AS country_population,
+       ci.ID, ci.Name AS City, ci.District, ci.Population AS city_population
+FROM country AS co
+         LEFT JOIN city AS ci ON ci.CountryCode = co.Code
+ORDER BY co.Code, ci.ID;
+
 -- Show population for a specific continent provided by the user
 -- name: population_by_continent
 SELECT SUM(co.Population) AS total_population
@@ -341,3 +359,86 @@ JOIN country co ON co.Capital = ci.ID
 WHERE co.Region = ?
 ORDER BY ci.Population DESC
 LIMIT ?;
+
+/*
+===============================================================================
+ PAGINATED REPORTS
+===============================================================================
+ Keyset pagination: rows are ordered by Population DESC and then by the primary key,
+ and each page starts right after the last row of the previous one. The parameters
+ are (population, population, key) of that last row followed by the page size + 1.
+ The first page passes a population above any real value. The condition is written as
+ "Population <= ? AND (...)" rather than "Population < ? OR (...)" so that it is a
+ range of the (Population, key) index on MySQL and on H2.
+ */
+
+-- One page of all the cities in the world organised by largest population to smallest.
+-- name: cities_page
+SELECT ci.ID, ci.Name AS City, co.Name AS Country, ci.District, ci.Population
+FROM city ci
+JOIN country co ON ci.CountryCode = co.Code
+WHERE ci.Population <= ? AND (ci.Population < ? OR ci.ID > ?)
+ORDER BY ci.Population DESC, ci.ID
+LIMIT ?;
+
+-- One page of all the cities in a continent organised by largest population to smallest.
+-- name: cities_by_continent_page
+SELECT ci.ID, ci.Name AS City, co.Name AS Country, ci.District, ci.Population
+FROM city ci
+JOIN country co ON ci.CountryCode = co.Code
+WHERE co.Continent = ?
+  AND ci.Population <= ? AND (ci.Population < ? OR ci.ID > ?)
+ORDER BY ci.Population DESC, ci.ID
+LIMIT ?;
+
+-- One page of all the countries in the world organised by largest population to smallest.
+-- name: countries_page
+SELECT c.Code, c.Name, c.Continent, c.Region, c.Population, s.Name AS Capital
+FROM country c
+JOIN city s ON c.Capital = s.ID
+WHERE c.Population <= ? AND (c.Population < ? OR c.Code > ?)
+ORDER BY c.Population DESC, c.Code
+LIMIT ?;
+
+-- One page of all the capital cities in the world organised by largest population to smallest.
+-- name: capital_cities_page
+SELECT ci.ID, ci.Name AS City, co.Name AS Country, ci.Population
+FROM city ci
+JOIN country co ON co.Capital = ci.ID
+WHERE ci.Population <= ? AND (ci.Population < ? OR ci.ID > ?)
+ORDER BY ci.Population DESC, ci.ID
+LIMIT ?;
+
+/*
+===============================================================================
+ IN-MEMORY DATASET
+===============================================================================
+ */
+
+-- Every row of the city table, used to build the in-memory dataset.
+-- name: dataset_cities
+SELECT ID, Name, CountryCode, District, Population
+FROM city
+ORDER BY ID;
+
+-- Every row of the country table, used to build the in-memory dataset.
+-- name: dataset_countries
+SELECT Code, Name, Continent, Region, Population, Capital
+FROM country
+ORDER BY Code;
+
+-- Every row of the countrylanguage table, used to build the in-memory dataset.
+-- name: dataset_languages
+SELECT CountryCode, Language, IsOfficial, Percentage
+FROM countrylanguage
+ORDER BY CountryCode, Language;
+
+/*
+===============================================================================
+ DATASET VERSION
+===============================================================================
+ */
+
+-- Checksums of the tables every report reads, used to tag responses (HTTP ETags).
+-- name: dataset_checksum
+CHECKSUM TABLE city, country, countrylanguage;
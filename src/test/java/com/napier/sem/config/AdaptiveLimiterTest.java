@@ -0,0 +1,102 @@
+package com.napier.sem.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link AdaptiveLimiter}.
+ * Calls are simulated by acquiring up to the limit and releasing with chosen RTTs.
+ */
+public class AdaptiveLimiterTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(20);
+
+    /** Runs rounds of calls that use the whole limit, each taking {@code rttNanos}. */
+    private static void rounds(AdaptiveLimiter limiter, int rounds, long rttNanos) throws InterruptedException {
+        for (int r = 0; r < rounds; ++r) {
+            int calls = limiter.getLimit();
+            for (int i = 0; i < calls; ++i) assertTrue(limiter.acquire(0));
+            for (int i = 0; i < calls; ++i) limiter.release(rttNanos);
+        }
+    }
+
+    @Test
+    void testInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveLimiter(1, 2, 10, 1.5));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveLimiter(4, 2, 1, 1.5));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveLimiter(4, 2, 10, 0.5));
+    }
+
+    /** No more calls than the limit run at once; a waiting call times out. */
+    @Test
+    void testLimitsConcurrency() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 10, 1.5);
+
+        assertTrue(limiter.acquire(0));
+        assertTrue(limiter.acquire(0));
+        assertFalse(limiter.acquire(20));
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.release(-1);
+        assertTrue(limiter.acquire(0));
+    }
+
+    /** While latency stays flat the limit grows, up to the maximum. */
+    @Test
+    void testGrowsWhileLatencyFlat() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 20, 1.5);
+
+        rounds(limiter, 50, FAST);
+
+        assertEquals(20, limiter.getLimit());
+        assertEquals(0.002, limiter.getShortRttSeconds(), 1e-6);
+    }
+
+    /** When latency inflates well beyond the baseline the limit is cut. */
+    @Test
+    void testShrinksWhenLatencyInflates() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 2, 20, 1.5);
+        rounds(limiter, 50, FAST);
+
+        rounds(limiter, 5, SLOW);
+
+        assertTrue(limiter.getLimit() < 20, "limit " + limiter.getLimit());
+        assertTrue(limiter.getShortRttSeconds() > 2 * limiter.getLongRttSeconds());
+    }
+
+    /** The limit does not grow while less than half of it is used. */
+    @Test
+    void testNoGrowthWhenIdle() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(8, 1, 20, 1.5);
+
+        for (int i = 0; i < 100; ++i) {
+            assertTrue(limiter.acquire(0));
+            limiter.release(FAST);
+        }
+
+        assertEquals(8, limiter.getLimit());
+    }
+
+    /** A waiting call starts as soon as another one ends. */
+    @Test
+    void testReleaseWakesWaiter() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 1.5);
+        assertTrue(limiter.acquire(0));
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            limiter.release(FAST);
+        });
+        releaser.start();
+
+        assertTrue(limiter.acquire(5000));
+        releaser.join();
+    }
+}
@@ -0,0 +1,71 @@
+package com.napier.sem.config;
+
+import com.napier.sem.memory.WorldData;
+import com.napier.sem.memory.WorldSnapshot;
+import com.napier.sem.web.RestServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link Backend} on the embedded database: startup from a dataset
+ * snapshot that is out of date with the tables.
+ */
+public class BackendTest {
+    private static final List<String> PROPERTIES = List.of(
+            "db.mode", "app.backend", "dataset.source", "dataset.snapshot.enabled", "dataset.snapshot.path");
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() {
+        System.setProperty("db.mode", "embedded");
+        System.setProperty("app.backend", "memory");
+        System.setProperty("dataset.source", "database");
+        System.setProperty("dataset.snapshot.enabled", "true");
+        System.setProperty("dataset.snapshot.path", dir.resolve("world.snapshot").toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        DatabaseConnection.disconnect();
+        PROPERTIES.forEach(System::clearProperty);
+    }
+
+    /**
+     * The reports stage may run after the database stage has connected and read the
+     * live checksum; the snapshot is still compared with the checksum it was saved with,
+     * so a stale snapshot is reloaded.
+     */
+    @Test
+    void staleSnapshotIsReloadedWhenReportsOpenAfterTheDatabase() throws IOException {
+        WorldData stale = new WorldData.Builder()
+                .addCity(1, "Kabul", "AFG", "Kabol", 1780000)
+                .addCountry("AFG", "Afghanistan", "Asia", "Southern and Central Asia", 22720000, 1)
+                .build();
+        new WorldSnapshot(stale, 0x5eed).write(dir.resolve("world.snapshot"));
+        assertTrue(Backend.loadSnapshot());
+        assertTrue(Backend.isFromSnapshot());
+
+        Startup startup = new Startup();
+        CompletableFuture<Void> database = startup.stage("database", false, DatabaseConnection::open);
+        CompletableFuture<Void> reports = startup.stage("reports", true, RestServer::openReports, database);
+        CompletableFuture<Void> reconcile = startup.stage("reconcile", false, Backend::reconcileDataset, database, reports);
+        reconcile.join();
+
+        assertFalse(Backend.isFromSnapshot());
+        assertEquals(4079, Backend.dataset().get().getCityCount(), "reloaded from the database");
+        assertEquals(DatasetVersion.read(DatabaseConnection.get()), DatasetVersion.checksum());
+        assertEquals(4079, WorldSnapshot.map(dir.resolve("world.snapshot")).getData().getCityCount(),
+                "snapshot saved again");
+    }
+}
@@ -0,0 +1,46 @@
+package com.napier.sem.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link Backoff}.
+ */
+public class BackoffTest {
+
+    @Test
+    void testInvalidDelays() {
+        assertThrows(IllegalArgumentException.class, () -> new Backoff(-1, 10));
+        assertThrows(IllegalArgumentException.class, () -> new Backoff(100, 10));
+    }
+
+    /** The ceiling doubles with every attempt until it reaches the maximum. */
+    @Test
+    void testCeilingDoublesUpToMax() {
+        Backoff backoff = new Backoff(1000, 15000);
+
+        assertEquals(1000, backoff.ceilingMillis(1));
+        assertEquals(2000, backoff.ceilingMillis(2));
+        assertEquals(8000, backoff.ceilingMillis(4));
+        assertEquals(15000, backoff.ceilingMillis(5));
+        assertEquals(15000, backoff.ceilingMillis(100), "no overflow on many attempts");
+    }
+
+    /** Delays are spread between 0 and the ceiling instead of all being the same. */
+    @Test
+    void testDelayIsJittered() {
+        Backoff backoff = new Backoff(1000, 15000);
+        long min = Long.MAX_VALUE;
+        long max = 0;
+
+        for (int i = 0; i < 1000; ++i) {
+            long delay = backoff.delayMillis(3);
+            assertTrue(delay >= 0 && delay <= 4000, "delay " + delay);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+
+        assertTrue(min < 1000 && max > 3000, "delays between " + min + " and " + max);
+    }
+}
@@ -0,0 +1,169 @@
+package com.napier.sem.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ConnectionPool}.
+ * Physical connections are Mockito mocks created by a counting factory,
+ * so the tests can check exactly when connections are opened, reused and closed.
+ */
+public class ConnectionPoolTest {
+    /** Every physical connection opened by the factory, in order. */
+    private final List<Connection> opened = new ArrayList<>();
+
+    private ConnectionPool pool;
+
+    /** Creates a new mocked connection that reports itself as valid. */
+    private Connection newConnection() throws SQLException {
+        Connection c = mock(Connection.class);
+        when(c.isValid(anyInt())).thenReturn(true);
+        when(c.getAutoCommit()).thenReturn(true);
+        opened.add(c);
+        return c;
+    }
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = new ConnectionPool(this::newConnection, 1, 2, 60000, 100, 1, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    /** The minimum number of connections is opened when the pool is created. */
+    @Test
+    void testPrefillsMinimumConnections() {
+        assertEquals(1, opened.size());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    /** Closing a borrowed connection returns it to the pool instead of closing it. */
+    @Test
+    void testCloseReturnsConnectionToPool() throws SQLException {
+        Connection first = pool.getConnection();
+        first.close();
+        Connection second = pool.getConnection();
+        second.close();
+
+        assertEquals(1, opened.size(), "Idle connection should be reused");
+        verify(opened.get(0), never()).close();
+        assertTrue(first.isClosed());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    /** A returned wrapper cannot be used any more. */
+    @Test
+    void testUseAfterCloseFails() throws SQLException {
+        Connection c = pool.getConnection();
+        c.close();
+
+        assertThrows(SQLException.class, () -> c.prepareStatement("SELECT 1"));
+    }
+
+    /** Borrowing beyond the maximum size times out. */
+    @Test
+    void testBorrowTimesOutWhenExhausted() throws SQLException {
+        Connection a = pool.getConnection();
+        Connection b = pool.getConnection();
+
+        assertThrows(SQLException.class, () -> pool.getConnection());
+        assertEquals(2, pool.getActiveCount());
+
+        a.close();
+        b.close();
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    /** With an adaptive limiter, borrows stop at its limit and report how long their statements executed. */
+    @Test
+    void testAdaptiveLimiterGatesBorrows() throws SQLException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 2, 1.5);
+        pool.setLimiter(limiter);
+
+        Connection a = pool.getConnection();
+        assertEquals(1, limiter.getInFlight());
+        assertThrows(SQLException.class, () -> pool.getConnection());
+        assertEquals(1, pool.getActiveCount(), "a refused borrow takes no connection");
+
+        a.close();
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getShortRttSeconds(), "holding a connection without a query is no sample");
+
+        PreparedStatement raw = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(opened.get(0).prepareStatement(anyString())).thenReturn(raw);
+        when(raw.executeQuery()).thenAnswer(invocation -> {
+            Thread.sleep(5);
+            return rs;
+        });
+        Connection b = pool.getConnection();
+        try (PreparedStatement stmt = StatementCache.prepare(b, "all_countries")) {
+            stmt.executeQuery();
+        }
+        sleep(1000); // Reading rows (e.g. streaming to a slow client) is not database time
+        b.close();
+        double rtt = limiter.getShortRttSeconds();
+        assertTrue(rtt >= 0.005 && rtt < 1.0, "RTT sample is the execution time: " + rtt);
+    }
+
+    /** Connections that fail validation are discarded and replaced. */
+    @Test
+    void testInvalidConnectionIsReplaced() throws SQLException {
+        when(opened.get(0).isValid(anyInt())).thenReturn(false);
+
+        Connection c = pool.getConnection();
+
+        assertEquals(2, opened.size());
+        verify(opened.get(0)).close();
+        c.close();
+    }
+
+    /** Closing the pool closes idle connections. */
+    @Test
+    void testCloseClosesIdleConnections() throws SQLException {
+        pool.close();
+
+        verify(opened.get(0)).close();
+        assertThrows(SQLException.class, () -> pool.getConnection());
+    }
+
+    /** A connection returned while the pool is closing is closed, not put back in the drained pool. */
+    @Test
+    void testConnectionReturnedDuringCloseIsClosed() throws SQLException {
+        Connection c = pool.getConnection();
+        Connection raw = opened.get(0);
+        // The pool closes between the return's first check and putting the connection back
+        when(raw.getAutoCommit()).thenAnswer(invocation -> {
+            pool.close();
+            return true;
+        });
+
+        c.close();
+
+        verify(raw).close();
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
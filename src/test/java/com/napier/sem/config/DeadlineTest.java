@@ -0,0 +1,125 @@
+package com.napier.sem.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link Deadline}.
+ * Statements run on an in-memory H2 database; the slow query is a large cross join.
+ */
+public class DeadlineTest {
+    /** Query that takes far longer than any deadline in these tests. */
+    private static final String SLOW_QUERY = "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 100000) a, "
+            + "SYSTEM_RANGE(1, 100000) b WHERE MOD(a.X + b.X, 7) = 3";
+
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:deadline-test");
+        conn = dataSource.getConnection();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        conn.close();
+        Deadline current = Deadline.current();
+        if (current != null) current.close();
+    }
+
+    /** Without a deadline statements are left as they are. */
+    @Test
+    void testNoDeadline() throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement("SELECT 1");
+
+        assertNull(Deadline.current());
+        assertSame(stmt, Deadline.bind(stmt, "test"));
+        assertEquals(0, stmt.getQueryTimeout());
+        assertEquals(5000, Deadline.limit(5000));
+    }
+
+    /** A bound statement gets the time left, rounded up to whole seconds, as its query timeout. */
+    @Test
+    void testBindSetsQueryTimeout() throws SQLException {
+        try (Deadline deadline = Deadline.start(2500);
+             PreparedStatement stmt = Deadline.bind(conn.prepareStatement("SELECT 1"), "test")) {
+            assertSame(deadline, Deadline.current());
+            assertTrue(deadline.hasQueried());
+            assertEquals(3, stmt.getQueryTimeout());
+            assertTrue(Deadline.limit(60000) <= 2500);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+            }
+        }
+        assertNull(Deadline.current());
+    }
+
+    /**
+     * Only a deadline that binds a statement schedules an expiry task, and closing the
+     * deadline removes the task from the timer straight away.
+     */
+    @Test
+    void testExpiryScheduledOnlyForQueriesAndRemovedOnClose() throws SQLException {
+        int before = Deadline.getPendingExpiryCount();
+        try (Deadline deadline = Deadline.start(30000)) {
+            assertEquals(before, Deadline.getPendingExpiryCount(), "no statement, no timer task");
+            try (PreparedStatement stmt = Deadline.bind(conn.prepareStatement("SELECT 1"), "test")) {
+                Deadline.bind(conn.prepareStatement("SELECT 2"), "test").close();
+                assertEquals(before + 1, Deadline.getPendingExpiryCount(), "one task per deadline");
+            }
+        }
+        assertEquals(before, Deadline.getPendingExpiryCount());
+    }
+
+    /** A query still running when the deadline passes is cancelled. */
+    @Test
+    void testRunningQueryCancelled() throws SQLException {
+        long cancelledBefore = Deadline.getCancelledCount();
+        long start = System.nanoTime();
+        try (Deadline deadline = Deadline.start(200);
+             PreparedStatement stmt = Deadline.bind(conn.prepareStatement(SLOW_QUERY), "slow")) {
+            assertThrows(SQLException.class, stmt::executeQuery);
+            assertTrue(deadline.isExpired());
+        }
+
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 5000, "query was not cancelled in time");
+        assertEquals(cancelledBefore + 1, Deadline.getCancelledCount());
+    }
+
+    /** No statement may be started once the deadline has passed. */
+    @Test
+    void testBindAfterExpiry() throws Exception {
+        try (Deadline deadline = Deadline.start(1)) {
+            Thread.sleep(20);
+            PreparedStatement stmt = conn.prepareStatement("SELECT 1");
+
+            assertThrows(SQLTimeoutException.class, () -> Deadline.bind(stmt, "test"));
+            assertTrue(stmt.isClosed());
+            assertEquals(0, deadline.getRemainingMillis());
+        }
+    }
+
+    /** Closed statements are never cancelled, so a statement reused later is safe. */
+    @Test
+    void testClosedStatementNotCancelled() throws Exception {
+        long cancelledBefore = Deadline.getCancelledCount();
+        try (Deadline deadline = Deadline.start(50)) {
+            Deadline.bind(conn.prepareStatement("SELECT 1"), "test").close();
+            Thread.sleep(150);
+            assertTrue(deadline.isExpired());
+        }
+
+        assertEquals(cancelledBefore, Deadline.getCancelledCount());
+    }
+}
@@ -0,0 +1,71 @@
+package com.napier.sem.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link EmbeddedDatabase}.
+ * The dump is loaded into a private in-memory H2 database, so no server is needed.
+ */
+public class EmbeddedDatabaseTest {
+    private static final String URL =
+            "jdbc:h2:mem:embedded-test;MODE=MySQL;DATABASE_TO_LOWER=TRUE;IGNORECASE=TRUE;DB_CLOSE_DELAY=-1";
+
+    /** CREATE TABLE drops keys and constraints and keeps the columns valid for H2. */
+    @Test
+    void testAdaptCreateTable() {
+        String sql = "CREATE TABLE `country` (\n"
+                + "  `Code` char(3) NOT NULL DEFAULT '',\n"
+                + "  `Continent` enum('Asia','Europe') NOT NULL DEFAULT 'Asia',\n"
+                + "  PRIMARY KEY (`Code`),\n"
+                + "  KEY `Continent` (`Continent`),\n"
+                + "  CONSTRAINT `fk` FOREIGN KEY (`Code`) REFERENCES `other` (`Code`)\n"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=latin1;";
+
+        String adapted = EmbeddedDatabase.adapt(sql);
+
+        assertEquals("CREATE TABLE country (\n"
+                + "  Code varchar(3) NOT NULL DEFAULT '',\n"
+                + "  Continent varchar(52) NOT NULL DEFAULT 'Asia',\n"
+                + "  PRIMARY KEY (Code)\n)", adapted);
+    }
+
+    /** MySQL's backslash-escaped quotes become doubled quotes; session statements are skipped. */
+    @Test
+    void testAdaptInsertAndSkippedStatements() {
+        assertEquals("INSERT INTO city VALUES (1,'Côte d''Ivoire');",
+                EmbeddedDatabase.adapt("INSERT INTO city VALUES (1,'Côte d\\'Ivoire');"));
+        assertNull(EmbeddedDatabase.adapt("SET NAMES latin1;"));
+        assertNull(EmbeddedDatabase.adapt("USE `world`;"));
+    }
+
+    /** The bundled dump loads completely and compares text case-insensitively. */
+    @Test
+    void testLoadBundledDump() throws SQLException {
+        EmbeddedDatabase.load(URL, "sa", "", "db/world.sql");
+        // A second load of the same URL is a no-op
+        EmbeddedDatabase.load(URL, "sa", "", "db/world.sql");
+
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            assertEquals(4079, count(stmt, "SELECT COUNT(*) FROM city"));
+            assertEquals(239, count(stmt, "SELECT COUNT(*) FROM country"));
+            assertEquals(984, count(stmt, "SELECT COUNT(*) FROM countrylanguage"));
+            assertEquals(46, count(stmt, "SELECT COUNT(*) FROM country WHERE Continent = 'europe'"));
+        }
+    }
+
+    private static int count(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
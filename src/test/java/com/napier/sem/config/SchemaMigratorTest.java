@@ -0,0 +1,94 @@
+package com.napier.sem.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SchemaMigrator}.
+ * Each test migrates a fresh in-memory H2 database loaded from the bundled dump.
+ */
+public class SchemaMigratorTest {
+    private static int databases;
+    private JdbcDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        String url = "jdbc:h2:mem:migrator-test-" + (++databases)
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;IGNORECASE=TRUE;DB_CLOSE_DELAY=-1";
+        EmbeddedDatabase.load(url, "sa", "", "db/world.sql");
+        dataSource = new JdbcDataSource();
+        dataSource.setURL(url);
+        dataSource.setUser("sa");
+    }
+
+    /** The bundled file starts at version 1 and every migration has statements. */
+    @Test
+    void testLoadBundledMigrations() {
+        List<SchemaMigrator.Migration> migrations = SchemaMigrator.load("migrations.sql");
+
+        assertFalse(migrations.isEmpty());
+        for (int i = 0; i < migrations.size(); ++i) {
+            assertEquals(i + 1, migrations.get(i).version);
+            assertFalse(migrations.get(i).statements.isEmpty());
+            assertFalse(migrations.get(i).description.isBlank());
+        }
+        assertTrue(migrations.get(0).statements.get(0).startsWith("CREATE INDEX"));
+    }
+
+    /** Migrating creates the indexes and records the version; migrating again does nothing. */
+    @Test
+    void testMigrateOnce() throws SQLException {
+        int total = SchemaMigrator.load("migrations.sql").size();
+
+        assertEquals(total, SchemaMigrator.migrate(dataSource));
+        assertEquals(0, SchemaMigrator.migrate(dataSource));
+
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            assertEquals(total, SchemaMigrator.currentVersion(conn));
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM information_schema.indexes "
+                    + "WHERE index_name = 'idx_country_continent_population'")) {
+                rs.next();
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+    }
+
+    /** Only migrations newer than the recorded version are run. */
+    @Test
+    void testMigrateOnlyPending() throws SQLException {
+        List<SchemaMigrator.Migration> migrations = new ArrayList<>(SchemaMigrator.load("migrations.sql"));
+        SchemaMigrator.migrate(dataSource, migrations);
+
+        SchemaMigrator.Migration next = new SchemaMigrator.Migration(migrations.size() + 1, "Test table");
+        next.statements.add("CREATE TABLE migrator_test (id INT)");
+        migrations.add(next);
+
+        assertEquals(1, SchemaMigrator.migrate(dataSource, migrations));
+        try (Connection conn = dataSource.getConnection()) {
+            assertEquals(next.version, SchemaMigrator.currentVersion(conn));
+        }
+    }
+
+    /** A failing migration is not recorded, so it runs again next time. */
+    @Test
+    void testFailedMigrationNotRecorded() throws SQLException {
+        SchemaMigrator.Migration broken = new SchemaMigrator.Migration(1, "Broken");
+        broken.statements.add("CREATE INDEX idx_missing ON no_such_table (id)");
+
+        assertThrows(SQLException.class, () -> SchemaMigrator.migrate(dataSource, List.of(broken)));
+        try (Connection conn = dataSource.getConnection()) {
+            assertEquals(0, SchemaMigrator.currentVersion(conn));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.napier.sem.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link Startup}.
+ * Stages are short tasks; latches show which of them run at the same time.
+ */
+public class StartupTest {
+
+    /** Stages without dependencies run at the same time; a dependent stage waits for them. */
+    @Test
+    void testIndependentStagesOverlap() throws Exception {
+        Startup startup = new Startup();
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        Startup.Task meet = () -> {
+            bothRunning.countDown();
+            assertTrue(bothRunning.await(5, TimeUnit.SECONDS), "the other stage did not run alongside");
+        };
+
+        CompletableFuture<Void> a = startup.stage("a", true, meet);
+        CompletableFuture<Void> b = startup.stage("b", true, meet);
+        startup.stage("c", true, () -> assertEquals(0, bothRunning.getCount()), a, b);
+
+        assertTrue(startup.await());
+        assertTrue(startup.isReady());
+        for (Startup.Stage stage : startup.getStages()) {
+            assertEquals(Startup.State.DONE, stage.getState(), stage.getName());
+            assertTrue(stage.getStartMillis() >= 0 && stage.getDurationMillis() >= 0);
+        }
+    }
+
+    /** Not ready while a stage runs; the report shows it running. */
+    @Test
+    void testNotReadyWhileRunning() throws Exception {
+        Startup startup = new Startup();
+        CountDownLatch release = new CountDownLatch(1);
+
+        startup.stage("slow", true, release::await);
+
+        Startup.Stage slow = startup.getStages().get(0);
+        waitUntilNotPending(slow);
+        assertEquals(Startup.State.RUNNING, slow.getState());
+        assertFalse(startup.isReady());
+        assertFalse(startup.hasFailed());
+
+        release.countDown();
+        assertTrue(startup.await());
+        assertTrue(startup.isReady());
+    }
+
+    /** A failed required stage skips its dependents and means startup failed. */
+    @Test
+    void testRequiredFailureSkipsDependents() throws Exception {
+        Startup startup = new Startup();
+
+        CompletableFuture<Void> database = startup.stage("database", true, () -> {
+            throw new IllegalStateException("Database unreachable");
+        });
+        startup.stage("reports", true, () -> fail("must not run"), database);
+
+        assertFalse(startup.await());
+        List<Startup.Stage> stages = startup.getStages();
+        assertEquals(Startup.State.FAILED, stages.get(0).getState());
+        assertEquals("Database unreachable", stages.get(0).getError());
+        assertEquals(Startup.State.SKIPPED, stages.get(1).getState());
+        assertTrue(startup.hasFailed());
+        assertFalse(startup.isReady());
+    }
+
+    /** An optional stage may fail without blocking readiness. */
+    @Test
+    void testOptionalFailureStillReady() throws Exception {
+        Startup startup = new Startup();
+
+        startup.stage("http", true, () -> { });
+        CompletableFuture<Void> migrations = startup.stage("migrations", false, () -> {
+            throw new IllegalStateException("Index exists");
+        });
+
+        assertTrue(startup.await());
+        assertThrows(Exception.class, migrations::join);
+        assertTrue(startup.isReady());
+        assertFalse(startup.hasFailed());
+    }
+
+    /**
+     * Readiness does not wait for a background stage, e.g. the database still retrying
+     * while reports are answered from a snapshot, nor for the stages after it.
+     */
+    @Test
+    void testReadyWhileBackgroundStageRuns() throws Exception {
+        Startup startup = new Startup();
+        CountDownLatch reachable = new CountDownLatch(1);
+
+        CompletableFuture<Void> database = startup.background("database", reachable::await);
+        CompletableFuture<Void> reports = startup.stage("reports", true, () -> { });
+        startup.background("reconcile", () -> { }, database, reports);
+        CompletableFuture<Void> warmup = startup.stage("warmup", false, () -> { }, reports);
+
+        assertTrue(startup.await());
+        warmup.join();
+        assertEquals(Startup.State.RUNNING, startup.getStages().get(0).getState());
+        assertTrue(startup.getStages().get(0).isBackground());
+        assertTrue(startup.isReady(), "the database stage is still retrying");
+
+        reachable.countDown();
+        database.join();
+        assertTrue(startup.isReady());
+    }
+
+    private static void waitUntilNotPending(Startup.Stage stage) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stage.getState() == Startup.State.PENDING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
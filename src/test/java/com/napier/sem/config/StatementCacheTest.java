@@ -0,0 +1,129 @@
+package com.napier.sem.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link StatementCache}.
+ * The physical connection is a Mockito mock that hands out a fresh mocked
+ * statement for every {@code prepareStatement} call.
+ */
+public class StatementCacheTest {
+    private Connection mockConn;
+    private StatementCache cache;
+    /** Every physical statement prepared on the mocked connection, in order. */
+    private final List<PreparedStatement> prepared = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        mockConn = mock(Connection.class);
+        when(mockConn.prepareStatement(anyString())).thenAnswer(inv -> {
+            PreparedStatement stmt = mock(PreparedStatement.class);
+            prepared.add(stmt);
+            return stmt;
+        });
+        cache = new StatementCache(mockConn, 2);
+    }
+
+    /** The second lookup of the same query reuses the prepared statement. */
+    @Test
+    void testReusesStatementForSameQuery() throws SQLException {
+        long hitsBefore = StatementCache.getHitCount();
+        long missesBefore = StatementCache.getMissCount();
+
+        cache.get("all_cities", QueryLoader.get("all_cities")).close();
+        cache.get("all_cities", QueryLoader.get("all_cities")).close();
+
+        verify(mockConn, times(1)).prepareStatement(QueryLoader.get("all_cities"));
+        assertEquals(1, StatementCache.getHitCount() - hitsBefore);
+        assertEquals(1, StatementCache.getMissCount() - missesBefore);
+    }
+
+    /** Closing a cached statement clears its parameters but keeps it open. */
+    @Test
+    void testCloseResetsInsteadOfClosing() throws SQLException {
+        PreparedStatement stmt = cache.get("top_n_cities", QueryLoader.get("top_n_cities"));
+        stmt.close();
+
+        verify(prepared.get(0)).clearParameters();
+        verify(prepared.get(0), never()).close();
+        assertTrue(stmt.isClosed());
+        assertThrows(SQLException.class, () -> stmt.setInt(1, 5));
+        assertEquals(1, cache.size());
+    }
+
+    /** With a size of 0 nothing is cached: each lookup prepares a statement that closing really closes. */
+    @Test
+    void testZeroSizeDisablesCaching() throws SQLException {
+        StatementCache uncached = new StatementCache(mockConn, 0);
+
+        PreparedStatement stmt = uncached.get("all_cities", QueryLoader.get("all_cities"));
+        stmt.executeQuery();
+        verify(prepared.get(0), never()).close();
+        stmt.close();
+        uncached.get("all_cities", QueryLoader.get("all_cities")).close();
+
+        verify(prepared.get(0)).executeQuery();
+        verify(prepared.get(0)).close();
+        assertEquals(2, prepared.size());
+        assertEquals(0, uncached.size());
+    }
+
+    /** The least recently used statement is closed when the cache is full. */
+    @Test
+    void testEvictsLeastRecentlyUsed() throws SQLException {
+        long evictionsBefore = StatementCache.getEvictionCount();
+
+        cache.get("all_cities", QueryLoader.get("all_cities")).close();
+        cache.get("top_n_cities", QueryLoader.get("top_n_cities")).close();
+        cache.get("all_cities", QueryLoader.get("all_cities")).close();
+        cache.get("all_countries", QueryLoader.get("all_countries")).close();
+
+        assertEquals(2, cache.size());
+        assertEquals(1, StatementCache.getEvictionCount() - evictionsBefore);
+
+        // "top_n_cities" was evicted, so it has to be prepared again
+        cache.get("top_n_cities", QueryLoader.get("top_n_cities")).close();
+        verify(mockConn, times(2)).prepareStatement(QueryLoader.get("top_n_cities"));
+    }
+
+    /** Using the same query twice at once on one connection gives two different statements. */
+    @Test
+    void testConcurrentUseOfSameQueryGetsSeparateStatement() throws SQLException {
+        PreparedStatement first = cache.get("all_cities", QueryLoader.get("all_cities"));
+        PreparedStatement second = cache.get("all_cities", QueryLoader.get("all_cities"));
+
+        assertNotSame(first, second);
+        verify(mockConn, times(2)).prepareStatement(QueryLoader.get("all_cities"));
+        first.close();
+        second.close();
+    }
+
+    /** Connections from the pool expose their cache to {@link StatementCache#prepare}. */
+    @Test
+    void testPrepareUsesPooledConnectionCache() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(() -> mockConn, 1, 1, 60000, 100, 1, 4);
+        when(mockConn.isValid(anyInt())).thenReturn(true);
+        when(mockConn.getAutoCommit()).thenReturn(true);
+        try {
+            for (int i = 0; i < 3; ++i) {
+                try (Connection conn = pool.getConnection();
+                     PreparedStatement stmt = StatementCache.prepare(conn, "world_population")) {
+                    assertNotNull(stmt);
+                }
+            }
+            verify(mockConn, times(1)).prepareStatement(QueryLoader.get("world_population"));
+        } finally {
+            pool.close();
+        }
+    }
+}
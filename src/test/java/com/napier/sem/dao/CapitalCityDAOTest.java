@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -22,7 +23,9 @@ import static org.mockito.Mockito.*;
  * Tests for CapitalCityDAO using mocked database objects.
  */
 public class CapitalCityDAOTest {
-// Mocked database connection.
+// Mocked connection pool and database connection.
+    @Mock
+    private DataSource mockDataSource;
     @Mock
     private Connection mockConn;
 
@@ -38,9 +41,10 @@ public class CapitalCityDAOTest {
     private CapitalCityDAO capitalCityDAO;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws SQLException {
         MockitoAnnotations.openMocks(this);
-        capitalCityDAO = new CapitalCityDAO(mockConn);
+        when(mockDataSource.getConnection()).thenReturn(mockConn);
+        capitalCityDAO = new CapitalCityDAO(mockDataSource);
     }
 
     // Mocks a single capital city record.
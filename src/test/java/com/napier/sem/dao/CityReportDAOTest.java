@@ -2,16 +2,19 @@ package com.napier.sem.dao;
 
 import com.napier.sem.exception.DataAccessException;
 import com.napier.sem.model.City;
+import com.napier.sem.model.Page;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,6 +35,8 @@ public class CityReportDAOTest {
 
     // --- Mocked dependencies ---
     @Mock
+    private DataSource mockDataSource;
+    @Mock
     private Connection mockConn;
 
     @Mock
@@ -44,8 +49,9 @@ public class CityReportDAOTest {
     private CityDAO cityDAO;
     /** Initialize Mockito before each test. */
     @BeforeEach
-    void setUp() {
+    void setUp() throws SQLException {
         MockitoAnnotations.openMocks(this);
+        when(mockDataSource.getConnection()).thenReturn(mockConn);
     }
 
     // --- Helper methods for mocking behavior ---
@@ -219,6 +225,60 @@ public class CityReportDAOTest {
     }
 
 
+    /** Verifies that the borrowed connection is handed back to the pool after the query. */
+    @Test
+    void testConnectionReturnedToPool() throws SQLException {
+        mockReturnCityList();
+
+        cityDAO.getAllCities();
+
+        verify(mockDataSource).getConnection();
+        verify(mockConn).close();
+    }
+
+    /** Verifies that streamed cities reach the sink and the result is not buffered by the driver. */
+    @Test
+    void testStreamAllCities() throws SQLException {
+        mockReturnCityList();
+        List<City> received = new ArrayList<>();
+
+        cityDAO.streamAllCities(received::add);
+
+        assertSingleLondon(received);
+        verify(mockStmt).setFetchSize(anyInt());
+        verify(mockConn).close();
+    }
+
+    @Test
+    void testCitiesPageHasNextCursorWhenAnExtraRowIsReturned() throws SQLException {
+        when(mockConn.prepareStatement(anyString())).thenReturn(mockStmt);
+        when(mockStmt.executeQuery()).thenReturn(mockRs);
+        when(mockRs.next()).thenReturn(true, true, false);
+        when(mockRs.getInt("ID")).thenReturn(456, 457);
+        when(mockRs.getString("City")).thenReturn("London", "Birmingham");
+        when(mockRs.getInt("Population")).thenReturn(8000000, 1000000);
+
+        Page<City> page = cityDAO.getCitiesPage(PageCursor.FIRST, 1);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals("London", page.getItems().get(0).getName());
+        PageCursor next = PageCursor.decode(page.getNextCursor());
+        assertEquals(8000000, next.getPopulation());
+        assertEquals(456, next.getIntKey());
+        verify(mockStmt).setInt(4, 2);
+    }
+
+    @Test
+    void testLastCitiesPageHasNoNextCursor() throws SQLException {
+        mockReturnCityList();
+
+        Page<City> page = cityDAO.getCitiesByContinentPage(CONTINENT, PageCursor.FIRST, 10);
+
+        assertSingleLondon(page.getItems());
+        assertNull(page.getNextCursor());
+        verify(mockStmt).setString(1, CONTINENT);
+    }
+
     // --- Exception handling tests ---
 
     /**
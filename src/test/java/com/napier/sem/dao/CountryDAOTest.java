@@ -9,6 +9,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -38,6 +39,8 @@ public class CountryDAOTest {
 
     // --- Mocked dependencies ---
     @Mock
+    private DataSource mockDataSource;
+    @Mock
     private Connection mockConn;
     @Mock
     private PreparedStatement mockStmt;
@@ -49,8 +52,9 @@ public class CountryDAOTest {
 
     /** Initializes Mockito mocks before each test. */
     @BeforeEach
-    void setUp() {
+    void setUp() throws SQLException {
         MockitoAnnotations.openMocks(this);
+        when(mockDataSource.getConnection()).thenReturn(mockConn);
     }
 
     // --- Mock setup helpers ---
@@ -9,6 +9,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -28,6 +29,8 @@ import static org.mockito.Mockito.*;
 public class LanguageReportDAOTest {
     // --- Mocked dependencies ---
     @Mock
+    private DataSource mockDataSource;
+    @Mock
     private Connection mockConn;
     @Mock
     private PreparedStatement mockStmt;
@@ -37,8 +40,9 @@ public class LanguageReportDAOTest {
     private LanguageReportDAO languageReportDAO;
     /** Initializes Mockito mocks before each test run. */
     @BeforeEach
-    void setUp() {
+    void setUp() throws SQLException {
         MockitoAnnotations.openMocks(this);
+        when(mockDataSource.getConnection()).thenReturn(mockConn);
     }
     // --- Helper setup methods ---
 
@@ -88,6 +92,43 @@ public class LanguageReportDAOTest {
         verify(mockRs, times(1)).next();
     }
 
+    // --- Tests for the language rollup ---
+
+    /** Verifies that the rollup adds up speakers of each language, official and not, in exact thousandths. */
+    @Test
+    void testGetLanguageRollup_AddsUpOfficialAndOtherSpeakers() throws SQLException {
+        when(mockConn.prepareStatement(QueryLoader.get("language_rollup"))).thenReturn(mockStmt);
+        when(mockStmt.executeQuery()).thenReturn(mockRs);
+        when(mockRs.next()).thenReturn(true, true, true, false);
+        when(mockRs.getLong("WorldPopulation")).thenReturn(1000000L);
+        when(mockRs.getString("Language")).thenReturn("English", "English", "French");
+        when(mockRs.getString("IsOfficial")).thenReturn("T", "F", "T");
+        when(mockRs.getLong("Speakers")).thenReturn(100000500L, 20000000L, 50000000L);
+
+        LanguageRollup rollup = languageReportDAO.getLanguageRollup();
+
+        assertEquals(2, rollup.getLanguageCount());
+        List<LanguageReport> all = rollup.getLanguageReport(List.of("english"), false);
+        assertEquals(120001, all.get(0).getSpeakers());
+        assertEquals(12.0, all.get(0).getWorldPercentage());
+        List<LanguageReport> official = rollup.getTopNLanguages(2, true);
+        assertEquals("English", official.get(0).getLanguage());
+        assertEquals(100001, official.get(0).getSpeakers());
+        assertEquals("French", official.get(1).getLanguage());
+        verify(mockRs).getLong("WorldPopulation");
+    }
+
+    /** Ensures the language list and top-N reports are answered from the rollup query. */
+    @Test
+    void testGetTopNLanguages_UsesRollupQuery() throws SQLException {
+        when(mockConn.prepareStatement(QueryLoader.get("language_rollup"))).thenReturn(mockStmt);
+        when(mockStmt.executeQuery()).thenReturn(mockRs);
+        when(mockRs.next()).thenReturn(false);
+
+        assertTrue(languageReportDAO.getTopNLanguages(5, false).isEmpty());
+        verify(mockConn).prepareStatement(QueryLoader.get("language_rollup"));
+    }
+
     // --- Tests for exception handling ---
 
     /**
@@ -99,4 +140,12 @@ public class LanguageReportDAOTest {
 
         assertThrows(DataAccessException.class, () -> languageReportDAO.getLanguagePopulationReport());
     }
+
+    /** Ensures SQLExceptions while reading the rollup are rethrown as {@link DataAccessException}. */
+    @Test
+    void testGetLanguageRollup_ThrowsDataAccessException() throws SQLException {
+        when(mockConn.prepareStatement(anyString())).thenThrow(new SQLException());
+
+        assertThrows(DataAccessException.class, () -> languageReportDAO.getLanguageReport(List.of("English"), true));
+    }
 }
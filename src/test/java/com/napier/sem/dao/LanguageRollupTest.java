@@ -0,0 +1,109 @@
+package com.napier.sem.dao;
+
+import com.napier.sem.config.DatasetVersion;
+import com.napier.sem.model.LanguageReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link LanguageRollup} and {@link RollupLanguageReportRepository}.
+ *
+ * <p>A small hand-built rollup is used so the expected speakers can be worked out by
+ * hand: a language official in one country and spoken in another, a language never
+ * official, and two languages with the same number of speakers.</p>
+ */
+public class LanguageRollupTest {
+    private LanguageRollup rollup;
+
+    @BeforeEach
+    void setUp() {
+        rollup = build();
+    }
+
+    private static LanguageRollup build() {
+        return new LanguageRollup.Builder()
+                .addPopulation(59623400)   // United Kingdom
+                .addPopulation(59225700)   // France
+                .addPopulation(126714000)  // Japan
+                .addLanguage("English", true, 59623400, 973)
+                .addLanguage("English", false, 126714000, 1)
+                .addLanguage("French", true, 59225700, 936)
+                .addLanguage("Arabic", false, 59225700, 25)
+                .addLanguage("Japanese", true, 126714000, 991)
+                .addLanguage("Welsh", false, 59623400, 9)
+                .addLanguage("Gaelic", false, 59623400, 9)
+                .build();
+    }
+
+    @Test
+    void anyListOfLanguagesIsReportedMostSpokenFirst() {
+        List<LanguageReport> reports = rollup.getLanguageReport(List.of(" french", "ENGLISH", "Klingon", "English"), false);
+
+        // Unknown languages are left out and repeated ones reported once
+        assertEquals(List.of("English", "French"), names(reports));
+        // 59623400 * 0.973 + 126714000 * 0.001 = 58,140,282.2
+        assertEquals(58140282, reports.get(0).getSpeakers());
+        assertEquals(23.68, reports.get(0).getWorldPercentage(), 1e-9);
+        assertEquals(55435255, reports.get(1).getSpeakers());
+    }
+
+    @Test
+    void officialOnlyCountsCountriesWhereTheLanguageIsOfficial() {
+        List<LanguageReport> reports = rollup.getLanguageReport(List.of("English", "Arabic"), true);
+
+        // Arabic is not official anywhere
+        assertEquals(List.of("English"), names(reports));
+        // 59623400 * 0.973 = 58,013,568.2
+        assertEquals(58013568, reports.get(0).getSpeakers());
+    }
+
+    @Test
+    void topLanguagesAreOrderedBySpeakersThenName() {
+        assertEquals(List.of("Japanese", "English", "French"), names(rollup.getTopNLanguages(3, false)));
+        // Welsh and Gaelic tie on 536,610.6 speakers
+        assertEquals(List.of("Arabic", "Gaelic", "Welsh"), names(rollup.getTopNLanguages(7, false).subList(3, 6)));
+        assertEquals(List.of("Japanese", "English", "French"), names(rollup.getTopNLanguages(10, true)));
+        assertTrue(rollup.getTopNLanguages(0, false).isEmpty());
+        assertEquals(6, rollup.getTopNLanguages(100, false).size());
+    }
+
+    @Test
+    void majorLanguagesMatchTheOriginalReport() {
+        assertEquals(List.of("English", "Arabic"), names(rollup.getLanguagePopulationReport()));
+        assertEquals(6, rollup.getLanguageCount());
+    }
+
+    @Test
+    void emptyRollupReportsZeroPercent() {
+        LanguageRollup empty = new LanguageRollup.Builder().addLanguage("Esperanto", false, 0, 1000).build();
+
+        assertEquals(0.0, empty.getTopNLanguages(1, false).get(0).getWorldPercentage());
+        assertTrue(new LanguageRollup.Builder().build().getLanguagePopulationReport().isEmpty());
+    }
+
+    @Test
+    void repositoryRebuildsOnlyWhenTheDatasetChanges() {
+        AtomicInteger builds = new AtomicInteger();
+        RollupLanguageReportRepository repository = new RollupLanguageReportRepository(() -> {
+            builds.incrementAndGet();
+            return build();
+        });
+
+        assertEquals(2, repository.getLanguagePopulationReport().size());
+        assertEquals(1, repository.getLanguageReport(List.of("Welsh"), false).size());
+        assertEquals(1, builds.get());
+
+        DatasetVersion.bump();
+        assertEquals("Japanese", repository.getTopNLanguages(1, true).get(0).getLanguage());
+        assertEquals(2, builds.get());
+    }
+
+    private static List<String> names(List<LanguageReport> reports) {
+        return reports.stream().map(LanguageReport::getLanguage).toList();
+    }
+}
@@ -0,0 +1,85 @@
+package com.napier.sem.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link NameDictionary}.
+ * Each test uses its own dictionary, so the shared ones are left alone.
+ */
+public class NameDictionaryTest {
+
+    /** Equal names get the same ID and share one instance; IDs are dense. */
+    @Test
+    void testSharesOneInstancePerName() {
+        NameDictionary names = new NameDictionary();
+        String first = new String("Buenos Aires".toCharArray());
+        String copy = new String("Buenos Aires".toCharArray());
+
+        int id = names.id(first);
+
+        assertEquals(0, id);
+        assertEquals(id, names.id(copy));
+        assertSame(first, names.canonical(copy));
+        assertEquals(1, names.id("Córdoba"));
+        assertEquals(2, names.size());
+    }
+
+    /** Null stays null; looking a name up does not add it. */
+    @Test
+    void testNullAndFind() {
+        NameDictionary names = new NameDictionary();
+
+        assertEquals(-1, names.id(null));
+        assertNull(names.name(-1));
+        assertNull(names.canonical(null));
+        assertEquals(-1, names.find("Unknown"));
+        assertEquals(0, names.size());
+
+        names.id("Known");
+        assertEquals(0, names.find("Known"));
+        assertEquals(-1, names.find("known"), "names are matched exactly");
+    }
+
+    /** The dictionary grows past its initial capacity without losing names. */
+    @Test
+    void testGrows() {
+        NameDictionary names = new NameDictionary();
+
+        for (int i = 0; i < 1000; ++i) assertEquals(i, names.id("District " + i));
+
+        assertEquals(1000, names.size());
+        assertEquals("District 0", names.name(0));
+        assertEquals("District 999", names.name(999));
+    }
+
+    /** Threads adding the same names concurrently agree on their IDs. */
+    @Test
+    void testConcurrentAdds() throws Exception {
+        NameDictionary names = new NameDictionary();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int t = 0; t < 4; ++t) {
+                results.add(pool.submit(() -> {
+                    int[] ids = new int[500];
+                    for (int i = 0; i < ids.length; ++i) ids[i] = names.id("Name " + i);
+                    return ids;
+                }));
+            }
+            int[] expected = results.get(0).get();
+            for (Future<int[]> result : results) assertArrayEquals(expected, result.get());
+            assertEquals(500, names.size());
+            for (int i = 0; i < 500; ++i) assertEquals("Name " + i, names.name(expected[i]));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.napier.sem.dao;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PageCursor}.
+ */
+public class PageCursorTest {
+
+    @Test
+    void encodedCursorDecodesToTheSamePosition() {
+        PageCursor cursor = PageCursor.decode(new PageCursor(8000000, "456").encode());
+
+        assertEquals(8000000, cursor.getPopulation());
+        assertEquals("456", cursor.getKey());
+        assertEquals(456, cursor.getIntKey());
+    }
+
+    @Test
+    void countryCodeKeysAreKept() {
+        PageCursor cursor = PageCursor.decode(new PageCursor(0, "GBR").encode());
+
+        assertEquals(0, cursor.getPopulation());
+        assertEquals("GBR", cursor.getKey());
+    }
+
+    @Test
+    void firstPageCursorHasNoKey() {
+        assertEquals(0, PageCursor.FIRST.getIntKey());
+        assertEquals(Long.MAX_VALUE, PageCursor.FIRST.getPopulation());
+    }
+
+    @Test
+    void invalidCursorsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("Zm9v")); // "foo", no separator
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(new PageCursor(1, "GBR").encode()).getIntKey());
+    }
+}
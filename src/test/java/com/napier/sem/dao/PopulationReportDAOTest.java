@@ -9,6 +9,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -36,8 +37,11 @@ public class PopulationReportDAOTest {
     private static final String QUERY_CONTINENT_BREAKDOWN = "continent_population_summary";
     private static final String QUERY_REGION_BREAKDOWN = "region_population_summary";
     private static final String QUERY_COUNTRY_BREAKDOWN = "country_population_summary";
+    private static final String QUERY_ROLLUP = "population_rollup";
     // --- Mocked dependencies ---
     @Mock
+    private DataSource mockDataSource;
+    @Mock
     private Connection mockConn;
     @Mock
     private PreparedStatement mockStmt;
@@ -49,8 +53,9 @@ public class PopulationReportDAOTest {
     private PopulationReportDAO populationReportDAO;
     /** Initializes Mockito mocks before each test. */
     @BeforeEach
-    void setUp() {
+    void setUp() throws SQLException {
         MockitoAnnotations.openMocks(this);
+        when(mockDataSource.getConnection()).thenReturn(mockConn);
     }
 
 
@@ -218,6 +223,31 @@ public class PopulationReportDAOTest {
         verify(mockStmt).executeQuery();
     }
 
+    /** Verifies the rollup query is read in one pass, including a country without cities. */
+    @Test
+    void testGetPopulationRollup_AddsUpCountriesAndCities() throws SQLException {
+        mockPrepareAndExecute(QUERY_ROLLUP);
+        when(mockRs.next()).thenReturn(true, true, true, false);
+        when(mockRs.getString("Code")).thenReturn("ATA", "GBR", "GBR");
+        when(mockRs.getString("Name")).thenReturn("Antarctica", "United Kingdom");
+        when(mockRs.getString("Continent")).thenReturn("Antarctica", "Europe");
+        when(mockRs.getString("Region")).thenReturn("Antarctica", "British Islands");
+        when(mockRs.getLong("country_population")).thenReturn(0L, 59623400L);
+        when(mockRs.getInt("ID")).thenReturn(0, 456, 457);
+        when(mockRs.wasNull()).thenReturn(true, false, false);
+        when(mockRs.getString("City")).thenReturn("London", "Birmingham");
+        when(mockRs.getString("District")).thenReturn("England", "England");
+        when(mockRs.getLong("city_population")).thenReturn(7285000L, 1013000L);
+
+        PopulationRollup rollup = populationReportDAO.getPopulationRollup();
+
+        assertEquals(59623400L, rollup.getWorldPopulation());
+        assertEquals(8298000L, rollup.getDistrictPopulation("England"));
+        assertEquals(8298000L, rollup.getCountryPopulationBreakdown().get(0).getPopulationInCities());
+        assertEquals(0L, rollup.getContinentPopulation("Antarctica"));
+        verify(mockStmt).executeQuery();
+    }
+
 // --- Exception Handling ---
 
 /**
@@ -236,5 +266,6 @@ public class PopulationReportDAOTest {
         assertThrows(DataAccessException.class, () -> populationReportDAO.getContinentPopulationBreakdown());
         assertThrows(DataAccessException.class, () -> populationReportDAO.getRegionPopulationBreakdown());
         assertThrows(DataAccessException.class, () -> populationReportDAO.getCountryPopulationBreakdown());
+        assertThrows(DataAccessException.class, () -> populationReportDAO.getPopulationRollup());
     }
 }
@@ -0,0 +1,124 @@
+package com.napier.sem.dao;
+
+import com.napier.sem.config.DatasetVersion;
+import com.napier.sem.model.PopulationReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PopulationRollup} and {@link RollupPopulationReportRepository}.
+ *
+ * <p>A small hand-built rollup is used so the expected sums can be worked out by hand,
+ * including the edge cases of the SQL queries it replaces: countries without cities,
+ * cities of unknown countries, duplicate city names and ties in the breakdowns.</p>
+ */
+public class PopulationRollupTest {
+    private PopulationRollup rollup;
+
+    @BeforeEach
+    void setUp() {
+        rollup = build();
+    }
+
+    private static PopulationRollup build() {
+        return new PopulationRollup.Builder()
+                .addCountry("ATA", "Antarctica", "Antarctica", "Antarctica", 0)
+                .addCountry("FRA", "France", "Europe", "Western Europe", 59225700)
+                .addCountry("GBR", "United Kingdom", "Europe", "British Islands", 59623400)
+                .addCountry("JPN", "Japan", "Asia", "Eastern Asia", 126714000)
+                .addCountry("UMI", "United States Minor Outlying Islands", "Oceania", "Micronesia/Caribbean", 0)
+                .addCity(1, "GBR", "London", "England", 7285000)
+                .addCity(2, "GBR", "Birmingham", "England", 1013000)
+                .addCity(3, "GBR", "Edinburgh", "Scotland", 450180)
+                .addCity(4, "FRA", "Paris", "Ile-de-France", 2125246)
+                .addCity(5, "JPN", "Tokyo", "Tokyo-to", 7980230)
+                .addCity(6, "XXX", "Nowhere", "England", 1)
+                .addCity(7, "JPN", "London", "Tokyo-to", 5)
+                .build();
+    }
+
+    @Test
+    void pointLookupsIgnoreCaseAndSpaces() {
+        assertEquals(245563100L, rollup.getWorldPopulation());
+        assertEquals(118849100L, rollup.getContinentPopulation(" europe "));
+        assertEquals(59623400L, rollup.getRegionPopulation("British Islands"));
+        assertEquals(126714000L, rollup.getCountryPopulation("JAPAN"));
+        assertNull(rollup.getContinentPopulation("Atlantis"));
+        assertNull(rollup.getCountryPopulation(null));
+    }
+
+    @Test
+    void districtsAndCitiesCountEveryCityWithTheName() {
+        // Cities of unknown countries still count, like the district query
+        assertEquals(8298001L, rollup.getDistrictPopulation("England"));
+        assertNull(rollup.getDistrictPopulation("Nowhere"));
+        // The first city by ID wins when names repeat
+        assertEquals(7285000L, rollup.getCityPopulation("london"));
+    }
+
+    @Test
+    void breakdownsAreOrderedByTotalThenAsMySqlOrdersTies() {
+        List<PopulationReport> continents = rollup.getContinentPopulationBreakdown();
+        assertEquals(List.of("Asia", "Europe", "Oceania", "Antarctica"), names(continents));
+        assertEquals(10873426L, continents.get(1).getPopulationInCities());
+        assertEquals(118849100L - 10873426L, continents.get(1).getPopulationNotInCities());
+
+        // Equal totals: regions by name descending, countries by code
+        assertEquals("Micronesia/Caribbean", rollup.getRegionPopulationBreakdown().get(3).getName());
+        assertEquals("Antarctica", rollup.getRegionPopulationBreakdown().get(4).getName());
+        List<PopulationReport> countries = rollup.getCountryPopulationBreakdown();
+        assertEquals("Antarctica", countries.get(3).getName());
+        assertEquals("United States Minor Outlying Islands", countries.get(4).getName());
+    }
+
+    @Test
+    void areasWithoutCitiesReportZeroCityPopulation() {
+        PopulationReport antarctica = rollup.getCountryPopulationBreakdown().get(3);
+        assertEquals(0, antarctica.getPopulationInCities());
+        assertEquals(0, antarctica.getPopulationNotInCities());
+    }
+
+    @Test
+    void treeHoldsTheSumsOfEachLevel() {
+        PopulationRollup.Area europe = rollup.getContinents().get(1);
+        assertEquals("Europe", europe.getName());
+        assertEquals(2, europe.getChildren().size());
+
+        PopulationRollup.Area uk = europe.getChildren().get(1).getChildren().get(0);
+        assertEquals("United Kingdom", uk.getName());
+        assertEquals(8748180L, uk.getPopulationInCities());
+        assertEquals(List.of("England", "Scotland"), uk.getChildren().stream().map(PopulationRollup.Area::getName).toList());
+        assertEquals(8298000L, uk.getChildren().get(0).getTotalPopulation());
+    }
+
+    @Test
+    void emptyRollupHasNoWorldPopulation() {
+        assertNull(new PopulationRollup.Builder().build().getWorldPopulation());
+    }
+
+    @Test
+    void repositoryRebuildsOnlyWhenTheDatasetChanges() {
+        AtomicInteger builds = new AtomicInteger();
+        RollupPopulationReportRepository repository = new RollupPopulationReportRepository(() -> {
+            builds.incrementAndGet();
+            return build();
+        });
+
+        assertEquals(245563100L, repository.getWorldPopulation());
+        assertEquals(59623400L, repository.getCountryPopulation("United Kingdom"));
+        assertEquals(1, builds.get());
+
+        DatasetVersion.bump();
+        assertEquals(4, repository.getContinentPopulationBreakdown().size());
+        assertEquals(2, builds.get());
+    }
+
+    private static List<String> names(List<PopulationReport> reports) {
+        return reports.stream().map(PopulationReport::getName).toList();
+    }
+}
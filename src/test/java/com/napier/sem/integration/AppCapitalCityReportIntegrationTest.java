@@ -8,7 +8,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.sql.Connection;
+import javax.sql.DataSource;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -36,9 +36,9 @@ public class AppCapitalCityReportIntegrationTest {
     // Creates the service with an active database connection.
     @BeforeEach
     void setUp() {
-        Connection conn = DatabaseConnection.get();
-        assertNotNull(conn, "Database connection should not be null for integration tests");
-        capitalCityService = new CapitalCityService(conn);
+        DataSource dataSource = DatabaseConnection.get();
+        assertNotNull(dataSource, "Database connection pool should not be null for integration tests");
+        capitalCityService = new CapitalCityService(dataSource);
     }
 
     // Checks that all capital cities can be retrieved.
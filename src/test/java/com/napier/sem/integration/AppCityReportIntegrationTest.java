@@ -8,7 +8,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.sql.Connection;
+import javax.sql.DataSource;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -40,9 +40,9 @@ public class AppCityReportIntegrationTest {
     @BeforeEach
     void setUp() {
         // Ensure your DatabaseConnection has already connected in test context
-        Connection conn = DatabaseConnection.get();
-        assertNotNull(conn, "Database connection should not be null for integration tests");
-        cityService = new CityService(conn);
+        DataSource dataSource = DatabaseConnection.get();
+        assertNotNull(dataSource, "Database connection pool should not be null for integration tests");
+        cityService = new CityService(dataSource);
     }
     // --- Tests for all city reports ---
 
@@ -0,0 +1,148 @@
+package com.napier.sem.integration;
+
+import com.napier.sem.config.DatabaseConnection;
+import com.napier.sem.config.QueryLoader;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks with {@code EXPLAIN} that every scoped query in {@code queries.sql} reads the
+ * tables it filters through an index (added by the migrations in {@code migrations.sql})
+ * instead of scanning them.
+ * <p>
+ * A scoped query is one whose {@code WHERE} clause compares a column with a parameter.
+ * Each parameter gets a realistic sample value chosen from the column it is compared
+ * with. Works on MySQL (no {@code ALL} or full {@code index} access for a filtered
+ * table) and on the embedded H2 database (no {@code tableScan} for it).
+ * </p>
+ */
+public class QueryIndexIntegrationTest {
+    /** A column compared with a parameter, e.g. {@code co.Continent = ?}. */
+    private static final Pattern FILTER = Pattern.compile("(\\w+)\\.(\\w+)\\s*[=<>]\\s*\\?");
+    /** Any parameter, with the column or keyword in front of it. */
+    private static final Pattern PARAMETER = Pattern.compile("(?:(\\w+)\\.(\\w+)\\s*[=<>]|LIMIT)\\s*\\?");
+    /** A (quoted) table alias followed by H2's table scan comment. */
+    private static final Pattern H2_TABLE_SCAN = Pattern.compile("\"?(\\w+)\"?\\s*/\\*\\s*[\\w.]+\\.tableScan");
+
+    @BeforeAll
+    static void setUpDatabase() {
+        DatabaseConnection.connect();
+    }
+
+    @AfterAll
+    static void tearDownDatabase() {
+        DatabaseConnection.disconnect();
+    }
+
+    /** Every scoped query reads its filtered tables through an index. */
+    @Test
+    void testScopedQueriesUseIndexes() throws SQLException {
+        List<String> failures = new ArrayList<>();
+        int checked = 0;
+        try (Connection conn = DatabaseConnection.get().getConnection()) {
+            boolean mysql = conn.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+            for (String name : QueryLoader.names()) {
+                String sql = QueryLoader.get(name);
+                Set<String> filtered = filteredAliases(sql);
+                if (filtered.isEmpty()) continue;
+
+                try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql)) {
+                    bindSamples(stmt, sql);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        String scanned = mysql ? scannedMySql(rs, filtered) : scannedH2(rs, filtered);
+                        if (scanned != null) failures.add(name + " scans " + scanned);
+                    }
+                }
+                ++checked;
+            }
+        }
+        assertTrue(checked >= 20, "Expected the scoped report queries to be checked, got " + checked);
+        assertTrue(failures.isEmpty(), "Queries not using an index: " + failures);
+    }
+
+    /** @return aliases of the tables the query filters with a parameter */
+    private static Set<String> filteredAliases(String sql) {
+        Set<String> aliases = new LinkedHashSet<>();
+        int where = sql.toUpperCase().indexOf(" WHERE ");
+        if (where < 0) return aliases;
+        Matcher m = FILTER.matcher(sql.substring(where));
+        while (m.find()) aliases.add(m.group(1).toLowerCase());
+        return aliases;
+    }
+
+    /** Binds a sample value to each parameter according to the column it is compared with. */
+    private static void bindSamples(PreparedStatement stmt, String sql) throws SQLException {
+        Matcher m = PARAMETER.matcher(sql);
+        int index = 0;
+        while (m.find()) {
+            ++index;
+            if (m.group(2) == null) {
+                stmt.setInt(index, 10); // LIMIT
+                continue;
+            }
+            String alias = m.group(1).toLowerCase();
+            switch (m.group(2).toLowerCase()) {
+                case "continent": stmt.setString(index, "Asia"); break;
+                case "region": stmt.setString(index, "Caribbean"); break;
+                case "district": stmt.setString(index, "California"); break;
+                case "name": stmt.setString(index, alias.equals("co") ? "United Kingdom" : "Edinburgh"); break;
+                case "population": stmt.setInt(index, 1_000_000); break;
+                case "id": stmt.setInt(index, 0); break;
+                case "code": stmt.setString(index, ""); break;
+                default: fail("No sample value for " + m.group() + " in " + sql);
+            }
+        }
+    }
+
+    /**
+     * MySQL lists one row per table with its access type: {@code ALL} is a table scan
+     * and {@code index} a scan of a whole index.
+     *
+     * @return the first filtered alias read by a full scan, or null
+     */
+    private static String scannedMySql(ResultSet rs, Set<String> filtered) throws SQLException {
+        while (rs.next()) {
+            String table = rs.getString("table");
+            String type = rs.getString("type");
+            if (table != null && filtered.contains(table.toLowerCase())
+                    && ("ALL".equals(type) || "index".equals(type))) {
+                return table + " (" + type + ")";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * H2 returns the plan as SQL text with a comment after each table, e.g.
+     * {@code "public"."country" "co" /* public.country.tableScan *}{@code /} for a table scan.
+     *
+     * @return the first filtered alias read by a table scan, or null
+     */
+    private static String scannedH2(ResultSet rs, Set<String> filtered) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        ResultSetMetaData meta = rs.getMetaData();
+        while (rs.next()) {
+            for (int c = 1; c <= meta.getColumnCount(); ++c) plan.append(rs.getString(c)).append('\n');
+        }
+        Matcher m = H2_TABLE_SCAN.matcher(plan);
+        while (m.find()) {
+            if (filtered.contains(m.group(1).toLowerCase())) return m.group(1) + " (tableScan)";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,94 @@
+package com.napier.sem.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the off-heap columns {@link IntColumn}, {@link StringColumn} and {@link CodeColumn}.
+ */
+public class ColumnTest {
+
+    @Test
+    void intColumnReadsBackValues() {
+        IntColumn column = IntColumn.of(new int[]{7, -1, Integer.MAX_VALUE, 0});
+
+        assertEquals(4, column.size());
+        assertEquals(7, column.get(0));
+        assertEquals(-1, column.get(1));
+        assertEquals(Integer.MAX_VALUE, column.get(2));
+        assertTrue(column.bytes().isDirect(), "stored off-heap");
+    }
+
+    /** A column can be read from a buffer made elsewhere, e.g. a part of a larger one. */
+    @Test
+    void intColumnFromBuffer() {
+        ByteBuffer shared = ByteBuffer.allocateDirect(64);
+        shared.position(8);
+        shared.put(IntColumn.of(new int[]{3, 4}).bytes());
+        shared.position(8).limit(16);
+
+        IntColumn column = new IntColumn(shared);
+
+        assertEquals(2, column.size());
+        assertEquals(4, column.get(1));
+    }
+
+    @Test
+    void stringColumnReadsBackValues() {
+        StringColumn column = StringColumn.of(new String[]{"Kabul", "", "São Paulo", "Zürich"});
+
+        assertEquals(4, column.size());
+        assertEquals("Kabul", column.get(0));
+        assertEquals("", column.get(1));
+        assertEquals("São Paulo", column.get(2));
+        assertEquals("Zürich", column.get(3));
+    }
+
+    /** Matches like String.equalsIgnoreCase, including non-ASCII letters, without decoding to a string. */
+    @Test
+    void stringColumnMatchesIgnoringCase() {
+        StringColumn column = StringColumn.of(new String[]{"São Paulo", "Zürich", "Kabul", "𝔸bc"});
+
+        assertTrue(column.equalsIgnoreCase(0, "SÃO PAULO"));
+        assertTrue(column.equalsIgnoreCase(1, "zürich"));
+        assertTrue(column.equalsIgnoreCase(2, "kabul"));
+        assertTrue(column.equalsIgnoreCase(3, "𝔸BC"), "characters outside the BMP");
+        assertFalse(column.equalsIgnoreCase(2, "Kabu"));
+        assertFalse(column.equalsIgnoreCase(2, "Kabull"));
+        assertFalse(column.equalsIgnoreCase(1, "Zurich"));
+        assertFalse(column.equalsIgnoreCase(0, null));
+    }
+
+    @Test
+    void stringColumnRejectsNull() {
+        assertThrows(IllegalArgumentException.class, () -> StringColumn.of(new String[]{"a", null}));
+    }
+
+    @Test
+    void codeColumnPacksThreeBytes() {
+        CodeColumn column = CodeColumn.of(new String[]{"GBR", "FR", "USA"});
+
+        assertEquals(9, column.bytes().capacity());
+        assertEquals("GBR", column.get(0));
+        assertEquals("FR", column.get(1));
+        assertThrows(IllegalArgumentException.class, () -> CodeColumn.of(new String[]{"LONG"}));
+    }
+
+    /** Comparison agrees with String.compareTo. */
+    @Test
+    void codeColumnComparesLikeStrings() {
+        String[] codes = {"GBR", "FR", "USA", "ABW"};
+        String[] others = {"GBR", "GB", "GBRX", "FRA", "FR", "ZWE", "AAA", ""};
+        CodeColumn column = CodeColumn.of(codes);
+
+        for (int row = 0; row < codes.length; ++row) {
+            for (String other : others) {
+                assertEquals(Integer.signum(codes[row].compareTo(other)), Integer.signum(column.compareTo(row, other)),
+                        codes[row] + " vs " + other);
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.napier.sem.memory;
+
+import com.napier.sem.dao.PageCursor;
+import com.napier.sem.model.CapitalCity;
+import com.napier.sem.model.City;
+import com.napier.sem.model.Country;
+import com.napier.sem.model.LanguageReport;
+import com.napier.sem.model.Page;
+import com.napier.sem.model.PopulationReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the in-memory repositories.
+ *
+ * <p>A small hand-built {@link WorldData} is used so the expected results can be
+ * worked out by hand, including the edge cases of the SQL queries the repositories
+ * mirror: countries without a capital, cities of unknown countries, and groups
+ * without any cities.</p>
+ */
+public class InMemoryRepositoryTest {
+    private WorldDataset dataset;
+
+    @BeforeEach
+    void setUp() {
+        WorldData data = new WorldData.Builder()
+                .addCity(1, "London", "GBR", "England", 7285000)
+                .addCity(2, "Birmingham", "GBR", "England", 1013000)
+                .addCity(3, "Edinburgh", "GBR", "Scotland", 450180)
+                .addCity(4, "Paris", "FRA", "Ile-de-France", 2125246)
+                .addCity(5, "Tokyo", "JPN", "Tokyo-to", 7980230)
+                .addCity(6, "Nowhere", "XXX", "Void", 9999999)
+                .addCountry("FRA", "France", "Europe", "Western Europe", 59225700, 4)
+                .addCountry("GBR", "United Kingdom", "Europe", "British Islands", 59623400, 1)
+                .addCountry("JPN", "Japan", "Asia", "Eastern Asia", 126714000, 5)
+                .addCountry("ATA", "Antarctica", "Antarctica", "Antarctica", 0, null)
+                .addLanguage("GBR", "English", true, 97.3)
+                .addLanguage("FRA", "French", true, 93.6)
+                .addLanguage("FRA", "Arabic", false, 2.5)
+                .addLanguage("JPN", "Japanese", true, 99.1)
+                .addLanguage("JPN", "English", false, 0.1)
+                .build();
+        dataset = new WorldDataset(data);
+    }
+
+    // -------------------------------------------
+    // Cities
+    // -------------------------------------------
+
+    @Test
+    void allCitiesSkipUnknownCountriesAndAreOrderedByPopulation() {
+        List<City> cities = new InMemoryCityRepository(dataset).getAllCities();
+
+        assertEquals(5, cities.size());
+        assertEquals("Tokyo", cities.get(0).getName());
+        assertEquals("London", cities.get(1).getName());
+        assertEquals("Edinburgh", cities.get(4).getName());
+    }
+
+    @Test
+    void topNCitiesInContinentIgnoresCase() {
+        List<City> cities = new InMemoryCityRepository(dataset).getTopNCitiesInContinent("europe", 2);
+
+        assertEquals(2, cities.size());
+        assertEquals("London", cities.get(0).getName());
+        assertEquals("United Kingdom", cities.get(0).getCountry());
+        assertEquals("Paris", cities.get(1).getName());
+    }
+
+    @Test
+    void citiesByDistrict() {
+        List<City> cities = new InMemoryCityRepository(dataset).getCitiesByDistrict("England");
+
+        assertEquals(2, cities.size());
+        assertEquals("Birmingham", cities.get(1).getName());
+    }
+
+    @Test
+    void topNCitiesInCountryIsASliceOfTheIndex() {
+        List<City> cities = new InMemoryCityRepository(dataset).getTopNCitiesInCountry("United Kingdom", 10);
+
+        assertEquals(3, cities.size());
+        assertEquals("London", cities.get(0).getName());
+        assertEquals("Edinburgh", cities.get(2).getName());
+    }
+
+    @Test
+    void streamedCitiesMatchTheList() {
+        InMemoryCityRepository repo = new InMemoryCityRepository(dataset);
+        List<City> streamed = new ArrayList<>();
+
+        repo.streamAllCities(streamed::add);
+
+        assertEquals(repo.getAllCities().size(), streamed.size());
+        assertEquals("Tokyo", streamed.get(0).getName());
+    }
+
+    @Test
+    void pagingThroughAllCitiesReturnsEachCityOnceInOrder() {
+        InMemoryCityRepository repo = new InMemoryCityRepository(dataset);
+        List<City> paged = new ArrayList<>();
+        PageCursor after = PageCursor.FIRST;
+        int pages = 0;
+        while (true) {
+            Page<City> page = repo.getCitiesPage(after, 2);
+            paged.addAll(page.getItems());
+            ++pages;
+            if (page.getNextCursor() == null) break;
+            after = PageCursor.decode(page.getNextCursor());
+        }
+
+        assertEquals(3, pages);
+        assertEquals(repo.getAllCities().size(), paged.size());
+        for (int i = 0; i < paged.size(); ++i) {
+            assertEquals(repo.getAllCities().get(i).getName(), paged.get(i).getName());
+        }
+    }
+
+    @Test
+    void pageBoundaryBetweenEqualPopulationsUsesTheId() {
+        WorldDataset ties = new WorldDataset(new WorldData.Builder()
+                .addCity(3, "C", "GBR", "England", 100)
+                .addCity(1, "A", "GBR", "England", 100)
+                .addCity(2, "B", "GBR", "England", 100)
+                .addCountry("GBR", "United Kingdom", "Europe", "British Islands", 1000, 1)
+                .build());
+        InMemoryCityRepository repo = new InMemoryCityRepository(ties);
+
+        Page<City> first = repo.getCitiesByContinentPage("Europe", PageCursor.FIRST, 1);
+        Page<City> rest = repo.getCitiesByContinentPage("Europe", PageCursor.decode(first.getNextCursor()), 5);
+
+        assertEquals("A", first.getItems().get(0).getName());
+        assertEquals(2, rest.getItems().size());
+        assertEquals("B", rest.getItems().get(0).getName());
+        assertEquals("C", rest.getItems().get(1).getName());
+        assertNull(rest.getNextCursor());
+    }
+
+    @Test
+    void topZeroCitiesIsEmpty() {
+        assertTrue(new InMemoryCityRepository(dataset).getTopNCitiesInWorld(0).isEmpty());
+    }
+
+    // -------------------------------------------
+    // Countries and capitals
+    // -------------------------------------------
+
+    @Test
+    void countriesWithoutCapitalAreLeftOut() {
+        List<Country> countries = new InMemoryCountryRepository(dataset).getAllCountries();
+
+        assertEquals(3, countries.size());
+        assertEquals("Japan", countries.get(0).getName());
+        assertEquals("Tokyo", countries.get(0).getCapital());
+    }
+
+    @Test
+    void capitalsOrderedByCapitalPopulation() {
+        List<CapitalCity> capitals = new InMemoryCapitalCityRepository(dataset).getCapitalCitiesByContinent("Europe");
+
+        assertEquals(2, capitals.size());
+        assertEquals("London", capitals.get(0).getName());
+        assertEquals("Paris", capitals.get(1).getName());
+    }
+
+    @Test
+    void countryAndCapitalPagesFollowTheListOrder() {
+        Page<Country> countries = new InMemoryCountryRepository(dataset).getCountriesPage(PageCursor.FIRST, 2);
+        Page<CapitalCity> capitals = new InMemoryCapitalCityRepository(dataset).getCapitalCitiesPage(PageCursor.FIRST, 5);
+
+        assertEquals("Japan", countries.getItems().get(0).getName());
+        assertEquals("United Kingdom", countries.getItems().get(1).getName());
+        assertNotNull(countries.getNextCursor());
+        assertEquals(3, capitals.getItems().size());
+        assertEquals("Tokyo", capitals.getItems().get(0).getName());
+        assertNull(capitals.getNextCursor());
+    }
+
+    // -------------------------------------------
+    // Population
+    // -------------------------------------------
+
+    @Test
+    void singleValuePopulations() {
+        InMemoryPopulationReportRepository repo = new InMemoryPopulationReportRepository(dataset);
+
+        assertEquals(59225700L + 59623400L + 126714000L, repo.getWorldPopulation());
+        assertEquals(59225700L + 59623400L, repo.getContinentPopulation(" Europe "));
+        assertEquals(126714000L, repo.getCountryPopulation("japan"));
+        assertEquals(8298000L, repo.getDistrictPopulation("England"));
+        assertEquals(7285000L, repo.getCityPopulation("London"));
+        assertNull(repo.getRegionPopulation("Atlantis"));
+        assertNull(repo.getDistrictPopulation("Atlantis"));
+        assertNull(repo.getCityPopulation("Atlantis"));
+    }
+
+    /** Equal totals are ordered like the SQL queries and the rollup: regions by name descending, countries by code. */
+    @Test
+    void breakdownTiesAreOrderedLikeTheSqlQueries() {
+        WorldDataset ties = new WorldDataset(new WorldData.Builder()
+                .addCountry("UMI", "United States Minor Outlying Islands", "Oceania", "Micronesia/Caribbean", 0, null)
+                .addCountry("ATA", "Antarctica", "Antarctica", "Antarctica", 0, null)
+                .addCountry("ATF", "French Southern territories", "Antarctica", "Antarctica", 0, null)
+                .addCountry("FRA", "France", "Europe", "Western Europe", 59225700, null)
+                .build());
+        InMemoryPopulationReportRepository repo = new InMemoryPopulationReportRepository(ties);
+
+        assertEquals(List.of("Western Europe", "Micronesia/Caribbean", "Antarctica"),
+                repo.getRegionPopulationBreakdown().stream().map(PopulationReport::getName).toList());
+        assertEquals(List.of("Europe", "Oceania", "Antarctica"),
+                repo.getContinentPopulationBreakdown().stream().map(PopulationReport::getName).toList());
+        assertEquals(List.of("France", "Antarctica", "French Southern territories", "United States Minor Outlying Islands"),
+                repo.getCountryPopulationBreakdown().stream().map(PopulationReport::getName).toList());
+    }
+
+    @Test
+    void continentBreakdownMatchesSqlNullHandling() {
+        List<PopulationReport> reports = new InMemoryPopulationReportRepository(dataset).getContinentPopulationBreakdown();
+
+        assertEquals(3, reports.size());
+        PopulationReport europe = reports.get(1);
+        assertEquals("Europe", europe.getName());
+        assertEquals(59225700L + 59623400L, europe.getTotalPopulation());
+        assertEquals(7285000L + 1013000L + 450180L + 2125246L, europe.getPopulationInCities());
+        assertEquals(europe.getTotalPopulation() - europe.getPopulationInCities(), europe.getPopulationNotInCities());
+
+        PopulationReport antarctica = reports.get(2);
+        assertEquals("Antarctica", antarctica.getName());
+        assertEquals(0, antarctica.getPopulationInCities());
+        assertEquals(0, antarctica.getPopulationNotInCities());
+    }
+
+    // -------------------------------------------
+    // Languages
+    // -------------------------------------------
+
+    @Test
+    void languageReportUsesExactRounding() {
+        List<LanguageReport> reports = new InMemoryLanguageReportRepository(dataset).getLanguagePopulationReport();
+
+        assertEquals(2, reports.size());
+        LanguageReport english = reports.get(0);
+        assertEquals("English", english.getLanguage());
+        // 59623400 * 0.973 + 126714000 * 0.001 = 58,013,568.2 + 126,714 = 58,140,282.2
+        assertEquals(58140282, english.getSpeakers());
+        assertEquals(23.68, english.getWorldPercentage(), 1e-9);
+        assertEquals("Arabic", reports.get(1).getLanguage());
+        assertEquals(1480643, reports.get(1).getSpeakers());
+    }
+
+    @Test
+    void languageReportsCoverAnyLanguageAndOfficialOnly() {
+        InMemoryLanguageReportRepository repo = new InMemoryLanguageReportRepository(dataset);
+
+        assertEquals(List.of("Japanese", "English"), repo.getTopNLanguages(2, false).stream()
+                .map(LanguageReport::getLanguage).toList());
+        List<LanguageReport> english = repo.getLanguageReport(List.of("english", "Arabic"), true);
+        assertEquals(1, english.size());
+        // Only the United Kingdom, where English is official: 59623400 * 0.973
+        assertEquals(58013568, english.get(0).getSpeakers());
+    }
+
+    @Test
+    void replacedSnapshotIsUsedByLaterCalls() {
+        InMemoryCityRepository repo = new InMemoryCityRepository(dataset);
+        dataset.replace(new WorldData.Builder().build());
+
+        assertTrue(repo.getAllCities().isEmpty());
+        assertTrue(repo.getTopNCitiesInContinent("Europe", 5).isEmpty());
+    }
+}
@@ -0,0 +1,40 @@
+package com.napier.sem.memory;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ScopeIndex}.
+ */
+public class ScopeIndexTest {
+    /** Scope name of rows 0..5. */
+    private static final String[] SCOPE = {"Europe", "Asia", "europe", null, "Asia", "Europe"};
+
+    @Test
+    void groupsKeepTheGivenOrder() {
+        ScopeIndex index = ScopeIndex.build(new int[]{5, 4, 3, 2, 1, 0}, i -> SCOPE[i]);
+
+        assertArrayEquals(new int[]{5, 2, 0}, index.rows("Europe"));
+        assertArrayEquals(new int[]{4, 1}, index.rows("asia"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void unknownOrNullNameHasNoRows() {
+        ScopeIndex index = ScopeIndex.build(new int[]{0, 1, 2}, i -> SCOPE[i]);
+
+        assertEquals(0, index.rows("Africa").length);
+        assertEquals(0, index.rows(null).length);
+    }
+
+    @Test
+    void largeGroupsGrow() {
+        int[] rows = new int[100];
+        for (int i = 0; i < rows.length; ++i) rows[i] = i;
+
+        ScopeIndex index = ScopeIndex.build(rows, i -> "World");
+
+        assertArrayEquals(rows, index.rows("WORLD"));
+    }
+}
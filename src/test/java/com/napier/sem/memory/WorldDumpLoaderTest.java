@@ -0,0 +1,133 @@
+package com.napier.sem.memory;
+
+import com.google.gson.Gson;
+import com.napier.sem.exception.DataAccessException;
+import com.napier.sem.model.City;
+import com.napier.sem.model.Country;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link WorldDumpLoader}, on a small hand-written dump and on
+ * {@code db/world.sql} itself.
+ */
+public class WorldDumpLoaderTest {
+    private static final String DUMP = String.join("\n",
+            "-- MySQL dump",
+            "/*!40101 SET NAMES utf8mb4 */;",
+            "CREATE TABLE `city` (",
+            "  `ID` int NOT NULL AUTO_INCREMENT,",
+            "  PRIMARY KEY (`ID`)",
+            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;",
+            "INSERT INTO `city` VALUES (1,'Kabul','AFG','Kabol',1780000),(2,'Qandahar','AFG','Qandahar',237500);",
+            "INSERT INTO `city` VALUES (3,'Nuku\\'alofa','TON','Tongatapu',22400);",
+            "INSERT INTO `city` VALUES (4,'São Paulo','BRA','São Paulo',9968485);",
+            "INSERT INTO `country` VALUES ('AFG','Afghanistan','Asia','Southern and Central Asia',652090.00,1919,"
+                    + "22720000,45.9,5976.00,NULL,'Afganistan/Afqanestan','Islamic Emirate','Mohammad Omar',1,'AF');",
+            "INSERT INTO `country` VALUES ('ATA','Antarctica','Antarctica','Antarctica',13120000.00,NULL,0,NULL,"
+                    + "0.00,NULL,'–','Co-administrated','',NULL,'AQ');",
+            "INSERT INTO `country` VALUES ('TON','Tonga','Oceania','Polynesia',650.00,1970,99000,67.9,146.00,170.00,"
+                    + "'Tonga','Monarchy','Taufa\\'ahau Tupou IV',3,'TO');",
+            "INSERT INTO `country` VALUES ('BRA','Brazil','South America','South America',8547403.00,1822,170115000,"
+                    + "62.9,776739.00,804108.00,'Brasil','Federal Republic','Fernando H. Cardoso',4,'BR');",
+            "INSERT INTO `countrylanguage` VALUES ('AFG','Pashto','T',52.4),('AFG','Dari','T',32.1);",
+            "INSERT INTO `countrylanguage` VALUES ('TON','Tongan','T',98.3);",
+            "INSERT INTO `other` VALUES (1,'ignored');",
+            "UNLOCK TABLES;",
+            "");
+
+    private static WorldData parse(String dump, int chunks) {
+        return WorldDumpLoader.parse(ByteBuffer.wrap(dump.getBytes(StandardCharsets.UTF_8)), chunks);
+    }
+
+    @Test
+    void parsesRowsOfTheThreeTables() {
+        WorldData data = parse(DUMP, 1);
+
+        assertEquals(4, data.getCityCount());
+        assertEquals(4, data.getCountryCount());
+        assertEquals(3, data.getLanguageCount());
+
+        List<City> cities = new InMemoryCityRepository(new WorldDataset(data)).getAllCities();
+        assertEquals("São Paulo", cities.get(0).getName());
+        assertEquals("Brazil", cities.get(0).getCountry());
+        assertEquals("Nuku'alofa", cities.get(3).getName(), "backslash escapes");
+
+        List<Country> countries = new InMemoryCountryRepository(new WorldDataset(data)).getAllCountries();
+        assertEquals(3, countries.size(), "Antarctica has no capital (NULL)");
+        assertEquals("Kabul", countries.get(1).getCapital());
+    }
+
+    /** Lines are never split between chunks, so any number of chunks gives the same data. */
+    @Test
+    void chunksGiveTheSameResult() {
+        String expected = json(parse(DUMP, 1));
+
+        for (int chunks = 2; chunks <= 16; ++chunks) {
+            assertEquals(expected, json(parse(DUMP, chunks)), chunks + " chunks");
+        }
+    }
+
+    @Test
+    void loadsTheWorldDump() throws IOException {
+        WorldData data = new WorldDumpLoader("db/world.sql").load();
+
+        assertEquals(4079, data.getCityCount());
+        assertEquals(239, data.getCountryCount());
+        assertEquals(984, data.getLanguageCount());
+        ByteBuffer dump = ByteBuffer.wrap(Files.readAllBytes(Path.of("db/world.sql")));
+        assertEquals(json(WorldDumpLoader.parse(dump, 1)), json(data), "parallel chunks match one sequential pass");
+    }
+
+    /** The checksum that tags the served data (see DatasetVersion#tag) changes with the dump. */
+    @Test
+    void differentDumpsHaveDifferentChecksums(@TempDir Path dir) throws IOException {
+        Path first = Files.writeString(dir.resolve("first.sql"), DUMP);
+        Path same = Files.writeString(dir.resolve("same.sql"), DUMP);
+        Path changed = Files.writeString(dir.resolve("changed.sql"), DUMP.replace("1780000", "1780001"));
+
+        WorldDumpLoader loader = new WorldDumpLoader(first.toString());
+        assertEquals(0, loader.getChecksum(), "not loaded yet");
+        loader.load();
+        long checksum = loader.getChecksum();
+        assertNotEquals(0, checksum);
+        assertEquals(checksum, checksum(same));
+        assertNotEquals(checksum, checksum(changed));
+        assertEquals(checksum, WorldDumpLoader.checksum(ByteBuffer.wrap(DUMP.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void malformedDumpIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> parse("INSERT INTO `city` VALUES (1,'Kabul','AFG',1780000);\n", 1), "missing value");
+        assertThrows(IllegalArgumentException.class,
+                () -> parse("INSERT INTO `city` VALUES (1,'Kabul','AFG','Kabol',17x0000);\n", 1), "not a number");
+        assertThrows(IllegalArgumentException.class,
+                () -> parse("INSERT INTO `city` VALUES (1,'Kabul", 1), "truncated");
+        assertThrows(DataAccessException.class, () -> new WorldDumpLoader("db/missing.sql").load());
+    }
+
+    private static long checksum(Path dump) {
+        WorldDumpLoader loader = new WorldDumpLoader(dump.toString());
+        loader.load();
+        return loader.getChecksum();
+    }
+
+    /** Cities, countries and the language report as JSON, to compare two datasets. */
+    private static String json(WorldData data) {
+        WorldDataset dataset = new WorldDataset(data);
+        Gson gson = new Gson();
+        return gson.toJson(new InMemoryCityRepository(dataset).getAllCities())
+                + gson.toJson(new InMemoryCountryRepository(dataset).getAllCountries())
+                + gson.toJson(new InMemoryLanguageReportRepository(dataset).getLanguagePopulationReport());
+    }
+}
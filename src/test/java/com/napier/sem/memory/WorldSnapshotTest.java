@@ -0,0 +1,108 @@
+package com.napier.sem.memory;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link WorldSnapshot}: a dataset written to a file and mapped back
+ * answers every report the same way, and damaged files are rejected.
+ */
+public class WorldSnapshotTest {
+    private static final Gson gson = new Gson();
+
+    @TempDir
+    Path dir;
+
+    private WorldData data;
+
+    @BeforeEach
+    void setUp() {
+        data = new WorldData.Builder()
+                .addCity(1, "London", "GBR", "England", 7285000)
+                .addCity(2, "Birmingham", "GBR", "England", 1013000)
+                .addCity(3, "São Paulo", "BRA", "São Paulo", 9968485)
+                .addCity(4, "Paris", "FRA", "Ile-de-France", 2125246)
+                .addCity(5, "Nowhere", "XXX", null, 9999999)
+                .addCountry("FRA", "France", "Europe", "Western Europe", 59225700, 4)
+                .addCountry("GBR", "United Kingdom", "Europe", "British Islands", 59623400, 1)
+                .addCountry("BRA", "Brazil", "South America", "South America", 170115000, null)
+                .addLanguage("GBR", "English", true, 97.3)
+                .addLanguage("FRA", "French", true, 93.6)
+                .addLanguage("BRA", "Portuguese", true, 97.5)
+                .build();
+    }
+
+    @Test
+    void mappedSnapshotAnswersTheSameReports() throws IOException {
+        Path file = dir.resolve("world.snapshot");
+        new WorldSnapshot(data, 0x1234_5678_9abcL).write(file);
+
+        WorldSnapshot mapped = WorldSnapshot.map(file);
+        WorldDataset before = new WorldDataset(data);
+        WorldDataset after = new WorldDataset(mapped.getData());
+
+        assertEquals(0x1234_5678_9abcL, mapped.getChecksum());
+        assertEquals(data.getCityCount(), mapped.getData().getCityCount());
+        assertEquals(data.getCountryCount(), mapped.getData().getCountryCount());
+        assertEquals(data.getLanguageCount(), mapped.getData().getLanguageCount());
+        assertSameJson(new InMemoryCityRepository(before).getAllCities(),
+                new InMemoryCityRepository(after).getAllCities());
+        assertSameJson(new InMemoryCityRepository(before).getCitiesByDistrict("são paulo"),
+                new InMemoryCityRepository(after).getCitiesByDistrict("são paulo"));
+        assertSameJson(new InMemoryCountryRepository(before).getAllCountries(),
+                new InMemoryCountryRepository(after).getAllCountries());
+        assertSameJson(new InMemoryCapitalCityRepository(before).getAllCapitalCities(),
+                new InMemoryCapitalCityRepository(after).getAllCapitalCities());
+        assertSameJson(new InMemoryLanguageReportRepository(before).getLanguagePopulationReport(),
+                new InMemoryLanguageReportRepository(after).getLanguagePopulationReport());
+        assertSameJson(data.populationRollup().getDistrictPopulation("England"),
+                mapped.getData().populationRollup().getDistrictPopulation("England"));
+    }
+
+    /** Writing again replaces the file in one step. */
+    @Test
+    void writeReplacesExistingFile() throws IOException {
+        Path file = dir.resolve("world.snapshot");
+        new WorldSnapshot(data, 1).write(file);
+        new WorldSnapshot(data, 2).write(file);
+
+        assertEquals(2, WorldSnapshot.map(file).getChecksum());
+        assertFalse(Files.exists(dir.resolve("world.snapshot.tmp")));
+    }
+
+    @Test
+    void damagedFileIsRejected() throws IOException {
+        Path file = dir.resolve("world.snapshot");
+        new WorldSnapshot(data, 1).write(file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        bytes[bytes.length / 2] ^= 0x40;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> WorldSnapshot.map(file));
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 3));
+        assertThrows(IOException.class, () -> WorldSnapshot.map(file), "truncated");
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path file = dir.resolve("world.sql");
+        Files.writeString(file, "CREATE TABLE city (ID int NOT NULL AUTO_INCREMENT);");
+
+        assertThrows(IOException.class, () -> WorldSnapshot.map(file));
+        assertThrows(IOException.class, () -> WorldSnapshot.map(dir.resolve("missing.snapshot")));
+    }
+
+    private static void assertSameJson(Object expected, Object actual) {
+        assertEquals(gson.toJson(expected), gson.toJson(actual));
+    }
+}
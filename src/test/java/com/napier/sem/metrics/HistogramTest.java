@@ -0,0 +1,60 @@
+package com.napier.sem.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link Histogram}.
+ */
+public class HistogramTest {
+
+    @Test
+    void emptyHistogramHasNoQuantiles() {
+        Histogram h = new Histogram();
+
+        assertEquals(0, h.count());
+        assertEquals(0, h.quantileSeconds(0.99));
+    }
+
+    @Test
+    void bucketsAreCumulativeAndInclusive() {
+        Histogram h = new Histogram();
+        h.record(1_000_000);       // exactly 1 ms: in the le="0.001" bucket
+        h.record(3_000_000);       // 3 ms
+        h.record(60_000_000_000L); // 60 s: only in +Inf
+
+        long[] buckets = h.cumulativeBuckets();
+
+        assertEquals(0, buckets[0]);  // 0.5 ms
+        assertEquals(1, buckets[1]);  // 1 ms
+        assertEquals(2, buckets[3]);  // 5 ms
+        assertEquals(2, buckets[buckets.length - 2]);
+        assertEquals(3, buckets[buckets.length - 1]);
+        assertEquals(3, h.count());
+        assertEquals(60.004, h.sumSeconds(), 1e-9);
+    }
+
+    @Test
+    void quantilesAreWithinOneFineBucket() {
+        Histogram h = new Histogram();
+        for (int i = 1; i <= 1000; ++i) {
+            h.record(i * 1_000_000L); // 1 ms .. 1000 ms
+        }
+
+        assertEquals(0.500, h.quantileSeconds(0.5), 0.500 * 0.25);
+        assertEquals(0.990, h.quantileSeconds(0.99), 0.990 * 0.25);
+        assertEquals(0.999, h.quantileSeconds(0.999), 0.999 * 0.25);
+        assertTrue(h.quantileSeconds(0.5) < h.quantileSeconds(0.99));
+    }
+
+    @Test
+    void tinyAndHugeDurationsAreKept() {
+        Histogram h = new Histogram();
+        h.record(-5);
+        h.record(Long.MAX_VALUE / 2);
+
+        assertEquals(2, h.count());
+        assertTrue(h.quantileSeconds(1.0) > 1000);
+    }
+}
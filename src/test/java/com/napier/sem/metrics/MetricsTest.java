@@ -0,0 +1,110 @@
+package com.napier.sem.metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link Metrics}, {@link OperationMetrics} and {@link TimedStatement}.
+ * Names are unique per test because the registry is shared.
+ */
+public class MetricsTest {
+    @Mock
+    private PreparedStatement mockStmt;
+    @Mock
+    private ResultSet mockRs;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void scrapeUsesPrometheusTextFormat() {
+        OperationMetrics m = Metrics.route("/test/format");
+        long start = m.start();
+        m.addVolume(42);
+        m.stop(start, true);
+
+        String text = Metrics.scrape();
+
+        assertTrue(text.contains("# TYPE sem_http_request_duration_seconds histogram\n"));
+        assertTrue(text.contains("sem_http_request_duration_seconds_bucket{route=\"/test/format\",le=\"0.0005\"}"));
+        assertTrue(text.contains("sem_http_request_duration_seconds_bucket{route=\"/test/format\",le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("sem_http_request_duration_seconds_count{route=\"/test/format\"} 1\n"));
+        assertTrue(text.contains("sem_http_request_duration_quantile_seconds{route=\"/test/format\",quantile=\"0.999\"}"));
+        assertTrue(text.contains("sem_http_response_bytes_total{route=\"/test/format\"} 42\n"));
+        assertTrue(text.contains("sem_http_request_errors_total{route=\"/test/format\"} 1\n"));
+        assertTrue(text.contains("sem_http_requests_in_flight{route=\"/test/format\"} 0\n"));
+    }
+
+    @Test
+    void sampledValuesAreReadAtScrapeTime() {
+        long[] value = {1};
+        Metrics.gauge("sem_test_gauge", "A test gauge.", () -> value[0]);
+        value[0] = 7;
+
+        assertTrue(Metrics.scrape().contains("# TYPE sem_test_gauge gauge\nsem_test_gauge 7\n"));
+    }
+
+    @Test
+    void labelledSeriesShareOneHeader() {
+        Metrics.gauge("sem_test_labelled", "class", "lookup", "A labelled gauge.", () -> 1);
+        Metrics.gauge("sem_test_labelled", "class", "bulk", "A labelled gauge.", () -> 2);
+
+        assertTrue(Metrics.scrape().contains("# TYPE sem_test_labelled gauge\n"
+                + "sem_test_labelled{class=\"bulk\"} 2\n"
+                + "sem_test_labelled{class=\"lookup\"} 1\n"));
+    }
+
+    @Test
+    void labelValuesAreEscaped() {
+        assertEquals("a\\\"b\\\\c\\n", Metrics.escape("a\"b\\c\n"));
+    }
+
+    @Test
+    void timedStatementRecordsExecutionUntilClose() throws SQLException {
+        when(mockStmt.executeQuery()).thenReturn(mockRs);
+        PreparedStatement stmt = TimedStatement.wrap(mockStmt, "test_query_ok");
+        OperationMetrics m = Metrics.query("test_query_ok");
+
+        stmt.setInt(1, 5);
+        stmt.executeQuery();
+        assertEquals(1, m.getInFlight());
+        TimedStatement.rows(stmt, 3);
+        stmt.close();
+
+        verify(mockStmt).setInt(1, 5);
+        verify(mockStmt).close();
+        assertEquals(0, m.getInFlight());
+        assertEquals(1, m.getLatency().count());
+        assertEquals(3, m.getVolume());
+        assertEquals(0, m.getErrorCount());
+    }
+
+    @Test
+    void timedStatementCountsFailedExecutions() throws SQLException {
+        when(mockStmt.executeQuery()).thenThrow(new SQLException("boom"));
+        PreparedStatement stmt = TimedStatement.wrap(mockStmt, "test_query_failing");
+
+        assertThrows(SQLException.class, stmt::executeQuery);
+        stmt.close();
+
+        OperationMetrics m = Metrics.query("test_query_failing");
+        assertEquals(1, m.getErrorCount());
+        assertEquals(0, m.getInFlight());
+    }
+
+    @Test
+    void rowsOfAnUnwrappedStatementAreIgnored() {
+        assertDoesNotThrow(() -> TimedStatement.rows(mockStmt, 10));
+    }
+}
@@ -97,4 +97,25 @@ public class LanguageReportServiceTest {
         verify(mockLanguageReportDAO).getLanguagePopulationReport();
     }
 
+    @Test
+    void testGetLanguageReport_DelegatesListAndOfficialFlag() {
+        List<String> names = List.of("English", "French");
+        when(mockLanguageReportDAO.getLanguageReport(names, true)).thenReturn(createTestLanguages());
+
+        List<LanguageReport> languages = languageReportService.getLanguageReport(names, true);
+
+        assertEquals(1, languages.size());
+        assertEquals("English", languages.get(0).getLanguage());
+        verify(mockLanguageReportDAO).getLanguageReport(names, true);
+    }
+
+    @Test
+    void testGetTopNLanguages_DelegatesToDAO() {
+        when(mockLanguageReportDAO.getTopNLanguages(3, false)).thenReturn(createTestLanguages());
+
+        List<LanguageReport> languages = languageReportService.getTopNLanguages(3, false);
+
+        assertEquals(1, languages.size());
+        verify(mockLanguageReportDAO).getTopNLanguages(3, false);
+    }
 }
@@ -0,0 +1,171 @@
+package com.napier.sem.service;
+
+import com.napier.sem.config.Deadline;
+import com.napier.sem.exception.DataAccessException;
+import com.napier.sem.exception.DeadlineExceededException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SingleFlight}.
+ */
+public class SingleFlightTest {
+    private static final int CALLERS = 8;
+
+    private final SingleFlight inFlight = new SingleFlight();
+
+    /** Concurrent callers with the same key share one call and its result. */
+    @Test
+    void concurrentIdenticalCallsRunOnce() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> result = List.of("Mumbai (Bombay)");
+        long coalescedBefore = SingleFlight.getCoalescedCount();
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLERS; ++i) {
+                futures.add(pool.submit(() -> inFlight.execute("getAllCities", () -> {
+                    calls.incrementAndGet();
+                    await(release);
+                    return result;
+                })));
+            }
+            // Let every caller reach the in-flight call before it completes
+            waitUntil(() -> SingleFlight.getCoalescedCount() - coalescedBefore == CALLERS - 1);
+            release.countDown();
+
+            for (Future<List<String>> f : futures) {
+                assertSame(result, f.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, calls.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** A later call with the same key runs again: nothing is cached. */
+    @Test
+    void sequentialCallsEachRun() {
+        AtomicInteger calls = new AtomicInteger();
+
+        inFlight.execute("getWorldPopulation", calls::incrementAndGet);
+        inFlight.execute("getWorldPopulation", calls::incrementAndGet);
+
+        assertEquals(2, calls.get());
+    }
+
+    /** Calls with different keys are independent. */
+    @Test
+    void differentKeysAreNotShared() {
+        assertEquals("Asia", inFlight.execute("getCitiesByContinent:Asia", () -> "Asia"));
+        assertEquals("Europe", inFlight.execute("getCitiesByContinent:Europe", () -> "Europe"));
+    }
+
+    /** The exception of a shared call reaches every caller unchanged. */
+    @Test
+    void exceptionIsRethrown() {
+        DataAccessException failure = new DataAccessException("Failed to fetch all cities", null);
+
+        DataAccessException thrown = assertThrows(DataAccessException.class,
+                () -> inFlight.execute("getAllCities", () -> { throw failure; }));
+
+        assertSame(failure, thrown);
+    }
+
+    /** A waiting caller gives up when its deadline passes; the running call is unaffected. */
+    @Test
+    void waitEndsAtDeadline() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> leader = pool.submit(() -> inFlight.execute("getAllCities", () -> {
+                running.countDown();
+                await(release);
+                return "done";
+            }));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+
+            try (Deadline deadline = Deadline.start(50)) {
+                assertThrows(DeadlineExceededException.class,
+                        () -> inFlight.execute("getAllCities", () -> "not run"));
+                assertTrue(deadline.isExpired());
+            }
+
+            release.countDown();
+            assertEquals("done", leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * A runner whose own short deadline cancels the call does not fail the waiting
+     * caller: with time left on its own deadline, it runs the call again.
+     */
+    @Test
+    void runnerDeadlineDoesNotFailWaitingCallers() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        long coalescedBefore = SingleFlight.getCoalescedCount();
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> impatient = pool.submit(() -> {
+                try (Deadline deadline = Deadline.start(50)) {
+                    return inFlight.execute("getAllCities", () -> {
+                        calls.incrementAndGet();
+                        try {
+                            waitUntil(() -> SingleFlight.getCoalescedCount() > coalescedBefore);
+                            waitUntil(deadline::isExpired);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        // What a statement cancelled by the deadline ends in
+                        throw new DeadlineExceededException("Query cancelled");
+                    });
+                }
+            });
+            waitUntil(() -> calls.get() == 1);
+
+            try (Deadline deadline = Deadline.start(5000)) {
+                assertEquals("fresh", inFlight.execute("getAllCities", () -> {
+                    calls.incrementAndGet();
+                    return "fresh";
+                }));
+                assertFalse(deadline.isExpired());
+            }
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> impatient.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(DeadlineExceededException.class, failure.getCause());
+            assertEquals(2, calls.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.napier.sem.web;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link AdmissionControl}.
+ * Request and response are mocked; blocking routes hold their slot until released.
+ */
+public class AdmissionControlTest {
+    @Mock
+    private Request mockReq;
+    @Mock
+    private Response mockRes;
+    @Mock
+    private HttpServletResponse mockRaw;
+
+    private final AdmissionControl admission = new AdmissionControl(500, 2)
+            .addClass("lookup", 2, 0, List.of("/population/*"))
+            .addClass("bulk", 1, 1, List.of("/cities/all"))
+            .addClass(AdmissionControl.DEFAULT_CLASS, 4, 4, List.of());
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final Route blocking = (req, res) -> {
+        release.await(5, TimeUnit.SECONDS);
+        return "[]";
+    };
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(mockRes.raw()).thenReturn(mockRaw);
+    }
+
+    @Test
+    void testRouteClasses() {
+        assertEquals("lookup", admission.classOf("/population/city").name);
+        assertEquals("bulk", admission.classOf("/cities/all").name);
+        assertEquals("report", admission.classOf("/cities/top").name);
+        assertEquals("report", admission.classOf("/cities/all/more").name, "exact patterns do not match longer paths");
+    }
+
+    /** Requests within the limit run; one over the limit with no queue is rejected at once. */
+    @Test
+    void testRejectOverLimit() throws Exception {
+        Route route = admission.wrap("/population/city", blocking);
+        AdmissionControl.RouteClass lookup = admission.classOf("/population/city");
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = pool.submit(() -> route.handle(mockReq, mockRes));
+            Future<?> second = pool.submit(() -> route.handle(mockReq, mockRes));
+            waitUntil(() -> lookup.getActive() == 2);
+
+            Object body = route.handle(mockReq, mockRes);
+
+            assertEquals("{\"error\":\"Server busy\",\"class\":\"lookup\"}", body);
+            verify(mockRes).status(503);
+            verify(mockRaw).setHeader("Retry-After", "2");
+            assertEquals(1, lookup.getRejected());
+
+            release.countDown();
+            assertEquals("[]", first.get(5, TimeUnit.SECONDS));
+            assertEquals("[]", second.get(5, TimeUnit.SECONDS));
+            assertEquals(0, lookup.getActive());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** A queued request runs as soon as a slot frees up. */
+    @Test
+    void testQueuedRequestRuns() throws Exception {
+        AdmissionControl patient = new AdmissionControl(5000, 1)
+                .addClass(AdmissionControl.DEFAULT_CLASS, 1, 1, List.of());
+        Route route = patient.wrap("/cities/top", blocking);
+        AdmissionControl.RouteClass report = patient.classOf("/cities/top");
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> running = pool.submit(() -> route.handle(mockReq, mockRes));
+            waitUntil(() -> report.getActive() == 1);
+            Future<?> waiting = pool.submit(() -> patient.wrap("/cities/top", (req, res) -> "queued")
+                    .handle(mockReq, mockRes));
+            waitUntil(() -> report.getQueued() == 1);
+
+            release.countDown();
+
+            assertEquals("[]", running.get(5, TimeUnit.SECONDS));
+            assertEquals("queued", waiting.get(5, TimeUnit.SECONDS));
+            assertEquals(0, report.getRejected());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** A request that waits longer than the queue timeout is rejected; a full queue rejects at once. */
+    @Test
+    void testQueueTimeoutAndFullQueue() throws Exception {
+        Route route = admission.wrap("/cities/all", blocking);
+        AdmissionControl.RouteClass bulk = admission.classOf("/cities/all");
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> running = pool.submit(() -> route.handle(mockReq, mockRes));
+            waitUntil(() -> bulk.getActive() == 1);
+            Future<?> queued = pool.submit(() -> route.handle(mockReq, mockRes));
+            waitUntil(() -> bulk.getQueued() == 1);
+
+            assertTrue(route.handle(mockReq, mockRes).toString().contains("Server busy"), "queue full");
+            assertTrue(queued.get(5, TimeUnit.SECONDS).toString().contains("Server busy"), "waited too long");
+            assertEquals(2, bulk.getRejected());
+
+            release.countDown();
+            assertEquals("[]", running.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** A failing route gives its slot back. */
+    @Test
+    void testFailureReleasesSlot() {
+        Route failing = admission.wrap("/cities/all", (req, res) -> {
+            throw new IllegalStateException("Report failed");
+        });
+
+        assertThrows(IllegalStateException.class, () -> failing.handle(mockReq, mockRes));
+        assertEquals(0, admission.classOf("/cities/all").getActive());
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.napier.sem.web;
+
+import com.napier.sem.model.City;
+import com.napier.sem.model.Country;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CacheWarmer}.
+ * The warm-up runs against a Jetty server on a free port that records the requests.
+ */
+public class CacheWarmerTest {
+    private static final List<Country> COUNTRIES = List.of(
+            new Country("GBR", "United Kingdom", "Europe", "British Islands", 59623400, "London"),
+            new Country("FRA", "France", "Europe", "Western Europe", 59225700, "Paris"),
+            new Country("JPN", "Japan", "Asia", "Eastern Asia", 126714000, "Tokyo"));
+
+    private Server server;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (server != null) server.stop();
+    }
+
+    @Test
+    void testTargets() {
+        List<String> paths = CacheWarmer.targets(COUNTRIES, null, false);
+
+        // 11 parameterless + 7 scoped reports for 2 continents and 3 regions
+        assertEquals(11 + 7 * (2 + 3), paths.size());
+        assertTrue(paths.contains("/cities/all"));
+        assertTrue(paths.contains("/population/breakdown/region"));
+        assertTrue(paths.contains("/countries/top/continent?name=Asia"));
+        assertTrue(paths.contains("/cities/region?name=British+Islands"), "names are URL-encoded");
+        assertFalse(paths.contains("/cities/country?name=Japan"));
+    }
+
+    @Test
+    void testTargetsByCountryAndDistrict() {
+        List<City> cities = List.of(new City("London", "United Kingdom", "England", 7285000),
+                new City("Birmingham", "United Kingdom", "England", 1013000),
+                new City("Tokyo", "Japan", "Tokyo-to", 7980230));
+
+        List<String> paths = CacheWarmer.targets(COUNTRIES, cities, true);
+
+        assertEquals(11 + 7 * 5 + 3 * 3 + 3 * 2, paths.size());
+        assertTrue(paths.contains("/cities/top/country?name=United+Kingdom"));
+        assertTrue(paths.contains("/population/district?name=Tokyo-to"));
+    }
+
+    /** Every report is requested once; server errors count as failures, 404s do not. */
+    @Test
+    void testWarmUp() throws Exception {
+        Set<String> requested = ConcurrentHashMap.newKeySet();
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                requested.add(target + (request.getQueryString() == null ? "" : "?" + request.getQueryString()));
+                if (target.equals("/languages")) response.setStatus(500);
+                else if (target.equals("/cities/top")) response.setStatus(404);
+                response.getWriter().write("[]");
+            }
+        });
+        server.start();
+        int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        List<String> paths = CacheWarmer.targets(COUNTRIES, null, false);
+
+        CacheWarmer warmer = new CacheWarmer("http://localhost:" + port, paths, 4);
+        assertFalse(warmer.isDone());
+        warmer.start();
+
+        assertTrue(warmer.await(10000));
+        assertTrue(warmer.isDone());
+        assertEquals(paths.size(), warmer.getCompleted());
+        assertEquals(1, warmer.getFailed());
+        assertTrue(warmer.getDurationMillis() >= 0);
+        assertEquals(Set.copyOf(paths), requested);
+    }
+
+    /** Nothing to warm finishes at once. */
+    @Test
+    void testEmpty() throws Exception {
+        CacheWarmer warmer = new CacheWarmer("http://localhost:1", List.of(), 2);
+        warmer.start();
+
+        assertTrue(warmer.await(0));
+        assertEquals(0, warmer.getTotal());
+    }
+}
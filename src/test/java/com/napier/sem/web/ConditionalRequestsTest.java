@@ -0,0 +1,146 @@
+package com.napier.sem.web;
+
+import com.napier.sem.config.DatasetVersion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ConditionalRequests}.
+ * Request and response are mocked; the wrapped route counts how often it runs.
+ */
+public class ConditionalRequestsTest {
+    @Mock
+    private Request mockReq;
+    @Mock
+    private HttpServletRequest mockRawReq;
+    @Mock
+    private Response mockRes;
+    @Mock
+    private HttpServletResponse mockRaw;
+
+    private final AtomicInteger runs = new AtomicInteger();
+    private final Route route = (req, res) -> {
+        runs.incrementAndGet();
+        return "[]";
+    };
+    private final ConditionalRequests conditional = new ConditionalRequests(60);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(mockReq.raw()).thenReturn(mockRawReq);
+        when(mockRes.raw()).thenReturn(mockRaw);
+        when(mockRawReq.getDateHeader("If-Modified-Since")).thenReturn(-1L);
+        when(mockRaw.getStatus()).thenReturn(HttpServletResponse.SC_OK);
+    }
+
+    private String currentEtag() {
+        return '"' + DatasetVersion.tag() + '"';
+    }
+
+    @Test
+    void responseCarriesValidators() throws Exception {
+        Object body = conditional.wrap(route).handle(mockReq, mockRes);
+
+        assertEquals("[]", body);
+        assertEquals(1, runs.get());
+        verify(mockRaw).setHeader("ETag", currentEtag());
+        verify(mockRaw).setDateHeader("Last-Modified", DatasetVersion.lastModified());
+        verify(mockRaw).setHeader("Cache-Control", "public, max-age=60, must-revalidate");
+    }
+
+    @Test
+    void matchingEtagIsAnsweredWithNotModified() throws Exception {
+        when(mockReq.headers("If-None-Match")).thenReturn(currentEtag());
+
+        Object body = conditional.wrap(route).handle(mockReq, mockRes);
+
+        assertEquals("", body);
+        verify(mockReq).attribute(anyString(), eq(Boolean.TRUE));
+        verify(mockRaw).resetBuffer();
+        verify(mockRaw).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(mockRaw).flushBuffer();
+    }
+
+    @Test
+    void invalidParametersGetTheirErrorRatherThanNotModified() throws Exception {
+        when(mockReq.headers("If-None-Match")).thenReturn("*");
+        when(mockRaw.getStatus()).thenReturn(HttpServletResponse.SC_BAD_REQUEST);
+
+        Object body = conditional.wrap((req, res) -> "{\"error\":\"Missing parameter 'name'\"}").handle(mockReq, mockRes);
+
+        assertEquals("{\"error\":\"Missing parameter 'name'\"}", body);
+        verify(mockRaw, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(mockRaw).setHeader("Cache-Control", "no-store");
+    }
+
+    @Test
+    void staleEtagRunsTheRoute() throws Exception {
+        when(mockReq.headers("If-None-Match")).thenReturn("\"old\"");
+
+        conditional.wrap(route).handle(mockReq, mockRes);
+
+        assertEquals(1, runs.get());
+        verify(mockRaw, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    @Test
+    void changedDatasetInvalidatesEtag() throws Exception {
+        String before = currentEtag();
+        DatasetVersion.bump();
+        when(mockReq.headers("If-None-Match")).thenReturn(before);
+
+        conditional.wrap(route).handle(mockReq, mockRes);
+
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void ifModifiedSinceIsUsedWithoutIfNoneMatch() throws Exception {
+        when(mockRawReq.getDateHeader("If-Modified-Since")).thenReturn(DatasetVersion.lastModified());
+
+        conditional.wrap(route).handle(mockReq, mockRes);
+
+        verify(mockRaw).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    @Test
+    void errorResponsesAreNotReusable() throws Exception {
+        when(mockRaw.getStatus()).thenReturn(HttpServletResponse.SC_BAD_REQUEST);
+
+        conditional.wrap(route).handle(mockReq, mockRes);
+
+        verify(mockRaw).setHeader("ETag", null);
+        verify(mockRaw).setHeader("Cache-Control", "no-store");
+    }
+
+    @Test
+    void matchingAcceptsListsWeakTagsAndGzipForm() {
+        assertTrue(ConditionalRequests.matches("\"a\", \"v1\"", "\"v1\""));
+        assertTrue(ConditionalRequests.matches("W/\"v1\"", "\"v1\""));
+        assertTrue(ConditionalRequests.matches("\"v1-gzip\"", "\"v1\""));
+        assertTrue(ConditionalRequests.matches("*", "\"v1\""));
+        assertFalse(ConditionalRequests.matches("\"v2\"", "\"v1\""));
+    }
+
+    @Test
+    void gzipBodyGetsItsOwnEtag() {
+        when(mockRaw.getHeader("ETag")).thenReturn("\"v1\"");
+
+        ConditionalRequests.markGzip(mockRaw);
+
+        verify(mockRaw).setHeader("ETag", "\"v1-gzip\"");
+    }
+}
@@ -0,0 +1,102 @@
+package com.napier.sem.web;
+
+import com.google.gson.Gson;
+import com.napier.sem.exception.DataAccessException;
+import com.napier.sem.model.City;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link JsonStream}.
+ * The servlet response is mocked and its output captured in memory.
+ */
+public class JsonStreamTest {
+    @Mock
+    private Request mockReq;
+    @Mock
+    private Response mockRes;
+    @Mock
+    private HttpServletResponse mockRaw;
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final Gson gson = new Gson();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        when(mockRes.raw()).thenReturn(mockRaw);
+        when(mockRaw.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) { }
+
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+        });
+    }
+
+    @Test
+    void writesElementsAsJsonArray() throws IOException {
+        Consumer<Consumer<City>> source = sink -> {
+            sink.accept(new City("Tokyo", "Japan", "Tokyo-to", 7980230));
+            sink.accept(new City("London", "United Kingdom", "England", 7285000));
+        };
+
+        String result = JsonStream.array(gson, mockReq, mockRes, City.class, source);
+
+        assertEquals("", result);
+        City[] cities = gson.fromJson(body.toString(StandardCharsets.UTF_8), City[].class);
+        assertEquals(2, cities.length);
+        assertEquals("London", cities[1].getName());
+        verify(mockRaw).setContentType("application/json");
+        verify(mockRaw, never()).setContentLength(anyInt());
+    }
+
+    @Test
+    void emptyReportIsEmptyArray() throws IOException {
+        JsonStream.<City>array(gson, mockReq, mockRes, City.class, sink -> { });
+
+        assertEquals("[]", body.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void copyIsKeptForTheResponseCache() throws IOException {
+        ResponseCache.Capture capture = new ResponseCache.Capture(1024);
+        when(mockReq.attribute(ResponseCache.CAPTURE_ATTRIBUTE)).thenReturn(capture);
+
+        JsonStream.<City>array(gson, mockReq, mockRes, City.class,
+                sink -> sink.accept(new City("Tokyo", "Japan", "Tokyo-to", 7980230)));
+
+        assertArrayEquals(body.toByteArray(), capture.toByteArray());
+    }
+
+    @Test
+    void failureBeforeCommitDiscardsPartialOutput() {
+        when(mockRaw.isCommitted()).thenReturn(false);
+
+        assertThrows(DataAccessException.class, () -> JsonStream.<City>array(gson, mockReq, mockRes, City.class,
+                sink -> { throw new DataAccessException("Failed to stream all cities", null); }));
+        verify(mockRaw).resetBuffer();
+    }
+}
@@ -0,0 +1,125 @@
+package com.napier.sem.web;
+
+import com.napier.sem.config.Deadline;
+import com.napier.sem.config.StatementCache;
+import com.napier.sem.exception.DataAccessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import javax.servlet.http.HttpServletResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link RequestDeadlines}.
+ * Request and response are mocked; the wrapped routes wait for their deadline to pass.
+ */
+public class RequestDeadlinesTest {
+    @Mock
+    private Request mockReq;
+    @Mock
+    private Response mockRes;
+    @Mock
+    private HttpServletResponse mockRaw;
+    @Mock
+    private Connection mockConn;
+    @Mock
+    private PreparedStatement mockStmt;
+
+    private final RequestDeadlines deadlines = new RequestDeadlines(100, 1000);
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        MockitoAnnotations.openMocks(this);
+        when(mockRes.raw()).thenReturn(mockRaw);
+        when(mockReq.pathInfo()).thenReturn("/cities/world");
+        when(mockConn.prepareStatement(anyString())).thenReturn(mockStmt);
+    }
+
+    /** Waits until the current deadline has passed, then fails like a cancelled query. */
+    private static Object failAfterDeadline() throws InterruptedException {
+        Deadline deadline = Deadline.current();
+        while (!deadline.isExpired()) Thread.sleep(5);
+        throw new DataAccessException("Failed to fetch cities", null);
+    }
+
+    @Test
+    void testTimeoutFromHeader() {
+        assertEquals(100, deadlines.timeoutFor(null, 100));
+        assertEquals(500, deadlines.timeoutFor("500", 100));
+        assertEquals(1000, deadlines.timeoutFor("60000", 100), "capped at the maximum");
+        assertEquals(100, deadlines.timeoutFor("soon", 100));
+        assertEquals(100, deadlines.timeoutFor("-1", 100));
+        assertEquals(100, new RequestDeadlines(100, 0).timeoutFor("500", 100), "header ignored without a maximum");
+    }
+
+    /** The route runs under a deadline that is gone afterwards. */
+    @Test
+    void testRouteRunsUnderDeadline() throws Exception {
+        Route route = (req, res) -> Deadline.current().getTimeoutMillis();
+
+        assertEquals(100L, deadlines.wrap("/cities/world", route).handle(mockReq, mockRes));
+        assertNull(Deadline.current());
+    }
+
+    /** A route that fails after starting its query is answered with 504. */
+    @Test
+    void testTimeoutAfterQuery() throws Exception {
+        long before = RequestDeadlines.getTimeoutCount();
+        Route route = (req, res) -> {
+            StatementCache.prepare(mockConn, "all_cities").close();
+            return failAfterDeadline();
+        };
+
+        Object body = deadlines.wrap("/cities/world", route).handle(mockReq, mockRes);
+
+        verify(mockRes).status(504);
+        assertTrue(body.toString().contains("\"timeoutMs\":100"));
+        verify(mockRaw).setHeader(eq("Server-Timing"), startsWith("total;dur="));
+        verify(mockRaw).setHeader("Cache-Control", "no-store");
+        assertEquals(before + 1, RequestDeadlines.getTimeoutCount());
+    }
+
+    /** A route that fails before reaching the database is answered with 503 and Retry-After. */
+    @Test
+    void testTimeoutBeforeQuery() throws Exception {
+        long before = RequestDeadlines.getRejectionCount();
+
+        deadlines.wrap("/cities/world", (req, res) -> failAfterDeadline()).handle(mockReq, mockRes);
+
+        verify(mockRes).status(503);
+        verify(mockRaw).setHeader("Retry-After", "1");
+        assertEquals(before + 1, RequestDeadlines.getRejectionCount());
+    }
+
+    /** Failures before the deadline are not the deadline's doing and are rethrown. */
+    @Test
+    void testOtherFailuresRethrown() {
+        DataAccessException failure = new DataAccessException("Failed to fetch cities", null);
+        Route route = (req, res) -> {
+            throw failure;
+        };
+
+        assertSame(failure, assertThrows(DataAccessException.class,
+                () -> deadlines.wrap("/cities/world", route).handle(mockReq, mockRes)));
+        verify(mockRes, never()).status(anyInt());
+    }
+
+    /** The client may ask for a longer deadline, up to the maximum. */
+    @Test
+    void testHeaderExtendsDeadline() throws Exception {
+        when(mockReq.headers(RequestDeadlines.HEADER)).thenReturn("750");
+        Route route = (req, res) -> Deadline.current().getTimeoutMillis();
+
+        assertEquals(750L, deadlines.wrap("/cities/world", route).handle(mockReq, mockRes));
+    }
+}
@@ -0,0 +1,301 @@
+package com.napier.sem.web;
+
+import com.napier.sem.config.DatasetVersion;
+import com.napier.sem.dao.PageCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ResponseCache}.
+ * Spark's request and response are mocked; the response body is captured in memory.
+ */
+public class ResponseCacheTest {
+    private static final String JSON = "application/json";
+
+    @Mock
+    private Request mockReq;
+    @Mock
+    private Response mockRes;
+    @Mock
+    private HttpServletResponse mockRaw;
+
+    private ByteArrayOutputStream body;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        body = new ByteArrayOutputStream();
+        when(mockRes.raw()).thenReturn(mockRaw);
+        when(mockRaw.getStatus()).thenReturn(200);
+        when(mockRaw.getContentType()).thenReturn(JSON);
+        when(mockRaw.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) { }
+
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+        });
+        when(mockReq.pathInfo()).thenReturn("/countries/top");
+        when(mockReq.queryParams("n")).thenReturn("5");
+    }
+
+    // -------------------------------------------
+    // Keys
+    // -------------------------------------------
+
+    @Test
+    void keyUsesParametersInFixedOrder() {
+        when(mockReq.pathInfo()).thenReturn("/cities/top/continent");
+        when(mockReq.queryParams("name")).thenReturn("North America&n=1");
+
+        assertEquals("/cities/top/continent?name=north+america%26n%3D1&n=5", ResponseCache.key(mockReq));
+    }
+
+    @Test
+    void keyNormalizesParametersTheRouteParses() {
+        when(mockReq.queryParams("n")).thenReturn("007");
+        String seven = ResponseCache.key(mockReq);
+        when(mockReq.queryParams("n")).thenReturn("7");
+
+        assertEquals(seven, ResponseCache.key(mockReq));
+        assertEquals("/countries/top?n=7", seven);
+
+        // Invalid counts all mean the route's default
+        when(mockReq.queryParams("n")).thenReturn("abc");
+        String invalid = ResponseCache.key(mockReq);
+        when(mockReq.queryParams("n")).thenReturn("-3");
+        assertEquals(invalid, ResponseCache.key(mockReq));
+    }
+
+    @Test
+    void keyFoldsNameCaseUnlessTheRouteEchoesIt() {
+        when(mockReq.pathInfo()).thenReturn("/cities/continent");
+        when(mockReq.queryParams("n")).thenReturn(null);
+        when(mockReq.queryParams("name")).thenReturn("Europe");
+        String europe = ResponseCache.key(mockReq);
+        when(mockReq.queryParams("name")).thenReturn("EUROPE");
+
+        assertEquals(europe, ResponseCache.key(mockReq));
+        assertNotEquals(europe, ResponseCache.key(mockReq, false));
+    }
+
+    @Test
+    void keyIgnoresUnknownParameters() {
+        String plain = ResponseCache.key(mockReq);
+        when(mockReq.queryParams()).thenReturn(Set.of("n", "x"));
+        when(mockReq.queryParams("x")).thenReturn("random");
+
+        assertEquals(plain, ResponseCache.key(mockReq));
+    }
+
+    @Test
+    void keyReencodesCursorAndSkipsInvalidOnes() {
+        when(mockReq.pathInfo()).thenReturn("/cities");
+        when(mockReq.queryParams("n")).thenReturn(null);
+        // Padded and unpadded forms decode to the same cursor
+        String cursor = new PageCursor(1000, "42").encode();
+        String padded = Base64.getUrlEncoder().encodeToString("1000:42".getBytes(StandardCharsets.UTF_8));
+        when(mockReq.queryParams("cursor")).thenReturn(padded);
+        assertEquals("/cities?cursor=" + cursor, ResponseCache.key(mockReq));
+
+        when(mockReq.queryParams("cursor")).thenReturn("not a cursor");
+        assertNull(ResponseCache.key(mockReq));
+    }
+
+    @Test
+    void requestWithInvalidCursorIsNotCached() throws Exception {
+        ResponseCache cache = new ResponseCache(1 << 20, 1 << 20, 60000, false, 1024);
+        AtomicInteger calls = new AtomicInteger();
+        when(mockReq.queryParams("cursor")).thenReturn("not a cursor");
+        Route route = cache.wrap((req, res) -> {
+            calls.incrementAndGet();
+            return "[]";
+        });
+
+        route.handle(mockReq, mockRes);
+        route.handle(mockReq, mockRes);
+
+        assertEquals(2, calls.get());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    // -------------------------------------------
+    // Route wrapper
+    // -------------------------------------------
+
+    @Test
+    void secondRequestIsServedFromCache() throws Exception {
+        ResponseCache cache = new ResponseCache(1 << 20, 1 << 20, 60000, false, 1024);
+        AtomicInteger calls = new AtomicInteger();
+        Route route = cache.wrap((req, res) -> {
+            calls.incrementAndGet();
+            return "[1,2,3]";
+        });
+
+        route.handle(mockReq, mockRes);
+        route.handle(mockReq, mockRes);
+
+        assertEquals(1, calls.get());
+        assertEquals("[1,2,3][1,2,3]", body.toString(StandardCharsets.UTF_8));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio());
+        assertEquals(7, cache.getBytes());
+    }
+
+    @Test
+    void nothingIsSentToClientWithCurrentCopy() throws Exception {
+        ResponseCache cache = new ResponseCache(1 << 20, 1 << 20, 60000, false, 1024);
+        when(mockReq.attribute(ConditionalRequests.NOT_MODIFIED_ATTRIBUTE)).thenReturn(Boolean.TRUE);
+        Route route = cache.wrap((req, res) -> "[1,2,3]");
+
+        route.handle(mockReq, mockRes);
+        route.handle(mockReq, mockRes);
+
+        // Stored on the miss, but neither the miss nor the hit writes the body
+        assertEquals(1, cache.getHitCount());
+        assertEquals(7, cache.getBytes());
+        assertEquals(0, body.size());
+        verify(mockRaw, never()).flushBuffer();
+    }
+
+    @Test
+    void errorResponsesAreNotCached() throws Exception {
+        ResponseCache cache = new ResponseCache(1 << 20, 1 << 20, 60000, false, 1024);
+        when(mockRaw.getStatus()).thenReturn(400);
+
+        Object result = cache.wrap((req, res) -> "{\"error\":\"Missing parameter\"}").handle(mockReq, mockRes);
+
+        assertEquals("{\"error\":\"Missing parameter\"}", result);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void gzipCopyIsSentToClientsThatAcceptIt() throws Exception {
+        ResponseCache cache = new ResponseCache(1 << 20, 1 << 20, 60000, true, 16);
+        when(mockReq.headers("Accept-Encoding")).thenReturn("gzip, deflate");
+        String json = "[" + "\"Population\",".repeat(100) + "0]";
+
+        cache.wrap((req, res) -> json).handle(mockReq, mockRes);
+
+        verify(mockRaw).setHeader("Content-Encoding", "gzip");
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()))) {
+            assertEquals(json, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    // -------------------------------------------
+    // Eviction and invalidation
+    // -------------------------------------------
+
+    @Test
+    void popularResponsesAreNotEvictedByOneOffRequests() throws IOException {
+        ResponseCache cache = new ResponseCache(10, 10, 60000, false, 1024);
+        // Make "popular" frequently requested before it is stored
+        for (int i = 0; i < 5; ++i) cache.get("popular");
+        cache.put("popular", new byte[8], JSON);
+
+        assertNull(cache.put("one-off", new byte[8], JSON));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getRejectionCount());
+    }
+
+    /** A more popular response among the victims keeps every victim in the cache. */
+    @Test
+    void rejectedResponseEvictsNothing() throws IOException {
+        ResponseCache cache = new ResponseCache(10, 10, 60000, false, 1024);
+        cache.put("a", new byte[4], JSON);
+        for (int i = 0; i < 5; ++i) cache.get("b");
+        cache.put("b", new byte[4], JSON);
+        cache.get("c");
+
+        assertNull(cache.put("c", new byte[8], JSON));
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+        assertEquals(8, cache.getBytes());
+    }
+
+    @Test
+    void leastRecentlyUsedIsEvictedWhenFull() throws IOException {
+        ResponseCache cache = new ResponseCache(10, 10, 60000, false, 1024);
+        cache.put("a", new byte[6], JSON);
+        cache.get("b");
+
+        assertNotNull(cache.put("b", new byte[6], JSON));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(6, cache.getBytes());
+    }
+
+    @Test
+    void oversizedResponsesAreNotStored() throws IOException {
+        ResponseCache cache = new ResponseCache(100, 10, 60000, false, 1024);
+
+        assertNull(cache.put("big", new byte[11], JSON));
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    void datasetChangeDropsEverything() throws IOException {
+        ResponseCache cache = new ResponseCache(100, 100, 60000, false, 1024);
+        cache.put("a", new byte[6], JSON);
+
+        DatasetVersion.bump();
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    /** A response built while the dataset was reloaded is sent but not stored. */
+    @Test
+    void responseBuiltAcrossDatasetChangeIsNotStored() throws Exception {
+        ResponseCache cache = new ResponseCache(1 << 20, 1 << 20, 60000, false, 1024);
+        AtomicInteger calls = new AtomicInteger();
+        Route route = cache.wrap((req, res) -> {
+            if (calls.incrementAndGet() == 1) DatasetVersion.bump();
+            return "[1,2,3]";
+        });
+
+        assertEquals("[1,2,3]", route.handle(mockReq, mockRes));
+        assertEquals(0, cache.size());
+        route.handle(mockReq, mockRes);
+        assertEquals(2, calls.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void expiredResponsesAreMisses() throws IOException {
+        ResponseCache cache = new ResponseCache(100, 100, -1, false, 1024);
+        cache.put("a", new byte[6], JSON);
+
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getMissCount());
+    }
+}
@@ -0,0 +1,104 @@
+package com.napier.sem.web;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link VirtualThreadPool}.
+ * A cached thread pool with named threads stands in for the virtual thread executor,
+ * which needs Java 21.
+ */
+public class VirtualThreadPoolTest {
+    private final AtomicInteger started = new AtomicInteger();
+    private final ExecutorService executor =
+            Executors.newCachedThreadPool(r -> new Thread(r, "task-" + started.incrementAndGet()));
+    private final VirtualThreadPool pool = new VirtualThreadPool(executor);
+    private Server server;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (server != null) server.stop();
+        executor.shutdownNow();
+    }
+
+    /** Jetty serves requests with the executor's threads. */
+    @Test
+    void testServesRequests() throws Exception {
+        server = new Server(pool);
+        ServerConnector connector = new ServerConnector(server);
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                response.setContentType("text/plain");
+                response.getWriter().write(Thread.currentThread().getName());
+            }
+        });
+        server.start();
+
+        URL url = new URL("http://localhost:" + connector.getLocalPort() + "/ping");
+        try (InputStream in = url.openStream()) {
+            assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8).startsWith("task-"));
+        }
+    }
+
+    /** Running tasks are counted; none are ever idle. */
+    @Test
+    void testCountsRunningTasks() throws Exception {
+        pool.start();
+        CountDownLatch running = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; ++i) {
+            pool.execute(() -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        assertEquals(2, pool.getThreads());
+        assertEquals(0, pool.getIdleThreads());
+        assertFalse(pool.isLowOnThreads());
+
+        release.countDown();
+        pool.stop();
+        assertEquals(0, pool.getThreads());
+    }
+
+    /** Stopping the pool shuts the executor down, so no more tasks are accepted. */
+    @Test
+    void testStopShutsDownExecutor() throws Exception {
+        pool.start();
+        pool.stop();
+        pool.join();
+
+        assertTrue(executor.isTerminated());
+        assertThrows(RejectedExecutionException.class, () -> pool.execute(() -> { }));
+    }
+}